@@ -0,0 +1,31 @@
+package cn.kong.engine.analysis;
+
+/**
+ * @author gzkon
+ * @description: 分词器接口，建索引和查询使用同一个分词器
+ * @date 2026/10/18 17:00
+ */
+public interface Analyzer {
+
+    /**
+     * 对文本分词，每个词元回调一次
+     *
+     * @param text     待分词文本
+     * @param consumer 词元回调
+     */
+    void analyze(CharSequence text, TokenConsumer consumer);
+
+    /**
+     * 词元回调，buffer 为分词器内部复用的缓冲区，只在回调期间有效
+     */
+    @FunctionalInterface
+    interface TokenConsumer {
+        /**
+         * @param buffer   词元所在的字符缓冲区
+         * @param offset   词元起始下标
+         * @param length   词元长度
+         * @param position 词元在文本中的序号，从0开始
+         */
+        void accept(char[] buffer, int offset, int length, int position);
+    }
+}
@@ -0,0 +1,122 @@
+package cn.kong.engine.analysis;
+
+import java.util.Arrays;
+
+/**
+ * @author gzkon
+ * @description: 中文分词器
+ * 连续的中日韩文字按词典正向最大匹配切词，词典中找不到的片段按相邻两字切分（单字片段保留单字）；
+ * 连续的字母数字转小写后作为一个词，全角字母数字先转半角
+ * 分词在复用的字符缓冲区上进行，词元以 (缓冲区, 偏移, 长度) 的形式回调，不创建字符串
+ * @date 2026/10/18 18:55
+ */
+public class ChineseAnalyzer implements Analyzer {
+
+    private static final int MAX_TOKEN_LENGTH = 64;    // 过长的字母数字串截断
+    private static final int MAX_WORD_LENGTH = 16;     // 词典匹配的最大词长
+
+    private final DoubleArrayTrie dictionary;
+
+    public ChineseAnalyzer(DoubleArrayTrie dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public void analyze(CharSequence text, TokenConsumer consumer) {
+        char[] token = new char[MAX_TOKEN_LENGTH];
+        char[] run = new char[256];
+        int tokenLength = 0;
+        int runLength = 0;
+        int position = 0;
+        for (int i = 0, n = text.length(); i <= n; i++) {
+            char c = i < n ? normalize(text.charAt(i)) : ' ';
+            if (StandardAnalyzer.isCjk(c)) {
+                if (tokenLength > 0) {
+                    consumer.accept(token, 0, tokenLength, position++);
+                    tokenLength = 0;
+                }
+                if (runLength == run.length) {
+                    run = Arrays.copyOf(run, run.length * 2);
+                }
+                run[runLength++] = c;
+                continue;
+            }
+            if (runLength > 0) {
+                position = segment(run, runLength, position, consumer);
+                runLength = 0;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (tokenLength < MAX_TOKEN_LENGTH) {
+                    token[tokenLength++] = Character.toLowerCase(c);
+                }
+            } else if (tokenLength > 0) {
+                consumer.accept(token, 0, tokenLength, position++);
+                tokenLength = 0;
+            }
+        }
+    }
+
+    /**
+     * 对一段连续的中日韩文字正向最大匹配，返回下一个词元序号
+     */
+    private int segment(char[] run, int length, int position, TokenConsumer consumer) {
+        int unknownStart = -1;  // 词典中找不到的片段起点
+        int i = 0;
+        while (i < length) {
+            int matched = longestMatch(run, i, length);
+            if (matched >= 2) {
+                if (unknownStart >= 0) {
+                    position = emitUnknown(run, unknownStart, i, position, consumer);
+                    unknownStart = -1;
+                }
+                consumer.accept(run, i, matched, position++);
+                i += matched;
+            } else {
+                if (unknownStart < 0) {
+                    unknownStart = i;
+                }
+                i++;
+            }
+        }
+        if (unknownStart >= 0) {
+            position = emitUnknown(run, unknownStart, length, position, consumer);
+        }
+        return position;
+    }
+
+    private int longestMatch(char[] run, int start, int length) {
+        int state = DoubleArrayTrie.ROOT;
+        int matched = 0;
+        int end = Math.min(length, start + MAX_WORD_LENGTH);
+        for (int i = start; i < end; i++) {
+            state = dictionary.transition(state, run[i]);
+            if (state == DoubleArrayTrie.NONE) {
+                break;
+            }
+            if (dictionary.isWord(state)) {
+                matched = i - start + 1;
+            }
+        }
+        return matched;
+    }
+
+    // 未登录片段按相邻两字切分
+    private static int emitUnknown(char[] run, int start, int end, int position, TokenConsumer consumer) {
+        if (end - start == 1) {
+            consumer.accept(run, start, 1, position++);
+            return position;
+        }
+        for (int i = start; i + 1 < end; i++) {
+            consumer.accept(run, i, 2, position++);
+        }
+        return position;
+    }
+
+    // 全角字母数字转半角
+    private static char normalize(char c) {
+        if (c >= '０' && c <= 'ｚ' && Character.isLetterOrDigit(c)) {
+            return (char) (c - 0xFEE0);
+        }
+        return c;
+    }
+}
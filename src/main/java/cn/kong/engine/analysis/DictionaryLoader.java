@@ -0,0 +1,82 @@
+package cn.kong.engine.analysis;
+
+import com.google.common.base.Strings;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * @author gzkon
+ * @description: 加载分词词典，主词典加上可选的用户词典
+ * 主词典默认使用内置的 dict/words.txt，只有约500个常用词，用于开发和测试；
+ * 实际抓取建议通过 search.analyzer.dictionary 指定完整的通用词典文件，未收录的词按二元切分，召回不受影响但排序较差
+ * 构建好的双数组字典树缓存到文件中，以词典内容的校验值作为标识，词典未变化时直接映射缓存文件
+ * @date 2026/10/18 19:05
+ */
+@Slf4j
+public class DictionaryLoader {
+
+    public static final String BUILTIN_DICTIONARY = "dict/words.txt";
+
+    private DictionaryLoader() {
+    }
+
+    /**
+     * @param dictionary     主词典路径，每行一个词，为空时使用内置词典
+     * @param userDictionary 用户词典路径，每行一个词，可以为空
+     * @param cacheFile      字典树缓存文件
+     */
+    public static DoubleArrayTrie load(String dictionary, String userDictionary, Path cacheFile) throws IOException {
+        ByteArrayOutputStream source = new ByteArrayOutputStream(64 * 1024);
+        if (Strings.isNullOrEmpty(dictionary)) {
+            try (InputStream in = DictionaryLoader.class.getClassLoader().getResourceAsStream(BUILTIN_DICTIONARY)) {
+                if (in == null) {
+                    throw new IOException("Builtin dictionary not found: " + BUILTIN_DICTIONARY);
+                }
+                in.transferTo(source);
+            }
+        } else {
+            source.write(Files.readAllBytes(Paths.get(dictionary)));
+        }
+        if (!Strings.isNullOrEmpty(userDictionary)) {
+            source.write('\n');
+            source.write(Files.readAllBytes(Paths.get(userDictionary)));
+        }
+        byte[] bytes = source.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length);
+        long checksum = crc.getValue() ^ ((long) bytes.length << 32);
+
+        long start = System.nanoTime();
+        DoubleArrayTrie trie = DoubleArrayTrie.load(cacheFile, checksum);
+        if (trie != null) {
+            log.info("加载词典缓存: {}, 节点数={}, 耗时 {} us", cacheFile, trie.size(), (System.nanoTime() - start) / 1000);
+            return trie;
+        }
+
+        List<String> words = new ArrayList<>();
+        for (String line : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+            String word = line.trim();
+            if (!word.isEmpty() && !word.startsWith("#")) {
+                words.add(word);
+            }
+        }
+        trie = DoubleArrayTrie.build(words);
+        log.info("构建词典: 词数={}, 节点数={}, 耗时 {} ms", words.size(), trie.size(), (System.nanoTime() - start) / 1000000);
+        try {
+            trie.save(cacheFile, checksum);
+        } catch (IOException e) {
+            log.warn("保存词典缓存失败: {}", cacheFile, e);
+        }
+        return trie;
+    }
+}
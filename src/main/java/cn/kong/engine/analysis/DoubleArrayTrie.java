@@ -0,0 +1,257 @@
+package cn.kong.engine.analysis;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.TreeSet;
+
+/**
+ * @author gzkon
+ * @description: 双数组字典树，状态 s 经过字符 c 转移到 t = base[s] + code(c)，当 check[t] == s + 1 时转移有效
+ * 字符编码为 c + 1，编码0表示词尾，词尾节点的 base 为负数
+ * 构建后可以保存为文件，下次启动直接映射到内存使用，不需要重新构建
+ * <pre>
+ * 文件格式 : MAGIC(4) VERSION(1) CHECKSUM(8) SIZE(4) BASE(4 * SIZE) CHECK(4 * SIZE)
+ * </pre>
+ * @date 2026/10/18 18:40
+ */
+public class DoubleArrayTrie {
+
+    private static final int MAGIC = 0x4D534454;    // "MSDT"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 17;
+
+    public static final int ROOT = 0;
+    public static final int NONE = -1;
+
+    private final IntBuffer base;
+    private final IntBuffer check;
+    private final int size;
+
+    private DoubleArrayTrie(IntBuffer base, IntBuffer check, int size) {
+        this.base = base;
+        this.check = check;
+        this.size = size;
+    }
+
+    /**
+     * 状态转移，转移不存在时返回 NONE
+     */
+    public int transition(int state, char c) {
+        int next = base.get(state) + c + 1;
+        if (next < size && check.get(next) == state + 1) {
+            return next;
+        }
+        return NONE;
+    }
+
+    /**
+     * 从根节点到该状态的路径是否是一个完整的词
+     */
+    public boolean isWord(int state) {
+        int end = base.get(state);
+        return end < size && check.get(end) == state + 1 && base.get(end) < 0;
+    }
+
+    public boolean contains(CharSequence word) {
+        int state = ROOT;
+        for (int i = 0; i < word.length() && state != NONE; i++) {
+            state = transition(state, word.charAt(i));
+        }
+        return state != NONE && isWord(state);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 按词表构建
+     */
+    public static DoubleArrayTrie build(Collection<String> words) {
+        String[] keys = new TreeSet<>(words).stream().filter(w -> !w.isEmpty()).toArray(String[]::new);
+        return new Builder(keys).build();
+    }
+
+    public void save(Path path, long checksum) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temp.toFile()), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(checksum);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(base.get(i));
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeInt(check.get(i));
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 映射已保存的文件，文件不存在、格式不对或校验值不一致时返回null
+     */
+    public static DoubleArrayTrie load(Path path, long checksum) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+                return null;
+            }
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            if (mapped.getInt(0) != MAGIC || mapped.get(4) != VERSION || mapped.getLong(5) != checksum) {
+                return null;
+            }
+            int size = mapped.getInt(13);
+            if (fileSize != HEADER_SIZE + 8L * size) {
+                return null;
+            }
+            mapped.position(HEADER_SIZE);
+            IntBuffer ints = mapped.slice().asIntBuffer();
+            IntBuffer base = ints.duplicate();
+            base.limit(size);
+            ints.position(size);
+            IntBuffer check = ints.slice();
+            return new DoubleArrayTrie(base.slice(), check, size);
+        }
+    }
+
+    /**
+     * 按层构建：每个节点对应有序词表中拥有相同前缀的一段区间，为节点的所有子节点寻找一个互不冲突的 base
+     */
+    private static class Builder {
+        private static final int MAX_TRIES = 64;    // 超过这个尝试次数说明前面区域已经很密集
+
+        private final String[] keys;
+        private int[] base = new int[65536 * 2];
+        private int[] check = new int[65536 * 2];
+        private int[] skip = new int[65536 * 2];    // 0表示空闲，否则指向后面可能空闲的位置，查找时路径压缩
+        private int size = 1;
+        private int nextCheckPos = 1;   // 查找 base 的起点，前面的区域已经足够密集时向后移动
+
+        Builder(String[] keys) {
+            this.keys = keys;
+            skip[ROOT] = 1;
+        }
+
+        DoubleArrayTrie build() {
+            // 待处理节点：状态 深度 区间起点 区间终点
+            Deque<int[]> queue = new ArrayDeque<>();
+            if (keys.length > 0) {
+                queue.add(new int[]{ROOT, 0, 0, keys.length});
+            }
+            int[] codes = new int[65537];
+            int[] starts = new int[65537];
+            while (!queue.isEmpty()) {
+                int[] node = queue.poll();
+                int state = node[0];
+                int depth = node[1];
+
+                // 收集子节点，区间内按字符分组
+                int count = 0;
+                for (int i = node[2]; i < node[3]; i++) {
+                    String key = keys[i];
+                    int code = key.length() == depth ? 0 : key.charAt(depth) + 1;
+                    if (count == 0 || codes[count - 1] != code) {
+                        codes[count] = code;
+                        starts[count] = i;
+                        count++;
+                    }
+                }
+                starts[count] = node[3];
+
+                int b = findBase(codes, count);
+                base[state] = b;
+                for (int i = 0; i < count; i++) {
+                    int child = b + codes[i];
+                    check[child] = state + 1;
+                    skip[child] = child + 1;
+                    size = Math.max(size, child + 1);
+                }
+                for (int i = 0; i < count; i++) {
+                    int child = b + codes[i];
+                    if (codes[i] == 0) {
+                        base[child] = -(starts[i] + 1);   // 词尾节点
+                    } else {
+                        queue.add(new int[]{child, depth + 1, starts[i], starts[i + 1]});
+                    }
+                }
+            }
+            if (keys.length == 0) {
+                base[ROOT] = 1;
+            }
+            int[] finalBase = Arrays.copyOf(base, size);
+            int[] finalCheck = Arrays.copyOf(check, size);
+            return new DoubleArrayTrie(IntBuffer.wrap(finalBase), IntBuffer.wrap(finalCheck), size);
+        }
+
+        private int findBase(int[] codes, int count) {
+            int first = codes[0];
+            int position = nextFree(Math.max(nextCheckPos, first + 1));
+            int tries = 0;
+            while (true) {
+                int b = position - first;
+                ensureCapacity(b + codes[count - 1] + 1);
+                boolean free = true;
+                for (int i = 1; i < count; i++) {
+                    if (check[b + codes[i]] != 0 || skip[b + codes[i]] != 0) {
+                        free = false;
+                        break;
+                    }
+                }
+                if (free) {
+                    if (tries > MAX_TRIES) {
+                        nextCheckPos = position;
+                    }
+                    return b;
+                }
+                tries++;
+                position = nextFree(position + 1);
+            }
+        }
+
+        // 不小于 position 的第一个空闲位置
+        private int nextFree(int position) {
+            ensureCapacity(position + 1);
+            int free = position;
+            while (skip[free] != 0) {
+                free = skip[free];
+                ensureCapacity(free + 1);
+            }
+            // 路径压缩
+            while (skip[position] != 0 && skip[position] != free) {
+                int next = skip[position];
+                skip[position] = free;
+                position = next;
+            }
+            return free;
+        }
+
+        private void ensureCapacity(int length) {
+            if (length > base.length) {
+                int newLength = Math.max(length, base.length + (base.length >> 1));
+                base = Arrays.copyOf(base, newLength);
+                check = Arrays.copyOf(check, newLength);
+                skip = Arrays.copyOf(skip, newLength);
+            }
+        }
+    }
+}
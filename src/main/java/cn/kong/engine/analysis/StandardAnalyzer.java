@@ -0,0 +1,49 @@
+package cn.kong.engine.analysis;
+
+/**
+ * @author gzkon
+ * @description: 基础分词器，连续的字母数字按一个词并转小写，中日韩文字按单字切分
+ * @date 2026/10/18 17:05
+ */
+public class StandardAnalyzer implements Analyzer {
+
+    private static final int MAX_TOKEN_LENGTH = 64;    // 过长的字母数字串截断
+
+    @Override
+    public void analyze(CharSequence text, TokenConsumer consumer) {
+        char[] buffer = new char[MAX_TOKEN_LENGTH];
+        int length = 0;
+        int position = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (isCjk(c)) {
+                if (length > 0) {
+                    consumer.accept(buffer, 0, length, position++);
+                    length = 0;
+                }
+                buffer[0] = c;
+                consumer.accept(buffer, 0, 1, position++);
+            } else if (Character.isLetterOrDigit(c)) {
+                if (length < MAX_TOKEN_LENGTH) {
+                    buffer[length++] = Character.toLowerCase(c);
+                }
+            } else if (length > 0) {
+                consumer.accept(buffer, 0, length, position++);
+                length = 0;
+            }
+        }
+        if (length > 0) {
+            consumer.accept(buffer, 0, length, position);
+        }
+    }
+
+    public static boolean isCjk(char c) {
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
+        return block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
+                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A
+                || block == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS
+                || block == Character.UnicodeBlock.HIRAGANA
+                || block == Character.UnicodeBlock.KATAKANA
+                || block == Character.UnicodeBlock.HANGUL_SYLLABLES;
+    }
+}
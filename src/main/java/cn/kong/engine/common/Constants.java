@@ -10,10 +10,9 @@ import java.io.File;
 public class Constants {
 
     public static final String OUT_DIC = System.getProperty("user.dir") + File.separator + "out";    // 输出目录
-    public static final byte[] FIELD_SEPARATOR = new byte[]{0x1F};  // 字段分隔符
-    public static final byte[] RECORD_SEPARATOR = new byte[]{0x1E}; // 单条记录分隔符
-    public static final byte[] DOC_TERMINATOR = new byte[]{0x17};   // 文件结束标记
     public static final String FILE_PREFIX = "doc_raw_";    // 文件前缀
     public static final String FILE_SUFFIX = ".bin";    // 文件后缀
+    public static final String INDEX_DIC = OUT_DIC + File.separator + "index";    // 索引目录
+    public static final String URL_MAP_FILE = OUT_DIC + File.separator + "url_ids.map";    // URL指纹 -> docId 映射文件
 
 }
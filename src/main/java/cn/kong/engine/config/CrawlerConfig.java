@@ -1,10 +1,16 @@
 package cn.kong.engine.config;
 
+import cn.kong.engine.common.Constants;
+import cn.kong.engine.store.SegmentFormat;
+import cn.kong.engine.store.UrlIdMap;
+import cn.kong.engine.utils.UrlCanonicalizer;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -12,13 +18,21 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Configuration
-@EnableConfigurationProperties({CrawlerConfig.HttpPoolProperties.class, CrawlerConfig.ThreadPoolProperties.class})
+@EnableConfigurationProperties({CrawlerConfig.HttpPoolProperties.class, CrawlerConfig.ThreadPoolProperties.class,
+        CrawlerConfig.StoreProperties.class, CrawlerConfig.UrlMapProperties.class,
+        CrawlerConfig.CheckpointProperties.class, CrawlerConfig.BloomProperties.class,
+        CrawlerConfig.CanonicalProperties.class, CrawlerConfig.NearDupProperties.class,
+        CrawlerConfig.DocInfoProperties.class})
 public class CrawlerConfig {
 
     @ConfigurationProperties(prefix = "crawler.http")
@@ -27,6 +41,17 @@ public class CrawlerConfig {
     public static class HttpPoolProperties {
         private int maxIdleConnections;
         private int keepAliveDuration; // 分钟
+        private FetchMode fetchMode = FetchMode.BLOCKING;
+        private int maxInFlight = 1000; // ASYNC模式下同时在途的最大请求数
+        private int maxRequestsPerHost = 5; // ASYNC模式下同一host同时在途的最大请求数
+        private int processThreads = 0; // ASYNC模式下解析、存储页面的线程数，0表示CPU核数
+        private long maxBodySize = 10 * 1024 * 1024; // 响应体最大字节数，超过则不保存内容
+    }
+
+    // 抓取模式
+    public enum FetchMode {
+        BLOCKING,   // 同步请求，每个在途请求占用一个爬虫线程
+        ASYNC       // 基于OkHttp enqueue回调的异步请求，在途数量由maxInFlight限制
     }
 
     @ConfigurationProperties(prefix = "crawler.thread-pool")
@@ -48,9 +73,92 @@ public class CrawlerConfig {
         }
     }
 
+    @ConfigurationProperties(prefix = "crawler.store")
+    @Getter
+    @Setter
+    public static class StoreProperties {
+        private SegmentFormat.Compression compression = SegmentFormat.Compression.DEFLATE;
+        private int blockSize = SegmentFormat.DEFAULT_BLOCK_SIZE; // 数据块解压后的目标大小，字节
+        private int queueCapacity = 4096; // 写入队列容量，队列满时抓取线程等待
+        private long flushBytes = 4 * 1024 * 1024; // 累计写入多少字节后刷新
+        private long flushInterval = 1000; // 最长刷新间隔，毫秒
+        private long forceInterval = 0; // 最长强制落盘间隔，毫秒，0表示只在关闭文件时落盘
+        private long offerTimeout = 30000; // 写入队列满时最长等待，毫秒，超时后该页面写入失败
+        private int stripes = 1; // 并行写入的段文件条带数，每个条带一个写入线程
+        private StripeBy stripeBy = StripeBy.DOC_ID;
+    }
+
+    @ConfigurationProperties(prefix = "crawler.doc-info")
+    @Getter
+    @Setter
+    public static class DocInfoProperties {
+        private int queueCapacity = 65536; // 写入队列容量，队列满时提交方等待
+        private int maxBatch = 10000; // 单个事务最多写入的变更数
+    }
+
+    @ConfigurationProperties(prefix = "crawler.url-map")
+    @Getter
+    @Setter
+    public static class UrlMapProperties {
+        private boolean enabled = true; // 关闭时退回到每个任务私有的布隆过滤器去重
+        private long initialCapacity = 1 << 20; // 新建映射文件时的槽位数，装载率超过0.7时翻倍
+    }
+
+    @ConfigurationProperties(prefix = "crawler.canonical")
+    @Getter
+    @Setter
+    public static class CanonicalProperties {
+        // 规范化URL时去掉的跟踪参数，不区分大小写
+        private List<String> trackingParams = new ArrayList<>(List.of("gclid", "fbclid", "msclkid", "yclid",
+                "spm", "_ga", "mc_cid", "mc_eid"));
+        private List<String> trackingParamPrefixes = new ArrayList<>(List.of("utm_")); // 按前缀去掉的跟踪参数
+    }
+
+    @ConfigurationProperties(prefix = "crawler.near-dup")
+    @Getter
+    @Setter
+    public static class NearDupProperties {
+        private boolean enabled = true;
+        private int maxDistance = 3; // SimHash 汉明距离不超过该值视为近似重复，0到7，近邻索引的表数为该值加一
+        private int shingleSize = 2; // 每个片段的连续词数，单个词时共用常见词的长页面容易误判
+        private int minShingles = 20; // 正文片段数少于该值的页面不做检测
+    }
+
+    @ConfigurationProperties(prefix = "crawler.bloom")
+    @Getter
+    @Setter
+    public static class BloomProperties {
+        private long initialCapacity = 1_000_000; // 任务没有指定抓取数量时第一个分片的预计URL数
+        private int linksPerPage = 20; // 按抓取数量估计URL数时每个页面新发现的链接数
+        private double fpp = 0.01; // 合计的误判率
+    }
+
+    @ConfigurationProperties(prefix = "crawler.checkpoint")
+    @Getter
+    @Setter
+    public static class CheckpointProperties {
+        private boolean enabled = true;
+        private long interval = 60000; // 运行中的任务保存检查点的间隔，毫秒
+    }
+
+    // 文档分配到写入条带的方式
+    public enum StripeBy {
+        DOC_ID, // 按docId取模，写入最均匀
+        HOST    // 按host哈希，同一站点的页面写入同一组文件
+    }
+
     @Bean
     public OkHttpClient okHttpClient(HttpPoolProperties properties) {
+        Dispatcher dispatcher = new Dispatcher();
+        if (properties.getFetchMode() == FetchMode.ASYNC) {
+            // 在途请求数量由爬虫侧的信号量控制，这里放开OkHttp默认的64个上限
+            dispatcher.setMaxRequests(Math.max(1, properties.getMaxInFlight()));
+            dispatcher.setMaxRequestsPerHost(Math.max(1, properties.getMaxRequestsPerHost()));
+        }
+        log.info("Http client fetch mode: {}, maxInFlight={}, maxRequestsPerHost={}", properties.getFetchMode(),
+                properties.getMaxInFlight(), properties.getMaxRequestsPerHost());
         return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
                 .connectionPool(new ConnectionPool(
                         properties.getMaxIdleConnections(),
                         properties.getKeepAliveDuration(),
@@ -60,6 +168,38 @@ public class CrawlerConfig {
                 .build();
     }
 
+    @Bean
+    public UrlCanonicalizer urlCanonicalizer(CanonicalProperties properties) {
+        return new UrlCanonicalizer(properties.getTrackingParams(), properties.getTrackingParamPrefixes());
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "crawler.url-map", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public UrlIdMap urlIdMap(UrlMapProperties properties) throws IOException {
+        UrlIdMap map = new UrlIdMap(Paths.get(Constants.URL_MAP_FILE), properties.getInitialCapacity());
+        log.info("Url map loaded: size={}, capacity={}, maxDocId={}", map.size(), map.capacity(), map.maxDocId());
+        return map;
+    }
+
+    /**
+     * ASYNC模式下处理响应的线程池，OkHttp回调线程只负责读取响应，解析、提取链接和存储在这里执行，
+     * 线程数固定，队列容量与在途请求数相同，在途请求由爬虫侧的信号量限制，队列不会溢出
+     */
+    @Bean(name = "crawlerProcessPool")
+    public ThreadPoolTaskExecutor crawlerProcessPool(HttpPoolProperties properties) {
+        int threads = properties.getProcessThreads() > 0 ? properties.getProcessThreads()
+                : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(Math.max(1, properties.getMaxInFlight()));
+        executor.setThreadNamePrefix("crawler-process-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        log.info("Created crawler process pool: threads={}", threads);
+        return executor;
+    }
+
     @Bean(name = "crawlerThreadPool")
     public ThreadPoolTaskExecutor crawlerThreadPool(ThreadPoolProperties properties) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
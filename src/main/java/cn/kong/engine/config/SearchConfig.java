@@ -0,0 +1,85 @@
+package cn.kong.engine.config;
+
+import cn.kong.engine.analysis.Analyzer;
+import cn.kong.engine.analysis.ChineseAnalyzer;
+import cn.kong.engine.analysis.DictionaryLoader;
+import cn.kong.engine.common.Constants;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * @author gzkon
+ * @description: 索引和检索配置
+ * @date 2026/10/18 18:10
+ */
+@Configuration
+@EnableConfigurationProperties({SearchConfig.IndexProperties.class, SearchConfig.AnalyzerProperties.class,
+        SearchConfig.QueryProperties.class, SearchConfig.CacheProperties.class, SearchConfig.SnippetProperties.class})
+public class SearchConfig {
+
+    @ConfigurationProperties(prefix = "search.index")
+    @Getter
+    @Setter
+    public static class IndexProperties {
+        private long ramBufferSize = 64 * 1024 * 1024; // 构建索引时内存中倒排数据的上限，超过后写出临时文件
+        private long refreshInterval = 10000; // 扫描新封存的 doc_raw 文件的间隔，毫秒
+        private int mergeFactor = 10; // 同一层的索引段达到该数量时合并
+        private long floorSegmentSize = 2 * 1024 * 1024; // 小于该大小的索引段都算作最低层
+        private long maxMergedSegmentSize = 1024 * 1024 * 1024; // 合并后索引段的大小上限
+        private long mergeRate = 20 * 1024 * 1024; // 合并写入限速，字节每秒，0表示不限速
+        private boolean realtime = true; // 是否启用近实时索引，抓取的文档先加入内存索引段
+        private long realtimeRefreshInterval = 1000; // 内存索引段发布新视图的间隔，毫秒
+        private long realtimeFlushSize = 32 * 1024 * 1024; // 内存索引段超过该大小后写入磁盘
+    }
+
+    @ConfigurationProperties(prefix = "search.analyzer")
+    @Getter
+    @Setter
+    public static class AnalyzerProperties {
+        private String dictionary; // 主词典路径，每行一个词，为空时使用内置的小词典(约500词)
+        private String userDictionary; // 用户词典路径，每行一个词，追加到主词典之后
+    }
+
+    @ConfigurationProperties(prefix = "search.query")
+    @Getter
+    @Setter
+    public static class QueryProperties {
+        private float k1 = 1.2f; // BM25 词频饱和参数
+        private float b = 0.75f; // BM25 文档长度归一化参数
+        private int maxResults = 1000; // 单次检索最多返回的结果数
+    }
+
+    @ConfigurationProperties(prefix = "search.cache")
+    @Getter
+    @Setter
+    public static class CacheProperties {
+        private boolean enabled = true;
+        private int maximumSize = 10000; // 缓存的查询结果页数
+        private long realtimeStaleness = 5000; // 近实时索引变化后缓存结果最多沿用的时间，毫秒，0表示立即失效
+    }
+
+    @ConfigurationProperties(prefix = "search.snippet")
+    @Getter
+    @Setter
+    public static class SnippetProperties {
+        private boolean enabled = true;
+        private int fragmentSize = 120; // 摘要的字符数
+        private long timeBudget = 20; // 每次检索生成摘要的时间上限，毫秒，超时后其余结果不带摘要
+    }
+
+    /**
+     * 建索引和查询共用的分词器
+     */
+    @Bean
+    public Analyzer analyzer(AnalyzerProperties properties) throws IOException {
+        return new ChineseAnalyzer(DictionaryLoader.load(properties.getDictionary(), properties.getUserDictionary(),
+                Paths.get(Constants.OUT_DIC, "dict", "words.dat")));
+    }
+}
@@ -0,0 +1,268 @@
+package cn.kong.engine.content;
+
+import cn.kong.engine.common.Constants;
+import cn.kong.engine.model.CrawlerTask;
+import cn.kong.engine.processor.collect.entity.BaseEntry;
+import cn.kong.engine.store.UrlIdMap;
+import cn.kong.engine.utils.ScalableBloomFilter;
+import cn.kong.engine.utils.UrlCanonicalizer;
+import com.alibaba.fastjson.JSON;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * @author gzkon
+ * @description: 爬虫任务检查点，保存在 out/checkpoint/{taskId}/ 下
+ * <pre>
+ * task.json            : 任务参数
+ * frontier-{gen}.dat   : 未完成的URL，DEFLATE压缩，MAGIC(4) COUNT(4) 之后每条 ID(8) FINGERPRINT(8) LEN(4) URL(UTF-8)
+ * bloom-{gen}.bin      : 布隆过滤器的位数组，使用 URL映射去重时没有这个文件，已见URL就在映射文件中
+ * checkpoint.json      : 当前有效的代号、docId 和 URL数，写入临时文件后原子替换，替换后才删除上一代的文件
+ * </pre>
+ * 保存时只在复制 frontier 期间持有它的锁，布隆过滤器的位只会从0变为1，直接与插入并发写出，写文件不阻塞抓取线程；
+ * 恢复后 frontier 中已取出未完成的URL会重新抓取，已处理完成但还在写入队列中的页面不会重新抓取
+ * @date 2026/10/18 16:40
+ */
+@Slf4j
+public class CrawlerCheckpoint {
+
+    public static final String DIRECTORY = Constants.OUT_DIC + File.separator + "checkpoint";
+
+    private static final String TASK_FILE = "task.json";
+    private static final String STATE_FILE = "checkpoint.json";
+    private static final int FRONTIER_MAGIC = 0x4D434632;   // "MCF2"
+    private static final int LEGACY_FRONTIER_MAGIC = 0x4D43464C;   // "MCFL"，没有指纹，读取时按URL计算
+
+    private final CrawlerTask task;
+
+    private final long docId;
+
+    private final List<BaseEntry> entries;
+
+    private final ScalableBloomFilter bloomFilter;    // 使用URL映射去重或格式不兼容时为null
+
+    private CrawlerCheckpoint(CrawlerTask task, long docId, List<BaseEntry> entries,
+                              ScalableBloomFilter bloomFilter) {
+        this.task = task;
+        this.docId = docId;
+        this.entries = entries;
+        this.bloomFilter = bloomFilter;
+    }
+
+    public static Path directoryOf(String taskId) {
+        return Paths.get(DIRECTORY, taskId);
+    }
+
+    public static boolean exists(String taskId) {
+        return Files.isRegularFile(directoryOf(taskId).resolve(STATE_FILE));
+    }
+
+    /**
+     * 保存任务的检查点，同一任务的多次保存串行执行
+     */
+    public static void save(CrawlerContent content) throws IOException {
+        synchronized (content) {
+            long start = System.currentTimeMillis();
+            CrawlerTask task = content.getTask();
+            Path directory = directoryOf(task.getTaskId());
+            Files.createDirectories(directory);
+            State previous = readState(directory);
+
+            // 先复制 frontier 再写出布隆过滤器、读取 docId，URL先记入去重集合再进入 frontier，
+            // 保证快照中的URL都包含在写出的位数组中、编号都不超过 docId
+            List<BaseEntry> entries = content.getFrontier().snapshot();
+            ScalableBloomFilter bloomFilter = content.getBloomFilter();
+            long docId = content.getDocId().get();
+            UrlIdMap urlIdMap = content.getUrlIdMap();
+            if (urlIdMap != null) {
+                urlIdMap.flush();
+            }
+
+            State state = new State();
+            state.setGeneration(previous == null ? 1 : previous.getGeneration() + 1);
+            state.setDocId(docId);
+            state.setEntries(entries.size());
+            state.setTime(System.currentTimeMillis());
+            state.setFrontierFile("frontier-" + state.getGeneration() + ".dat");
+            writeFrontier(directory.resolve(state.getFrontierFile()), entries);
+            if (bloomFilter != null) {
+                state.setBloomFile("bloom-" + state.getGeneration() + ".bin");
+                try (OutputStream out = new BufferedOutputStream(
+                        Files.newOutputStream(directory.resolve(state.getBloomFile())), 64 * 1024)) {
+                    bloomFilter.writeTo(out);
+                }
+            }
+            writeAtomically(directory.resolve(TASK_FILE), JSON.toJSONString(task));
+            writeAtomically(directory.resolve(STATE_FILE), JSON.toJSONString(state));
+
+            if (previous != null) {
+                deleteIfPresent(directory, previous.getFrontierFile());
+                deleteIfPresent(directory, previous.getBloomFile());
+            }
+            log.info("保存爬虫检查点: taskId={}, URL数={}, docId={}, 耗时 {} ms",
+                    task.getTaskId(), entries.size(), docId, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 读取任务最近一次的检查点
+     */
+    public static CrawlerCheckpoint load(String taskId) throws IOException {
+        Path directory = directoryOf(taskId);
+        State state = readState(directory);
+        if (state == null) {
+            throw new NoSuchFileException(directory.resolve(STATE_FILE).toString());
+        }
+        CrawlerTask task = JSON.parseObject(
+                new String(Files.readAllBytes(directory.resolve(TASK_FILE)), StandardCharsets.UTF_8), CrawlerTask.class);
+        List<BaseEntry> entries = readFrontier(directory.resolve(state.getFrontierFile()));
+        ScalableBloomFilter bloomFilter = null;
+        if (state.getBloomFile() != null) {
+            try (InputStream in = new BufferedInputStream(
+                    Files.newInputStream(directory.resolve(state.getBloomFile())), 64 * 1024)) {
+                bloomFilter = ScalableBloomFilter.readFrom(in);
+            } catch (IOException e) {
+                // 格式不兼容时由未完成的URL重建
+                log.warn("读取布隆过滤器失败，恢复时重建: {}", state.getBloomFile(), e);
+            }
+        }
+        return new CrawlerCheckpoint(task, state.getDocId(), entries, bloomFilter);
+    }
+
+    /**
+     * 删除任务的检查点，任务正常结束后调用
+     */
+    public static void delete(String taskId) {
+        Path directory = directoryOf(taskId);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("删除检查点文件失败: {}", path, e);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("删除检查点失败: {}", directory, e);
+        }
+    }
+
+    public CrawlerTask getTask() {
+        return task;
+    }
+
+    public long getDocId() {
+        return docId;
+    }
+
+    public List<BaseEntry> getEntries() {
+        return entries;
+    }
+
+    public ScalableBloomFilter getBloomFilter() {
+        return bloomFilter;
+    }
+
+    private static void writeFrontier(Path path, List<BaseEntry> entries) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(Files.newOutputStream(path), deflater, 64 * 1024), 64 * 1024))) {
+            out.writeInt(FRONTIER_MAGIC);
+            out.writeInt(entries.size());
+            for (BaseEntry entry : entries) {
+                byte[] url = entry.getUrl().getBytes(StandardCharsets.UTF_8);
+                out.writeLong(entry.getId());
+                out.writeLong(entry.getFingerprint());
+                out.writeInt(url.length);
+                out.write(url);
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static List<BaseEntry> readFrontier(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(Files.newInputStream(path)), 64 * 1024))) {
+            int magic = in.readInt();
+            if (magic != FRONTIER_MAGIC && magic != LEGACY_FRONTIER_MAGIC) {
+                throw new IOException("Invalid frontier file: " + path);
+            }
+            int count = in.readInt();
+            List<BaseEntry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                long fingerprint = magic == FRONTIER_MAGIC ? in.readLong() : 0;
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                String url = new String(bytes, StandardCharsets.UTF_8);
+                entries.add(new BaseEntry(id, url, fingerprint != 0 ? fingerprint : UrlCanonicalizer.fingerprint(url)));
+            }
+            return entries;
+        }
+    }
+
+    private static State readState(Path directory) throws IOException {
+        Path path = directory.resolve(STATE_FILE);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        return JSON.parseObject(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), State.class);
+    }
+
+    private static void writeAtomically(Path path, String content) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void deleteIfPresent(Path directory, String name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(directory.resolve(name));
+        } catch (IOException e) {
+            log.warn("删除旧检查点文件失败: {}", name, e);
+        }
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class State {
+        private long generation;        // 检查点代号，每次保存加一
+        private long docId;             // 已分配的最大docId
+        private long entries;           // 未完成的URL数
+        private long time;              // 保存时间
+        private String frontierFile;
+        private String bloomFile;       // 使用URL映射去重时为空
+    }
+}
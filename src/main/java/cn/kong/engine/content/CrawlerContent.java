@@ -1,26 +1,32 @@
 package cn.kong.engine.content;
 
 import cn.kong.engine.common.Constants;
+import cn.kong.engine.config.CrawlerConfig;
 import cn.kong.engine.model.CrawlerTask;
 import cn.kong.engine.processor.collect.entity.BaseEntry;
+import cn.kong.engine.processor.collect.frontier.HostFrontier;
+import cn.kong.engine.store.DocWriter;
+import cn.kong.engine.store.SegmentFormat;
+import cn.kong.engine.store.SegmentWriter;
+import cn.kong.engine.store.UrlIdMap;
+import cn.kong.engine.utils.ScalableBloomFilter;
+import cn.kong.engine.utils.UrlCanonicalizer;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterables;
-import com.google.common.hash.BloomFilter;
-import com.google.common.hash.Funnels;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.HttpUrl;
 
-import java.io.BufferedOutputStream;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -36,31 +42,42 @@ public class CrawlerContent {
     // 使用ThreadLocal为每个线程维护独立数据
     private final ThreadLocal<Map<String, Object>> nodeData = ThreadLocal.withInitial(ConcurrentHashMap::new);
 
-    private BlockingQueue<BaseEntry> urlQueue;  // 用来存储url的队列，每个实例私有
+    private HostFrontier frontier;  // 按host分区的待抓取url队列，每个实例私有
 
-    @SuppressWarnings("all")
-    private BloomFilter<CharSequence> bloomFilter;  // 用来记录重复url的布隆过滤器，每个实例私有
+    private ScalableBloomFilter bloomFilter;  // 用来记录重复url的布隆过滤器，未启用URL映射时使用，同一去重分组的任务共用
 
-    private final AtomicLong docId = new AtomicLong(0); // 全局link唯一编号
+    private AtomicLong docId;   // 全局link唯一编号，由 CollectService 持有，所有任务共用
 
-    private BufferedOutputStream outputStream;  // 文件写入流，每个实例私有
+    private UrlIdMap urlIdMap;  // 持久化的 URL指纹 -> docId 映射，所有任务共用，未启用时为null
 
-    private long maxFileSize = 1024 * 1024 * 1024; // 单个文件的最大大小，默认1GB
+    private DocWriter[] docWriters;  // 各条带的段文件写入线程，每个实例私有
+
+    private CrawlerConfig.StripeBy stripeBy = CrawlerConfig.StripeBy.DOC_ID;   // 文档分配到条带的方式
 
-    private long currentFileSize = 0;   // 当前文件大小
+    private SegmentFormat.Compression compression = SegmentFormat.Compression.DEFLATE;   // 数据块压缩方式
+
+    private int blockSize = SegmentFormat.DEFAULT_BLOCK_SIZE;  // 数据块大小
+
+    private long maxFileSize = 1024 * 1024 * 1024; // 单个文件的最大大小，默认1GB
 
-    private long fileIndex = 0;     // 当前文件下标
+    private long[] fileIndexes;     // 各条带当前文件下标
 
     private final AtomicBoolean running = new AtomicBoolean(true);
 
+    /**
+     * @param task        任务，种子Link已规范化
+     * @param urlIdMap    URL映射，未启用时为null
+     * @param bloomFilter 未启用URL映射时使用的布隆过滤器
+     * @param docId       所有任务共用的 docId 计数器，已不小于 doc_info 和 doc_raw 中的最大docId
+     */
     @SuppressWarnings("all")
-    public void init(CrawlerTask task) {
-        this.task = task;
-        this.urlQueue = new LinkedBlockingQueue<>();
-        this.bloomFilter = BloomFilter.create(
-                Funnels.stringFunnel(StandardCharsets.UTF_8),
-                100_000_000,
-                0.01);
+    public void init(CrawlerTask task, CrawlerConfig.StoreProperties storeProperties, UrlIdMap urlIdMap,
+                     ScalableBloomFilter bloomFilter, AtomicLong docId) {
+        setup(task, storeProperties, urlIdMap, bloomFilter, docId);
+        // docId 接着之前抓取过的最大编号分配，不与已存储的文档重复
+        if (urlIdMap != null) {
+            docId.accumulateAndGet(urlIdMap.maxDocId(), Math::max);
+        }
 
 
         List<String> links = task.getLinks();
@@ -70,52 +87,175 @@ public class CrawlerContent {
         links.stream()
                 .filter(link -> !Strings.isNullOrEmpty(link))  // 过滤掉 null 或 空字符串
                 .forEach(link -> {
-                    // 创建 BaseEntry，并将其添加到 urlQueue
-                    BaseEntry entry = new BaseEntry(this.docId.incrementAndGet(), link);
-                    this.urlQueue.add(entry);
+                    long fingerprint = UrlCanonicalizer.fingerprint(link);
+                    if (urlIdMap == null) {
+                        // 创建 BaseEntry，并将其添加到 frontier，种子也记入布隆过滤器，避免被页面中的链接重复加入
+                        this.frontier.offer(new BaseEntry(this.docId.incrementAndGet(), link, fingerprint));
+                        this.bloomFilter.putIfAbsent(fingerprint);
+                        return;
+                    }
+                    // 只跳过已抓取的种子，之前只被发现、没有抓取的URL沿用原来的docId
+                    long id = urlIdMap.addIfNotFetched(fingerprint, this.docId::incrementAndGet);
+                    if (id == UrlIdMap.NOT_FOUND) {
+                        log.info("种子Link已抓取过，跳过: {}", link);
+                    } else {
+                        this.frontier.offer(new BaseEntry(id, link, fingerprint));
+                    }
                 });
-        this.maxFileSize = task.getMaxFileSize() != null ? task.getMaxFileSize() : this.maxFileSize;
-        // 初始化文件写入流
-        openNewFile();
+        startWriters(storeProperties);
     }
 
-    public void openNewFile() {
-        // 先关掉旧文件
-        closeCurrentWriter();
+    /**
+     * 从检查点恢复任务，还原 docId、去重集合和未完成的URL，不再加入种子Link
+     * 检查点之后可能还分配和写入过docId，也可能有其他任务写入，共用的 docId 计数器不小于检查点中的编号
+     *
+     * @param docId 所有任务共用的 docId 计数器，已不小于 doc_info 和 doc_raw 中的最大docId
+     */
+    public void resume(CrawlerCheckpoint checkpoint, CrawlerConfig.StoreProperties storeProperties, UrlIdMap urlIdMap,
+                       ScalableBloomFilter bloomFilter, AtomicLong docId) {
+        setup(checkpoint.getTask(), storeProperties, urlIdMap, bloomFilter, docId);
+        docId.accumulateAndGet(checkpoint.getDocId(), Math::max);
+        if (urlIdMap == null) {
+            // 过滤器可能是重建的或其他任务共用的，未完成的URL重新记入
+            checkpoint.getEntries().forEach(entry -> this.bloomFilter.putIfAbsent(entry.getFingerprint()));
+        } else {
+            docId.accumulateAndGet(urlIdMap.maxDocId(), Math::max);
+        }
+        checkpoint.getEntries().forEach(this.frontier::offer);
+        startWriters(storeProperties);
+    }
 
-        String filePrefix = task.getFilePrefix();
-        String fileSuffix = task.getFileSuffix();
-        if (Strings.isNullOrEmpty(filePrefix)) {
-            filePrefix = Constants.FILE_PREFIX;
+    private void setup(CrawlerTask task, CrawlerConfig.StoreProperties storeProperties, UrlIdMap urlIdMap,
+                       ScalableBloomFilter bloomFilter, AtomicLong docId) {
+        if (urlIdMap == null && bloomFilter == null) {
+            throw new IllegalArgumentException("未启用URL映射时必须提供布隆过滤器");
+        }
+        this.task = task;
+        this.docId = docId;
+        this.urlIdMap = urlIdMap;
+        this.bloomFilter = urlIdMap == null ? bloomFilter : null;
+        if (storeProperties != null) {
+            this.compression = storeProperties.getCompression();
+            this.blockSize = storeProperties.getBlockSize();
         }
-        if (Strings.isNullOrEmpty(fileSuffix)) {
-            fileSuffix = Constants.FILE_SUFFIX;
+        long hostDelay = task.getHostDelay() != null ? task.getHostDelay() : 0L;
+        this.frontier = new HostFrontier(hostDelay, TimeUnit.MILLISECONDS);
+    }
+
+    private void startWriters(CrawlerConfig.StoreProperties storeProperties) {
+        this.maxFileSize = task.getMaxFileSize() != null ? task.getMaxFileSize() : this.maxFileSize;
+        // 每个条带启动一个写入线程，第一条记录到达时打开文件
+        CrawlerConfig.StoreProperties properties = storeProperties != null ? storeProperties : new CrawlerConfig.StoreProperties();
+        int stripes = Math.max(1, properties.getStripes());
+        this.stripeBy = properties.getStripeBy();
+        this.fileIndexes = new long[stripes];
+        this.docWriters = new DocWriter[stripes];
+        for (int i = 0; i < stripes; i++) {
+            int stripe = i;
+            // 文件编号接着磁盘上已有的文件，恢复的任务或新任务都不会覆盖之前写入的文件
+            this.fileIndexes[i] = nextFileIndex(stripe);
+            this.docWriters[i] = new DocWriter("doc-writer-" + task.getTaskId() + "-" + stripe,
+                    () -> openNewFile(stripe), this.maxFileSize,
+                    properties.getQueueCapacity(), properties.getFlushBytes(),
+                    properties.getFlushInterval(), properties.getForceInterval(), properties.getOfferTimeout());
+            this.docWriters[i].start();
         }
+    }
 
-        String fileName = filePrefix + this.fileIndex++ + fileSuffix;
-        Path filePath = Paths.get(Constants.OUT_DIC, fileName);
+    /**
+     * 打开条带的新段文件 doc_raw_{stripe}_{index}.bin，只由该条带的写入线程在切换文件时调用，
+     * 旧文件由写入线程负责关闭
+     * 文件名前缀相同的任务共用编号，先用 createFile 原子地占住文件名，已被其他任务占用时换下一个编号
+     */
+    public SegmentWriter openNewFile(int stripe) {
+        Path filePath;
         try {
-            Files.createDirectories(filePath.getParent());
-            this.outputStream = new BufferedOutputStream(new FileOutputStream(filePath.toFile(), false));
-            this.currentFileSize = 0;
-
+            Files.createDirectories(Paths.get(Constants.OUT_DIC));
+            while (true) {
+                String fileName = filePrefix() + stripe + "_" + this.fileIndexes[stripe]++ + fileSuffix();
+                filePath = Paths.get(Constants.OUT_DIC, fileName);
+                try {
+                    Files.createFile(filePath);
+                    break;
+                } catch (FileAlreadyExistsException e) {
+                    log.debug("段文件已存在，使用下一个编号: {}", filePath);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("创建文件失败: stripe=" + stripe, e);
+        }
+        try {
+            return new SegmentWriter(filePath, compression, blockSize);
         } catch (IOException e) {
             throw new RuntimeException("创建文件失败: " + filePath, e);
         }
     }
 
+    // 输出目录中该条带已有文件的最大编号加一，只是起始编号，实际编号在 openNewFile 中原子占用
+    private long nextFileIndex(int stripe) {
+        String prefix = filePrefix() + stripe + "_";
+        String suffix = fileSuffix();
+        File[] files = new File(Constants.OUT_DIC).listFiles();
+        long next = 0;
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith(prefix) && name.endsWith(suffix) && name.length() > prefix.length() + suffix.length()) {
+                    try {
+                        next = Math.max(next, Long.parseLong(
+                                name.substring(prefix.length(), name.length() - suffix.length())) + 1);
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+        }
+        return next;
+    }
+
+    private String filePrefix() {
+        return Strings.isNullOrEmpty(task.getFilePrefix()) ? Constants.FILE_PREFIX : task.getFilePrefix();
+    }
+
+    private String fileSuffix() {
+        return Strings.isNullOrEmpty(task.getFileSuffix()) ? Constants.FILE_SUFFIX : task.getFileSuffix();
+    }
+
 
+    /**
+     * 追加一条记录，按docId或host分配到条带，由条带的写入线程异步写入当前文件，写入队列满时等待
+     *
+     * @param onWritten 写入成功后在写入线程中执行，可以为null
+     * @return 记录写入段文件后完成，写入失败时异常完成
+     */
+    public CompletableFuture<Void> appendRecord(long docId, String url, byte[] content, Runnable onWritten)
+            throws IOException {
+        return this.docWriters[stripeOf(docId, url)].append(docId, content, onWritten);
+    }
+
+    /**
+     * 等待已提交的记录全部写完，并关闭各条带的当前文件
+     */
     public void closeCurrentWriter() {
-        if (this.outputStream != null) {
-            try {
-                this.outputStream.write(Constants.DOC_TERMINATOR); // 写入文件结束标记
-                this.outputStream.close();
-            } catch (IOException e) {
-                log.error("关闭旧文件失败：{}", e.getMessage());
+        if (this.docWriters != null) {
+            for (DocWriter docWriter : this.docWriters) {
+                docWriter.close();
             }
         }
     }
 
+    int stripeOf(long docId, String url) {
+        int stripes = this.docWriters.length;
+        if (stripes == 1) {
+            return 0;
+        }
+        if (this.stripeBy == CrawlerConfig.StripeBy.HOST) {
+            HttpUrl httpUrl = url == null ? null : HttpUrl.parse(url);
+            String host = httpUrl == null ? "" : httpUrl.host();
+            return Math.floorMod(host.hashCode(), stripes);
+        }
+        return (int) Math.floorMod(docId, (long) stripes);
+    }
+
     public void putNodeData(String key, Object value) {
         nodeData.get().put(key, value);
     }
@@ -128,33 +268,28 @@ public class CrawlerContent {
         nodeData.remove();
     }
 
-    @SuppressWarnings("all")
-    public BloomFilter<CharSequence> getBloomFilter() {
+    public ScalableBloomFilter getBloomFilter() {
         return bloomFilter;
     }
 
-    public BlockingQueue<BaseEntry> getUrlQueue() {
-        return urlQueue;
+    public CrawlerTask getTask() {
+        return task;
     }
 
-    public AtomicLong getDocId() {
-        return docId;
+    public UrlIdMap getUrlIdMap() {
+        return urlIdMap;
     }
 
-    public BufferedOutputStream getOutputStream() {
-        return outputStream;
+    public HostFrontier getFrontier() {
+        return frontier;
     }
 
-    public long getMaxFileSize() {
-        return maxFileSize;
-    }
-
-    public long getCurrentFileSize() {
-        return currentFileSize;
+    public AtomicLong getDocId() {
+        return docId;
     }
 
-    public void setCurrentFileSize(long currentFileSize) {
-        this.currentFileSize = currentFileSize;
+    public long getMaxFileSize() {
+        return maxFileSize;
     }
 
     public boolean getRunning() {
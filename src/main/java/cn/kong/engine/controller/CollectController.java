@@ -23,6 +23,15 @@ public class CollectController {
         return "Crawler started in the background";
     }
 
+    /**
+     * 从 out/checkpoint/{taskId}/ 下最近一次检查点恢复任务
+     */
+    @PostMapping("/resume")
+    public String resumeCrawler(@RequestParam String taskId) {
+        collectService.resumeCrawler(taskId);
+        return "Crawler resumed in the background";
+    }
+
     @GetMapping("/stop")
     public String stopCrawler(@RequestParam String taskId) {
         collectService.stopCrawler(taskId);
@@ -0,0 +1,106 @@
+package cn.kong.engine.controller;
+
+import cn.kong.engine.model.DocInfo;
+import cn.kong.engine.model.DocInfoFilter;
+import cn.kong.engine.service.SQLiteService;
+import cn.kong.engine.store.DocStore;
+import cn.kong.engine.store.UrlIdMap;
+import cn.kong.engine.utils.UrlCanonicalizer;
+import com.google.common.base.Strings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * @author gzkon
+ * @description: 网页快照，直接从 doc_raw 段文件输出抓取时保存的原始页面；按URL查找docId；按docId翻页列出文档信息
+ * @date 2026/10/18 15:40
+ */
+@RestController
+@RequestMapping("/doc")
+public class DocController {
+
+    private static final String DEFAULT_CONTENT_TYPE = "text/html";
+    private static final int MAX_LIST_SIZE = 1000;
+
+    @Autowired
+    private DocStore docStore;
+
+    @Autowired
+    private SQLiteService sqliteService;
+
+    @Autowired
+    private ObjectProvider<UrlIdMap> urlIdMap;
+
+    @Autowired
+    private UrlCanonicalizer canonicalizer;
+
+    /**
+     * 按docId顺序列出文档信息，after 传上一页最后一条的docId，翻页开销与页码无关
+     */
+    @GetMapping("/list")
+    public Map<String, Object> list(@RequestParam(defaultValue = "0") long after,
+                                    @RequestParam(defaultValue = "100") int size,
+                                    DocInfoFilter filter) {
+        List<DocInfo> docs = sqliteService.selectAfter(after, filter, Math.min(Math.max(1, size), MAX_LIST_SIZE));
+        Long next = docs.isEmpty() ? null : docs.get(docs.size() - 1).getId();
+        Map<String, Object> result = new HashMap<>();
+        result.put("docs", docs);
+        result.put("next", next);
+        return result;
+    }
+
+    /**
+     * 按URL查找docId，URL先规范化再计算指纹，走 URL指纹 -> docId 映射，未启用时按指纹查数据库
+     */
+    @GetMapping("/lookup")
+    public Map<String, Object> lookup(@RequestParam String url, HttpServletResponse response) throws IOException {
+        String canonical = canonicalizer.canonicalize(url);
+        if (canonical == null) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid url: " + url);
+            return null;
+        }
+        long fingerprint = UrlCanonicalizer.fingerprint(canonical);
+        UrlIdMap map = urlIdMap.getIfAvailable();
+        long id = map != null ? map.get(fingerprint)
+                : sqliteService.selectByFingerprint(fingerprint).map(DocInfo::getId).orElse(UrlIdMap.NOT_FOUND);
+        if (id == UrlIdMap.NOT_FOUND) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "Url not found: " + url);
+            return null;
+        }
+        return Map.of("url", canonical, "docId", id);
+    }
+
+    @GetMapping("/{id}")
+    public void getDoc(@PathVariable Long id, HttpServletResponse response) throws IOException {
+        if (!docStore.contains(id)) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "Document not found: " + id);
+            return;
+        }
+
+        // 原始页面按抓取时的编码保存，沿用响应头中的内容类型
+        Optional<DocInfo> docInfo = sqliteService.selectById(id);
+        String contentType = docInfo.map(DocInfo::getContentType).orElse(null);
+        response.setContentType(Strings.isNullOrEmpty(contentType) ? DEFAULT_CONTENT_TYPE : contentType);
+
+        WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+        long length = docStore.transferTo(id, target);
+        if (length < 0) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "Document not found: " + id);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package cn.kong.engine.controller;
+
+import cn.kong.engine.index.SegmentInfo;
+import cn.kong.engine.service.IndexService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * @author gzkon
+ * @description: 索引管理
+ * @date 2026/10/18 18:20
+ */
+@Slf4j
+@RestController
+@RequestMapping("/index")
+public class IndexController {
+
+    @Autowired
+    private IndexService indexService;
+
+    @PostMapping("/build")
+    public String buildIndex() throws IOException {
+        // 正在构建时 rebuild 直接抛出异常，不改动已有索引
+        indexService.rebuild().whenComplete((ignored, e) -> {
+            if (e != null) {
+                log.error("索引构建失败", e);
+            }
+        });
+        return "Index build started in the background";
+    }
+
+    @GetMapping("/segments")
+    public List<SegmentInfo> segments() {
+        return indexService.segments();
+    }
+
+    /**
+     * 内存索引段中尚未写入磁盘的文档数
+     */
+    @GetMapping("/realtime")
+    public int realtimeDocs() {
+        return indexService.realtimeDocCount();
+    }
+}
@@ -0,0 +1,35 @@
+package cn.kong.engine.controller;
+
+import cn.kong.engine.model.SearchResult;
+import cn.kong.engine.search.CacheStats;
+import cn.kong.engine.service.SearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * @author gzkon
+ * @description: 检索接口
+ * @date 2026/10/18 20:50
+ */
+@RestController
+@RequestMapping("/search")
+public class SearchController {
+
+    @Autowired
+    private SearchService searchService;
+
+    @GetMapping
+    public SearchResult search(@RequestParam("q") String query,
+                               @RequestParam(defaultValue = "1") int page,
+                               @RequestParam(defaultValue = "10") int size) {
+        return searchService.search(query, page, size);
+    }
+
+    @GetMapping("/stats")
+    public CacheStats cacheStats() {
+        return searchService.cacheStats();
+    }
+}
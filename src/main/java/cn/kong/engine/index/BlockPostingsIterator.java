@@ -0,0 +1,270 @@
+package cn.kong.engine.index;
+
+import cn.kong.engine.utils.VarIntUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * @author gzkon
+ * @description: 磁盘索引段的倒排表迭代器，advance 时先按跳表跳过整块再在块内查找
+ * 位置在第一次读取时才按块加载，不读取位置的查询不会访问 positions.pos
+ * 非线程安全，每次查询各自创建
+ * @date 2026/10/18 17:35
+ */
+class BlockPostingsIterator implements PostingsIterator {
+
+    private final ByteBuffer postings;
+
+    private final int docFreq;
+
+    // 跳表
+    private final int blockCount;
+    private final int[] lastOrds;
+    private final long[] blockOffsets;
+    private final int[] maxTfs;
+    private final int[] minLengths;
+    private final int[] positionBytes;
+
+    // 当前数据块
+    private final int[] ords = new int[IndexFormat.POSTINGS_BLOCK_SIZE];
+    private final int[] tfs = new int[IndexFormat.POSTINGS_BLOCK_SIZE];
+    private final int[] blockBytes;
+    private byte[] bytes = new byte[IndexFormat.POSTINGS_BLOCK_SIZE * 4];
+    private int block = -1;
+    private int blockSize = 0;
+    private int index = -1;
+
+    private int doc = -1;
+
+    // 当前数据块的位置，按需加载
+    private final ByteBuffer positionsFile;
+    private final long positionsOffset;
+    private ByteBuffer positions;
+    private long[] positionOffsets;
+    private int positionBlock = -1;
+    private final int[] positionStarts = new int[IndexFormat.POSTINGS_BLOCK_SIZE + 1];
+    private int[] positionData;
+
+    BlockPostingsIterator(ByteBuffer postings, ByteBuffer positionsFile, TermInfo info) {
+        this.postings = postings;
+        this.positionsFile = positionsFile;
+        this.positionsOffset = info.getPositionsOffset();
+        this.docFreq = info.getDocFreq();
+
+        postings.position((int) info.getSkipOffset());
+        this.blockCount = VarIntUtils.readVarInt(postings);
+        this.lastOrds = new int[blockCount];
+        this.blockOffsets = new long[blockCount];
+        this.maxTfs = new int[blockCount];
+        this.minLengths = new int[blockCount];
+        this.blockBytes = new int[blockCount];
+        this.positionBytes = new int[blockCount];
+        int base = 0;
+        long offset = info.getPostingsOffset();
+        for (int i = 0; i < blockCount; i++) {
+            base += VarIntUtils.readVarInt(postings);
+            lastOrds[i] = base;
+            blockOffsets[i] = offset;
+            blockBytes[i] = VarIntUtils.readVarInt(postings);
+            offset += blockBytes[i];
+            maxTfs[i] = VarIntUtils.readVarInt(postings);
+            minLengths[i] = VarIntUtils.readVarInt(postings);
+            positionBytes[i] = VarIntUtils.readVarInt(postings);
+        }
+    }
+
+    @Override
+    public int doc() {
+        return doc;
+    }
+
+    @Override
+    public int freq() {
+        return tfs[index];
+    }
+
+    @Override
+    public int nextDoc() {
+        if (index + 1 < blockSize) {
+            index++;
+            return doc = ords[index];
+        }
+        if (block + 1 >= blockCount) {
+            return doc = NO_MORE_DOCS;
+        }
+        loadBlock(block + 1);
+        index = 0;
+        return doc = ords[0];
+    }
+
+    @Override
+    public int advance(int target) {
+        if (target <= doc) {
+            return doc;
+        }
+        if (block < 0 || target > lastOrds[block]) {
+            int next = findBlock(target, block + 1);
+            if (next >= blockCount) {
+                return doc = NO_MORE_DOCS;
+            }
+            loadBlock(next);
+            index = -1;
+        }
+        while (++index < blockSize) {
+            if (ords[index] >= target) {
+                return doc = ords[index];
+            }
+        }
+        return doc = NO_MORE_DOCS;
+    }
+
+    @Override
+    public int positionCount() {
+        loadPositions();
+        return positionStarts[index + 1] - positionStarts[index];
+    }
+
+    @Override
+    public int position(int i) {
+        return positionData[positionStarts[index] + i];
+    }
+
+    @Override
+    public int cost() {
+        return docFreq;
+    }
+
+    @Override
+    public int blockCount() {
+        return blockCount;
+    }
+
+    @Override
+    public int block() {
+        return block;
+    }
+
+    @Override
+    public int blockLastDoc(int block) {
+        return lastOrds[block];
+    }
+
+    @Override
+    public int blockMaxTf(int block) {
+        return maxTfs[block];
+    }
+
+    @Override
+    public int blockMinLength(int block) {
+        return minLengths[block];
+    }
+
+    // 在跳表中二分查找第一个最后序号不小于 target 的数据块
+    private int findBlock(int target, int from) {
+        int low = from;
+        int high = blockCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (lastOrds[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    // 整块复制到堆上再解码，比逐字节读取映射区快
+    private void loadBlock(int next) {
+        int length = blockBytes[next];
+        if (bytes.length < length) {
+            bytes = new byte[length];
+        }
+        postings.position((int) blockOffsets[next]);
+        postings.get(bytes, 0, length);
+
+        int size = next == blockCount - 1 ? docFreq - next * IndexFormat.POSTINGS_BLOCK_SIZE
+                : IndexFormat.POSTINGS_BLOCK_SIZE;
+        int base = next == 0 ? 0 : lastOrds[next - 1];
+        int pos = 0;
+        for (int i = 0; i < size; i++) {
+            int delta = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[pos++];
+                delta |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            int tf = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[pos++];
+                tf |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            base += delta;
+            ords[i] = base;
+            tfs[i] = tf;
+        }
+        block = next;
+        blockSize = size;
+    }
+
+    // 解码当前数据块中所有文档的位置
+    private void loadPositions() {
+        if (positionBlock == block) {
+            return;
+        }
+        if (positions == null) {
+            positions = positionsFile.duplicate();
+            positionOffsets = new long[blockCount];
+            long offset = positionsOffset;
+            for (int i = 0; i < blockCount; i++) {
+                positionOffsets[i] = offset;
+                offset += positionBytes[i];
+            }
+            positionData = new int[IndexFormat.POSTINGS_BLOCK_SIZE * 4];
+        }
+        int length = positionBytes[block];
+        if (bytes.length < length) {
+            bytes = new byte[length];
+        }
+        positions.position((int) positionOffsets[block]);
+        positions.get(bytes, 0, length);
+
+        int pos = 0;
+        int upto = 0;
+        for (int i = 0; i < blockSize; i++) {
+            positionStarts[i] = upto;
+            int count = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[pos++];
+                count |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            if (upto + count > positionData.length) {
+                positionData = Arrays.copyOf(positionData, Math.max(upto + count, positionData.length * 2));
+            }
+            int position = 0;
+            for (int j = 0; j < count; j++) {
+                int delta = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = bytes[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+                position += delta;
+                positionData[upto++] = position;
+            }
+        }
+        positionStarts[blockSize] = upto;
+        positionBlock = block;
+    }
+}
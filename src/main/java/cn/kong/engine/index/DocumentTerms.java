@@ -0,0 +1,80 @@
+package cn.kong.engine.index;
+
+import cn.kong.engine.analysis.Analyzer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author gzkon
+ * @description: 一篇文档切词后的词项统计，记录加权词频和出现位置
+ * 标题中的词按 TITLE_WEIGHT 倍计入词频和文档长度，位置从0开始；正文的位置接在标题之后并空出 POSITION_GAP
+ * 非线程安全，可以在多篇文档之间复用
+ * @date 2026/10/18 23:20
+ */
+class DocumentTerms {
+
+    private final Analyzer analyzer;
+
+    private final Map<String, Entry> terms = new HashMap<>();
+
+    private int length = 0;
+
+    DocumentTerms(Analyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * 切词并统计，返回加权后的文档长度
+     */
+    int analyze(String title, String body) {
+        terms.clear();
+        int titleTokens = analyze(title, IndexFormat.TITLE_WEIGHT, 0);
+        int bodyTokens = analyze(body, 1, titleTokens + IndexFormat.POSITION_GAP);
+        length = titleTokens * IndexFormat.TITLE_WEIGHT + bodyTokens;
+        return length;
+    }
+
+    Map<String, Entry> terms() {
+        return terms;
+    }
+
+    boolean isEmpty() {
+        return terms.isEmpty();
+    }
+
+    int length() {
+        return length;
+    }
+
+    // 返回词元数
+    private int analyze(String text, int weight, int base) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int[] tokens = {0};
+        analyzer.analyze(text, (chars, offset, length, position) -> {
+            terms.computeIfAbsent(new String(chars, offset, length), k -> new Entry()).add(base + position, weight);
+            tokens[0]++;
+        });
+        return tokens[0];
+    }
+
+    /**
+     * 单个词项在文档中的统计
+     */
+    static final class Entry {
+        int freq;
+        int[] positions = new int[2];
+        int count;
+
+        void add(int position, int weight) {
+            freq += weight;
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = position;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package cn.kong.engine.index;
+
+import cn.kong.engine.analysis.Analyzer;
+import cn.kong.engine.store.SegmentWriter;
+import cn.kong.engine.utils.VarIntUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * @author gzkon
+ * @description: 索引段构建器，流式添加文档，内存占用受 ramBufferSize 限制
+ * 倒排数据先在内存中累积，超过限制后按词项排序写出为临时文件，结束时把所有临时文件和内存中的剩余数据多路归并成最终的词典和倒排表；
+ * 文档序号按添加顺序分配，后写出的临时文件中的序号一定更大，归并时同一词项按文件顺序拼接即可保证序号递增
+ * 非线程安全
+ * @date 2026/10/18 17:50
+ */
+@Slf4j
+public class IndexBuilder implements Closeable {
+
+    private static final int TERM_OVERHEAD = 96;    // 每个词项在内存中的固定开销估算，字节
+
+    private final Path directory;
+
+    private final long ramBufferSize;
+
+    private final DataOutputStream docsOut;
+
+    private final SegmentWriter textOut;
+
+    // 内存中的倒排数据：词项 -> (文档序号, 词频, 位置) 序列
+    private final Map<String, PostingBuffer> buffer = new HashMap<>();
+    private long bytesUsed = 0;
+
+    // 当前文档的词频和位置
+    private final DocumentTerms docTerms;
+
+    private final List<Path> runs = new ArrayList<>();
+
+    private int docCount = 0;
+    private long totalLength = 0;
+    private int termCount = 0;
+
+    private boolean finished = false;
+
+    /**
+     * @param directory     索引段目录，必须为空目录或不存在
+     * @param analyzer      分词器
+     * @param ramBufferSize 内存中倒排数据的大小上限，字节
+     */
+    public IndexBuilder(Path directory, Analyzer analyzer, long ramBufferSize) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.docTerms = new DocumentTerms(analyzer);
+        this.ramBufferSize = Math.max(1024 * 1024, ramBufferSize);
+        this.docsOut = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(directory.resolve(IndexFormat.DOCS_FILE).toFile()), 64 * 1024));
+        docsOut.writeInt(IndexFormat.MAGIC);
+        docsOut.writeByte(IndexFormat.VERSION);
+        docsOut.writeInt(0);    // 文档数和总长度在结束时回填
+        docsOut.writeLong(0);
+        this.textOut = StoredText.openWriter(directory);
+    }
+
+    /**
+     * 添加一篇文档，标题中的词按 TITLE_WEIGHT 倍计入词频和文档长度，正文纯文本同时保存用于生成摘要
+     *
+     * @return 文档没有任何词项时不加入索引，返回false
+     */
+    public boolean addDocument(long docId, String title, String body) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Index builder already finished: " + directory);
+        }
+        int length = docTerms.analyze(title, body);
+        if (docTerms.isEmpty()) {
+            return false;
+        }
+
+        int ord = docCount++;
+        docsOut.writeLong(docId);
+        docsOut.writeInt(length);
+        totalLength += length;
+        textOut.append(docId, StoredText.encode(body));
+
+        for (Map.Entry<String, DocumentTerms.Entry> entry : docTerms.terms().entrySet()) {
+            PostingBuffer postings = buffer.get(entry.getKey());
+            if (postings == null) {
+                postings = new PostingBuffer();
+                buffer.put(entry.getKey(), postings);
+                bytesUsed += TERM_OVERHEAD + 2L * entry.getKey().length();
+            }
+            bytesUsed += postings.add(ord, entry.getValue());
+        }
+        if (bytesUsed >= ramBufferSize) {
+            spill();
+        }
+        return true;
+    }
+
+    /**
+     * 结束构建，归并所有数据写出词典和倒排表
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        docsOut.close();
+        textOut.close();
+        try (FileChannel channel = FileChannel.open(directory.resolve(IndexFormat.DOCS_FILE),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(12);
+            header.putInt(docCount).putLong(totalLength).flip();
+            channel.write(header, 5);
+            MappedByteBuffer docs = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            merge(ord -> docs.getInt(IndexFormat.DOCS_HEADER_SIZE + ord * IndexFormat.DOC_ENTRY_SIZE + 8));
+        } finally {
+            deleteRuns();
+        }
+        log.info("索引段构建完成: {}, 文档数={}, 词项数={}, 临时文件数={}",
+                directory, docCount, termCount, runs.size());
+    }
+
+    public int getDocCount() {
+        return docCount;
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            finished = true;
+            docsOut.close();
+            textOut.close();
+            deleteRuns();
+        }
+    }
+
+    // 把内存中的倒排数据按词项排序写出为临时文件
+    private void spill() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        Path run = directory.resolve("_run_" + runs.size() + ".tmp");
+        String[] terms = buffer.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(run.toFile()), 64 * 1024))) {
+            VarIntUtils.writeVarInt(out, terms.length);
+            for (String term : terms) {
+                byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+                VarIntUtils.writeVarInt(out, bytes.length);
+                out.write(bytes);
+                buffer.get(term).writeTo(out);
+            }
+        }
+        runs.add(run);
+        log.debug("倒排数据写出临时文件: {}, 词项数={}, 内存估算={}", run, terms.length, bytesUsed);
+        buffer.clear();
+        bytesUsed = 0;
+    }
+
+    private void merge(IntUnaryOperator docLength) throws IOException {
+        List<TermSource> sources = new ArrayList<>();
+        try (TermsWriter writer = new TermsWriter(directory, docLength)) {
+            for (Path run : runs) {
+                sources.add(new RunSource(sources.size(), run));
+            }
+            sources.add(new MemorySource(sources.size(), buffer));
+
+            // 按词项排序，同一词项按来源顺序，保证文档序号递增
+            PriorityQueue<TermSource> queue = new PriorityQueue<>(
+                    Comparator.comparing((TermSource s) -> s.term).thenComparingInt(s -> s.index));
+            for (TermSource source : sources) {
+                if (source.next()) {
+                    queue.add(source);
+                }
+            }
+            while (!queue.isEmpty()) {
+                TermSource top = queue.poll();
+                String term = top.term;
+                writer.startTerm(term);
+                top.copyTo(writer);
+                if (top.next()) {
+                    queue.add(top);
+                }
+                while (!queue.isEmpty() && queue.peek().term.equals(term)) {
+                    TermSource same = queue.poll();
+                    same.copyTo(writer);
+                    if (same.next()) {
+                        queue.add(same);
+                    }
+                }
+                writer.finishTerm();
+            }
+            termCount = writer.getTermCount();
+        } finally {
+            for (TermSource source : sources) {
+                source.close();
+            }
+            buffer.clear();
+            bytesUsed = 0;
+        }
+    }
+
+    private void deleteRuns() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+    }
+
+    /**
+     * 单个词项在内存中的倒排数据，序号和词频交替存放，位置单独存放：每篇文档先存位置数再存各个位置
+     */
+    private static class PostingBuffer {
+        private int[] data = new int[4];
+        private int size = 0;
+        private int[] positions = new int[4];
+        private int positionsSize = 0;
+
+        // 返回新增占用的字节数
+        long add(int ord, DocumentTerms.Entry entry) {
+            long grown = 0;
+            if (size + 2 > data.length) {
+                int newLength = data.length + (data.length >> 1) + 2;
+                grown += 4L * (newLength - data.length);
+                data = Arrays.copyOf(data, newLength);
+            }
+            data[size++] = ord;
+            data[size++] = entry.freq;
+            if (positionsSize + entry.count + 1 > positions.length) {
+                int newLength = Math.max(positionsSize + entry.count + 1, positions.length + (positions.length >> 1));
+                grown += 4L * (newLength - positions.length);
+                positions = Arrays.copyOf(positions, newLength);
+            }
+            positions[positionsSize++] = entry.count;
+            System.arraycopy(entry.positions, 0, positions, positionsSize, entry.count);
+            positionsSize += entry.count;
+            return grown;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            VarIntUtils.writeVarInt(out, size / 2);
+            int previous = 0;
+            int upto = 0;
+            for (int i = 0; i < size; i += 2) {
+                VarIntUtils.writeVarInt(out, data[i] - previous);
+                VarIntUtils.writeVarInt(out, data[i + 1]);
+                previous = data[i];
+                int count = positions[upto++];
+                VarIntUtils.writeVarInt(out, count);
+                int previousPosition = 0;
+                for (int j = 0; j < count; j++) {
+                    VarIntUtils.writeVarInt(out, positions[upto] - previousPosition);
+                    previousPosition = positions[upto++];
+                }
+            }
+        }
+    }
+
+    /**
+     * 归并的数据来源，按词项升序输出
+     */
+    private abstract static class TermSource implements Closeable {
+        final int index;
+        String term;
+
+        TermSource(int index) {
+            this.index = index;
+        }
+
+        // 移动到下一个词项，没有更多词项时返回false
+        abstract boolean next() throws IOException;
+
+        // 把当前词项的倒排数据写入，必须在 next 之前调用
+        abstract void copyTo(TermsWriter writer) throws IOException;
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static class RunSource extends TermSource {
+        private final DataInputStream in;
+        private int remaining;
+        private int[] positions = new int[16];
+
+        RunSource(int index, Path run) throws IOException {
+            super(index);
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 64 * 1024));
+            this.remaining = VarIntUtils.readVarInt(in);
+        }
+
+        @Override
+        boolean next() throws IOException {
+            if (remaining == 0) {
+                term = null;
+                return false;
+            }
+            remaining--;
+            byte[] bytes = new byte[VarIntUtils.readVarInt(in)];
+            in.readFully(bytes);
+            term = new String(bytes, StandardCharsets.UTF_8);
+            return true;
+        }
+
+        @Override
+        void copyTo(TermsWriter writer) throws IOException {
+            int count = VarIntUtils.readVarInt(in);
+            int ord = 0;
+            for (int i = 0; i < count; i++) {
+                ord += VarIntUtils.readVarInt(in);
+                int tf = VarIntUtils.readVarInt(in);
+                int positionCount = VarIntUtils.readVarInt(in);
+                if (positionCount > positions.length) {
+                    positions = new int[Math.max(positionCount, positions.length * 2)];
+                }
+                int position = 0;
+                for (int j = 0; j < positionCount; j++) {
+                    position += VarIntUtils.readVarInt(in);
+                    positions[j] = position;
+                }
+                writer.addPosting(ord, tf, positions, positionCount);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static class MemorySource extends TermSource {
+        private final Map<String, PostingBuffer> buffer;
+        private final String[] terms;
+        private int position = -1;
+
+        MemorySource(int index, Map<String, PostingBuffer> buffer) {
+            super(index);
+            this.buffer = buffer;
+            this.terms = buffer.keySet().toArray(new String[0]);
+            Arrays.sort(terms);
+        }
+
+        @Override
+        boolean next() {
+            if (++position >= terms.length) {
+                term = null;
+                return false;
+            }
+            term = terms[position];
+            return true;
+        }
+
+        @Override
+        void copyTo(TermsWriter writer) throws IOException {
+            PostingBuffer postings = buffer.get(term);
+            int[] positions = new int[16];
+            int upto = 0;
+            for (int i = 0; i < postings.size; i += 2) {
+                int count = postings.positions[upto++];
+                if (count > positions.length) {
+                    positions = new int[Math.max(count, positions.length * 2)];
+                }
+                System.arraycopy(postings.positions, upto, positions, 0, count);
+                upto += count;
+                writer.addPosting(postings.data[i], postings.data[i + 1], positions, count);
+            }
+        }
+    }
+}
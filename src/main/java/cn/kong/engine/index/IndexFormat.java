@@ -0,0 +1,54 @@
+package cn.kong.engine.index;
+
+/**
+ * @author gzkon
+ * @description: 倒排索引段格式，一个索引段是一个目录，包含以下文件
+ * <pre>
+ * docs.dat     : MAGIC(4) VERSION(1) DOC_COUNT(4) TOTAL_LENGTH(8)
+ *                按文档序号的定长条目：DOC_ID(8) LENGTH(4)
+ * terms.dic    : MAGIC(4) VERSION(1)
+ *                按词项升序：PREFIX(varint) SUFFIX_LENGTH(varint) SUFFIX(UTF-8) DF(varint)
+ *                POSTINGS_OFFSET(varlong) SKIP_DELTA(varlong) POSITIONS_OFFSET(varlong)
+ *                每 TERM_INDEX_INTERVAL 个词项重新开始前缀压缩
+ * terms.idx    : MAGIC(4) VERSION(1) TERM_COUNT(4) INDEX_COUNT(4)
+ *                每 TERM_INDEX_INTERVAL 个词项一条：TERM_LENGTH(varint) TERM(UTF-8) DIC_OFFSET(varlong)
+ * postings.doc : 每个词项若干数据块，每块最多 POSTINGS_BLOCK_SIZE 篇文档：ORD_DELTA(varint) TF(varint)
+ *                数据块之后是跳表：BLOCK_COUNT(varint)
+ *                每块一条：LAST_ORD_DELTA(varint) BLOCK_BYTES(varint) MAX_TF(varint) MIN_LENGTH(varint)
+ *                POSITIONS_BYTES(varint)
+ * positions.pos: 与倒排表同样分块，按文档顺序：POSITION_COUNT(varint) POSITION_DELTA(varint)...
+ * text.seg     : 正文纯文本，doc_raw 段文件格式，按 docId 查找，每篇最多 MAX_TEXT_LENGTH 个字符
+ * </pre>
+ * 文档序号是文档在索引段内的编号，从0开始连续分配，倒排表中只记录序号，通过 docs.dat 换算成docId；
+ * 跳表中每块的最大词频和最短文档长度用于计算BM25得分上界；
+ * 位置单独存放，只有短语和邻近查询才读取，标题的位置从0开始，正文的位置在标题之后空出 POSITION_GAP，短语不会跨越标题和正文；
+ * 正文纯文本在建索引时已经从网页中提取，生成摘要时按 docId 读取，不再解析网页
+ * @date 2026/10/18 17:10
+ */
+public final class IndexFormat {
+
+    public static final int MAGIC = 0x4D534958;     // "MSIX"
+    public static final byte VERSION = 3;
+
+    public static final String DOCS_FILE = "docs.dat";
+    public static final String TERMS_FILE = "terms.dic";
+    public static final String TERMS_INDEX_FILE = "terms.idx";
+    public static final String POSTINGS_FILE = "postings.doc";
+    public static final String POSITIONS_FILE = "positions.pos";
+    public static final String TEXT_FILE = "text.seg";
+
+    public static final int DOCS_HEADER_SIZE = 17;
+    public static final int DOC_ENTRY_SIZE = 12;
+
+    public static final int TERM_INDEX_INTERVAL = 64;   // 词典稀疏索引间隔
+    public static final int POSTINGS_BLOCK_SIZE = 128;  // 倒排表数据块的文档数
+
+    public static final int TITLE_WEIGHT = 3;   // 标题中的词按正文的几倍计入词频和文档长度
+    public static final int POSITION_GAP = 100; // 标题和正文之间空出的位置数
+
+    public static final int MAX_TEXT_LENGTH = 10000;    // 保存的正文纯文本最大字符数，摘要只从这一部分中选取
+    public static final int TEXT_BLOCK_SIZE = 16 * 1024; // 正文纯文本的数据块大小，取一篇只解压一个小块
+
+    private IndexFormat() {
+    }
+}
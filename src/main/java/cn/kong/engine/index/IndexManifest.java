@@ -0,0 +1,109 @@
+package cn.kong.engine.index;
+
+import com.alibaba.fastjson.JSON;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author gzkon
+ * @description: 索引清单，记录当前有效的索引段和已经建过索引的 doc_raw 段文件
+ * 内存索引段写入磁盘的文档所在的 doc_raw 文件可能还没有封存，这些 docId 记在单独的文件中，封存后建索引时跳过
+ * 每次提交写入临时文件后原子替换，清单中没有的索引段目录和 docId 文件在启动时清理
+ * @date 2026/10/18 21:35
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class IndexManifest {
+
+    public static final String FILE_NAME = "segments.json";
+
+    private int version;                                    // 索引段的格式版本，与 IndexFormat.VERSION 不同时需要重建索引
+
+    private long generation;                                // 最近分配的索引段编号
+
+    private List<SegmentInfo> segments = new ArrayList<>(); // 有效的索引段，按建立顺序
+
+    private Map<String, Long> sources = new LinkedHashMap<>(); // 已建索引的 doc_raw 文件名 -> 文件大小
+
+    private String realtimeDocs;                            // 由内存索引段写入磁盘、来源文件尚未建索引的 docId 文件，可能为空
+
+    public IndexManifest copy() {
+        IndexManifest copy = new IndexManifest();
+        copy.version = version;
+        copy.generation = generation;
+        copy.segments = new ArrayList<>(segments);
+        copy.sources = new LinkedHashMap<>(sources);
+        copy.realtimeDocs = realtimeDocs;
+        return copy;
+    }
+
+    public String nextSegmentName() {
+        return "seg_" + (++generation);
+    }
+
+    public String nextRealtimeDocsName() {
+        return "realtime_" + (++generation) + ".ids";
+    }
+
+    /**
+     * 读取有序的 docId 文件，文件名为空时返回空数组
+     */
+    public static long[] readDocIds(Path directory, String name) throws IOException {
+        if (name == null) {
+            return new long[0];
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(directory.resolve(name))))) {
+            long[] docIds = new long[in.readInt()];
+            for (int i = 0; i < docIds.length; i++) {
+                docIds[i] = in.readLong();
+            }
+            return docIds;
+        }
+    }
+
+    public static void writeDocIds(Path directory, String name, long[] docIds) throws IOException {
+        Files.createDirectories(directory);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(directory.resolve(name).toFile())))) {
+            out.writeInt(docIds.length);
+            for (long docId : docIds) {
+                out.writeLong(docId);
+            }
+        }
+    }
+
+    public static IndexManifest read(Path directory) throws IOException {
+        Path path = directory.resolve(FILE_NAME);
+        if (!Files.isRegularFile(path)) {
+            return new IndexManifest();
+        }
+        return JSON.parseObject(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), IndexManifest.class);
+    }
+
+    public void write(Path directory) throws IOException {
+        version = IndexFormat.VERSION;
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(FILE_NAME + ".tmp");
+        Files.write(temp, JSON.toJSONString(this).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, directory.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
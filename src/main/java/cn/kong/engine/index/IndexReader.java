@@ -0,0 +1,286 @@
+package cn.kong.engine.index;
+
+import cn.kong.engine.store.SegmentReader;
+import cn.kong.engine.store.SegmentWriter;
+import cn.kong.engine.utils.VarIntUtils;
+import com.google.common.util.concurrent.RateLimiter;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author gzkon
+ * @description: 索引段读取器，docs.dat、terms.dic、postings.doc、positions.pos、text.seg 映射到内存，只有词典稀疏索引加载到堆上
+ * 查词时先在稀疏索引上二分定位，再在映射区中顺序解码最多 TERM_INDEX_INTERVAL 个词项
+ * @date 2026/10/18 17:40
+ */
+public class IndexReader implements IndexSegment, Closeable {
+
+    private final Path directory;
+
+    private final MappedByteBuffer docs;
+    private final MappedByteBuffer terms;
+    private final MappedByteBuffer postings;
+    private final MappedByteBuffer positions;
+    private final SegmentReader texts;
+
+    private final int docCount;
+    private final long totalLength;
+
+    private final int termCount;
+    private final String[] indexTerms;
+    private final long[] indexOffsets;
+
+    private IndexReader(Path directory) throws IOException {
+        this.directory = directory;
+        this.docs = map(directory.resolve(IndexFormat.DOCS_FILE));
+        this.terms = map(directory.resolve(IndexFormat.TERMS_FILE));
+        this.postings = map(directory.resolve(IndexFormat.POSTINGS_FILE));
+        this.positions = map(directory.resolve(IndexFormat.POSITIONS_FILE));
+        this.texts = SegmentReader.open(directory.resolve(IndexFormat.TEXT_FILE));
+
+        checkHeader(docs, IndexFormat.DOCS_FILE);
+        checkHeader(terms, IndexFormat.TERMS_FILE);
+        this.docCount = docs.getInt(5);
+        this.totalLength = docs.getLong(9);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(directory.resolve(IndexFormat.TERMS_INDEX_FILE))))) {
+            if (in.readInt() != IndexFormat.MAGIC || in.readByte() != IndexFormat.VERSION) {
+                throw new IOException("Invalid index file: " + IndexFormat.TERMS_INDEX_FILE);
+            }
+            this.termCount = in.readInt();
+            int count = in.readInt();
+            this.indexTerms = new String[count];
+            this.indexOffsets = new long[count];
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = new byte[VarIntUtils.readVarInt(in)];
+                in.readFully(bytes);
+                indexTerms[i] = new String(bytes, StandardCharsets.UTF_8);
+                indexOffsets[i] = VarIntUtils.readVarLong(in);
+            }
+        }
+    }
+
+    public static IndexReader open(Path directory) throws IOException {
+        return new IndexReader(directory);
+    }
+
+    @Override
+    public int docCount() {
+        return docCount;
+    }
+
+    /**
+     * 所有文档长度之和，用于计算平均文档长度
+     */
+    @Override
+    public long totalLength() {
+        return totalLength;
+    }
+
+    public int termCount() {
+        return termCount;
+    }
+
+    @Override
+    public long docId(int ord) {
+        return docs.getLong(IndexFormat.DOCS_HEADER_SIZE + ord * IndexFormat.DOC_ENTRY_SIZE);
+    }
+
+    @Override
+    public int docLength(int ord) {
+        return docs.getInt(IndexFormat.DOCS_HEADER_SIZE + ord * IndexFormat.DOC_ENTRY_SIZE + 8);
+    }
+
+    /**
+     * 查找词项，不存在时返回null
+     */
+    public TermInfo termInfo(String term) {
+        int block = floorIndex(term);
+        if (block < 0) {
+            return null;
+        }
+        ByteBuffer buffer = terms.duplicate();
+        buffer.position((int) indexOffsets[block]);
+        byte[] previous = new byte[0];
+        int end = Math.min(termCount, (block + 1) * IndexFormat.TERM_INDEX_INTERVAL);
+        for (int i = block * IndexFormat.TERM_INDEX_INTERVAL; i < end; i++) {
+            int prefix = VarIntUtils.readVarInt(buffer);
+            int suffix = VarIntUtils.readVarInt(buffer);
+            byte[] bytes = new byte[prefix + suffix];
+            System.arraycopy(previous, 0, bytes, 0, prefix);
+            buffer.get(bytes, prefix, suffix);
+            int docFreq = VarIntUtils.readVarInt(buffer);
+            long postingsOffset = VarIntUtils.readVarLong(buffer);
+            long skipDelta = VarIntUtils.readVarLong(buffer);
+            long positionsOffset = VarIntUtils.readVarLong(buffer);
+
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            int cmp = text.compareTo(term);
+            if (cmp == 0) {
+                return new TermInfo(text, docFreq, postingsOffset, postingsOffset + skipDelta, positionsOffset);
+            }
+            if (cmp > 0) {
+                return null;
+            }
+            previous = bytes;
+        }
+        return null;
+    }
+
+    public PostingsIterator postings(TermInfo info) {
+        return new BlockPostingsIterator(postings.duplicate(), positions, info);
+    }
+
+    @Override
+    public int docFreq(String term) {
+        TermInfo info = termInfo(term);
+        return info == null ? 0 : info.getDocFreq();
+    }
+
+    @Override
+    public PostingsIterator postings(String term) {
+        TermInfo info = termInfo(term);
+        return info == null ? null : postings(info);
+    }
+
+    @Override
+    public String storedText(long docId) throws IOException {
+        byte[] bytes = texts.get(docId);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按写入顺序把正文纯文本复制到新索引段，不解码
+     */
+    void copyTexts(SegmentWriter out, RateLimiter rateLimiter) throws IOException {
+        try {
+            texts.forEach((docId, content, offset, length) -> {
+                try {
+                    out.append(docId, content, offset, length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (rateLimiter != null && length > 0) {
+                    rateLimiter.acquire(length);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 按升序遍历所有词项，用于合并索引段
+     */
+    public TermIterator terms() {
+        ByteBuffer buffer = terms.duplicate();
+        buffer.position(5);
+        return new TermIterator(buffer, termCount);
+    }
+
+    /**
+     * 索引段占用的磁盘空间
+     */
+    public long sizeInBytes() {
+        return (long) docs.capacity() + terms.capacity() + postings.capacity() + positions.capacity()
+                + texts.getFileSize();
+    }
+
+    public String getName() {
+        return directory.getFileName().toString();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // 映射区由GC回收，这里只关闭纯文本文件的通道，读取只使用映射区，正在进行的查询不受影响
+        texts.close();
+    }
+
+    /**
+     * 词项顺序迭代器
+     */
+    public static class TermIterator {
+        private final ByteBuffer buffer;
+        private final int count;
+        private int index = 0;
+        private byte[] previous = new byte[0];
+        private TermInfo current;
+
+        private TermIterator(ByteBuffer buffer, int count) {
+            this.buffer = buffer;
+            this.count = count;
+        }
+
+        public boolean next() {
+            if (index >= count) {
+                current = null;
+                return false;
+            }
+            index++;
+            int prefix = VarIntUtils.readVarInt(buffer);
+            int suffix = VarIntUtils.readVarInt(buffer);
+            byte[] bytes = new byte[prefix + suffix];
+            System.arraycopy(previous, 0, bytes, 0, prefix);
+            buffer.get(bytes, prefix, suffix);
+            int docFreq = VarIntUtils.readVarInt(buffer);
+            long postingsOffset = VarIntUtils.readVarLong(buffer);
+            long skipDelta = VarIntUtils.readVarLong(buffer);
+            long positionsOffset = VarIntUtils.readVarLong(buffer);
+            previous = bytes;
+            current = new TermInfo(new String(bytes, StandardCharsets.UTF_8), docFreq,
+                    postingsOffset, postingsOffset + skipDelta, positionsOffset);
+            return true;
+        }
+
+        public TermInfo info() {
+            return current;
+        }
+    }
+
+    // 最后一个不大于 term 的稀疏索引下标
+    private int floorIndex(String term) {
+        int low = 0;
+        int high = indexTerms.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (indexTerms[mid].compareTo(term) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Index file larger than 2GB is not supported: " + path);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private static void checkHeader(ByteBuffer buffer, String name) throws IOException {
+        if (buffer.limit() < 5 || buffer.getInt(0) != IndexFormat.MAGIC || buffer.get(4) != IndexFormat.VERSION) {
+            throw new IOException("Invalid index file: " + name);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package cn.kong.engine.index;
+
+import java.io.IOException;
+
+/**
+ * @author gzkon
+ * @description: 可检索的索引段，磁盘上的不可变索引段或内存索引段某一时刻的只读视图
+ * 文档序号从0开始，在索引段内有效
+ * @date 2026/10/18 22:30
+ */
+public interface IndexSegment {
+
+    /**
+     * 有效文档数
+     */
+    int docCount();
+
+    /**
+     * 有效文档的长度之和
+     */
+    long totalLength();
+
+    long docId(int ord);
+
+    int docLength(int ord);
+
+    /**
+     * 包含该词项的文档数，不存在时返回0
+     */
+    int docFreq(String term);
+
+    /**
+     * 词项的倒排表，不存在时返回null
+     */
+    PostingsIterator postings(String term);
+
+    /**
+     * 文档的正文纯文本，文档不在该索引段中时返回null
+     */
+    String storedText(long docId) throws IOException;
+}
@@ -0,0 +1,101 @@
+package cn.kong.engine.index;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author gzkon
+ * @description: 某一时刻有效的索引段集合，创建后不再变化，查询期间索引段的增加和合并不影响已取得的快照
+ * 文档总数、总长度和文档频率按所有索引段汇总，保证各索引段的得分可以直接比较
+ * 每个快照有递增的代号；只有正在接收文档的内存索引段变化时沿用上一个快照的索引段代号，查询结果缓存以索引段代号作为键的一部分
+ * @date 2026/10/18 21:45
+ */
+public class IndexSnapshot {
+
+    private static final AtomicLong GENERATIONS = new AtomicLong(0);
+
+    public static final IndexSnapshot EMPTY = new IndexSnapshot(Collections.emptyList());
+
+    private final long generation;
+
+    private final long segmentGeneration;
+
+    private final List<IndexSegment> segments;
+
+    private final long docCount;
+
+    private final long totalLength;
+
+    public IndexSnapshot(List<IndexSegment> segments) {
+        this(segments, null);
+    }
+
+    /**
+     * @param base 只有正在接收文档的内存索引段变化时传入上一个快照，沿用它的索引段代号；索引段集合变化时为null
+     */
+    public IndexSnapshot(List<IndexSegment> segments, IndexSnapshot base) {
+        this.generation = GENERATIONS.incrementAndGet();
+        this.segmentGeneration = base != null ? base.segmentGeneration : generation;
+        this.segments = Collections.unmodifiableList(segments);
+        long docs = 0;
+        long length = 0;
+        for (IndexSegment segment : segments) {
+            docs += segment.docCount();
+            length += segment.totalLength();
+        }
+        this.docCount = docs;
+        this.totalLength = length;
+    }
+
+    /**
+     * 快照代号，后创建的快照代号更大
+     */
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * 索引段代号，磁盘索引段增加、合并或删除文档后变化，近实时刷新时不变
+     */
+    public long segmentGeneration() {
+        return segmentGeneration;
+    }
+
+    public List<IndexSegment> segments() {
+        return segments;
+    }
+
+    public long docCount() {
+        return docCount;
+    }
+
+    public float avgLength() {
+        return docCount == 0 ? 0 : (float) totalLength / docCount;
+    }
+
+    /**
+     * 所有索引段中包含该词项的文档数之和，内存索引段计入了已删除的文档，结果不超过文档总数
+     */
+    public long docFreq(String term) {
+        long docFreq = 0;
+        for (IndexSegment segment : segments) {
+            docFreq += segment.docFreq(term);
+        }
+        return Math.min(docFreq, docCount());
+    }
+
+    /**
+     * 文档的正文纯文本，从最新的索引段开始查找，内存索引段排在最后，找不到时返回null
+     */
+    public String storedText(long docId) throws IOException {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            String text = segments.get(i).storedText(docId);
+            if (text != null) {
+                return text;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,690 @@
+package cn.kong.engine.index;
+
+import cn.kong.engine.analysis.Analyzer;
+import cn.kong.engine.store.SegmentWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author gzkon
+ * @description: 内存索引段，文档写入 doc_raw 的同时加入，刷新时发布只读视图，达到大小上限后写入磁盘成为普通索引段
+ * 倒排数据存放在按块分配的 int 池中，每个词项有倒排和位置两条数据流，每条都是一串逐级变大的切片，切片最后一个位置存下一个切片的地址；
+ * 文档和词项的属性都存放在只追加的基本类型数组中，视图只复制引用、计数和词频数组，之后的写入对已发布的视图不可见
+ * 写入和删除在对象锁内串行执行，查询只读视图，不加锁
+ * @date 2026/10/18 22:40
+ */
+public class MemorySegment {
+
+    private static final int BLOCK_SHIFT = 15;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;     // 每块 32K 个 int
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    // 各级切片存放的 int 数，另外多占一个位置存下一个切片的地址
+    private static final int[] SLICE_SIZES = {2, 4, 8, 16, 32, 64, 128, 256};
+
+    // 每个词项的两条数据流：倒排流按文档存 (序号, 词频)，位置流按文档存 (位置数, 位置...)
+    private static final int POSTINGS_STREAM = 0;
+    private static final int POSITIONS_STREAM = 1;
+
+    private static final int TERM_OVERHEAD = 112;   // 每个词项在词典和词项数组中的开销估算，字节
+
+    private final Analyzer analyzer;
+
+    // 词项 -> 词项编号，查询时不加锁读取，编号不小于视图词项数的词项对该视图不可见
+    private final Map<String, Integer> termIds = new ConcurrentHashMap<>();
+
+    // 倒排数据池
+    private int[][] blocks = new int[16][];
+    private int poolUpto = 0;
+
+    // 数据流属性，下标为 词项编号 * 2 + 数据流
+    private int[] heads = new int[2048];        // 第一个切片的地址
+    private int[] tails = new int[2048];        // 下一个写入位置
+    private int[] sliceEnds = new int[2048];    // 当前切片存放下一个切片地址的位置
+    private byte[] levels = new byte[2048];     // 当前切片的级别
+
+    // 词项属性，下标为词项编号
+    private int termCount = 0;
+    private int[] docFreqs = new int[1024];
+    private long termBytes = 0;
+    private long textBytes = 0;
+
+    // 文档属性，下标为文档序号
+    private int maxDoc = 0;
+    private long[] docIds = new long[1024];
+    private int[] docLengths = new int[1024];
+    private String[] texts = new String[1024];  // 正文纯文本
+    private long[] deleted = new long[16];      // 已删除文档的位图
+    private final DocOrdMap ords = new DocOrdMap();
+    private int liveDocs = 0;
+    private long liveLength = 0;
+
+    private boolean frozen = false;
+    private long version = 0;
+    private Reader reader;      // 最近发布的视图，没有新的修改时复用
+
+    public MemorySegment(Analyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * 添加一篇文档，切词在锁外进行，标题中的词按 TITLE_WEIGHT 倍计入词频和文档长度
+     * 没有任何词项的文档和已经加入过的文档直接忽略
+     *
+     * @return 索引段已冻结时返回false，调用方应改为写入新的内存索引段
+     */
+    public boolean addDocument(long docId, String title, String body) {
+        DocumentTerms terms = new DocumentTerms(analyzer);
+        int length = terms.analyze(title, body);
+        String text = StoredText.truncate(body);
+        synchronized (this) {
+            if (frozen) {
+                return false;
+            }
+            if (terms.isEmpty() || ords.get(docId) >= 0) {
+                return true;
+            }
+            int ord = maxDoc;
+            if (ord == docIds.length) {
+                docIds = Arrays.copyOf(docIds, ord * 2);
+                docLengths = Arrays.copyOf(docLengths, ord * 2);
+                texts = Arrays.copyOf(texts, ord * 2);
+            }
+            if ((ord >>> 6) == deleted.length) {
+                deleted = Arrays.copyOf(deleted, deleted.length * 2);
+            }
+            docIds[ord] = docId;
+            docLengths[ord] = length;
+            texts[ord] = text;
+            textBytes += 40 + 2L * text.length();
+            ords.put(docId, ord);
+
+            for (Map.Entry<String, DocumentTerms.Entry> entry : terms.terms().entrySet()) {
+                Integer termId = termIds.get(entry.getKey());
+                if (termId == null) {
+                    termId = newTerm(entry.getKey());
+                }
+                addPosting(termId, ord, entry.getValue());
+            }
+            maxDoc++;
+            liveDocs++;
+            liveLength += length;
+            version++;
+            return true;
+        }
+    }
+
+    /**
+     * 删除文档，文档已写入磁盘索引段后从内存索引段中去掉，避免重复命中
+     *
+     * @return 文档不存在或已删除时返回false
+     */
+    public synchronized boolean delete(long docId) {
+        int ord = ords.get(docId);
+        if (ord < 0 || (deleted[ord >>> 6] & (1L << ord)) != 0) {
+            return false;
+        }
+        deleted[ord >>> 6] |= 1L << ord;
+        liveDocs--;
+        liveLength -= docLengths[ord];
+        version++;
+        return true;
+    }
+
+    /**
+     * 冻结后不再接收新文档，只允许删除和写入磁盘
+     */
+    public synchronized void freeze() {
+        frozen = true;
+    }
+
+    /**
+     * 发布当前时刻的只读视图，没有修改时返回上次的视图
+     */
+    public synchronized Reader reader() {
+        if (reader == null || reader.version != version) {
+            reader = new Reader(this);
+        }
+        return reader;
+    }
+
+    public synchronized int docCount() {
+        return liveDocs;
+    }
+
+    /**
+     * 估算的堆内存占用
+     */
+    public synchronized long ramBytesUsed() {
+        long pool = 0;
+        for (int[] block : blocks) {
+            if (block != null) {
+                pool += 4L * BLOCK_SIZE;
+            }
+        }
+        return pool + termBytes + textBytes + 17L * docIds.length + ords.ramBytesUsed();
+    }
+
+    /**
+     * 把当前视图中的有效文档写成磁盘索引段，已删除的文档不写入，文档序号重新连续分配
+     *
+     * @param directory 索引段目录，必须为空目录或不存在
+     * @return 写入的文档数
+     */
+    public int flush(Path directory) throws IOException {
+        Reader view = reader();
+        Files.createDirectories(directory);
+        int[] remap = new int[view.maxDoc];
+        int[] lengths = new int[view.liveDocs];
+        int docCount = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(directory.resolve(IndexFormat.DOCS_FILE).toFile()), 64 * 1024))) {
+            out.writeInt(IndexFormat.MAGIC);
+            out.writeByte(IndexFormat.VERSION);
+            out.writeInt(view.liveDocs);
+            out.writeLong(view.liveLength);
+            for (int ord = 0; ord < view.maxDoc; ord++) {
+                if (view.isDeleted(ord)) {
+                    remap[ord] = -1;
+                    continue;
+                }
+                out.writeLong(view.docIds[ord]);
+                out.writeInt(view.docLengths[ord]);
+                lengths[docCount] = view.docLengths[ord];
+                remap[ord] = docCount++;
+            }
+        }
+        try (SegmentWriter textOut = StoredText.openWriter(directory)) {
+            for (int ord = 0; ord < view.maxDoc; ord++) {
+                if (!view.isDeleted(ord)) {
+                    textOut.append(view.docIds[ord], view.texts[ord].getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        List<String> terms = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : termIds.entrySet()) {
+            if (entry.getValue() < view.termCount) {
+                terms.add(entry.getKey());
+            }
+        }
+        Collections.sort(terms);
+        int[] positions = new int[16];
+        try (TermsWriter writer = new TermsWriter(directory, ord -> lengths[ord])) {
+            for (String term : terms) {
+                PostingsIterator postings = view.postings(term);
+                if (postings == null) {
+                    continue;
+                }
+                writer.startTerm(term);
+                for (int doc = postings.nextDoc(); doc != PostingsIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                    int count = postings.positionCount();
+                    if (count > positions.length) {
+                        positions = new int[Math.max(count, positions.length * 2)];
+                    }
+                    for (int i = 0; i < count; i++) {
+                        positions[i] = postings.position(i);
+                    }
+                    writer.addPosting(remap[doc], postings.freq(), positions, count);
+                }
+                writer.finishTerm();
+            }
+        }
+        return docCount;
+    }
+
+    private int newTerm(String term) {
+        int termId = termCount;
+        if (termId == docFreqs.length) {
+            int length = termId * 2;
+            heads = Arrays.copyOf(heads, length * 2);
+            tails = Arrays.copyOf(tails, length * 2);
+            sliceEnds = Arrays.copyOf(sliceEnds, length * 2);
+            levels = Arrays.copyOf(levels, length * 2);
+            docFreqs = Arrays.copyOf(docFreqs, length);
+        }
+        for (int stream = termId * 2; stream < termId * 2 + 2; stream++) {
+            int slice = allocateSlice(0);
+            heads[stream] = slice;
+            tails[stream] = slice;
+            sliceEnds[stream] = slice + SLICE_SIZES[0];
+            levels[stream] = 0;
+        }
+        termCount++;
+        termBytes += TERM_OVERHEAD + 2L * term.length();
+        // 属性写好后才加入词典
+        termIds.put(term, termId);
+        return termId;
+    }
+
+    private void addPosting(int termId, int ord, DocumentTerms.Entry entry) {
+        int postings = termId * 2 + POSTINGS_STREAM;
+        writeInt(postings, ord);
+        writeInt(postings, entry.freq);
+        int positions = termId * 2 + POSITIONS_STREAM;
+        writeInt(positions, entry.count);
+        for (int i = 0; i < entry.count; i++) {
+            writeInt(positions, entry.positions[i]);
+        }
+        docFreqs[termId]++;
+    }
+
+    private void writeInt(int stream, int value) {
+        int upto = tails[stream];
+        if (upto == sliceEnds[stream]) {
+            // 当前切片已满，分配下一级切片并把地址写在当前切片的最后一个位置
+            int level = Math.min(levels[stream] + 1, SLICE_SIZES.length - 1);
+            int slice = allocateSlice(level);
+            blocks[upto >>> BLOCK_SHIFT][upto & BLOCK_MASK] = slice;
+            levels[stream] = (byte) level;
+            sliceEnds[stream] = slice + SLICE_SIZES[level];
+            upto = slice;
+        }
+        blocks[upto >>> BLOCK_SHIFT][upto & BLOCK_MASK] = value;
+        tails[stream] = upto + 1;
+    }
+
+    // 切片不跨块，当前块剩余空间不够时从下一块开始
+    private int allocateSlice(int level) {
+        int size = SLICE_SIZES[level] + 1;
+        if ((poolUpto & BLOCK_MASK) + size > BLOCK_SIZE) {
+            poolUpto = ((poolUpto >>> BLOCK_SHIFT) + 1) << BLOCK_SHIFT;
+        }
+        int index = poolUpto >>> BLOCK_SHIFT;
+        if (index == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blocks.length * 2);
+        }
+        if (blocks[index] == null) {
+            blocks[index] = new int[BLOCK_SIZE];
+        }
+        int slice = poolUpto;
+        poolUpto += size;
+        return slice;
+    }
+
+    /**
+     * 内存索引段某一时刻的只读视图，创建后内容不再变化，可以被多个查询线程同时使用
+     * 文档频率包含之后被删除的文档，与磁盘索引段合并前的统计方式一致
+     */
+    public static class Reader implements IndexSegment {
+        private final long version;
+        private final Map<String, Integer> termIds;
+        private final int termCount;
+        private final int[][] blocks;
+        private final int[] heads;
+        private final int[] docFreqs;
+        private final int maxDoc;
+        private final long[] docIds;
+        private final int[] docLengths;
+        private final String[] texts;
+        private final long[] deleted;
+        private final int liveDocs;
+        private final long liveLength;
+        private volatile long[] sortedDocs;     // 按 docId 排序的 (docId, 序号)，查找正文时按需构建
+
+        // 在 segment 的锁内创建
+        private Reader(MemorySegment segment) {
+            this.version = segment.version;
+            this.termIds = segment.termIds;
+            this.termCount = segment.termCount;
+            this.blocks = Arrays.copyOf(segment.blocks, segment.blocks.length);
+            this.heads = segment.heads;
+            this.docFreqs = Arrays.copyOf(segment.docFreqs, segment.termCount);
+            this.maxDoc = segment.maxDoc;
+            this.docIds = segment.docIds;
+            this.docLengths = segment.docLengths;
+            this.texts = segment.texts;
+            this.deleted = Arrays.copyOf(segment.deleted, (segment.maxDoc + 63) >>> 6);
+            this.liveDocs = segment.liveDocs;
+            this.liveLength = segment.liveLength;
+        }
+
+        @Override
+        public int docCount() {
+            return liveDocs;
+        }
+
+        @Override
+        public long totalLength() {
+            return liveLength;
+        }
+
+        @Override
+        public long docId(int ord) {
+            return docIds[ord];
+        }
+
+        @Override
+        public int docLength(int ord) {
+            return docLengths[ord];
+        }
+
+        @Override
+        public int docFreq(String term) {
+            int termId = termId(term);
+            return termId < 0 ? 0 : docFreqs[termId];
+        }
+
+        /**
+         * 沿切片链表解码该词项在视图中的全部倒排数据，位置在第一次读取时才解码
+         */
+        @Override
+        public PostingsIterator postings(String term) {
+            int termId = termId(term);
+            if (termId < 0) {
+                return null;
+            }
+            int docFreq = docFreqs[termId];
+            int[] postingOrds = new int[docFreq];
+            int[] postingTfs = new int[docFreq];
+            SliceReader reader = new SliceReader(blocks, heads[termId * 2 + POSTINGS_STREAM]);
+            int live = 0;
+            for (int i = 0; i < docFreq; i++) {
+                postingOrds[i] = reader.readInt();
+                postingTfs[i] = reader.readInt();
+                if (!isDeleted(postingOrds[i])) {
+                    live++;
+                }
+            }
+            if (live == 0) {
+                return null;
+            }
+            return new ArrayPostingsIterator(this, heads[termId * 2 + POSITIONS_STREAM], postingOrds, postingTfs);
+        }
+
+        /**
+         * 在视图自己的 docId 有序表中查找，不获取 segment 的锁，不与写入竞争
+         */
+        @Override
+        public String storedText(long docId) {
+            int ord = ordOf(docId);
+            return ord < 0 || isDeleted(ord) ? null : texts[ord];
+        }
+
+        // 视图中文档的序号，不存在时返回-1；有序表在第一次查找时按视图创建时的文档构建
+        private int ordOf(long docId) {
+            long[] sorted = sortedDocs;
+            if (sorted == null) {
+                sorted = new long[maxDoc * 2];
+                Integer[] order = new Integer[maxDoc];
+                for (int ord = 0; ord < maxDoc; ord++) {
+                    order[ord] = ord;
+                }
+                Arrays.sort(order, (a, b) -> Long.compare(docIds[a], docIds[b]));
+                for (int i = 0; i < maxDoc; i++) {
+                    sorted[i * 2] = docIds[order[i]];
+                    sorted[i * 2 + 1] = order[i];
+                }
+                sortedDocs = sorted;
+            }
+            int low = 0;
+            int high = maxDoc - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long value = sorted[mid * 2];
+                if (value < docId) {
+                    low = mid + 1;
+                } else if (value > docId) {
+                    high = mid - 1;
+                } else {
+                    return (int) sorted[mid * 2 + 1];
+                }
+            }
+            return -1;
+        }
+
+        private int termId(String term) {
+            Integer termId = termIds.get(term);
+            return termId == null || termId >= termCount ? -1 : termId;
+        }
+
+        private boolean isDeleted(int ord) {
+            return (deleted[ord >>> 6] & (1L << ord)) != 0;
+        }
+    }
+
+    /**
+     * 按顺序读取一条数据流
+     */
+    private static class SliceReader {
+        private final int[][] blocks;
+        private int address;
+        private int end;
+        private int level = 0;
+
+        SliceReader(int[][] blocks, int head) {
+            this.blocks = blocks;
+            this.address = head;
+            this.end = head + SLICE_SIZES[0];
+        }
+
+        int readInt() {
+            if (address == end) {
+                address = blocks[end >>> BLOCK_SHIFT][end & BLOCK_MASK];
+                level = Math.min(level + 1, SLICE_SIZES.length - 1);
+                end = address + SLICE_SIZES[level];
+            }
+            int value = blocks[address >>> BLOCK_SHIFT][address & BLOCK_MASK];
+            address++;
+            return value;
+        }
+    }
+
+    /**
+     * 已解码到数组中的倒排表，遍历时跳过已删除的文档
+     * 按 POSTINGS_BLOCK_SIZE 分块计算块内最大词频和最短文档长度，已删除的文档也计入，上界仍然有效
+     * 位置流只能顺序读取，读取位置时跳过前面文档的位置
+     */
+    private static class ArrayPostingsIterator implements PostingsIterator {
+        private final Reader view;
+        private final int positionsHead;
+        private final int[] ords;
+        private final int[] tfs;
+        private final int size;
+        private final int blockCount;
+        private final int[] maxTfs;
+        private final int[] minLengths;
+        private int index = -1;
+        private int doc = -1;
+
+        // 位置流读到的文档下标和当前文档的位置
+        private SliceReader positions;
+        private int positionsIndex = 0;
+        private int positionIndex = -1;
+        private int[] docPositions;
+        private int positionCount;
+
+        ArrayPostingsIterator(Reader view, int positionsHead, int[] ords, int[] tfs) {
+            this.view = view;
+            this.positionsHead = positionsHead;
+            this.ords = ords;
+            this.tfs = tfs;
+            this.size = ords.length;
+            this.blockCount = (size + IndexFormat.POSTINGS_BLOCK_SIZE - 1) / IndexFormat.POSTINGS_BLOCK_SIZE;
+            this.maxTfs = new int[blockCount];
+            this.minLengths = new int[blockCount];
+            Arrays.fill(minLengths, Integer.MAX_VALUE);
+            for (int i = 0; i < size; i++) {
+                int block = i / IndexFormat.POSTINGS_BLOCK_SIZE;
+                maxTfs[block] = Math.max(maxTfs[block], tfs[i]);
+                minLengths[block] = Math.min(minLengths[block], view.docLengths[ords[i]]);
+            }
+        }
+
+        @Override
+        public int doc() {
+            return doc;
+        }
+
+        @Override
+        public int freq() {
+            return tfs[index];
+        }
+
+        @Override
+        public int nextDoc() {
+            return moveTo(index + 1);
+        }
+
+        @Override
+        public int advance(int target) {
+            if (target <= doc) {
+                return doc;
+            }
+            int low = index + 1;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (ords[mid] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return moveTo(low);
+        }
+
+        @Override
+        public int positionCount() {
+            if (positionIndex == index) {
+                return positionCount;
+            }
+            if (positions == null) {
+                positions = new SliceReader(view.blocks, positionsHead);
+                docPositions = new int[16];
+            }
+            for (; positionsIndex < index; positionsIndex++) {
+                int count = positions.readInt();
+                for (int i = 0; i < count; i++) {
+                    positions.readInt();
+                }
+            }
+            positionCount = positions.readInt();
+            if (positionCount > docPositions.length) {
+                docPositions = new int[Math.max(positionCount, docPositions.length * 2)];
+            }
+            for (int i = 0; i < positionCount; i++) {
+                docPositions[i] = positions.readInt();
+            }
+            positionsIndex = index + 1;
+            positionIndex = index;
+            return positionCount;
+        }
+
+        @Override
+        public int position(int i) {
+            return docPositions[i];
+        }
+
+        @Override
+        public int cost() {
+            return size;
+        }
+
+        // 从下标 from 开始第一篇未删除的文档
+        private int moveTo(int from) {
+            index = from;
+            while (index < size && view.isDeleted(ords[index])) {
+                index++;
+            }
+            if (index >= size) {
+                index = size;
+                return doc = NO_MORE_DOCS;
+            }
+            return doc = ords[index];
+        }
+
+        @Override
+        public int blockCount() {
+            return blockCount;
+        }
+
+        @Override
+        public int block() {
+            return index < 0 ? -1 : Math.min(index, size - 1) / IndexFormat.POSTINGS_BLOCK_SIZE;
+        }
+
+        @Override
+        public int blockLastDoc(int block) {
+            return ords[Math.min(size, (block + 1) * IndexFormat.POSTINGS_BLOCK_SIZE) - 1];
+        }
+
+        @Override
+        public int blockMaxTf(int block) {
+            return maxTfs[block];
+        }
+
+        @Override
+        public int blockMinLength(int block) {
+            return minLengths[block];
+        }
+    }
+
+    /**
+     * docId -> 文档序号的开放寻址表，只增不删
+     */
+    private static class DocOrdMap {
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];   // 序号加1，0表示空位
+        private int size = 0;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; values[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, int ord) {
+            if (2 * (size + 1) > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (values[slot] == 0) {
+                size++;
+            }
+            keys[slot] = key;
+            values[slot] = ord + 1;
+        }
+
+        long ramBytesUsed() {
+            return 12L * keys.length;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != 0) {
+                    put(oldKeys[i], oldValues[i] - 1);
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package cn.kong.engine.index;
+
+/**
+ * @author gzkon
+ * @description: 倒排表迭代器，按文档序号递增遍历，倒排表按固定大小分块，每块记录最大词频和最短文档长度用于计算得分上界
+ * 位置只在调用 positionCount 时才读取
+ * 非线程安全，每次查询各自创建
+ * @date 2026/10/18 17:35
+ */
+public interface PostingsIterator {
+
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /**
+     * 当前文档序号，尚未开始时为-1，遍历结束后为 NO_MORE_DOCS
+     */
+    int doc();
+
+    /**
+     * 当前文档中的词频
+     */
+    int freq();
+
+    int nextDoc();
+
+    /**
+     * 移动到第一个序号不小于 target 的文档
+     */
+    int advance(int target);
+
+    /**
+     * 当前文档中词项出现的次数，与加权后的词频不同，标题中的词也只计一次
+     */
+    int positionCount();
+
+    /**
+     * 当前文档中第 i 个位置，升序，必须先调用 positionCount
+     */
+    int position(int i);
+
+    /**
+     * 包含该词项的文档数，即遍历的代价
+     */
+    int cost();
+
+    int blockCount();
+
+    /**
+     * 当前文档所在的数据块，尚未开始时为-1
+     */
+    int block();
+
+    int blockLastDoc(int block);
+
+    int blockMaxTf(int block);
+
+    int blockMinLength(int block);
+}
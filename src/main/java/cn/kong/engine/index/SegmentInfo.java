@@ -0,0 +1,28 @@
+package cn.kong.engine.index;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * @author gzkon
+ * @description: 清单中记录的索引段信息
+ * @date 2026/10/18 21:30
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class SegmentInfo {
+
+    private String name;            // 索引段目录名
+
+    private int docCount;           // 文档数
+
+    private long sizeInBytes;       // 磁盘占用
+
+    public SegmentInfo(String name, int docCount, long sizeInBytes) {
+        this.name = name;
+        this.docCount = docCount;
+        this.sizeInBytes = sizeInBytes;
+    }
+}
@@ -0,0 +1,150 @@
+package cn.kong.engine.index;
+
+import cn.kong.engine.store.SegmentWriter;
+import com.google.common.util.concurrent.RateLimiter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * @author gzkon
+ * @description: 合并多个索引段，文档按索引段顺序拼接，第 i 个索引段的文档序号整体加上前面索引段的文档数，
+ * 词项多路归并，同一词项的倒排表和位置按索引段顺序拼接，序号保持递增；正文纯文本按原样逐条复制
+ * 写入可以按字节限速，避免合并占满磁盘带宽影响抓取写入和查询
+ * @date 2026/10/18 21:20
+ */
+@Slf4j
+public class SegmentMerger {
+
+    private static final int THROTTLE_CHUNK = 64 * 1024;
+
+    private SegmentMerger() {
+    }
+
+    /**
+     * @param readers     待合并的索引段
+     * @param directory   新索引段目录
+     * @param rateLimiter 写入限速，按字节计，为null时不限速
+     */
+    public static void merge(List<IndexReader> readers, Path directory, RateLimiter rateLimiter) throws IOException {
+        Files.createDirectories(directory);
+        long start = System.currentTimeMillis();
+
+        int[] bases = new int[readers.size()];
+        int docCount = 0;
+        long totalLength = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(directory.resolve(IndexFormat.DOCS_FILE).toFile()), 64 * 1024))) {
+            for (IndexReader reader : readers) {
+                docCount += reader.docCount();
+                totalLength += reader.totalLength();
+            }
+            out.writeInt(IndexFormat.MAGIC);
+            out.writeByte(IndexFormat.VERSION);
+            out.writeInt(docCount);
+            out.writeLong(totalLength);
+            int base = 0;
+            int pending = 0;
+            for (int i = 0; i < readers.size(); i++) {
+                IndexReader reader = readers.get(i);
+                bases[i] = base;
+                for (int ord = 0; ord < reader.docCount(); ord++) {
+                    out.writeLong(reader.docId(ord));
+                    out.writeInt(reader.docLength(ord));
+                    pending += IndexFormat.DOC_ENTRY_SIZE;
+                    if (rateLimiter != null && pending >= THROTTLE_CHUNK) {
+                        rateLimiter.acquire(pending);
+                        pending = 0;
+                    }
+                }
+                base += reader.docCount();
+            }
+        }
+
+        try (SegmentWriter textOut = StoredText.openWriter(directory)) {
+            for (IndexReader reader : readers) {
+                reader.copyTexts(textOut, rateLimiter);
+            }
+        }
+
+        int termCount;
+        try (FileChannel channel = FileChannel.open(directory.resolve(IndexFormat.DOCS_FILE), StandardOpenOption.READ)) {
+            MappedByteBuffer docs = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try (TermsWriter writer = new TermsWriter(directory,
+                    ord -> docs.getInt(IndexFormat.DOCS_HEADER_SIZE + ord * IndexFormat.DOC_ENTRY_SIZE + 8), rateLimiter)) {
+                mergeTerms(readers, bases, writer);
+                termCount = writer.getTermCount();
+            }
+        }
+        log.info("合并索引段完成: {} <- {} 个索引段, 文档数={}, 词项数={}, 耗时 {} ms",
+                directory.getFileName(), readers.size(), docCount, termCount, System.currentTimeMillis() - start);
+    }
+
+    private static void mergeTerms(List<IndexReader> readers, int[] bases, TermsWriter writer) throws IOException {
+        PriorityQueue<Source> queue = new PriorityQueue<>(
+                Comparator.comparing((Source s) -> s.terms.info().getTerm()).thenComparingInt(s -> s.index));
+        for (int i = 0; i < readers.size(); i++) {
+            Source source = new Source(i, readers.get(i), bases[i]);
+            if (source.terms.next()) {
+                queue.add(source);
+            }
+        }
+        while (!queue.isEmpty()) {
+            Source top = queue.poll();
+            String term = top.terms.info().getTerm();
+            writer.startTerm(term);
+            top.copyTo(writer);
+            while (!queue.isEmpty() && queue.peek().terms.info().getTerm().equals(term)) {
+                Source same = queue.poll();
+                same.copyTo(writer);
+                if (same.terms.next()) {
+                    queue.add(same);
+                }
+            }
+            if (top.terms.next()) {
+                queue.add(top);
+            }
+            writer.finishTerm();
+        }
+    }
+
+    private static class Source {
+        private final int index;
+        private final IndexReader reader;
+        private final int base;
+        private final IndexReader.TermIterator terms;
+        private int[] positions = new int[16];
+
+        Source(int index, IndexReader reader, int base) {
+            this.index = index;
+            this.reader = reader;
+            this.base = base;
+            this.terms = reader.terms();
+        }
+
+        void copyTo(TermsWriter writer) throws IOException {
+            PostingsIterator postings = reader.postings(terms.info());
+            for (int doc = postings.nextDoc(); doc != PostingsIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                int count = postings.positionCount();
+                if (count > positions.length) {
+                    positions = new int[Math.max(count, positions.length * 2)];
+                }
+                for (int i = 0; i < count; i++) {
+                    positions[i] = postings.position(i);
+                }
+                writer.addPosting(base + doc, postings.freq(), positions, count);
+            }
+        }
+    }
+}
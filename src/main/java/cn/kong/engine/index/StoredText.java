@@ -0,0 +1,45 @@
+package cn.kong.engine.index;
+
+import cn.kong.engine.store.SegmentFormat;
+import cn.kong.engine.store.SegmentWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * @author gzkon
+ * @description: 索引段中保存的正文纯文本，复用 doc_raw 段文件格式，小数据块压缩
+ * @date 2026/10/18 23:58
+ */
+final class StoredText {
+
+    private StoredText() {
+    }
+
+    static SegmentWriter openWriter(Path directory) throws IOException {
+        return new SegmentWriter(directory.resolve(IndexFormat.TEXT_FILE),
+                SegmentFormat.Compression.DEFLATE, IndexFormat.TEXT_BLOCK_SIZE);
+    }
+
+    /**
+     * 截断到 MAX_TEXT_LENGTH 个字符，不拆开代理对
+     */
+    static String truncate(String text) {
+        if (text == null) {
+            return "";
+        }
+        if (text.length() <= IndexFormat.MAX_TEXT_LENGTH) {
+            return text;
+        }
+        int end = IndexFormat.MAX_TEXT_LENGTH;
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    static byte[] encode(String text) {
+        return truncate(text).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,30 @@
+package cn.kong.engine.index;
+
+import lombok.Getter;
+
+/**
+ * @author gzkon
+ * @description: 词典条目
+ * @date 2026/10/18 17:30
+ */
+@Getter
+public class TermInfo {
+
+    private final String term;
+
+    private final int docFreq;          // 包含该词项的文档数
+
+    private final long postingsOffset;  // 倒排表在 postings.doc 中的起始位置
+
+    private final long skipOffset;      // 跳表在 postings.doc 中的起始位置
+
+    private final long positionsOffset; // 位置在 positions.pos 中的起始位置
+
+    public TermInfo(String term, int docFreq, long postingsOffset, long skipOffset, long positionsOffset) {
+        this.term = term;
+        this.docFreq = docFreq;
+        this.postingsOffset = postingsOffset;
+        this.skipOffset = skipOffset;
+        this.positionsOffset = positionsOffset;
+    }
+}
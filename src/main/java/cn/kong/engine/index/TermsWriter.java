@@ -0,0 +1,242 @@
+package cn.kong.engine.index;
+
+import cn.kong.engine.utils.VarIntUtils;
+import com.google.common.util.concurrent.RateLimiter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * @author gzkon
+ * @description: 写入索引段的词典、倒排表和位置，词项必须按升序写入，同一词项的文档序号必须递增
+ * 倒排表和位置按块编码，每个词项只在内存中保留一个数据块和跳表，占用内存与词项的文档数无关
+ * @date 2026/10/18 17:20
+ */
+public class TermsWriter implements Closeable {
+
+    private static final int SKIP_FIELDS = 5;
+
+    private final Path directory;
+
+    private final IntUnaryOperator docLength;   // 文档序号 -> 文档长度
+
+    private final RateLimiter rateLimiter;      // 写入限速，按字节计，为null时不限速
+
+    private final OutputStream postingsOut;
+    private long postingsPosition = 0;
+
+    private final OutputStream termsOut;
+    private long termsPosition = 0;
+
+    private final OutputStream positionsOut;
+    private long positionsPosition = 0;
+
+    // 词典稀疏索引
+    private final List<byte[]> indexTerms = new ArrayList<>();
+    private final List<Long> indexOffsets = new ArrayList<>();
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    private final ByteArrayOutputStream positionsBuffer = new ByteArrayOutputStream(1024);   // 当前数据块的位置
+
+    private byte[] previousTerm = new byte[0];
+    private int termCount = 0;
+
+    // 当前词项
+    private byte[] term;
+    private long postingsStart;
+    private long positionsStart;
+    private int docFreq;
+    private int lastOrd;
+    private final int[] blockOrds = new int[IndexFormat.POSTINGS_BLOCK_SIZE];
+    private final int[] blockTfs = new int[IndexFormat.POSTINGS_BLOCK_SIZE];
+    private int blockSize;
+    private int blockBase;  // 差值编码基准，即上一块最后一篇文档的序号
+    private int[] skips = new int[SKIP_FIELDS * 16];  // 每块5个值：LAST_ORD BLOCK_BYTES MAX_TF MIN_LENGTH POSITIONS_BYTES
+    private int blockCount;
+
+    public TermsWriter(Path directory, IntUnaryOperator docLength) throws IOException {
+        this(directory, docLength, null);
+    }
+
+    public TermsWriter(Path directory, IntUnaryOperator docLength, RateLimiter rateLimiter) throws IOException {
+        this.directory = directory;
+        this.docLength = docLength;
+        this.rateLimiter = rateLimiter;
+        this.postingsOut = new BufferedOutputStream(
+                new FileOutputStream(directory.resolve(IndexFormat.POSTINGS_FILE).toFile()), 64 * 1024);
+        this.termsOut = new BufferedOutputStream(
+                new FileOutputStream(directory.resolve(IndexFormat.TERMS_FILE).toFile()), 64 * 1024);
+        this.positionsOut = new BufferedOutputStream(
+                new FileOutputStream(directory.resolve(IndexFormat.POSITIONS_FILE).toFile()), 64 * 1024);
+        DataOutputStream header = new DataOutputStream(buffer);
+        header.writeInt(IndexFormat.MAGIC);
+        header.writeByte(IndexFormat.VERSION);
+        termsPosition += drainTo(buffer, termsOut);
+    }
+
+    public void startTerm(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (termCount > 0 && Arrays.equals(bytes, previousTerm)) {
+            throw new IllegalStateException("Duplicate term: " + text);
+        }
+        term = bytes;
+        postingsStart = postingsPosition;
+        positionsStart = positionsPosition;
+        docFreq = 0;
+        lastOrd = -1;
+        blockSize = 0;
+        blockBase = 0;
+        blockCount = 0;
+    }
+
+    /**
+     * @param positions     词项在文档中出现的位置，升序
+     * @param positionCount 位置数
+     */
+    public void addPosting(int ord, int tf, int[] positions, int positionCount) throws IOException {
+        if (ord <= lastOrd) {
+            throw new IllegalStateException("Postings out of order: " + ord + " after " + lastOrd);
+        }
+        VarIntUtils.writeVarInt(positionsBuffer, positionCount);
+        int previousPosition = 0;
+        for (int i = 0; i < positionCount; i++) {
+            VarIntUtils.writeVarInt(positionsBuffer, positions[i] - previousPosition);
+            previousPosition = positions[i];
+        }
+        blockOrds[blockSize] = ord;
+        blockTfs[blockSize] = tf;
+        blockSize++;
+        lastOrd = ord;
+        docFreq++;
+        if (blockSize == IndexFormat.POSTINGS_BLOCK_SIZE) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * 结束当前词项，写入跳表和词典条目，没有任何文档的词项直接丢弃
+     */
+    public void finishTerm() throws IOException {
+        flushBlock();
+        if (docFreq == 0) {
+            return;
+        }
+        long skipStart = postingsPosition;
+        VarIntUtils.writeVarInt(buffer, blockCount);
+        int base = 0;
+        for (int i = 0; i < blockCount; i++) {
+            int last = skips[i * SKIP_FIELDS];
+            VarIntUtils.writeVarInt(buffer, last - base);
+            for (int j = 1; j < SKIP_FIELDS; j++) {
+                VarIntUtils.writeVarInt(buffer, skips[i * SKIP_FIELDS + j]);
+            }
+            base = last;
+        }
+        postingsPosition += drainTo(buffer, postingsOut);
+
+        if (termCount % IndexFormat.TERM_INDEX_INTERVAL == 0) {
+            // 每隔固定数量的词项记一条稀疏索引，并重新开始前缀压缩
+            indexTerms.add(term);
+            indexOffsets.add(termsPosition);
+            previousTerm = new byte[0];
+        }
+        int prefix = commonPrefix(previousTerm, term);
+        VarIntUtils.writeVarInt(buffer, prefix);
+        VarIntUtils.writeVarInt(buffer, term.length - prefix);
+        buffer.write(term, prefix, term.length - prefix);
+        VarIntUtils.writeVarInt(buffer, docFreq);
+        VarIntUtils.writeVarLong(buffer, postingsStart);
+        VarIntUtils.writeVarLong(buffer, skipStart - postingsStart);
+        VarIntUtils.writeVarLong(buffer, positionsStart);
+        termsPosition += drainTo(buffer, termsOut);
+        previousTerm = term;
+        termCount++;
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        postingsOut.close();
+        termsOut.close();
+        positionsOut.close();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(directory.resolve(IndexFormat.TERMS_INDEX_FILE).toFile())))) {
+            out.writeInt(IndexFormat.MAGIC);
+            out.writeByte(IndexFormat.VERSION);
+            out.writeInt(termCount);
+            out.writeInt(indexTerms.size());
+            for (int i = 0; i < indexTerms.size(); i++) {
+                byte[] bytes = indexTerms.get(i);
+                VarIntUtils.writeVarInt(out, bytes.length);
+                out.write(bytes);
+                VarIntUtils.writeVarLong(out, indexOffsets.get(i));
+            }
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockSize == 0) {
+            return;
+        }
+        int maxTf = 0;
+        int minLength = Integer.MAX_VALUE;
+        int previous = blockBase;
+        for (int i = 0; i < blockSize; i++) {
+            VarIntUtils.writeVarInt(buffer, blockOrds[i] - previous);
+            VarIntUtils.writeVarInt(buffer, blockTfs[i]);
+            previous = blockOrds[i];
+            maxTf = Math.max(maxTf, blockTfs[i]);
+            minLength = Math.min(minLength, docLength.applyAsInt(blockOrds[i]));
+        }
+        int bytes = drainTo(buffer, postingsOut);
+        postingsPosition += bytes;
+        int positionBytes = drainTo(positionsBuffer, positionsOut);
+        positionsPosition += positionBytes;
+
+        if ((blockCount + 1) * SKIP_FIELDS > skips.length) {
+            skips = Arrays.copyOf(skips, skips.length * 2);
+        }
+        int skip = blockCount * SKIP_FIELDS;
+        skips[skip] = previous;
+        skips[skip + 1] = bytes;
+        skips[skip + 2] = maxTf;
+        skips[skip + 3] = minLength;
+        skips[skip + 4] = positionBytes;
+        blockCount++;
+        blockBase = previous;
+        blockSize = 0;
+    }
+
+    private int drainTo(ByteArrayOutputStream from, OutputStream out) throws IOException {
+        int size = from.size();
+        if (rateLimiter != null && size > 0) {
+            rateLimiter.acquire(size);
+        }
+        from.writeTo(out);
+        from.reset();
+        return size;
+    }
+
+    private static int commonPrefix(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < n && a[i] == b[i]) {
+            i++;
+        }
+        return i;
+    }
+}
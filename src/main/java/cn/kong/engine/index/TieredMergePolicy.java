@@ -0,0 +1,79 @@
+package cn.kong.engine.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * @author gzkon
+ * @description: 分层合并策略，索引段按大小分层，第 n 层的大小约为 floorSize * mergeFactor^n，
+ * 某一层的索引段数达到 mergeFactor 时合并该层最小的 mergeFactor 个，合并后的索引段进入上一层；
+ * 每篇文档被合并的次数约为层数，写放大与数据总量成对数关系
+ * 超过 maxMergedSize 一半的索引段不再参与合并
+ * @date 2026/10/18 21:40
+ */
+public class TieredMergePolicy {
+
+    private final int mergeFactor;
+
+    private final long floorSize;
+
+    private final long maxMergedSize;
+
+    /**
+     * @param mergeFactor   每次合并的索引段数
+     * @param floorSize     小于该大小的索引段都算作第0层
+     * @param maxMergedSize 合并后索引段的大小上限
+     */
+    public TieredMergePolicy(int mergeFactor, long floorSize, long maxMergedSize) {
+        this.mergeFactor = Math.max(2, mergeFactor);
+        this.floorSize = Math.max(1, floorSize);
+        this.maxMergedSize = maxMergedSize;
+    }
+
+    /**
+     * 选出一组需要合并的索引段，没有时返回空列表
+     *
+     * @param segments 可以参与合并的索引段（不包括正在合并中的）
+     */
+    public List<SegmentInfo> findMerge(List<SegmentInfo> segments) {
+        List<SegmentInfo> sorted = new ArrayList<>();
+        for (SegmentInfo segment : segments) {
+            if (segment.getSizeInBytes() <= maxMergedSize / 2) {
+                sorted.add(segment);
+            }
+        }
+        sorted.sort(Comparator.comparingLong(SegmentInfo::getSizeInBytes));
+
+        int from = 0;
+        while (from < sorted.size()) {
+            int tier = tierOf(sorted.get(from));
+            int to = from;
+            while (to < sorted.size() && tierOf(sorted.get(to)) == tier) {
+                to++;
+            }
+            if (to - from >= mergeFactor) {
+                List<SegmentInfo> merge = new ArrayList<>(sorted.subList(from, from + mergeFactor));
+                long size = 0;
+                for (SegmentInfo segment : merge) {
+                    size += segment.getSizeInBytes();
+                }
+                if (size <= maxMergedSize) {
+                    return merge;
+                }
+            }
+            from = to;
+        }
+        return Collections.emptyList();
+    }
+
+    private int tierOf(SegmentInfo segment) {
+        long size = Math.max(segment.getSizeInBytes(), floorSize);
+        int tier = 0;
+        for (long bound = floorSize * mergeFactor; size >= bound && tier < 32; bound *= mergeFactor) {
+            tier++;
+        }
+        return tier;
+    }
+}
@@ -45,5 +45,14 @@ public class CrawlerTask {
      * 文件后缀
      */
     public String fileSuffix;
+    /**
+     * 同一host两次抓取之间的最小间隔，单位为毫秒
+     */
+    public Long hostDelay = 500L;
+    /**
+     * 去重分组，同一分组中同时运行的任务共用一个布隆过滤器，适合抓取的站点有重叠的任务，为空时任务独占
+     * 只在未启用 URL映射时生效，URL映射本身由所有任务共用
+     */
+    public String dedupeGroup;
 
 }
@@ -10,7 +10,9 @@ import java.time.LocalDateTime;
 
 /**
  * @author gzkon
- * @description: TODO
+ * @description: 文档信息，每个已抓取的URL一条记录（包括请求失败的），在页面处理完成后写入；
+ * 只被发现、还没有抓取的URL不在表中，它们保存在任务的 frontier 和检查点里，
+ * 因此按表统计的是已抓取的页面数，恢复任务也不依赖这张表
  * @date 2025/6/22 12:05
  */
 @Getter
@@ -23,7 +25,10 @@ public class DocInfo {
     private Long id;                    // 主键ID
 
     @DbField(name = "url")
-    private String url;                 // 网页URL
+    private String url;                 // 网页URL，已规范化
+
+    @DbField(name = "url_fp")
+    private Long urlFp;                 // 规范化URL的64位指纹
 
     @DbField(name = "title")
     private String title;               // 网页标题
@@ -49,4 +54,10 @@ public class DocInfo {
     @DbField(name = "update_time")
     private LocalDateTime updateTime;   // 最后更新时间
 
+    @DbField(name = "simhash")
+    private Long simhash;               // 正文的64位SimHash，用于近似重复检测
+
+    @DbField(name = "duplicate_of")
+    private Long duplicateOf;           // 近似重复时首次收录的文档ID，此时内容不存储
+
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package cn.kong.engine.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * @author gzkon
+ * @description: 遍历 doc_info 时的过滤条件，为null的条件不过滤
+ * @date 2026/10/18 19:40
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class DocInfoFilter {
+
+    private Boolean stored;             // 内容是否已存储
+
+    private Integer statusCode;         // HTTP状态码
+
+    private String domain;              // 域名
+
+    private Boolean duplicate;          // 是否近似重复，true 只返回重复的页面，false 只返回首次收录的页面
+
+    private Boolean hasSimhash;         // 是否计算过SimHash
+
+    public static DocInfoFilter all() {
+        return new DocInfoFilter();
+    }
+}
@@ -0,0 +1,48 @@
+package cn.kong.engine.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * @author gzkon
+ * @description: 一页检索结果
+ * @date 2026/10/18 20:40
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class SearchResult {
+
+    private String query;           // 查询串
+
+    private int page;               // 页码，从1开始
+
+    private int size;               // 每页大小
+
+    private boolean hasMore;        // 是否还有下一页
+
+    private boolean cached;         // 是否命中缓存
+
+    private long took;              // 耗时，毫秒
+
+    private List<Item> items;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Item {
+
+        private Long id;            // 文档ID
+
+        private String url;         // 网页URL
+
+        private String title;       // 网页标题
+
+        private String snippet;     // 摘要，HTML片段，查询词用 em 标签高亮
+
+        private float score;        // 得分
+    }
+}
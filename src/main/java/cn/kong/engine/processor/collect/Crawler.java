@@ -1,20 +1,23 @@
 package cn.kong.engine.processor.collect;
 
+import cn.kong.engine.config.CrawlerConfig;
 import cn.kong.engine.content.CrawlerContent;
-import cn.kong.engine.model.DocInfo;
 import cn.kong.engine.processor.collect.entity.BaseEntry;
+import cn.kong.engine.processor.collect.entity.HtmlEntry;
+import cn.kong.engine.processor.collect.executor.HtmlParseExe;
 import cn.kong.engine.processor.collect.executor.HtmlWritingExe;
 import cn.kong.engine.processor.collect.executor.LinkExtractExe;
 import cn.kong.engine.processor.collect.executor.LinkRecordExe;
 import cn.kong.engine.processor.collect.executor.RequestExe;
-import cn.kong.engine.service.SQLiteService;
+import cn.kong.engine.processor.collect.executor.SimHashExe;
+import cn.kong.engine.processor.collect.frontier.HostFrontier;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
-import java.util.Optional;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -26,55 +29,79 @@ import java.util.concurrent.TimeUnit;
 @Component
 public class Crawler {
     private static ThreadPoolTaskExecutor executorService;
+    private final ThreadPoolTaskExecutor processExecutor;
     private final RequestExe requestExe;
+    private final HtmlParseExe htmlParseExe;
     private final LinkExtractExe linkExtractExe;
     private final LinkRecordExe linkRecordExe;
+    private final SimHashExe simHashExe;
     private final HtmlWritingExe htmlWritingExe;
-    private final SQLiteService sqliteService;
+    private final CrawlerConfig.FetchMode fetchMode;
+    private final int maxInFlight;
 
     @Autowired
     public Crawler(@Qualifier("crawlerThreadPool") ThreadPoolTaskExecutor crawlerThreadPool,
+                   @Qualifier("crawlerProcessPool") ThreadPoolTaskExecutor crawlerProcessPool,
                    RequestExe requestExe,
+                   HtmlParseExe htmlParseExe,
                    LinkExtractExe linkExtractExe,
                    LinkRecordExe linkRecordExe,
+                   SimHashExe simHashExe,
                    HtmlWritingExe htmlWritingExe,
-                   SQLiteService sqliteService) {
+                   CrawlerConfig.HttpPoolProperties httpProperties) {
         // 初始化线程池
         executorService = crawlerThreadPool;
+        this.processExecutor = crawlerProcessPool;
         // 初始化依赖注入的服务
         this.requestExe = requestExe;
+        this.htmlParseExe = htmlParseExe;
         this.linkExtractExe = linkExtractExe;
         this.linkRecordExe = linkRecordExe;
+        this.simHashExe = simHashExe;
         this.htmlWritingExe = htmlWritingExe;
-        this.sqliteService = sqliteService;
+        this.fetchMode = httpProperties.getFetchMode();
+        this.maxInFlight = Math.max(1, httpProperties.getMaxInFlight());
     }
 
 
     public void run(CrawlerContent content) {
-        // 启动一个线程来执行数据存储的逻辑
-        executorService.submit(() -> {
-            try {
-                doStored(content);  // 在一个独立线程中执行数据存储逻辑
-            } catch (Exception e) {
-                log.error("数据存储执行失败: {}", e.getMessage(), e);
-                // 终止线程池
-                executorService.shutdown();
-            }
-        });
+        // 同步模式下每个任务最多同时占用线程池最大线程数个工作线程，异步模式下最多maxInFlight个在途请求，
+        // 只有存在空闲名额时才从frontier取就绪的host
+        boolean async = fetchMode == CrawlerConfig.FetchMode.ASYNC;
+        int maxInFlight = async ? this.maxInFlight : executorService.getMaxPoolSize();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        HostFrontier frontier = content.getFrontier();
 
         while (content.getRunning()) {
             try {
-                BaseEntry entry = content.getUrlQueue().poll(1, TimeUnit.SECONDS);
+                if (!inFlight.tryAcquire(1, TimeUnit.SECONDS)) {
+                    continue;
+                }
+                BaseEntry entry = frontier.poll(1, TimeUnit.SECONDS);
                 if (entry != null) {
-                    linkRecordExe.execute(entry, content);
                     if (content.getRunning()) {
-                        executorService.submit(() -> run(entry, content));
+                        if (async) {
+                            runAsync(entry, content, inFlight);
+                        } else {
+                            executorService.submit(() -> {
+                                try {
+                                    run(entry, content);
+                                } finally {
+                                    frontier.done(entry);
+                                    inFlight.release();
+                                }
+                            });
+                        }
                     } else {
+                        // 不标记完成，留在检查点中等待恢复后抓取
+                        inFlight.release();
                         log.info("爬虫任务已停止，结束执行");
                         break;
                     }
                 } else {
-                    if (executorService.getActiveCount() == 0) {
+                    inFlight.release();
+                    // frontier为空且本任务没有正在抓取的页面时结束
+                    if (frontier.isEmpty() && inFlight.availablePermits() == maxInFlight) {
                         break;
                     }
                 }
@@ -83,99 +110,52 @@ public class Crawler {
                 break;
             }
         }
+        // 等待本任务已提交的抓取全部结束，线程池由所有任务共享，不能直接shutdown
+        inFlight.acquireUninterruptibly(maxInFlight);
         linkRecordExe.flushRemaining();
-        executorService.shutdown();
         content.clearNodeData();
         content.closeCurrentWriter();
     }
 
     private void run(BaseEntry entry, CrawlerContent content) {
-        requestExe.execute(entry, content);
-        linkExtractExe.execute(null, content);
+        try {
+            requestExe.execute(entry, content);
+            process(entry, (HtmlEntry) content.getNodeData(requestExe.nodeName()), content);
+        } finally {
+            content.clearNodeData();
+        }
     }
 
-    // 数据存储
-    private void doStored(CrawlerContent content) {
-        long totalCount = sqliteService.count();
-        long processedCount = 0;
-
-        // 检查 totalCount 是否为 0，若是，休眠 30 秒并重新获取
-        if (totalCount == 0) {
-            log.info("数据总量为 0，休眠 30 秒后继续检查...");
+    // 异步抓取，响应交给固定大小的处理线程池解析和存储，回调线程不做处理，结束后归还在途名额
+    private void runAsync(BaseEntry entry, CrawlerContent content, Semaphore inFlight) {
+        requestExe.executeAsync(entry, content).whenCompleteAsync((htmlEntry, e) -> {
             try {
-                Thread.sleep(30000); // 睡眠 30 秒
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt(); // 保证中断状态
-                log.error("线程被中断", e);
-            }
-
-            // 第二次查询数据总量
-            totalCount = sqliteService.count();
-
-            // 如果第二次查询结果仍为 0，结束执行
-            if (totalCount == 0) {
-                log.info("第二次查询数据量仍为 0，结束执行");
-                return; // 直接结束方法执行
+                process(entry, htmlEntry, content);
+            } finally {
+                content.getFrontier().done(entry);
+                inFlight.release();
             }
-        }
-
-        // 进入数据处理循环
-        while (content.getRunning()) {
-            log.info("处理进度: {}/{} ({}%)", processedCount, totalCount, String.format("%.2f", processedCount * 100.0 / totalCount));
-
-            // 处理当前批次数据
-            processedCount = processBatch(totalCount, processedCount, content);
-
-            // 检查是否完成
-            if (processedCount >= totalCount) {
-                // 获取最新数据量
-                long newCount = sqliteService.count();
-                if (newCount <= totalCount) {
-                    break; // 没有新数据，结束循环
-                }
-                log.info("发现新数据: {} -> {}", totalCount, newCount);
-                totalCount = newCount;
-            }
-        }
-
-        log.info("数据处理完成");
+        }, processExecutor);
     }
 
-    private long processBatch(long totalCount, long startIndex, CrawlerContent content) {
-        int processed = 0;
-        for (long step = startIndex + 1; step <= totalCount; step++) {
-            if (!content.getRunning()) {
-                log.info("爬虫任务已停止，结束数据处理");
-                break;
+    // 同一次抓取的响应只解析一次，同时用于链接提取、近似重复检测和内容存储，处理完成后记录文档信息
+    private void process(BaseEntry entry, HtmlEntry htmlEntry, CrawlerContent content) {
+        try {
+            if (htmlEntry != null) {
+                htmlParseExe.execute(htmlEntry, content);
+                linkExtractExe.execute(htmlEntry, content);
+                simHashExe.execute(htmlEntry, content);
+                htmlWritingExe.execute(htmlEntry, content);
+                simHashExe.record(htmlEntry);
             }
-            Optional<DocInfo> raw = sqliteService.selectById(step);
-            if (raw.isEmpty()) {
-                continue;
-            }
-
-            DocInfo docInfo = raw.get();
-            try {
-                // 处理数据
-                requestExe.execute(of(docInfo), content);
-                htmlWritingExe.execute(null, content);
-                processed++;
-
-                // 每处理100条输出一次进度
-                if (processed % 100 == 0) {
-                    log.info("正在处理: {}/{},处理进度: ({}%)", step, totalCount, String.format("%.2f", step * 100.0 / totalCount));
-                }
-            } catch (Exception e) {
-                log.error("处理记录ID={}失败: {}", docInfo.getId(), e.getMessage(), e);
+        } catch (Exception e) {
+            log.error("处理记录ID={}失败: {}", entry.getId(), e.getMessage(), e);
+        } finally {
+            if (htmlEntry != null) {
+                htmlEntry.setDocument(null);    // 尽早释放DOM和正文
+                htmlEntry.setText(null);
             }
+            linkRecordExe.execute(htmlEntry != null ? htmlEntry : entry, content);
         }
-        return startIndex + processed;
-    }
-
-    private BaseEntry of(DocInfo docInfo) {
-        BaseEntry entry = new BaseEntry();
-        entry.setId(docInfo.getId());
-        entry.setUrl(docInfo.getUrl());
-        return entry;
     }
 }
-
@@ -7,7 +7,8 @@ package cn.kong.engine.processor.collect.entity;
  */
 public class BaseEntry {
     private Long id;             // 网页编号
-    private String url;          // 网页URL
+    private String url;          // 网页URL，已规范化
+    private long fingerprint;    // 规范化URL的64位指纹，0表示未计算
 
     public BaseEntry() {
     }
@@ -17,6 +18,12 @@ public class BaseEntry {
         this.url = url;
     }
 
+    public BaseEntry(Long id, String url, long fingerprint) {
+        this.id = id;
+        this.url = url;
+        this.fingerprint = fingerprint;
+    }
+
     public Long getId() {
         return id;
     }
@@ -32,4 +39,12 @@ public class BaseEntry {
     public void setUrl(String url) {
         this.url = url;
     }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(long fingerprint) {
+        this.fingerprint = fingerprint;
+    }
 }
@@ -1,5 +1,7 @@
 package cn.kong.engine.processor.collect.entity;
 
+import org.jsoup.nodes.Document;
+
 /**
  * @author gzkon
  * @description: HTML网页实体类
@@ -9,6 +11,16 @@ public class HtmlEntry extends BaseEntry {
 
     private String title;
     private String html;
+    private byte[] body;            // 原始响应字节，抓取时直接使用，不再转换为字符串
+    private String charset;         // 响应头中声明的编码，可能为空
+    private Integer statusCode;     // HTTP状态码
+    private String contentType;     // 响应内容类型
+    private Integer contentLength;  // 内容长度(字节)
+    private boolean stored;         // 内容是否已写入文件
+    private Document document;      // 解析后的DOM，由HtmlParseExe生成，后续执行器共用
+    private String text;            // 页面正文，第一次使用时从DOM提取，后续执行器共用
+    private Long simhash;           // 正文的SimHash，内容太少或未启用检测时为空
+    private Long duplicateOf;       // 近似重复时首次收录的文档ID，重复的页面不写入文件
 
     public HtmlEntry() {
     }
@@ -38,4 +50,91 @@ public class HtmlEntry extends BaseEntry {
     public void setHtml(String html) {
         this.html = html;
     }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public void setBody(byte[] body) {
+        this.body = body;
+    }
+
+    public String getCharset() {
+        return charset;
+    }
+
+    public void setCharset(String charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * 是否有页面内容，原始字节和字符串任一非空即可
+     */
+    public boolean hasContent() {
+        return (body != null && body.length > 0) || (html != null && !html.isEmpty());
+    }
+
+    public Integer getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(Integer statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public Integer getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(Integer contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    public boolean isStored() {
+        return stored;
+    }
+
+    public void setStored(boolean stored) {
+        this.stored = stored;
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    public void setDocument(Document document) {
+        this.document = document;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public Long getSimhash() {
+        return simhash;
+    }
+
+    public void setSimhash(Long simhash) {
+        this.simhash = simhash;
+    }
+
+    public Long getDuplicateOf() {
+        return duplicateOf;
+    }
+
+    public void setDuplicateOf(Long duplicateOf) {
+        this.duplicateOf = duplicateOf;
+    }
 }
@@ -0,0 +1,85 @@
+package cn.kong.engine.processor.collect.executor;
+
+import cn.kong.engine.content.CrawlerContent;
+import cn.kong.engine.processor.collect.entity.HtmlEntry;
+import com.google.common.base.Strings;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+
+/**
+ * @author gzkon
+ * @description: HTML解析执行器，每个页面只解析一次，解析结果挂在HtmlEntry上供后续执行器共用
+ * @date 2026/10/18 11:20
+ */
+@Service
+public class HtmlParseExe implements BaseExecutor<HtmlEntry> {
+
+    private static final String NODE_NAME = "HtmlParse";
+
+    @Override
+    public void execute(HtmlEntry entry, CrawlerContent content) {
+        if (Objects.isNull(entry)) {
+            entry = (HtmlEntry) content.getNodeData("Request");
+        }
+        if (Objects.isNull(entry) || Objects.nonNull(entry.getDocument())) {
+            return;
+        }
+        parse(entry);
+    }
+
+    /**
+     * 解析页面并记录标题，以页面URL作为baseUri，保证相对链接可以转换为绝对地址
+     * 有原始字节时直接按流解析，编码取响应头声明的charset，未声明时由Jsoup根据BOM和meta标签识别
+     *
+     * @return 解析后的文档，页面内容为空时返回null
+     */
+    public static Document parse(HtmlEntry entry) {
+        if (Objects.nonNull(entry.getDocument())) {
+            return entry.getDocument();
+        }
+        if (!entry.hasContent()) {
+            return null;
+        }
+        String baseUri = Strings.nullToEmpty(entry.getUrl());
+        Document doc;
+        if (entry.getBody() != null) {
+            try {
+                doc = Jsoup.parse(new ByteArrayInputStream(entry.getBody()), entry.getCharset(), baseUri);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            doc = Jsoup.parse(entry.getHtml(), baseUri);
+        }
+        entry.setDocument(doc);
+        entry.setTitle(doc.title());
+        return doc;
+    }
+
+    /**
+     * 页面正文，只提取一次，页面内容为空时返回null
+     */
+    public static String text(HtmlEntry entry) {
+        if (entry.getText() != null) {
+            return entry.getText();
+        }
+        Document document = parse(entry);
+        if (document == null) {
+            return null;
+        }
+        String text = document.body() != null ? document.body().text() : document.text();
+        entry.setText(text);
+        return text;
+    }
+
+    @Override
+    public String nodeName() {
+        return NODE_NAME;
+    }
+}
@@ -1,28 +1,24 @@
 package cn.kong.engine.processor.collect.executor;
 
-import cn.kong.engine.common.Constants;
 import cn.kong.engine.content.CrawlerContent;
-import cn.kong.engine.model.DocInfo;
 import cn.kong.engine.processor.collect.entity.HtmlEntry;
-import cn.kong.engine.service.SQLiteService;
-import com.google.common.base.Strings;
+import cn.kong.engine.service.IndexService;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
 
 
 /**
  * @author gzkon
- * @description: HTML内容写入执行器
+ * @description: HTML内容写入执行器，写入成功后把页面加入内存索引段，刷新后即可检索
+ * 等待写入线程确认后才标记 stored，doc_info 中 stored = 1 的页面所在的数据块一定已经刷新到段文件，
+ * 刷新只进入操作系统缓存，按 force-interval 落盘
  * @date 2025/6/22 12:19
  */
 @Slf4j
@@ -30,90 +26,57 @@ import java.util.Objects;
 public class HtmlWritingExe implements BaseExecutor<HtmlEntry> {
 
     private static final String NODE_NAME = "HtmlWriting";
-    private final SQLiteService sqLiteService;
+
+    private final IndexService indexService;
 
     @Autowired
-    public HtmlWritingExe(SQLiteService sqLiteService) {
-        this.sqLiteService = sqLiteService;
+    public HtmlWritingExe(IndexService indexService) {
+        this.indexService = indexService;
     }
 
-
     @Override
     public void execute(HtmlEntry entry, CrawlerContent content) {
         if (Objects.isNull(entry)) {
             entry = (HtmlEntry) content.getNodeData("Request");
         }
-        String html = entry.getHtml();
-        if (Strings.isNullOrEmpty(html)) {
+        if (Objects.isNull(entry) || !entry.hasContent()) {
+            return;
+        }
+        // 近似重复的页面不存储也不索引，只在 doc_info 中记录 duplicate_of
+        if (entry.getDuplicateOf() != null) {
+            entry.setStored(false);
             return;
         }
 
-        int length = entry.getHtml().getBytes(StandardCharsets.UTF_8).length;
+        // 优先写入抓取到的原始字节，避免再做一次编码转换
+        byte[] body = entry.getBody() != null ? entry.getBody() : entry.getHtml().getBytes(StandardCharsets.UTF_8);
+        int length = body.length;
+        entry.setContentLength(length);
+        // 标题由HtmlParseExe解析时记录，未经过解析阶段时在这里补充解析
+        Document document = HtmlParseExe.parse(entry);
+        long docId = entry.getId();
+        String title = entry.getTitle();
+        String text = document != null ? HtmlParseExe.text(entry) : null;
+
+        // 刷新到段文件后才加入内存索引段，回调在写入线程中、段文件封存之前执行，
+        // 文件封存后建索引时一定能找到内存中的同一文档并删除
+        Runnable onWritten = text == null ? null : () -> indexService.addRealtimeDocument(docId, title, text);
         try {
-            Document doc = Jsoup.parse(html);
-            entry.setTitle(doc.title());
-
-            byte[] recordBytes = buildRecordBytes(entry, length);
-
-            BufferedOutputStream outputStream = content.getOutputStream();
-            long maxFileSize = content.getMaxFileSize();
-            long currentFileSize = content.getCurrentFileSize();
-
-            // 检查文件大小
-            if (currentFileSize + recordBytes.length > maxFileSize) {
-                content.openNewFile();
-            }
-
-            outputStream.write(recordBytes);
-            outputStream.flush();
-            currentFileSize += recordBytes.length;
-            content.setCurrentFileSize(currentFileSize);
-
-            sqLiteService.update(buildDocInfo(entry, length, true));
-
-        } catch (IOException e) {
-            sqLiteService.update(buildDocInfo(entry, length, false));
-            throw new RuntimeException("文件写入失败: " + entry.getId(), e);
-        } finally {
-            // 确保在执行完毕后清理数据
-            content.clearNodeData();
+            content.appendRecord(docId, entry.getUrl(), body, onWritten).get();
+            entry.setStored(true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            entry.setStored(false);
+            throw new RuntimeException("等待文件写入时被中断: " + docId, e);
+        } catch (IOException | ExecutionException e) {
+            entry.setStored(false);
+            throw new RuntimeException("文件写入失败: " + docId, e);
         }
     }
 
 
-    private byte[] buildRecordBytes(HtmlEntry entry, int length) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-
-        // 写入文档ID
-        buffer.write(("doc_" + entry.getId()).getBytes(StandardCharsets.UTF_8));
-        buffer.write(Constants.FIELD_SEPARATOR);
-
-        // 写入文件大小
-        buffer.write(length);
-        buffer.write(Constants.FIELD_SEPARATOR);
-
-        // 写入HTML内容
-        byte[] htmlBytes = entry.getHtml().getBytes(StandardCharsets.UTF_8);
-        buffer.write(htmlBytes);
-
-        // 写入记录结束符
-        buffer.write(Constants.RECORD_SEPARATOR);
-
-        return buffer.toByteArray();
-    }
-
     @Override
     public String nodeName() {
         return NODE_NAME;
     }
-
-    private DocInfo buildDocInfo(HtmlEntry entry, int length, boolean stored) {
-        DocInfo docInfo = new DocInfo();
-        docInfo.setId(entry.getId());
-        docInfo.setTitle(entry.getTitle());
-        docInfo.setContentLength(length);
-        docInfo.setStored(stored);
-        docInfo.setUpdateTime(LocalDateTime.now());
-        return docInfo;
-    }
 }
@@ -3,18 +3,20 @@ package cn.kong.engine.processor.collect.executor;
 import cn.kong.engine.content.CrawlerContent;
 import cn.kong.engine.processor.collect.entity.BaseEntry;
 import cn.kong.engine.processor.collect.entity.HtmlEntry;
-import com.google.common.base.Strings;
+import cn.kong.engine.processor.collect.frontier.HostFrontier;
+import cn.kong.engine.store.UrlIdMap;
+import cn.kong.engine.utils.ScalableBloomFilter;
+import cn.kong.engine.utils.UrlCanonicalizer;
 import com.google.common.collect.Iterables;
-import com.google.common.hash.BloomFilter;
-import org.jsoup.Jsoup;
+import lombok.extern.slf4j.Slf4j;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -22,6 +24,7 @@ import java.util.concurrent.atomic.AtomicLong;
  * @description: 链接提取执行器
  * @date 2025/6/22 12:24
  */
+@Slf4j
 @Service
 public class LinkExtractExe implements BaseExecutor<HtmlEntry> {
 
@@ -29,45 +32,61 @@ public class LinkExtractExe implements BaseExecutor<HtmlEntry> {
 
     private static final List<String> SKIP_EXTENSIONS = List.of(".pdf", ".doc", ".jpg", ".png", ".zip", ".exe", ".rar", ".apk");
 
+    private final UrlCanonicalizer canonicalizer;
+
+    @Autowired
+    public LinkExtractExe(UrlCanonicalizer canonicalizer) {
+        this.canonicalizer = canonicalizer;
+    }
+
     //@SuppressWarnings("all")
     @Override
     public void execute(HtmlEntry entry, CrawlerContent content) {
         if (Objects.isNull(entry)) {
             entry = (HtmlEntry) content.getNodeData("Request");
         }
-        String html = entry.getHtml();
-        if (Strings.isNullOrEmpty(html)) {
+        if (Objects.isNull(entry) || !entry.hasContent()) {
             return;
         }
 
         try {
-            Document doc = Jsoup.parse(html);
+            Document doc = HtmlParseExe.parse(entry);
             Elements links = doc.select("a[href]");
             if (Iterables.isEmpty(links)) {
                 return;
             }
 
-            BlockingQueue<BaseEntry> urlQueue = content.getUrlQueue();
-            BloomFilter<CharSequence> bloomFilter = content.getBloomFilter();
+            HostFrontier frontier = content.getFrontier();
+            UrlIdMap urlIdMap = content.getUrlIdMap();
+            ScalableBloomFilter bloomFilter = content.getBloomFilter();
             AtomicLong docId = content.getDocId();
 
             for (Element link : links) {
-                String url = link.absUrl("href");
-                if (isHtmlUrl(url) && url.startsWith("http")) {
-                    // 过滤掉重复的URL
-                    synchronized (bloomFilter) {
-                        if (!bloomFilter.mightContain(url)) {
-                            long id = docId.incrementAndGet();
-                            urlQueue.add(new BaseEntry(id, url));
-                            bloomFilter.put(url);
-                        }
+                // 规范化后再去重，大小写、片段、参数顺序和跟踪参数不同的链接视为同一页面
+                String url = canonicalizer.canonicalize(link.absUrl("href"));
+                if (url == null || !isHtmlUrl(url)) {
+                    continue;
+                }
+                long fingerprint = UrlCanonicalizer.fingerprint(url);
+                if (urlIdMap != null) {
+                    // 精确去重，指纹不存在时才分配docId，不需要加锁
+                    long id = urlIdMap.addIfAbsent(fingerprint, docId::incrementAndGet);
+                    if (id != UrlIdMap.NOT_FOUND) {
+                        frontier.offer(new BaseEntry(id, url, fingerprint));
+                    }
+                } else {
+                    // 过滤掉重复的URL，先记入过滤器再进入 frontier，检查点依赖这个顺序
+                    if (bloomFilter.putIfAbsent(fingerprint)) {
+                        frontier.offer(new BaseEntry(docId.incrementAndGet(), url, fingerprint));
                     }
                 }
             }
-        } catch (Exception ignored) {
-        } finally {
-            // 手动清理ThreadLocal
-            content.clearNodeData();
+        } catch (UrlIdMap.MapFullException e) {
+            // 映射表已满时之后的链接都无法加入，停止任务，已在 frontier 中的URL保存在检查点中
+            log.error("URL映射已满，停止爬虫任务: taskId={}, {}", content.getTask().getTaskId(), e.getMessage());
+            content.setRunning(false);
+        } catch (Exception e) {
+            log.debug("提取链接失败，跳过: {}, {}", entry.getUrl(), e.getMessage());
         }
     }
 
@@ -3,27 +3,26 @@ package cn.kong.engine.processor.collect.executor;
 import cn.kong.engine.content.CrawlerContent;
 import cn.kong.engine.processor.collect.entity.BaseEntry;
 import cn.kong.engine.model.DocInfo;
+import cn.kong.engine.processor.collect.entity.HtmlEntry;
 import cn.kong.engine.service.SQLiteService;
+import cn.kong.engine.store.UrlIdMap;
+import okhttp3.HttpUrl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
 
 /**
  * @author gzkon
- * @description: 链接记录执行器
+ * @description: 链接记录执行器，页面抓取并处理完成后写入一条 doc_info 记录，发现链接时不写入
  * @date 2025/6/22 12:31
  */
 @Service
 public class LinkRecordExe implements BaseExecutor<BaseEntry> {
 
     private static final String NODE_NAME = "LinkRecord";
-    private static final int BATCH_SIZE = 500; // 可根据需要调整
 
-    private final List<DocInfo> buffer = new ArrayList<>();
     private final SQLiteService sqliteService;
 
     @Autowired
@@ -31,14 +30,19 @@ public class LinkRecordExe implements BaseExecutor<BaseEntry> {
         this.sqliteService = sqliteService;
     }
 
+    /**
+     * 记录一个处理完成的链接，抓取线程并发调用，由 SQLiteService 的写入线程批量写库
+     */
     @Override
-    public void execute(BaseEntry baseEntry, CrawlerContent content) {
-        if (Objects.isNull(baseEntry)) {
+    public void execute(BaseEntry entry, CrawlerContent content) {
+        if (Objects.isNull(entry)) {
             return;
         }
-        buffer.add(of(baseEntry));
-        if (buffer.size() >= BATCH_SIZE) {
-            flushBuffer();
+        sqliteService.insertAsync(of(entry));
+        // URL映射中标记为已抓取，之后作为种子时跳过
+        UrlIdMap urlIdMap = content == null ? null : content.getUrlIdMap();
+        if (urlIdMap != null && entry.getFingerprint() != 0) {
+            urlIdMap.markFetched(entry.getFingerprint());
         }
     }
 
@@ -47,29 +51,40 @@ public class LinkRecordExe implements BaseExecutor<BaseEntry> {
         return NODE_NAME;
     }
 
-    private void flushBuffer() {
-        sqliteService.insertBatch(buffer);
-        buffer.clear();
-    }
-
     /**
-     * 程序结束前调用，确保剩余未插入的记录也写入数据库
+     * 任务结束前调用，等待已提交的记录全部写入数据库
      */
     public void flushRemaining() {
-        if (!buffer.isEmpty()) {
-            flushBuffer();
-        }
+        sqliteService.flush();
     }
 
-    public DocInfo of(BaseEntry BaseEntry) {
-        if (Objects.isNull(BaseEntry)) {
+    public DocInfo of(BaseEntry entry) {
+        if (Objects.isNull(entry)) {
             return null;
         }
         DocInfo docInfo = new DocInfo();
-        docInfo.setId(BaseEntry.getId());
-        docInfo.setUrl(BaseEntry.getUrl());
+        docInfo.setId(entry.getId());
+        docInfo.setUrl(entry.getUrl());
+        docInfo.setUrlFp(entry.getFingerprint() != 0 ? entry.getFingerprint() : null);
         docInfo.setStored(false);
         docInfo.setCreateTime(LocalDateTime.now());
+
+        HttpUrl httpUrl = entry.getUrl() == null ? null : HttpUrl.parse(entry.getUrl());
+        if (httpUrl != null) {
+            docInfo.setDomain(httpUrl.host());
+        }
+        // 已抓取的页面同时记录抓取结果
+        if (entry instanceof HtmlEntry) {
+            HtmlEntry htmlEntry = (HtmlEntry) entry;
+            docInfo.setTitle(htmlEntry.getTitle());
+            docInfo.setStatusCode(htmlEntry.getStatusCode());
+            docInfo.setContentType(htmlEntry.getContentType());
+            docInfo.setContentLength(htmlEntry.getContentLength());
+            docInfo.setStored(htmlEntry.isStored());
+            docInfo.setSimhash(htmlEntry.getSimhash());
+            docInfo.setDuplicateOf(htmlEntry.getDuplicateOf());
+            docInfo.setUpdateTime(docInfo.getCreateTime());
+        }
         return docInfo;
     }
 }
@@ -1,19 +1,27 @@
 package cn.kong.engine.processor.collect.executor;
 
+import cn.kong.engine.config.CrawlerConfig;
 import cn.kong.engine.content.CrawlerContent;
 import cn.kong.engine.processor.collect.entity.BaseEntry;
 import cn.kong.engine.processor.collect.entity.HtmlEntry;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author gzkon
@@ -39,9 +47,12 @@ public class RequestExe implements BaseExecutor<BaseEntry> {
 
     private final OkHttpClient httpClient;
 
+    private final long maxBodySize;
+
     @Autowired
-    public RequestExe(OkHttpClient httpClient) {
+    public RequestExe(OkHttpClient httpClient, CrawlerConfig.HttpPoolProperties httpProperties) {
         this.httpClient = httpClient;
+        this.maxBodySize = httpProperties.getMaxBodySize() > 0 ? httpProperties.getMaxBodySize() : Long.MAX_VALUE - 1;
     }
 
 
@@ -52,12 +63,41 @@ public class RequestExe implements BaseExecutor<BaseEntry> {
         log.info("Fetching {}", url);
 
         try (Response response = httpClient.newCall(request).execute()) {
-            handleResponse(response, content, entry);
+            content.putNodeData(NODE_NAME, handleResponse(response, entry));
         } catch (IOException e) {
             log.error("Error fetching {}: {}", url, e.getMessage());
         }
     }
 
+    /**
+     * 异步请求，不占用调用线程
+     * 返回的future在OkHttp回调线程中完成，网络异常时以null完成
+     */
+    public CompletableFuture<HtmlEntry> executeAsync(BaseEntry entry, CrawlerContent content) {
+        String url = entry.getUrl();
+        Request request = buildRequest(url, content);
+        log.info("Fetching async {}", url);
+
+        CompletableFuture<HtmlEntry> future = new CompletableFuture<>();
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                log.error("Error fetching {}: {}", url, e.getMessage());
+                future.complete(null);
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                try (response) {
+                    future.complete(handleResponse(response, entry));
+                } catch (Exception e) {
+                    future.complete(null);
+                }
+            }
+        });
+        return future;
+    }
+
     private Request buildRequest(String url, CrawlerContent content) {
         Request.Builder builder = new Request.Builder().url(url);
         builder.header("User-Agent", USER_AGENTS.get(RANDOM.nextInt(USER_AGENTS.size())));
@@ -71,23 +111,42 @@ public class RequestExe implements BaseExecutor<BaseEntry> {
         return builder.build();
     }
 
-    private void handleResponse(Response response, CrawlerContent content, BaseEntry entry) {
+    private HtmlEntry handleResponse(Response response, BaseEntry entry) {
         if (!response.isSuccessful()) {
             log.error("HTTP error: {} - {}", response.code(), response.message());
-            return;
+            // 失败的请求只记录状态码，不带内容
+            return buildHtmlEntry(null, entry, response);
         }
 
         ResponseBody body = response.body();
         if (body == null) {
             log.error("Empty response body");
-            return;
+            return buildHtmlEntry(null, entry, response);
+        }
+
+        // 声明的长度已超限时不读取响应体
+        if (body.contentLength() > maxBodySize) {
+            log.warn("Response body too large: {} bytes, url={}", body.contentLength(), entry.getUrl());
+            return buildHtmlEntry(null, entry, response);
         }
 
         try {
-            String html = body.string();
-            content.putNodeData(NODE_NAME, buildHtmlEntry(html, entry));
+            // 直接从OkHttp的缓冲区读出原始字节，不经过字符串解码，超过上限的响应丢弃内容
+            // 响应体完整读入内存而不是边读边写入段文件：之后的解析、链接提取和 SimHash 都需要整个页面，
+            // 是否存储要等近似重复判断之后才能决定；Okio 的缓冲区由多个分段组成，readByteArray 复制一次得到连续数组
+            BufferedSource source = body.source();
+            if (source.request(maxBodySize + 1)) {
+                log.warn("Response body exceeds {} bytes, url={}", maxBodySize, entry.getUrl());
+                return buildHtmlEntry(null, entry, response);
+            }
+            HtmlEntry htmlEntry = buildHtmlEntry(source.getBuffer().readByteArray(), entry, response);
+            MediaType mediaType = body.contentType();
+            Charset charset = mediaType != null ? mediaType.charset() : null;
+            htmlEntry.setCharset(charset != null ? charset.name() : null);
+            return htmlEntry;
         } catch (IOException e) {
             log.error("Error reading response body", e);
+            return buildHtmlEntry(null, entry, response);
         }
     }
 
@@ -97,11 +156,14 @@ public class RequestExe implements BaseExecutor<BaseEntry> {
         return NODE_NAME;
     }
 
-    private HtmlEntry buildHtmlEntry(String html, BaseEntry entry) {
+    private HtmlEntry buildHtmlEntry(byte[] body, BaseEntry entry, Response response) {
         HtmlEntry htmlEntry = new HtmlEntry();
         htmlEntry.setId(entry.getId());
         htmlEntry.setUrl(entry.getUrl());
-        htmlEntry.setHtml(html);
+        htmlEntry.setFingerprint(entry.getFingerprint());
+        htmlEntry.setBody(body);
+        htmlEntry.setStatusCode(response.code());
+        htmlEntry.setContentType(response.header("Content-Type"));
         return htmlEntry;
     }
 }
@@ -0,0 +1,100 @@
+package cn.kong.engine.processor.collect.executor;
+
+import cn.kong.engine.analysis.Analyzer;
+import cn.kong.engine.config.CrawlerConfig;
+import cn.kong.engine.content.CrawlerContent;
+import cn.kong.engine.processor.collect.entity.HtmlEntry;
+import cn.kong.engine.service.SQLiteService;
+import cn.kong.engine.store.SimHashIndex;
+import cn.kong.engine.utils.SimHash;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.nodes.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Objects;
+
+/**
+ * @author gzkon
+ * @description: 近似重复检测执行器，在写入内容之前计算正文的 SimHash 并查找近邻，
+ * 镜像站点、打印版页面、带会话参数的URL等内容相近的页面只存储和索引一次，
+ * 重复的页面不写入文件，在 doc_info 中记录 duplicate_of 指向首次收录的文档
+ * 检测时只查找，页面内容写入成功后才由 record 加入近邻索引，写入失败的页面不会成为其他页面的 duplicate_of
+ * 近邻索引只在内存中，启动时从 doc_info 中已存储文档的 simhash 重建
+ * @date 2026/10/18 18:30
+ */
+@Slf4j
+@Service
+public class SimHashExe implements BaseExecutor<HtmlEntry> {
+
+    private static final String NODE_NAME = "SimHash";
+
+    private final Analyzer analyzer;
+
+    private final CrawlerConfig.NearDupProperties properties;
+
+    private final SQLiteService sqliteService;
+
+    private final SimHashIndex index;
+
+    @Autowired
+    public SimHashExe(Analyzer analyzer, CrawlerConfig.NearDupProperties properties, SQLiteService sqliteService) {
+        this.analyzer = analyzer;
+        this.properties = properties;
+        this.sqliteService = sqliteService;
+        this.index = properties.isEnabled() ? new SimHashIndex(properties.getMaxDistance()) : null;
+    }
+
+    @PostConstruct
+    public void load() {
+        if (index == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        sqliteService.forEachSimHash(index::add);
+        log.info("SimHash index loaded: size={}, tables={}, maxDistance={}, 耗时 {} ms",
+                index.size(), index.tableCount(), properties.getMaxDistance(), System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public void execute(HtmlEntry entry, CrawlerContent content) {
+        if (Objects.isNull(entry)) {
+            entry = (HtmlEntry) content.getNodeData("Request");
+        }
+        if (index == null || Objects.isNull(entry) || !entry.hasContent()) {
+            return;
+        }
+        Document document = HtmlParseExe.parse(entry);
+        if (document == null) {
+            return;
+        }
+        String text = HtmlParseExe.text(entry);
+        SimHash.Result result = SimHash.compute(text, analyzer, properties.getShingleSize(), properties.getMinShingles());
+        if (!result.isValid()) {
+            return;
+        }
+        entry.setSimhash(result.getHash());
+        long original = index.find(result.getHash());
+        if (original != SimHashIndex.NOT_FOUND) {
+            entry.setDuplicateOf(original);
+            log.debug("近似重复页面: docId={}, url={}, duplicateOf={}", entry.getId(), entry.getUrl(), original);
+        }
+    }
+
+    /**
+     * 页面内容写入成功后加入近邻索引，之后抓到的相近页面记为它的重复
+     */
+    public void record(HtmlEntry entry) {
+        if (index == null || entry == null || !entry.isStored()
+                || entry.getSimhash() == null || entry.getDuplicateOf() != null) {
+            return;
+        }
+        index.add(entry.getSimhash(), entry.getId());
+    }
+
+    @Override
+    public String nodeName() {
+        return NODE_NAME;
+    }
+}
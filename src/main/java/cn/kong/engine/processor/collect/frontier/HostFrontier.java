@@ -0,0 +1,213 @@
+package cn.kong.engine.processor.collect.frontier;
+
+import cn.kong.engine.processor.collect.entity.BaseEntry;
+import okhttp3.HttpUrl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @author gzkon
+ * @description: 按host分区的URL调度队列
+ * 每个host维护一个独立的子队列，所有非空host按"下次可抓取时间"放入小顶堆；
+ * 取URL时只从已就绪的host中取，取完后该host的就绪时间顺延hostDelay，
+ * 就绪时间相同的host按入堆顺序轮询，避免单个热门站点占满所有工作线程。
+ * 取出的URL在调用 done 之前仍记为未完成，检查点快照中包含这些URL，恢复后重新抓取。
+ * @date 2026/10/18 10:05
+ */
+public class HostFrontier {
+
+    private static final int IDLE_PURGE_THRESHOLD = 1024;   // 空闲host超过该数量时清理一次
+
+    private final long hostDelayNanos;  // 同一host两次抓取之间的最小间隔
+
+    private final Map<String, HostQueue> hostQueues = new HashMap<>();
+
+    private final PriorityQueue<HostQueue> readyHeap = new PriorityQueue<>((a, b) -> {
+        long diff = a.readyTime - b.readyTime;
+        return diff != 0 ? Long.signum(diff) : Long.compare(a.sequence, b.sequence);
+    });
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition available = lock.newCondition();
+
+    private final Set<BaseEntry> leased = new HashSet<>();  // 已取出、尚未处理完成的URL
+
+    private long size = 0;  // 所有子队列中的URL总数
+
+    private long sequence = 0;  // 入堆序号，保证就绪时间相同的host轮询出队
+
+    public HostFrontier(long hostDelay, TimeUnit unit) {
+        this.hostDelayNanos = unit.toNanos(Math.max(0, hostDelay));
+    }
+
+    /**
+     * 添加一个待抓取的URL
+     */
+    public void offer(BaseEntry entry) {
+        String host = hostOf(entry.getUrl());
+        lock.lock();
+        try {
+            HostQueue queue = hostQueues.computeIfAbsent(host, key -> new HostQueue());
+            queue.entries.addLast(entry);
+            size++;
+            if (!queue.scheduled) {
+                schedule(queue);
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取出一个已就绪host的URL，在超时时间内没有就绪的host时返回null
+     */
+    public BaseEntry poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                HostQueue head = readyHeap.peek();
+                if (head == null) {
+                    if (nanos <= 0) {
+                        return null;
+                    }
+                    nanos = available.awaitNanos(nanos);
+                    continue;
+                }
+
+                long now = System.nanoTime();
+                long delay = head.readyTime - now;
+                if (delay <= 0) {
+                    readyHeap.poll();
+                    head.scheduled = false;
+                    BaseEntry entry = head.entries.pollFirst();
+                    size--;
+                    leased.add(entry);
+                    head.readyTime = now + hostDelayNanos;
+                    if (!head.entries.isEmpty()) {
+                        schedule(head);
+                    } else {
+                        purgeIdleHosts(now);
+                    }
+                    if (!readyHeap.isEmpty()) {
+                        available.signal();
+                    }
+                    return entry;
+                }
+
+                if (nanos <= 0) {
+                    return null;
+                }
+                // 最多等到堆顶host就绪，期间有新host加入会被唤醒
+                long waitNanos = Math.min(nanos, delay);
+                long remaining = available.awaitNanos(waitNanos);
+                nanos -= waitNanos - remaining;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 标记取出的URL已处理完成
+     */
+    public void done(BaseEntry entry) {
+        lock.lock();
+        try {
+            leased.remove(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 未完成的URL快照，已取出未完成的在前，其后按host依次列出各子队列，只在复制引用期间持有锁
+     */
+    public List<BaseEntry> snapshot() {
+        lock.lock();
+        try {
+            List<BaseEntry> entries = new ArrayList<>((int) Math.min(Integer.MAX_VALUE - 8, size + leased.size()));
+            entries.addAll(leased);
+            for (HostQueue queue : hostQueues.values()) {
+                entries.addAll(queue.entries);
+            }
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return size == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int hostCount() {
+        lock.lock();
+        try {
+            return readyHeap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void schedule(HostQueue queue) {
+        queue.scheduled = true;
+        queue.sequence = sequence++;
+        readyHeap.add(queue);
+    }
+
+    /**
+     * 子队列为空的host仍保留就绪时间以维持礼貌间隔，数量过多时清理已过间隔期的host
+     */
+    private void purgeIdleHosts(long now) {
+        if (hostQueues.size() - readyHeap.size() < IDLE_PURGE_THRESHOLD) {
+            return;
+        }
+        Iterator<HostQueue> iterator = hostQueues.values().iterator();
+        while (iterator.hasNext()) {
+            HostQueue queue = iterator.next();
+            if (!queue.scheduled && queue.readyTime - now <= 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String hostOf(String url) {
+        HttpUrl httpUrl = url == null ? null : HttpUrl.parse(url);
+        return httpUrl == null ? "" : httpUrl.host();
+    }
+
+    private static class HostQueue {
+        private final ArrayDeque<BaseEntry> entries = new ArrayDeque<>();
+        private long readyTime = System.nanoTime();
+        private long sequence;
+        private boolean scheduled;
+    }
+}
@@ -0,0 +1,43 @@
+package cn.kong.engine.search;
+
+/**
+ * @author gzkon
+ * @description: BM25 打分
+ * score = idf * tf * (k1 + 1) / (tf + k1 * (1 - b + b * dl / avgdl))
+ * 标题中的词在建索引时已按权重计入词频和文档长度
+ * @date 2026/10/18 19:30
+ */
+public class Bm25 {
+
+    private final float k1;
+
+    private final float b;
+
+    public Bm25(float k1, float b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /**
+     * 逆文档频率，总是为正
+     *
+     * @param docFreq  包含该词的文档数
+     * @param docCount 文档总数
+     */
+    public float idf(long docFreq, long docCount) {
+        return (float) Math.log(1 + (docCount - docFreq + 0.5D) / (docFreq + 0.5D));
+    }
+
+    /**
+     * 单个词的得分
+     *
+     * @param weight    词的权重，即 idf 乘以查询中出现的次数
+     * @param tf        词频
+     * @param docLength 文档长度
+     * @param avgLength 平均文档长度
+     */
+    public float score(float weight, int tf, int docLength, float avgLength) {
+        float norm = k1 * (1 - b + b * docLength / avgLength);
+        return weight * tf * (k1 + 1) / (tf + norm);
+    }
+}
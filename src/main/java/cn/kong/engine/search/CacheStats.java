@@ -0,0 +1,38 @@
+package cn.kong.engine.search;
+
+import lombok.Getter;
+
+/**
+ * @author gzkon
+ * @description: 缓存统计
+ * @date 2026/10/18 20:25
+ */
+@Getter
+public class CacheStats {
+
+    private final int size;
+
+    private final int maximumSize;
+
+    private final long hits;
+
+    private final long misses;
+
+    private final long evictions;       // 被淘汰的已有条目数
+
+    private final long rejections;      // 准入时被拒绝的新条目数
+
+    public CacheStats(int size, int maximumSize, long hits, long misses, long evictions, long rejections) {
+        this.size = size;
+        this.maximumSize = maximumSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.rejections = rejections;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
@@ -0,0 +1,85 @@
+package cn.kong.engine.search;
+
+/**
+ * @author gzkon
+ * @description: 访问频率估计，4行 count-min sketch，每个计数器4位，最大计为15
+ * 累计记录次数达到采样周期后所有计数器减半，使频率随时间衰减，旧的热点可以被淘汰
+ * @date 2026/10/18 20:20
+ */
+public class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;     // 每个long包含16个4位计数器
+
+    private final int mask;
+
+    private final int sampleSize;
+
+    private int additions = 0;
+
+    /**
+     * @param maximumSize 缓存容量，决定计数器数量和衰减周期
+     */
+    public FrequencySketch(int maximumSize) {
+        int length = Integer.highestOneBit(Math.max(16, maximumSize - 1)) << 1;
+        this.table = new long[length];
+        this.mask = length - 1;
+        this.sampleSize = Math.max(10, 10 * maximumSize);
+    }
+
+    /**
+     * 记录一次访问
+     */
+    public void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long h = rehash(hash, i);
+            int index = (int) h & mask;
+            int offset = (int) ((h >>> 32) & 15) << 2;
+            if (((table[index] >>> offset) & 15L) < 15) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * 估计的访问次数，取各行计数器的最小值
+     */
+    public int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = 15;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long h = rehash(hash, i);
+            int index = (int) h & mask;
+            int offset = (int) ((h >>> 32) & 15) << 2;
+            frequency = Math.min(frequency, (int) ((table[index] >>> offset) & 15L));
+        }
+        return frequency;
+    }
+
+    // 所有计数器减半
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+
+    private static long rehash(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        return h ^ (h >>> 29);
+    }
+}
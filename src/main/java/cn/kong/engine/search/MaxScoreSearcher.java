@@ -0,0 +1,147 @@
+package cn.kong.engine.search;
+
+import cn.kong.engine.index.IndexSegment;
+import cn.kong.engine.index.PostingsIterator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * @author gzkon
+ * @description: 基于 MaxScore 动态剪枝的 BM25 检索，查询词之间为“或”的关系
+ * 每个查询词按跳表中各块的最大词频和最短文档长度算出得分上界，按上界从小到大排列；
+ * 上界之和不超过当前第 k 名得分的前缀为非必要词，只出现非必要词的文档不可能进入结果，
+ * 因此只沿必要词的倒排表遍历，非必要词在候选文档上按需 advance，累计得分加剩余上界不足时提前放弃；
+ * 必要词的数据块上界加其他词的上界仍不超过阈值时，整块跳过
+ * @date 2026/10/18 19:50
+ */
+public class MaxScoreSearcher {
+
+    // 上界放大一点，避免浮点累加顺序不同导致误剪枝
+    private static final float BOUND_SLACK = 1.0001f;
+
+    private final Bm25 bm25;
+
+    public MaxScoreSearcher(Bm25 bm25) {
+        this.bm25 = bm25;
+    }
+
+    /**
+     * 在一个索引段上检索，结果写入 collector，多个索引段可以共用同一个 collector
+     *
+     * @param segment   索引段
+     * @param terms     查询词，权重按全局统计计算
+     * @param avgLength 全局平均文档长度
+     * @param collector 结果收集器
+     */
+    public void search(IndexSegment segment, List<WeightedTerm> terms, float avgLength, TopKCollector collector) {
+        List<Scorer> list = new ArrayList<>(terms.size());
+        for (WeightedTerm term : terms) {
+            PostingsIterator postings = segment.postings(term.getTerm());
+            if (postings != null) {
+                list.add(new Scorer(postings, term.getWeight(), avgLength));
+            }
+        }
+        if (list.isEmpty()) {
+            return;
+        }
+        list.sort(Comparator.comparingDouble(s -> s.maxScore));
+        Scorer[] scorers = list.toArray(new Scorer[0]);
+        int n = scorers.length;
+
+        // bounds[i] 为前 i + 1 个词的上界之和
+        float[] bounds = new float[n];
+        float sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += scorers[i].maxScore;
+            bounds[i] = sum;
+            scorers[i].postings.nextDoc();
+        }
+
+        float threshold = collector.threshold();
+        int firstEssential = partition(bounds, threshold, 0);
+        while (firstEssential < n) {
+            // 必要词中最小的文档
+            int doc = PostingsIterator.NO_MORE_DOCS;
+            for (int i = firstEssential; i < n; i++) {
+                doc = Math.min(doc, skipBlocks(scorers[i], bounds[n - 1] - scorers[i].maxScore, threshold));
+            }
+            if (doc == PostingsIterator.NO_MORE_DOCS) {
+                break;
+            }
+
+            int docLength = segment.docLength(doc);
+            float score = 0;
+            for (int i = firstEssential; i < n; i++) {
+                PostingsIterator postings = scorers[i].postings;
+                if (postings.doc() == doc) {
+                    score += bm25.score(scorers[i].weight, postings.freq(), docLength, avgLength);
+                    postings.nextDoc();
+                }
+            }
+            boolean competitive = true;
+            for (int i = firstEssential - 1; i >= 0; i--) {
+                if (score + bounds[i] <= threshold) {
+                    competitive = false;
+                    break;
+                }
+                PostingsIterator postings = scorers[i].postings;
+                if (postings.doc() < doc) {
+                    postings.advance(doc);
+                }
+                if (postings.doc() == doc) {
+                    score += bm25.score(scorers[i].weight, postings.freq(), docLength, avgLength);
+                }
+            }
+
+            if (competitive && collector.collect(segment.docId(doc), score)) {
+                float updated = collector.threshold();
+                if (updated > threshold) {
+                    threshold = updated;
+                    firstEssential = partition(bounds, threshold, firstEssential);
+                }
+            }
+        }
+    }
+
+    // 跳过块内文档即使包含其他所有词也无法超过阈值的数据块，返回跳过后的当前文档
+    private static int skipBlocks(Scorer scorer, float others, float threshold) {
+        PostingsIterator postings = scorer.postings;
+        int doc = postings.doc();
+        while (doc != PostingsIterator.NO_MORE_DOCS
+                && scorer.blockMaxScores[postings.block()] + others <= threshold) {
+            doc = postings.advance(postings.blockLastDoc(postings.block()) + 1);
+        }
+        return doc;
+    }
+
+    // 第一个上界之和超过阈值的下标，之前的都是非必要词
+    private static int partition(float[] bounds, float threshold, int from) {
+        int i = from;
+        while (i < bounds.length && bounds[i] <= threshold) {
+            i++;
+        }
+        return i;
+    }
+
+    private class Scorer {
+        private final PostingsIterator postings;
+        private final float weight;
+        private final float[] blockMaxScores;
+        private final float maxScore;
+
+        Scorer(PostingsIterator postings, float weight, float avgLength) {
+            this.postings = postings;
+            this.weight = weight;
+            this.blockMaxScores = new float[postings.blockCount()];
+            float max = 0;
+            for (int i = 0; i < blockMaxScores.length; i++) {
+                float score = bm25.score(weight, postings.blockMaxTf(i), postings.blockMinLength(i), avgLength);
+                blockMaxScores[i] = score * BOUND_SLACK;
+                max = Math.max(max, score);
+            }
+            this.maxScore = max * BOUND_SLACK;
+        }
+    }
+}
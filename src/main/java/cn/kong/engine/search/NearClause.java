@@ -0,0 +1,59 @@
+package cn.kong.engine.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author gzkon
+ * @description: 邻近子句 A NEAR/n B，两边各是一个短语，不分先后、互不重叠，中间相隔不超过 n 个位置
+ * @date 2026/10/18 23:45
+ */
+public class NearClause implements PositionalClause {
+
+    private final PhraseClause left;
+
+    private final PhraseClause right;
+
+    private final int distance;
+
+    public NearClause(PhraseClause left, PhraseClause right, int distance) {
+        this.left = left;
+        this.right = right;
+        this.distance = distance;
+    }
+
+    @Override
+    public List<String> terms() {
+        List<String> terms = new ArrayList<>(left.terms());
+        terms.addAll(right.terms());
+        return terms;
+    }
+
+    @Override
+    public boolean matches(TermPositions positions) {
+        int[] lefts = left.starts(positions, Integer.MAX_VALUE);
+        int[] rights = right.starts(positions, Integer.MAX_VALUE);
+        int leftSpan = left.span();
+        int rightSpan = right.span();
+        int from = 0;
+        for (int start : lefts) {
+            // 右边短语的起点落在 [start - rightSpan - distance, start + leftSpan + distance] 内，且不与左边重叠
+            int low = start - rightSpan - distance;
+            int high = start + leftSpan + distance;
+            while (from < rights.length && rights[from] < low) {
+                from++;
+            }
+            for (int i = from; i < rights.length && rights[i] <= high; i++) {
+                if (rights[i] + rightSpan <= start || rights[i] >= start + leftSpan) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return left + " NEAR/" + distance + " " + right;
+    }
+}
@@ -0,0 +1,62 @@
+package cn.kong.engine.search;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author gzkon
+ * @description: 解析后的查询，全部查询词及其出现次数用于打分，位置子句决定文档是否匹配
+ * 没有位置子句时查询词之间为“或”的关系
+ * @date 2026/10/18 23:50
+ */
+public class ParsedQuery {
+
+    private final Map<String, Integer> terms;
+
+    private final List<PositionalClause> clauses;
+
+    public ParsedQuery(Map<String, Integer> terms, List<PositionalClause> clauses) {
+        this.terms = Collections.unmodifiableMap(terms);
+        this.clauses = Collections.unmodifiableList(clauses);
+    }
+
+    /**
+     * 查询词 -> 在查询中出现的次数
+     */
+    public Map<String, Integer> terms() {
+        return terms;
+    }
+
+    public List<PositionalClause> clauses() {
+        return clauses;
+    }
+
+    /**
+     * 位置子句中必须出现的词，去重
+     */
+    public Set<String> requiredTerms() {
+        Set<String> required = new LinkedHashSet<>();
+        for (PositionalClause clause : clauses) {
+            required.addAll(clause.terms());
+        }
+        return required;
+    }
+
+    public boolean isEmpty() {
+        return terms.isEmpty();
+    }
+
+    /**
+     * 缓存键，切词结果和子句相同的查询共用
+     */
+    public String key() {
+        StringBuilder key = new StringBuilder(String.join(" ", terms.keySet()));
+        for (PositionalClause clause : clauses) {
+            key.append(' ').append(clause);
+        }
+        return key.toString();
+    }
+}
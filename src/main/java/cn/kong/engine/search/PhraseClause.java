@@ -0,0 +1,102 @@
+package cn.kong.engine.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author gzkon
+ * @description: 短语子句，各词按查询中的相对位置依次出现
+ * 从当前文档中出现次数最少的词出发推算短语起点，其他词的位置指针只前进不后退
+ * @date 2026/10/18 23:40
+ */
+public class PhraseClause implements PositionalClause {
+
+    private final String[] terms;
+
+    private final int[] offsets;    // 各词相对第一个词的位置
+
+    public PhraseClause(List<String> terms, int[] offsets) {
+        this.terms = terms.toArray(new String[0]);
+        this.offsets = offsets;
+    }
+
+    @Override
+    public List<String> terms() {
+        return Collections.unmodifiableList(Arrays.asList(terms));
+    }
+
+    /**
+     * 短语占用的位置数
+     */
+    public int span() {
+        return offsets[offsets.length - 1] + 1;
+    }
+
+    @Override
+    public boolean matches(TermPositions positions) {
+        return starts(positions, 1).length > 0;
+    }
+
+    /**
+     * 当前文档中短语的起点，升序
+     *
+     * @param limit 最多返回的个数
+     */
+    public int[] starts(TermPositions positions, int limit) {
+        int lead = 0;
+        for (int i = 1; i < terms.length; i++) {
+            if (positions.count(terms[i]) < positions.count(terms[lead])) {
+                lead = i;
+            }
+        }
+        int leadCount = positions.count(terms[lead]);
+        int[] leadPositions = positions.positions(terms[lead]);
+        int[] cursors = new int[terms.length];
+        int[] starts = new int[Math.min(limit, leadCount)];
+        int found = 0;
+        for (int j = 0; j < leadCount && found < starts.length; j++) {
+            int start = leadPositions[j] - offsets[lead];
+            if (start >= 0 && matchesAt(positions, start, lead, cursors)) {
+                starts[found++] = start;
+            }
+        }
+        return found == starts.length ? starts : Arrays.copyOf(starts, found);
+    }
+
+    // 除出发词外的各词是否都出现在 start + offset 处
+    private boolean matchesAt(TermPositions positions, int start, int lead, int[] cursors) {
+        for (int i = 0; i < terms.length; i++) {
+            if (i == lead) {
+                continue;
+            }
+            int target = start + offsets[i];
+            int count = positions.count(terms[i]);
+            int[] termPositions = positions.positions(terms[i]);
+            int cursor = cursors[i];
+            while (cursor < count && termPositions[cursor] < target) {
+                cursor++;
+            }
+            cursors[i] = cursor;
+            if (cursor == count || termPositions[cursor] != target) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < terms.length; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(terms[i]);
+            if (offsets[i] != i) {
+                builder.append('@').append(offsets[i]);
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
@@ -0,0 +1,159 @@
+package cn.kong.engine.search;
+
+import cn.kong.engine.index.IndexSegment;
+import cn.kong.engine.index.PostingsIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author gzkon
+ * @description: 带位置子句的检索，先按文档做必须词的交集，由文档数最少的词带头，其他词 advance 对齐；
+ * 所有词都出现的文档按全部查询词计算 BM25 得分，得分能进入结果时才读取位置检查子句，
+ * 位置按数据块延迟解码，只有真正检查的文档所在的块才会读取
+ * @date 2026/10/18 23:55
+ */
+public class PhraseSearcher {
+
+    private final Bm25 bm25;
+
+    public PhraseSearcher(Bm25 bm25) {
+        this.bm25 = bm25;
+    }
+
+    /**
+     * 在一个索引段上检索，结果写入 collector，多个索引段可以共用同一个 collector
+     *
+     * @param segment   索引段
+     * @param query     解析后的查询，至少有一个位置子句
+     * @param terms     查询词，权重按全局统计计算，必须包含所有必须词
+     * @param avgLength 全局平均文档长度
+     * @param collector 结果收集器
+     */
+    public void search(IndexSegment segment, ParsedQuery query, List<WeightedTerm> terms, float avgLength,
+                       TopKCollector collector) {
+        Set<String> required = query.requiredTerms();
+        Positions positions = new Positions();
+        List<TermScorer> requiredScorers = new ArrayList<>(required.size());
+        List<TermScorer> optionalScorers = new ArrayList<>();
+        for (WeightedTerm term : terms) {
+            PostingsIterator postings = segment.postings(term.getTerm());
+            if (postings == null) {
+                continue;
+            }
+            TermScorer scorer = new TermScorer(postings, term.getWeight());
+            if (required.contains(term.getTerm())) {
+                requiredScorers.add(scorer);
+                positions.scorers.put(term.getTerm(), scorer);
+            } else {
+                optionalScorers.add(scorer);
+            }
+        }
+        if (requiredScorers.size() < required.size()) {
+            return;
+        }
+        requiredScorers.sort(Comparator.comparingInt(s -> s.postings.cost()));
+        TermScorer[] conjunction = requiredScorers.toArray(new TermScorer[0]);
+        PostingsIterator lead = conjunction[0].postings;
+
+        int doc = lead.nextDoc();
+        while (doc != PostingsIterator.NO_MORE_DOCS) {
+            int next = doc;
+            for (int i = 1; i < conjunction.length; i++) {
+                PostingsIterator postings = conjunction[i].postings;
+                if (postings.doc() < doc) {
+                    postings.advance(doc);
+                }
+                if (postings.doc() > doc) {
+                    next = postings.doc();
+                    break;
+                }
+            }
+            if (next != doc) {
+                doc = lead.advance(next);
+                continue;
+            }
+
+            int docLength = segment.docLength(doc);
+            float score = 0;
+            for (TermScorer scorer : conjunction) {
+                score += bm25.score(scorer.weight, scorer.postings.freq(), docLength, avgLength);
+            }
+            for (TermScorer scorer : optionalScorers) {
+                PostingsIterator postings = scorer.postings;
+                if (postings.doc() < doc) {
+                    postings.advance(doc);
+                }
+                if (postings.doc() == doc) {
+                    score += bm25.score(scorer.weight, postings.freq(), docLength, avgLength);
+                }
+            }
+            if (score > collector.threshold() && matches(query, positions, doc)) {
+                collector.collect(segment.docId(doc), score);
+            }
+            doc = lead.nextDoc();
+        }
+    }
+
+    private static boolean matches(ParsedQuery query, Positions positions, int doc) {
+        positions.doc = doc;
+        for (PositionalClause clause : query.clauses()) {
+            if (!clause.matches(positions)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class TermScorer {
+        private final PostingsIterator postings;
+        private final float weight;
+        private int[] positions = new int[8];
+        private int count;
+        private int loadedDoc = -1;    // positions 对应的文档
+
+        TermScorer(PostingsIterator postings, float weight) {
+            this.postings = postings;
+            this.weight = weight;
+        }
+
+        void load(int doc) {
+            if (loadedDoc == doc) {
+                return;
+            }
+            count = postings.positionCount();
+            if (count > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(count, positions.length * 2));
+            }
+            for (int i = 0; i < count; i++) {
+                positions[i] = postings.position(i);
+            }
+            loadedDoc = doc;
+        }
+    }
+
+    // 当前文档中必须词的位置，第一次访问时才从倒排表读取
+    private static class Positions implements PositionalClause.TermPositions {
+        private final Map<String, TermScorer> scorers = new HashMap<>();
+        private int doc;
+
+        @Override
+        public int count(String term) {
+            TermScorer scorer = scorers.get(term);
+            scorer.load(doc);
+            return scorer.count;
+        }
+
+        @Override
+        public int[] positions(String term) {
+            TermScorer scorer = scorers.get(term);
+            scorer.load(doc);
+            return scorer.positions;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package cn.kong.engine.search;
+
+import java.util.List;
+
+/**
+ * @author gzkon
+ * @description: 需要读取位置才能判断是否匹配的查询子句，子句中的词都是必须出现的词
+ * @date 2026/10/18 23:40
+ */
+public interface PositionalClause {
+
+    /**
+     * 子句中的词，可能重复
+     */
+    List<String> terms();
+
+    /**
+     * 当前文档是否满足子句，调用前子句中的词都已确认出现在当前文档中
+     */
+    boolean matches(TermPositions positions);
+
+    /**
+     * 当前文档中各词的位置，按需读取
+     */
+    interface TermPositions {
+
+        /**
+         * 词在当前文档中出现的次数
+         */
+        int count(String term);
+
+        /**
+         * 词在当前文档中的位置，升序，前 count 个有效
+         */
+        int[] positions(String term);
+    }
+}
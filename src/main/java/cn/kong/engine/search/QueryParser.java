@@ -0,0 +1,133 @@
+package cn.kong.engine.search;
+
+import cn.kong.engine.analysis.Analyzer;
+import cn.kong.engine.index.IndexFormat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author gzkon
+ * @description: 查询解析
+ * 双引号括起的部分为短语；A NEAR/n B 要求两边相隔不超过 n 个位置，两边可以是词或短语；其余部分为普通查询词
+ * 邻近距离不超过 POSITION_GAP - 1，保证不会跨越标题和正文
+ * 线程安全
+ * @date 2026/10/18 23:50
+ */
+public class QueryParser {
+
+    private static final String NEAR = "NEAR/";
+
+    private final Analyzer analyzer;
+
+    public QueryParser(Analyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    public ParsedQuery parse(String query) {
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        List<PositionalClause> clauses = new ArrayList<>();
+        if (query == null || query.isEmpty()) {
+            return new ParsedQuery(terms, clauses);
+        }
+
+        List<Part> parts = split(query);
+        List<PhraseClause> phrases = new ArrayList<>(parts.size());
+        for (Part part : parts) {
+            phrases.add(part.distance < 0 ? analyze(part.text, terms) : null);
+        }
+        boolean[] consumed = new boolean[parts.size()];
+        for (int i = 1; i + 1 < parts.size(); i++) {
+            PhraseClause left = phrases.get(i - 1);
+            PhraseClause right = phrases.get(i + 1);
+            if (parts.get(i).distance >= 0 && left != null && right != null) {
+                clauses.add(new NearClause(left, right, parts.get(i).distance));
+                consumed[i - 1] = true;
+                consumed[i + 1] = true;
+            }
+        }
+        for (int i = 0; i < parts.size(); i++) {
+            if (!consumed[i] && parts.get(i).quoted && phrases.get(i) != null) {
+                clauses.add(phrases.get(i));
+            }
+        }
+        return new ParsedQuery(terms, clauses);
+    }
+
+    // 切词并计入查询词，没有词元时返回null
+    private PhraseClause analyze(String text, Map<String, Integer> terms) {
+        List<String> tokens = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        analyzer.analyze(text, (buffer, offset, length, position) -> {
+            String token = new String(buffer, offset, length);
+            tokens.add(token);
+            positions.add(position);
+            terms.merge(token, 1, Integer::sum);
+        });
+        if (tokens.isEmpty()) {
+            return null;
+        }
+        int[] offsets = new int[tokens.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = positions.get(i) - positions.get(0);
+        }
+        return new PhraseClause(tokens, offsets);
+    }
+
+    // 按双引号和空白切分，NEAR/n 单独成为一段
+    private static List<Part> split(String query) {
+        List<Part> parts = new ArrayList<>();
+        int i = 0;
+        int length = query.length();
+        while (i < length) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int end = query.indexOf('"', i + 1);
+                end = end < 0 ? length : end;
+                parts.add(new Part(query.substring(i + 1, end), true, -1));
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < length && !Character.isWhitespace(query.charAt(end)) && query.charAt(end) != '"') {
+                    end++;
+                }
+                String word = query.substring(i, end);
+                parts.add(new Part(word, false, nearDistance(word)));
+                i = end;
+            }
+        }
+        return parts;
+    }
+
+    // NEAR/n 的距离，不是邻近运算符时返回-1
+    private static int nearDistance(String word) {
+        if (!word.startsWith(NEAR) || word.length() == NEAR.length() || word.length() > NEAR.length() + 9) {
+            return -1;
+        }
+        int distance = 0;
+        for (int i = NEAR.length(); i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            distance = distance * 10 + (c - '0');
+        }
+        return Math.min(distance, IndexFormat.POSITION_GAP - 1);
+    }
+
+    private static class Part {
+        private final String text;
+        private final boolean quoted;
+        private final int distance;     // 邻近运算符的距离，普通部分为-1
+
+        Part(String text, boolean quoted, int distance) {
+            this.text = text;
+            this.quoted = quoted;
+            this.distance = distance;
+        }
+    }
+}
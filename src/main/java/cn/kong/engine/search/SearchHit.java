@@ -0,0 +1,21 @@
+package cn.kong.engine.search;
+
+import lombok.Getter;
+
+/**
+ * @author gzkon
+ * @description: 检索结果
+ * @date 2026/10/18 19:35
+ */
+@Getter
+public class SearchHit {
+
+    private final long docId;
+
+    private final float score;
+
+    public SearchHit(long docId, float score) {
+        this.docId = docId;
+        this.score = score;
+    }
+}
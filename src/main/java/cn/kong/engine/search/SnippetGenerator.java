@@ -0,0 +1,247 @@
+package cn.kong.engine.search;
+
+import cn.kong.engine.analysis.StandardAnalyzer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author gzkon
+ * @description: 摘要生成，在正文纯文本中找出查询词，取得分最高的一段窗口，查询词用 em 标签高亮
+ * 正文按分词器的规则转小写、全角转半角后直接查找查询词，字符一一对应，不需要重新分词；
+ * 字母数字词要求两侧不是字母数字，避免在长单词中间命中；
+ * 窗口得分为窗口内出现的不同查询词的权重之和，重复出现的词只加少量分数，窗口起点尽量对齐到句子开头
+ * 线程安全
+ * @date 2026/10/18 23:59
+ */
+public class SnippetGenerator {
+
+    private static final int MAX_HITS_PER_TERM = 256;   // 每个查询词最多查找的出现次数
+    private static final float REPEAT_BOOST = 0.1f;     // 重复出现的词的得分比例
+    private static final String ELLIPSIS = "...";
+
+    private final int fragmentSize;
+
+    public SnippetGenerator(int fragmentSize) {
+        this.fragmentSize = Math.max(20, fragmentSize);
+    }
+
+    /**
+     * 生成摘要，返回转义后的HTML片段
+     *
+     * @param text  正文纯文本
+     * @param terms 查询词，已按分词器的规则归一化
+     */
+    public String snippet(String text, List<WeightedTerm> terms) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String folded = fold(text);
+        Hits hits = new Hits();
+        for (int t = 0; t < terms.size(); t++) {
+            String term = terms.get(t).getTerm();
+            int found = 0;
+            for (int i = folded.indexOf(term); i >= 0 && found < MAX_HITS_PER_TERM;
+                 i = folded.indexOf(term, i + 1)) {
+                if (isWholeWord(folded, i, i + term.length())) {
+                    hits.add(i, i + term.length(), t);
+                    found++;
+                }
+            }
+        }
+        hits.sort();
+
+        int start = 0;
+        int end = Math.min(text.length(), fragmentSize);
+        if (hits.size > 0) {
+            int best = bestWindow(hits, terms);
+            int last = best;
+            while (last + 1 < hits.size && hits.ends[last + 1] <= hits.starts[best] + fragmentSize) {
+                last++;
+            }
+            // 命中居中，再向前对齐到句子开头
+            int slack = fragmentSize - (hits.ends[last] - hits.starts[best]);
+            start = Math.max(0, hits.starts[best] - slack / 2);
+            int sentence = sentenceStart(text, start, hits.starts[best]);
+            if (sentence >= 0) {
+                start = sentence;
+            }
+            end = Math.min(text.length(), start + fragmentSize);
+            start = Math.max(0, Math.min(start, end - fragmentSize));
+            // 两端不切断字母数字词
+            while (start > 0 && start < hits.starts[best] && isWordChar(text.charAt(start - 1))
+                    && isWordChar(text.charAt(start))) {
+                start++;
+            }
+            while (end < text.length() && end > hits.ends[last] && isWordChar(text.charAt(end - 1))
+                    && isWordChar(text.charAt(end))) {
+                end--;
+            }
+        } else {
+            while (end < text.length() && end > 1 && isWordChar(text.charAt(end - 1))
+                    && isWordChar(text.charAt(end))) {
+                end--;
+            }
+        }
+        while (start > 0 && start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end < text.length() && end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return render(text, start, end, hits);
+    }
+
+    // 得分最高的窗口的第一个命中下标，窗口从命中的起点开始，长度为 fragmentSize
+    private int bestWindow(Hits hits, List<WeightedTerm> terms) {
+        int[] counts = new int[terms.size()];
+        float score = 0;
+        float bestScore = -1;
+        int best = 0;
+        int right = 0;
+        for (int left = 0; left < hits.size; left++) {
+            int limit = hits.starts[left] + fragmentSize;
+            while (right < hits.size && (right <= left || hits.ends[right] <= limit)) {
+                int term = hits.terms[right++];
+                float weight = terms.get(term).getWeight();
+                score += counts[term]++ == 0 ? weight : weight * REPEAT_BOOST;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = left;
+            }
+            int term = hits.terms[left];
+            float weight = terms.get(term).getWeight();
+            score -= --counts[term] == 0 ? weight : weight * REPEAT_BOOST;
+        }
+        return best;
+    }
+
+    // [from, to) 中最后一个句子的开头，没有时返回-1
+    private static int sentenceStart(String text, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            char c = text.charAt(i);
+            if (c == '。' || c == '！' || c == '？' || c == '；' || c == '\n'
+                    || ((c == '.' || c == '!' || c == '?') && i + 1 < text.length()
+                    && Character.isWhitespace(text.charAt(i + 1)))) {
+                int start = i + 1;
+                while (start < to && Character.isWhitespace(text.charAt(start))) {
+                    start++;
+                }
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    private static String render(String text, int start, int end, Hits hits) {
+        StringBuilder out = new StringBuilder(end - start + 64);
+        if (start > 0) {
+            out.append(ELLIPSIS);
+        }
+        int i = start;
+        int h = 0;
+        while (h < hits.size && hits.starts[h] < start) {
+            h++;
+        }
+        for (; h < hits.size && hits.ends[h] <= end; h++) {
+            if (hits.starts[h] < i) {
+                continue;   // 与前一个命中重叠
+            }
+            escape(text, i, hits.starts[h], out);
+            out.append("<em>");
+            escape(text, hits.starts[h], hits.ends[h], out);
+            out.append("</em>");
+            i = hits.ends[h];
+        }
+        escape(text, i, end, out);
+        if (end < text.length()) {
+            out.append(ELLIPSIS);
+        }
+        return out.toString();
+    }
+
+    private static void escape(String text, int from, int to, StringBuilder out) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '"':
+                    out.append("&quot;");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+
+    // 与分词器相同的归一化：全角字母数字转半角，转小写，长度不变
+    private static String fold(String text) {
+        char[] chars = new char[text.length()];
+        for (int i = 0; i < chars.length; i++) {
+            char c = text.charAt(i);
+            if (c >= '０' && c <= 'ｚ' && Character.isLetterOrDigit(c)) {
+                c = (char) (c - 0xFEE0);
+            }
+            chars[i] = Character.toLowerCase(c);
+        }
+        return new String(chars);
+    }
+
+    private static boolean isWholeWord(String text, int start, int end) {
+        return !(isWordChar(text.charAt(start)) && start > 0 && isWordChar(text.charAt(start - 1)))
+                && !(isWordChar(text.charAt(end - 1)) && end < text.length() && isWordChar(text.charAt(end)));
+    }
+
+    // 分词器中连成一个词的字母数字，中日韩文字不算
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) && !StandardAnalyzer.isCjk(c);
+    }
+
+    // 命中的起止位置和查询词下标
+    private static class Hits {
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int[] terms = new int[16];
+        private int size = 0;
+
+        void add(int start, int end, int term) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                terms = Arrays.copyOf(terms, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            terms[size] = term;
+            size++;
+        }
+
+        // 按起点排序，命中数不多，插入排序
+        void sort() {
+            for (int i = 1; i < size; i++) {
+                int start = starts[i];
+                int end = ends[i];
+                int term = terms[i];
+                int j = i - 1;
+                while (j >= 0 && starts[j] > start) {
+                    starts[j + 1] = starts[j];
+                    ends[j + 1] = ends[j];
+                    terms[j + 1] = terms[j];
+                    j--;
+                }
+                starts[j + 1] = start;
+                ends[j + 1] = end;
+                terms[j + 1] = term;
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package cn.kong.engine.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * @author gzkon
+ * @description: 保留得分最高的 k 篇文档，数组实现的定长小顶堆，堆顶是当前第 k 名
+ * 得分相同时先收集的文档保留，结果按得分从高到低、docId从小到大排列
+ * @date 2026/10/18 19:40
+ */
+public class TopKCollector {
+
+    private final int k;
+
+    private final long[] docIds;
+
+    private final float[] scores;
+
+    private int size = 0;
+
+    private long collected = 0;
+
+    public TopKCollector(int k) {
+        this.k = Math.max(1, k);
+        this.docIds = new long[this.k];
+        this.scores = new float[this.k];
+    }
+
+    /**
+     * 进入结果所需的最低得分，得分不高于该值的文档可以直接跳过；结果未满时为0
+     */
+    public float threshold() {
+        return size < k ? 0 : scores[0];
+    }
+
+    /**
+     * @return 文档是否进入结果
+     */
+    public boolean collect(long docId, float score) {
+        collected++;
+        if (size < k) {
+            docIds[size] = docId;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (score <= scores[0]) {
+            return false;
+        }
+        docIds[0] = docId;
+        scores[0] = score;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * 完整打分过的文档数
+     */
+    public long getCollected() {
+        return collected;
+    }
+
+    /**
+     * 按得分从高到低返回结果
+     */
+    public List<SearchHit> results() {
+        List<SearchHit> hits = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            hits.add(new SearchHit(docIds[i], scores[i]));
+        }
+        hits.sort(Comparator.comparing(SearchHit::getScore).reversed().thenComparingLong(SearchHit::getDocId));
+        return Collections.unmodifiableList(hits);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(i, parent)) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                break;
+            }
+            int child = left + 1 < size && less(left + 1, left) ? left + 1 : left;
+            if (!less(child, i)) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    // 得分更低的排在堆顶
+    private boolean less(int a, int b) {
+        return scores[a] < scores[b];
+    }
+
+    private void swap(int a, int b) {
+        long docId = docIds[a];
+        docIds[a] = docIds[b];
+        docIds[b] = docId;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
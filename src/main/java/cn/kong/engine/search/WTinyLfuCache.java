@@ -0,0 +1,192 @@
+package cn.kong.engine.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author gzkon
+ * @description: W-TinyLFU 缓存，按条目数限制容量
+ * 新条目先进入占容量1%的窗口LRU，被挤出窗口后作为候选者与主区淘汰对象比较访问频率，频率更高的留下；
+ * 主区为分段LRU，试用区中再次命中的条目晋升到占主区80%的保护区，保护区溢出的条目降回试用区
+ * 访问频率由 FrequencySketch 估计，偶发的一次性查询不会把热点挤出缓存
+ * 所有方法加锁，命中时也要调整链表顺序
+ * @date 2026/10/18 20:30
+ */
+public class WTinyLfuCache<K, V> {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final int maximumSize;
+
+    private final int windowMaximum;
+
+    private final int protectedMaximum;
+
+    private final Map<K, Node<K, V>> data = new HashMap<>();
+
+    private final FrequencySketch sketch;
+
+    // 三个LRU链表，头部为最近访问
+    private final Node<K, V> window = new Node<>(null, null, WINDOW);
+    private final Node<K, V> probation = new Node<>(null, null, PROBATION);
+    private final Node<K, V> protect = new Node<>(null, null, PROTECTED);
+
+    private int windowSize = 0;
+    private int protectedSize = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long rejections = 0;
+
+    public WTinyLfuCache(int maximumSize) {
+        this.maximumSize = Math.max(1, maximumSize);
+        this.windowMaximum = Math.max(1, this.maximumSize / 100);
+        this.protectedMaximum = (int) ((this.maximumSize - windowMaximum) * 0.8);
+        this.sketch = new FrequencySketch(this.maximumSize);
+    }
+
+    public synchronized V get(K key) {
+        sketch.increment(key);
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        onAccess(node);
+        return node.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            node.value = value;
+            onAccess(node);
+            return;
+        }
+        node = new Node<>(key, value, WINDOW);
+        data.put(key, node);
+        addFirst(window, node);
+        windowSize++;
+        evict();
+    }
+
+    public synchronized void clear() {
+        data.clear();
+        for (Node<K, V> head : Arrays.asList(window, probation, protect)) {
+            head.prev = head;
+            head.next = head;
+        }
+        windowSize = 0;
+        protectedSize = 0;
+    }
+
+    public synchronized int size() {
+        return data.size();
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(data.size(), maximumSize, hits, misses, evictions, rejections);
+    }
+
+    private void onAccess(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                moveToFirst(window, node);
+                break;
+            case PROBATION:
+                // 试用区再次命中，晋升到保护区
+                unlink(node);
+                node.queue = PROTECTED;
+                addFirst(protect, node);
+                protectedSize++;
+                if (protectedSize > protectedMaximum) {
+                    Node<K, V> demoted = protect.prev;
+                    unlink(demoted);
+                    protectedSize--;
+                    demoted.queue = PROBATION;
+                    addFirst(probation, demoted);
+                }
+                break;
+            default:
+                moveToFirst(protect, node);
+                break;
+        }
+    }
+
+    private void evict() {
+        // 窗口溢出的条目进入试用区，成为候选者
+        Node<K, V> candidate = null;
+        while (windowSize > windowMaximum) {
+            candidate = window.prev;
+            unlink(candidate);
+            windowSize--;
+            candidate.queue = PROBATION;
+            addFirst(probation, candidate);
+        }
+        while (data.size() > maximumSize) {
+            Node<K, V> victim = probation.prev != probation ? probation.prev : protect.prev;
+            if (candidate == null || candidate == victim) {
+                remove(victim);
+                evictions++;
+                continue;
+            }
+            // 候选者访问频率不高于淘汰对象时拒绝准入
+            if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                remove(victim);
+                evictions++;
+            } else {
+                remove(candidate);
+                rejections++;
+            }
+            candidate = null;
+        }
+    }
+
+    private void remove(Node<K, V> node) {
+        unlink(node);
+        if (node.queue == WINDOW) {
+            windowSize--;
+        } else if (node.queue == PROTECTED) {
+            protectedSize--;
+        }
+        data.remove(node.key);
+    }
+
+    private static <K, V> void addFirst(Node<K, V> head, Node<K, V> node) {
+        node.prev = head;
+        node.next = head.next;
+        head.next.prev = node;
+        head.next = node;
+    }
+
+    private static <K, V> void moveToFirst(Node<K, V> head, Node<K, V> node) {
+        unlink(node);
+        addFirst(head, node);
+    }
+
+    private static <K, V> void unlink(Node<K, V> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    private static class Node<K, V> {
+        private final K key;
+        private V value;
+        private int queue;
+        private Node<K, V> prev = this;
+        private Node<K, V> next = this;
+
+        Node(K key, V value, int queue) {
+            this.key = key;
+            this.value = value;
+            this.queue = queue;
+        }
+    }
+}
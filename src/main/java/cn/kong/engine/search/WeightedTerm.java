@@ -0,0 +1,21 @@
+package cn.kong.engine.search;
+
+import lombok.Getter;
+
+/**
+ * @author gzkon
+ * @description: 查询词及其权重
+ * @date 2026/10/18 19:45
+ */
+@Getter
+public class WeightedTerm {
+
+    private final String term;
+
+    private final float weight;     // idf 乘以查询中出现的次数
+
+    public WeightedTerm(String term, float weight) {
+        this.term = term;
+        this.weight = weight;
+    }
+}
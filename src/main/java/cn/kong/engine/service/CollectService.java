@@ -1,45 +1,281 @@
 package cn.kong.engine.service;
 
+import cn.kong.engine.config.CrawlerConfig;
+import cn.kong.engine.content.CrawlerCheckpoint;
 import cn.kong.engine.content.CrawlerContent;
 import cn.kong.engine.model.CrawlerTask;
 import cn.kong.engine.processor.collect.Crawler;
+import cn.kong.engine.store.DocStore;
+import cn.kong.engine.store.UrlIdMap;
+import cn.kong.engine.utils.ScalableBloomFilter;
+import cn.kong.engine.utils.UrlCanonicalizer;
+import com.google.common.base.Strings;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author gzkon
- * @description: TODO
+ * @description: 爬虫任务管理，运行中的任务定期保存检查点，停止或异常退出的任务可以从检查点恢复；
+ * 未启用URL映射时按任务的抓取数量创建可扩展布隆过滤器，指定了去重分组的任务共用同一个过滤器
  * @date 2025/6/22 21:11
  */
+@Slf4j
 @Service
 public class CollectService {
     private final Crawler crawler;
+    private final CrawlerConfig.StoreProperties storeProperties;
+    private final CrawlerConfig.CheckpointProperties checkpointProperties;
+    private final CrawlerConfig.BloomProperties bloomProperties;
+    private final UrlCanonicalizer canonicalizer;
+    private final UrlIdMap urlIdMap;    // 未启用时为null
+    private final SQLiteService sqliteService;
+    private final DocStore docStore;
 
     private final Map<String, CrawlerContent> crawlerContentMap = new ConcurrentHashMap<>();
 
+    private final Map<String, SharedFilter> sharedFilters = new HashMap<>();  // 去重分组 -> 共用的布隆过滤器
+
+    private final AtomicLong docId = new AtomicLong(0);    // 所有任务共用的 docId 计数器，同时运行的任务不会分配到相同的编号
+
+    private ScheduledExecutorService checkpointExecutor;
+
     @Autowired
-    public CollectService(Crawler crawler) {
+    public CollectService(Crawler crawler, CrawlerConfig.StoreProperties storeProperties,
+                          CrawlerConfig.CheckpointProperties checkpointProperties,
+                          CrawlerConfig.BloomProperties bloomProperties,
+                          UrlCanonicalizer canonicalizer,
+                          ObjectProvider<UrlIdMap> urlIdMap,
+                          SQLiteService sqliteService,
+                          DocStore docStore) {
         this.crawler = crawler;
+        this.storeProperties = storeProperties;
+        this.checkpointProperties = checkpointProperties;
+        this.bloomProperties = bloomProperties;
+        this.canonicalizer = canonicalizer;
+        this.urlIdMap = urlIdMap.getIfAvailable();
+        this.sqliteService = sqliteService;
+        this.docStore = docStore;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!checkpointProperties.isEnabled()) {
+            return;
+        }
+        checkpointExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "crawler-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1000, checkpointProperties.getInterval());
+        checkpointExecutor.scheduleWithFixedDelay(this::checkpointAll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (checkpointExecutor != null) {
+            checkpointExecutor.shutdown();
+            checkpointExecutor.awaitTermination(30, TimeUnit.SECONDS);
+            // 关闭前为运行中的任务再保存一次
+            checkpointAll();
+        }
     }
 
     public void runCrawler(CrawlerTask task) {
+        checkCapacity(task.getTaskId());
+        task.setLinks(canonicalize(task.getLinks()));
+        CrawlerContent content = new CrawlerContent();
+        ScalableBloomFilter bloomFilter = acquireFilter(task, null);
+        try {
+            content.init(task, storeProperties, urlIdMap, bloomFilter, reserveDocIds());
+        } catch (RuntimeException e) {
+            releaseFilter(task);
+            throw e;
+        }
+        start(content);
+    }
+
+    /**
+     * 从最近一次检查点恢复任务，未完成的URL重新进入 frontier，去重集合和 docId 接着之前的状态
+     */
+    public void resumeCrawler(String taskId) {
+        checkCapacity(taskId);
+        if (!CrawlerCheckpoint.exists(taskId)) {
+            throw new IllegalArgumentException("任务没有可恢复的检查点: " + taskId);
+        }
+        long start = System.currentTimeMillis();
+        CrawlerCheckpoint checkpoint;
+        try {
+            checkpoint = CrawlerCheckpoint.load(taskId);
+        } catch (IOException e) {
+            throw new IllegalStateException("读取检查点失败: " + taskId, e);
+        }
+        CrawlerContent content = new CrawlerContent();
+        ScalableBloomFilter bloomFilter = acquireFilter(checkpoint.getTask(), checkpoint.getBloomFilter());
+        try {
+            content.resume(checkpoint, storeProperties, urlIdMap, bloomFilter, reserveDocIds());
+        } catch (RuntimeException e) {
+            releaseFilter(checkpoint.getTask());
+            throw e;
+        }
+        log.info("恢复爬虫任务: taskId={}, URL数={}, docId={}, 耗时 {} ms", taskId,
+                checkpoint.getEntries().size(), content.getDocId().get(), System.currentTimeMillis() - start);
+        start(content);
+    }
+
+    public void stopCrawler(String taskId) {
+        CrawlerContent content = crawlerContentMap.get(taskId);
+        if (content == null) {
+            throw new IllegalArgumentException("任务不存在: " + taskId);
+        }
+        // 任务结束后从列表中移除并保存检查点
+        content.setRunning(false);
+    }
+
+    private void checkCapacity(String taskId) {
+        if (crawlerContentMap.containsKey(taskId)) {
+            throw new IllegalStateException("任务正在运行: " + taskId);
+        }
         if (crawlerContentMap.size() > 2) {
             throw new IllegalStateException("当前爬虫任务数量已达上限，请稍后再试");
         }
-        CrawlerContent content = new CrawlerContent();
-        content.init(task);
-        crawlerContentMap.put(task.getTaskId(), content);
+    }
+
+    private void start(CrawlerContent content) {
+        String taskId = content.getTask().getTaskId();
+        crawlerContentMap.put(taskId, content);
         CompletableFuture.runAsync(() -> {
-            crawler.run(content);
+            try {
+                crawler.run(content);
+            } finally {
+                finish(content);
+                releaseFilter(content.getTask());
+                crawlerContentMap.remove(taskId);
+            }
         });
     }
 
-    public void stopCrawler(String taskId) {
-        crawlerContentMap.get(taskId).setRunning(false);
-        crawlerContentMap.remove(taskId);
+    // 被停止的任务保存最终检查点，URL全部抓完的任务删除检查点
+    private void finish(CrawlerContent content) {
+        String taskId = content.getTask().getTaskId();
+        if (!checkpointProperties.isEnabled()) {
+            return;
+        }
+        if (content.getRunning() && content.getFrontier().snapshot().isEmpty()) {
+            CrawlerCheckpoint.delete(taskId);
+            log.info("爬虫任务完成，删除检查点: {}", taskId);
+            return;
+        }
+        try {
+            CrawlerCheckpoint.save(content);
+        } catch (IOException | RuntimeException e) {
+            log.error("保存检查点失败: {}", taskId, e);
+        }
+    }
+
+    // 种子Link与页面中的链接使用相同的规范化规则，不合法的链接丢弃
+    private List<String> canonicalize(List<String> links) {
+        List<String> canonical = new ArrayList<>();
+        if (links != null) {
+            for (String link : links) {
+                String url = canonicalizer.canonicalize(link);
+                if (url != null) {
+                    canonical.add(url);
+                } else if (!Strings.isNullOrEmpty(link)) {
+                    log.warn("种子Link不合法，跳过: {}", link);
+                }
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * 任务使用的布隆过滤器，启用URL映射时为null；同一去重分组已有运行中的任务时共用它的过滤器，
+     * 否则优先使用检查点中恢复的过滤器，没有时按抓取数量新建
+     */
+    private ScalableBloomFilter acquireFilter(CrawlerTask task, ScalableBloomFilter restored) {
+        if (urlIdMap != null) {
+            return null;
+        }
+        String group = task.getDedupeGroup();
+        if (Strings.isNullOrEmpty(group)) {
+            return restored != null ? restored : newFilter(task);
+        }
+        synchronized (sharedFilters) {
+            SharedFilter shared = sharedFilters.get(group);
+            if (shared == null) {
+                shared = new SharedFilter(restored != null ? restored : newFilter(task));
+                sharedFilters.put(group, shared);
+            }
+            shared.tasks++;
+            return shared.filter;
+        }
+    }
+
+    // 分组中最后一个任务结束后释放共用的过滤器
+    private void releaseFilter(CrawlerTask task) {
+        String group = task.getDedupeGroup();
+        if (urlIdMap != null || Strings.isNullOrEmpty(group)) {
+            return;
+        }
+        synchronized (sharedFilters) {
+            SharedFilter shared = sharedFilters.get(group);
+            if (shared != null && --shared.tasks <= 0) {
+                sharedFilters.remove(group);
+            }
+        }
+    }
+
+    // 每个抓取的页面按 linksPerPage 估计新发现的URL数，超出后过滤器自动扩展
+    private ScalableBloomFilter newFilter(CrawlerTask task) {
+        Long quantity = task.getCrawlQuantity();
+        long capacity = quantity != null && quantity > 0
+                ? Math.min(quantity * Math.max(1, bloomProperties.getLinksPerPage()), bloomProperties.getInitialCapacity())
+                : bloomProperties.getInitialCapacity();
+        return new ScalableBloomFilter(capacity, bloomProperties.getFpp());
+    }
+
+    // 共用计数器不小于已落盘的最大docId，布隆模式的检查点可能落后于已写入的文档，新任务和恢复的任务都从这里之后分配
+    private AtomicLong reserveDocIds() {
+        docId.accumulateAndGet(Math.max(sqliteService.maxId(), docStore.maxDocId()), Math::max);
+        return docId;
+    }
+
+    private void checkpointAll() {
+        for (CrawlerContent content : crawlerContentMap.values()) {
+            if (!content.getRunning()) {
+                continue;   // 停止中的任务由 finish 保存
+            }
+            try {
+                CrawlerCheckpoint.save(content);
+            } catch (IOException | RuntimeException e) {
+                log.error("保存检查点失败: {}", content.getTask().getTaskId(), e);
+            }
+        }
+    }
+
+    private static class SharedFilter {
+        private final ScalableBloomFilter filter;
+        private int tasks;
+
+        private SharedFilter(ScalableBloomFilter filter) {
+            this.filter = filter;
+        }
     }
 }
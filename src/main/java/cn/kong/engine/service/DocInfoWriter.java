@@ -0,0 +1,482 @@
+package cn.kong.engine.service;
+
+import cn.kong.engine.model.DocInfo;
+import cn.kong.engine.utils.SqlGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * @author gzkon
+ * @description: doc_info 的写入线程，SQLiteService 的插入、更新、删除都经由这里异步写入
+ * 调用方只把变更放入有界队列，队列满时阻塞；唯一的写入线程批量取出变更，同一docId的多次变更先合并为一次，
+ * 再在一个事务中按 删除、插入、更新 的顺序批量执行，写入线程持有专用连接，预编译语句只创建一次；
+ * 整个事务失败时回滚后逐条重试，只丢弃出错的变更
+ * 每个变更返回一个 future，写入成功时为true，写入失败或被拒绝时为false；
+ * 单个批次抛出任何异常都只记为失败，写入线程继续处理后续变更，不会让提交方和 flush 永远等待
+ * @date 2026/10/18 19:10
+ */
+@Slf4j
+class DocInfoWriter {
+
+    private static final String INSERT_SQL = SqlGenerator.generateInsertSql(DocInfo.class);
+    private static final String DELETE_SQL = "DELETE FROM doc_info WHERE id = ?";
+
+    // 可更新的列，更新语句按非空列的组合缓存
+    private static final String[] UPDATE_COLUMNS = {"url", "url_fp", "title", "domain", "status_code", "stored",
+            "content_type", "content_length", "create_time", "update_time", "simhash", "duplicate_of"};
+
+    private final ConnectionFactory connectionFactory;
+
+    private final int maxBatch;
+
+    private final BlockingQueue<Mutation> queue;
+
+    private final Thread thread;
+
+    private final AtomicLong written = new AtomicLong(0);
+
+    private final AtomicLong failed = new AtomicLong(0);
+
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();   // 提交持有读锁，关闭持有写锁
+
+    private volatile boolean running = true;
+
+    // 以下字段只在写入线程中使用
+    private Connection connection;
+    private PreparedStatement insertStmt;
+    private PreparedStatement deleteStmt;
+    private final Map<Integer, PreparedStatement> updateStmts = new HashMap<>();
+
+    /**
+     * @param name              写入线程名称
+     * @param connectionFactory 创建写入线程专用的连接
+     * @param queueCapacity     队列容量，队列满时提交方阻塞
+     * @param maxBatch          单个事务的最大变更数
+     */
+    DocInfoWriter(String name, ConnectionFactory connectionFactory, int queueCapacity, int maxBatch) {
+        this.connectionFactory = connectionFactory;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.thread = new Thread(this::loop, name);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    CompletableFuture<Boolean> insert(DocInfo doc) {
+        return submit(new Mutation(Kind.INSERT, doc.getId(), doc));
+    }
+
+    CompletableFuture<Boolean> update(DocInfo doc) {
+        return submit(new Mutation(Kind.UPDATE, doc.getId(), doc));
+    }
+
+    CompletableFuture<Boolean> delete(long id) {
+        return submit(new Mutation(Kind.DELETE, id, null));
+    }
+
+    /**
+     * 等待之前提交的变更全部写入数据库
+     */
+    void flush() {
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        await(submit(new Mutation(Kind.BARRIER, 0, null)));
+    }
+
+    /**
+     * 等待变更写入，被中断时返回false
+     *
+     * @return 是否写入成功
+     */
+    static boolean await(CompletableFuture<Boolean> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    int pending() {
+        return queue.size();
+    }
+
+    long getWritten() {
+        return written.get();
+    }
+
+    long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * 停止接收新变更，等待队列中的变更全部写完后关闭连接
+     */
+    void close() {
+        stateLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("等待写入线程结束时被中断: {}", thread.getName());
+        }
+    }
+
+    // 检查状态和入队在同一把读锁内，close 之后不会再有变更进入队列而无人处理
+    private CompletableFuture<Boolean> submit(Mutation mutation) {
+        stateLock.readLock().lock();
+        try {
+            if (!running || !thread.isAlive()) {
+                log.warn("doc_info 写入线程已关闭，丢弃变更: {} id={}", mutation.kind, mutation.id);
+                return CompletableFuture.completedFuture(false);
+            }
+            queue.put(mutation);
+            return mutation.future;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.completedFuture(false);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    private void loop() {
+        List<Mutation> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Mutation first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                apply(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable e) {
+                // 唯一的写入线程不能因为一个批次退出，否则提交方阻塞在满队列上，flush 也等不到屏障
+                log.error("doc_info 批次处理失败，继续处理后续变更: {} 条", batch.size(), e);
+                abandon(batch);
+                closeConnection();
+            } finally {
+                batch.clear();
+            }
+        }
+        closeConnection();
+        // 被中断退出时队列中可能还有变更，通知提交方写入失败
+        List<Mutation> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        abandon(remaining);
+    }
+
+    // 还没有结果的变更记为失败，已经写入的变更不受影响；先计数再通知，提交方拿到结果时计数已更新
+    private void abandon(List<Mutation> mutations) {
+        for (Mutation mutation : mutations) {
+            if (mutation.future.isDone()) {
+                continue;
+            }
+            if (mutation.kind != Kind.BARRIER) {
+                failed.incrementAndGet();
+            }
+            mutation.future.complete(false);
+        }
+    }
+
+    // 按提交顺序合并同一docId的变更，遇到屏障时先写入已合并的变更再通知等待方
+    private void apply(List<Mutation> batch) {
+        Map<Long, Pending> merged = new LinkedHashMap<>();
+        for (Mutation mutation : batch) {
+            if (mutation.kind == Kind.BARRIER) {
+                write(merged);
+                merged.clear();
+                mutation.future.complete(true);
+                continue;
+            }
+            merged.computeIfAbsent(mutation.id, id -> new Pending(id)).merge(mutation);
+        }
+        write(merged);
+    }
+
+    private void write(Map<Long, Pending> merged) {
+        if (merged.isEmpty()) {
+            return;
+        }
+        try {
+            Connection conn = connection();
+            for (Pending pending : merged.values()) {
+                if (pending.delete) {
+                    deleteStmt.setLong(1, pending.id);
+                    deleteStmt.addBatch();
+                }
+            }
+            for (Pending pending : merged.values()) {
+                if (pending.insert != null) {
+                    SQLiteService.setStmt(insertStmt, pending.insert);
+                    insertStmt.addBatch();
+                }
+            }
+            List<PreparedStatement> updates = new ArrayList<>();
+            for (Pending pending : merged.values()) {
+                if (pending.update != null) {
+                    PreparedStatement stmt = bindUpdate(pending.update);
+                    if (stmt != null) {
+                        stmt.addBatch();
+                        if (!updates.contains(stmt)) {
+                            updates.add(stmt);
+                        }
+                    }
+                }
+            }
+            deleteStmt.executeBatch();
+            insertStmt.executeBatch();
+            for (PreparedStatement stmt : updates) {
+                stmt.executeBatch();
+            }
+            conn.commit();
+            written.addAndGet(merged.size());
+            merged.values().forEach(pending -> pending.complete(true));
+        } catch (SQLException | RuntimeException e) {
+            log.warn("doc_info 批量写入失败，逐条重试: {} 条, {}", merged.size(), e.getMessage());
+            rollback();
+            for (Pending pending : merged.values()) {
+                writeOne(pending);
+            }
+        }
+    }
+
+    private void writeOne(Pending pending) {
+        try {
+            connection();
+            if (pending.delete) {
+                deleteStmt.setLong(1, pending.id);
+                deleteStmt.executeUpdate();
+            }
+            if (pending.insert != null) {
+                SQLiteService.setStmt(insertStmt, pending.insert);
+                insertStmt.executeUpdate();
+            }
+            if (pending.update != null) {
+                PreparedStatement stmt = bindUpdate(pending.update);
+                if (stmt != null) {
+                    stmt.executeUpdate();
+                }
+            }
+            connection.commit();
+            written.incrementAndGet();
+            pending.complete(true);
+        } catch (SQLException | RuntimeException e) {
+            failed.incrementAndGet();
+            log.error("doc_info 写入失败: id={}, {}", pending.id, e.getMessage());
+            rollback();
+            pending.complete(false);
+        }
+    }
+
+    // 绑定更新语句的参数，没有需要更新的列时返回null
+    private PreparedStatement bindUpdate(DocInfo doc) throws SQLException {
+        Object[] values = updateValues(doc);
+        int mask = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                mask |= 1 << i;
+            }
+        }
+        if (mask == 0) {
+            return null;
+        }
+        PreparedStatement stmt = updateStmts.get(mask);
+        if (stmt == null) {
+            List<String> setClauses = new ArrayList<>();
+            for (int i = 0; i < UPDATE_COLUMNS.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    setClauses.add(UPDATE_COLUMNS[i] + " = ?");
+                }
+            }
+            stmt = connection.prepareStatement("UPDATE doc_info SET " + String.join(", ", setClauses) + " WHERE id = ?");
+            updateStmts.put(mask, stmt);
+        }
+        int index = 1;
+        for (Object value : values) {
+            if (value != null) {
+                stmt.setObject(index++, value);
+            }
+        }
+        stmt.setLong(index, doc.getId());
+        return stmt;
+    }
+
+    // 与 UPDATE_COLUMNS 一一对应，为null的列不更新，stored 只在为true时更新
+    private static Object[] updateValues(DocInfo doc) {
+        return new Object[]{doc.getUrl(), doc.getUrlFp(), doc.getTitle(), doc.getDomain(), doc.getStatusCode(),
+                doc.isStored() ? 1 : null, doc.getContentType(), doc.getContentLength(),
+                timestamp(doc.getCreateTime()), timestamp(doc.getUpdateTime()), doc.getSimhash(), doc.getDuplicateOf()};
+    }
+
+    private static Timestamp timestamp(LocalDateTime time) {
+        return time != null ? Timestamp.valueOf(time) : null;
+    }
+
+    // 后一次更新的非空字段覆盖前一次
+    private static void mergeInto(DocInfo target, DocInfo patch) {
+        if (patch.getUrl() != null) target.setUrl(patch.getUrl());
+        if (patch.getUrlFp() != null) target.setUrlFp(patch.getUrlFp());
+        if (patch.getTitle() != null) target.setTitle(patch.getTitle());
+        if (patch.getDomain() != null) target.setDomain(patch.getDomain());
+        if (patch.getStatusCode() != null) target.setStatusCode(patch.getStatusCode());
+        if (patch.isStored()) target.setStored(true);
+        if (patch.getContentType() != null) target.setContentType(patch.getContentType());
+        if (patch.getContentLength() != null) target.setContentLength(patch.getContentLength());
+        if (patch.getCreateTime() != null) target.setCreateTime(patch.getCreateTime());
+        if (patch.getUpdateTime() != null) target.setUpdateTime(patch.getUpdateTime());
+        if (patch.getSimhash() != null) target.setSimhash(patch.getSimhash());
+        if (patch.getDuplicateOf() != null) target.setDuplicateOf(patch.getDuplicateOf());
+    }
+
+    private static DocInfo copyOf(DocInfo doc) {
+        DocInfo copy = new DocInfo();
+        copy.setId(doc.getId());
+        mergeInto(copy, doc);
+        return copy;
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            closeConnection();
+            connection = connectionFactory.get();
+            connection.setAutoCommit(false);
+            insertStmt = connection.prepareStatement(INSERT_SQL);
+            deleteStmt = connection.prepareStatement(DELETE_SQL);
+        }
+        return connection;
+    }
+
+    private void rollback() {
+        try {
+            if (connection != null && !connection.isClosed()) {
+                connection.rollback();
+                insertStmt.clearBatch();
+                deleteStmt.clearBatch();
+                for (PreparedStatement stmt : updateStmts.values()) {
+                    stmt.clearBatch();
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Rollback failed, reopen connection", e);
+            closeConnection();
+        }
+    }
+
+    private void closeConnection() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();     // 同时关闭缓存的预编译语句
+        } catch (SQLException e) {
+            log.error("Close connection failed", e);
+        }
+        connection = null;
+        insertStmt = null;
+        deleteStmt = null;
+        updateStmts.clear();
+    }
+
+    @FunctionalInterface
+    interface ConnectionFactory {
+        Connection get() throws SQLException;
+    }
+
+    private enum Kind {
+        INSERT, UPDATE, DELETE, BARRIER
+    }
+
+    private static class Mutation {
+        private final Kind kind;
+        private final long id;
+        private final DocInfo doc;
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();    // 屏障在之前的变更写完时完成
+
+        private Mutation(Kind kind, long id, DocInfo doc) {
+            this.kind = kind;
+            this.id = id;
+            this.doc = doc;
+        }
+    }
+
+    // 同一docId合并后的变更，删除先于插入执行，插入之后的更新直接合并到插入的记录中
+    private static class Pending {
+        private final long id;
+        private boolean delete;
+        private DocInfo insert;
+        private DocInfo update;
+        private final List<CompletableFuture<Boolean>> futures = new ArrayList<>(1);
+
+        private Pending(long id) {
+            this.id = id;
+        }
+
+        // 合并到一起的变更一起写入，结果相同
+        private void complete(boolean success) {
+            for (CompletableFuture<Boolean> future : futures) {
+                future.complete(success);
+            }
+        }
+
+        private void merge(Mutation mutation) {
+            futures.add(mutation.future);
+            switch (mutation.kind) {
+                case INSERT:
+                    insert = copyOf(mutation.doc);
+                    update = null;
+                    break;
+                case UPDATE:
+                    if (insert != null) {
+                        mergeInto(insert, mutation.doc);
+                    } else if (update != null) {
+                        mergeInto(update, mutation.doc);
+                    } else {
+                        update = copyOf(mutation.doc);
+                    }
+                    break;
+                case DELETE:
+                    delete = true;
+                    insert = null;
+                    update = null;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,665 @@
+package cn.kong.engine.service;
+
+import cn.kong.engine.analysis.Analyzer;
+import cn.kong.engine.common.Constants;
+import cn.kong.engine.config.SearchConfig;
+import cn.kong.engine.index.IndexBuilder;
+import cn.kong.engine.index.IndexFormat;
+import cn.kong.engine.index.IndexManifest;
+import cn.kong.engine.index.IndexReader;
+import cn.kong.engine.index.IndexSegment;
+import cn.kong.engine.index.IndexSnapshot;
+import cn.kong.engine.index.MemorySegment;
+import cn.kong.engine.index.SegmentInfo;
+import cn.kong.engine.index.SegmentMerger;
+import cn.kong.engine.index.TieredMergePolicy;
+import cn.kong.engine.store.DocStore;
+import cn.kong.engine.store.SegmentReader;
+import com.google.common.primitives.ImmutableLongArray;
+import com.google.common.util.concurrent.RateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * @author gzkon
+ * @description: 索引服务，索引由若干不可变的索引段组成
+ * 后台定时扫描新封存的 doc_raw 段文件（其中都是 stored=1 的文档），每批新文件建成一个小索引段；
+ * 合并线程按分层策略把小索引段合并成大索引段，写入按字节限速；
+ * 索引段的增加和合并都先写清单再发布新的快照，查询只读取快照，不受后台任务影响
+ * 启用近实时索引时，抓取线程写入的文档同时加入内存索引段，按较短的间隔发布视图，超过大小上限后写入磁盘；
+ * doc_raw 文件封存后建索引时，内存中已有的文档被删除，已从内存写入磁盘的文档被跳过，保证同一文档只命中一次
+ * @date 2026/10/18 18:15
+ */
+@Slf4j
+@Service
+public class IndexService {
+
+    private final DocStore docStore;
+
+    private final Analyzer analyzer;
+
+    private final SearchConfig.IndexProperties indexProperties;
+
+    private final Path directory = Paths.get(Constants.INDEX_DIC);
+
+    private final TieredMergePolicy mergePolicy;
+
+    private final RateLimiter mergeRateLimiter;
+
+    private final Object commitLock = new Object();
+
+    private IndexManifest manifest = new IndexManifest();   // 由 commitLock 保护
+
+    private final Set<String> merging = new HashSet<>();    // 正在合并的索引段，由 commitLock 保护
+
+    private final Map<String, IndexReader> readers = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean indexing = new AtomicBoolean(false);   // 建索引段和内存索引段写入磁盘互斥
+
+    private volatile MemorySegment realtime;    // 正在接收文档的内存索引段，未启用近实时索引时为null
+
+    private final List<MemorySegment> flushing = new ArrayList<>();    // 已冻结、等待写入磁盘的内存索引段，由 commitLock 保护
+
+    private long[] realtimeDocs = new long[0];   // 已从内存写入磁盘、来源文件尚未建索引的 docId，有序，由 commitLock 保护
+
+    private MemorySegment.Reader publishedRealtime;  // 当前快照中内存索引段的视图，由 commitLock 保护
+
+    private volatile IndexSnapshot snapshot = IndexSnapshot.EMPTY;
+
+    private ScheduledExecutorService refreshExecutor;
+
+    private ExecutorService mergeExecutor;
+
+    @Autowired
+    public IndexService(DocStore docStore, Analyzer analyzer, SearchConfig.IndexProperties indexProperties) {
+        this.docStore = docStore;
+        this.analyzer = analyzer;
+        this.indexProperties = indexProperties;
+        this.mergePolicy = new TieredMergePolicy(indexProperties.getMergeFactor(),
+                indexProperties.getFloorSegmentSize(), indexProperties.getMaxMergedSegmentSize());
+        this.mergeRateLimiter = indexProperties.getMergeRate() > 0
+                ? RateLimiter.create(indexProperties.getMergeRate()) : null;
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            IndexManifest loaded = IndexManifest.read(directory);
+            if (loaded.getVersion() != IndexFormat.VERSION && !loaded.getSegments().isEmpty()) {
+                // 索引格式已升级，旧索引段全部丢弃，由增量索引从 doc_raw 重新建立
+                log.warn("索引格式版本不一致，重建索引: {} -> {}", loaded.getVersion(), IndexFormat.VERSION);
+                IndexManifest fresh = new IndexManifest();
+                fresh.setGeneration(loaded.getGeneration());
+                loaded = fresh;
+            }
+            List<SegmentInfo> segments = new ArrayList<>();
+            for (SegmentInfo segment : loaded.getSegments()) {
+                try {
+                    readers.put(segment.getName(), IndexReader.open(directory.resolve(segment.getName())));
+                    segments.add(segment);
+                } catch (IOException e) {
+                    log.error("加载索引段失败，跳过: {}", segment.getName(), e);
+                }
+            }
+            loaded.setSegments(segments);
+            realtimeDocs = IndexManifest.readDocIds(directory, loaded.getRealtimeDocs());
+            manifest = loaded;
+            publish(false);
+            deleteUnreferenced();
+            log.info("加载索引: 索引段数={}, 文档数={}", segments.size(), snapshot.docCount());
+        } catch (IOException | RuntimeException e) {
+            log.error("加载索引清单失败: {}", directory, e);
+        }
+
+        if (indexProperties.isRealtime()) {
+            realtime = new MemorySegment(analyzer);
+        }
+        // 建索引段、内存索引段刷新和写入磁盘都在同一个线程中执行
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(daemon("index-refresh"));
+        mergeExecutor = Executors.newSingleThreadExecutor(daemon("index-merge"));
+        long interval = Math.max(1000, indexProperties.getRefreshInterval());
+        refreshExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                indexNewDocuments();
+            } catch (IOException | RuntimeException e) {
+                log.error("增量索引失败", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        if (realtime != null) {
+            long realtimeInterval = Math.max(100, indexProperties.getRealtimeRefreshInterval());
+            refreshExecutor.scheduleWithFixedDelay(() -> {
+                try {
+                    refreshRealtime();
+                } catch (IOException | RuntimeException e) {
+                    log.error("刷新内存索引段失败", e);
+                }
+            }, realtimeInterval, realtimeInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        for (ExecutorService executor : new ExecutorService[]{refreshExecutor, mergeExecutor}) {
+            if (executor != null) {
+                executor.shutdown();
+                executor.awaitTermination(30, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * 当前有效索引段的快照
+     */
+    public IndexSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public List<SegmentInfo> segments() {
+        synchronized (commitLock) {
+            return new ArrayList<>(manifest.getSegments());
+        }
+    }
+
+    public boolean isIndexing() {
+        return indexing.get();
+    }
+
+    /**
+     * 刚写入 doc_raw 的文档加入内存索引段，下次刷新后可以被检索到，未启用近实时索引时忽略
+     */
+    public void addRealtimeDocument(long docId, String title, String body) {
+        MemorySegment segment;
+        while ((segment = realtime) != null) {
+            // 返回false说明读到的内存索引段刚被冻结，改为写入新的内存索引段
+            if (segment.addDocument(docId, title, body)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 从内存索引段中去掉文档，用于 doc_raw 写入失败时撤销
+     */
+    public void removeRealtimeDocument(long docId) {
+        MemorySegment segment = realtime;
+        if (segment != null) {
+            segment.delete(docId);
+        }
+    }
+
+    /**
+     * 内存索引段中的有效文档数
+     */
+    public int realtimeDocCount() {
+        int count = 0;
+        synchronized (commitLock) {
+            for (MemorySegment segment : flushing) {
+                count += segment.docCount();
+            }
+        }
+        MemorySegment segment = realtime;
+        return segment == null ? count : count + segment.docCount();
+    }
+
+    /**
+     * 丢弃所有索引段，在后台重新为所有 doc_raw 段文件建索引
+     * 在 commitLock 中先占用建索引标记再清空清单，清空后不会被其他建索引任务抢先，也不会因标记被占用而跳过重建
+     *
+     * @return 重建完成后完成，失败时异常完成
+     * @throws IllegalStateException 已有建索引任务在运行，清单没有改动
+     */
+    public CompletableFuture<Void> rebuild() throws IOException {
+        synchronized (commitLock) {
+            if (!indexing.compareAndSet(false, true)) {
+                throw new IllegalStateException("索引正在构建中，请稍后再试");
+            }
+            try {
+                IndexManifest next = manifest.copy();
+                next.getSegments().clear();
+                next.getSources().clear();
+                next.setRealtimeDocs(null);
+                commit(next);
+                realtimeDocs = new long[0];
+            } catch (IOException | RuntimeException e) {
+                indexing.set(false);
+                throw e;
+            }
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                indexSealedSegments();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * 为尚未建索引的已封存 doc_raw 段文件建立一个新索引段
+     */
+    public void indexNewDocuments() throws IOException {
+        if (!indexing.compareAndSet(false, true)) {
+            return;
+        }
+        indexSealedSegments();
+    }
+
+    // 调用方已占用建索引标记，结束后释放
+    private void indexSealedSegments() throws IOException {
+        // 建索引期间持有读取器的引用，读取器被替换或文件被删除时也不会关闭
+        try (DocStore.Segments segments = docStore.segments()) {
+            List<SegmentReader> sealed = new ArrayList<>();
+            for (SegmentReader segment : segments.readers()) {
+                // 仍在写入的文件等封存后再建索引
+                if (segment.isSealed()) {
+                    sealed.add(segment);
+                }
+            }
+            List<SegmentReader> pending = new ArrayList<>();
+            String name;
+            long[] flushed;
+            synchronized (commitLock) {
+                flushed = realtimeDocs;
+                for (SegmentReader segment : sealed) {
+                    // 同名文件大小变化说明被新任务重写
+                    Long indexed = manifest.getSources().get(segment.getPath().getFileName().toString());
+                    if (indexed == null || indexed != segment.getFileSize()) {
+                        pending.add(segment);
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                name = manifest.nextSegmentName();
+            }
+
+            Path target = directory.resolve(name);
+            long start = System.currentTimeMillis();
+            int docCount;
+            ImmutableLongArray.Builder indexed = ImmutableLongArray.builder();
+            ImmutableLongArray.Builder skipped = ImmutableLongArray.builder();
+            try (IndexBuilder builder = new IndexBuilder(target, analyzer, indexProperties.getRamBufferSize())) {
+                for (SegmentReader segment : pending) {
+                    segment.forEach((docId, content, offset, length) -> {
+                        if (Arrays.binarySearch(flushed, docId) >= 0) {
+                            // 已经从内存索引段写入磁盘
+                            skipped.add(docId);
+                            return;
+                        }
+                        indexed.add(docId);
+                        try {
+                            addDocument(builder, docId, content, offset, length);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                }
+                builder.finish();
+                docCount = builder.getDocCount();
+            } catch (UncheckedIOException e) {
+                deleteDirectory(target);
+                throw e.getCause();
+            } catch (IOException | RuntimeException e) {
+                deleteDirectory(target);
+                throw e;
+            }
+
+            IndexReader reader = docCount > 0 ? IndexReader.open(target) : null;
+            synchronized (commitLock) {
+                IndexManifest next = manifest.copy();
+                if (reader != null) {
+                    next.getSegments().add(new SegmentInfo(name, docCount, reader.sizeInBytes()));
+                    readers.put(name, reader);
+                }
+                for (SegmentReader segment : pending) {
+                    next.getSources().put(segment.getPath().getFileName().toString(), segment.getFileSize());
+                }
+                long[] remaining = subtract(realtimeDocs, skipped.build().toArray());
+                if (remaining.length != realtimeDocs.length) {
+                    setRealtimeDocs(next, remaining);
+                }
+                // 内存中的同一批文档在新快照发布前删除
+                deleteRealtime(indexed.build());
+                commit(next);
+                realtimeDocs = remaining;
+            }
+            if (reader == null) {
+                deleteDirectory(target);
+            }
+            log.info("新增索引段: {}, 来源文件数={}, 文档数={}, 耗时 {} ms",
+                    name, pending.size(), docCount, System.currentTimeMillis() - start);
+        } finally {
+            indexing.set(false);
+        }
+        mergeExecutor.execute(this::mergeSegments);
+    }
+
+    // 按合并策略循环合并，直到没有需要合并的索引段
+    private void mergeSegments() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<SegmentInfo> merge;
+            List<IndexReader> sources = new ArrayList<>();
+            String name;
+            synchronized (commitLock) {
+                List<SegmentInfo> eligible = new ArrayList<>();
+                for (SegmentInfo segment : manifest.getSegments()) {
+                    if (!merging.contains(segment.getName())) {
+                        eligible.add(segment);
+                    }
+                }
+                merge = mergePolicy.findMerge(eligible);
+                if (merge.isEmpty()) {
+                    return;
+                }
+                for (SegmentInfo segment : merge) {
+                    merging.add(segment.getName());
+                }
+                // 按清单中的顺序合并
+                for (SegmentInfo segment : manifest.getSegments()) {
+                    if (merge.contains(segment)) {
+                        sources.add(readers.get(segment.getName()));
+                    }
+                }
+                name = manifest.nextSegmentName();
+            }
+
+            Path target = directory.resolve(name);
+            IndexReader reader = null;
+            try {
+                SegmentMerger.merge(sources, target, mergeRateLimiter);
+                reader = IndexReader.open(target);
+
+                synchronized (commitLock) {
+                    Set<String> names = new HashSet<>();
+                    merge.forEach(segment -> names.add(segment.getName()));
+                    IndexManifest next = manifest.copy();
+                    int position = -1;
+                    int removed = 0;
+                    for (int i = next.getSegments().size() - 1; i >= 0; i--) {
+                        if (names.contains(next.getSegments().get(i).getName())) {
+                            next.getSegments().remove(i);
+                            position = i;
+                            removed++;
+                        }
+                    }
+                    if (removed != names.size()) {
+                        // 合并期间索引被重建，合并结果作废，先关闭映射再删除文件
+                        reader.close();
+                        reader = null;
+                        deleteDirectory(target);
+                        continue;
+                    }
+                    // 合并结果放在原来最早的索引段的位置
+                    next.getSegments().add(position, new SegmentInfo(name, reader.docCount(), reader.sizeInBytes()));
+                    readers.put(name, reader);
+                    commit(next);
+                    reader = null;
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("合并索引段失败: {}", name, e);
+                try {
+                    if (reader != null) {
+                        synchronized (commitLock) {
+                            readers.remove(name, reader);
+                        }
+                        reader.close();
+                    }
+                    deleteDirectory(target);
+                } catch (IOException ex) {
+                    log.warn("删除合并失败的索引段失败: {}", target, ex);
+                }
+                return;
+            } finally {
+                synchronized (commitLock) {
+                    merge.forEach(segment -> merging.remove(segment.getName()));
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入新清单并发布快照，删除不再使用的索引段，调用方持有 commitLock
+     */
+    private void commit(IndexManifest next) throws IOException {
+        next.write(directory);
+        String previousDocs = manifest.getRealtimeDocs();
+        manifest = next;
+        if (previousDocs != null && !previousDocs.equals(next.getRealtimeDocs())) {
+            Files.deleteIfExists(directory.resolve(previousDocs));
+        }
+        Set<String> live = new HashSet<>();
+        next.getSegments().forEach(segment -> live.add(segment.getName()));
+        publish(false);
+        for (String name : new ArrayList<>(readers.keySet())) {
+            if (!live.contains(name)) {
+                readers.remove(name).close();
+                try {
+                    deleteDirectory(directory.resolve(name));
+                } catch (IOException e) {
+                    // 文件仍被映射时部分系统不允许删除，下次启动时再清理
+                    log.warn("删除索引段失败，稍后清理: {}", name);
+                }
+            }
+        }
+    }
+
+    // realtimeOnly 为true时只有正在接收文档的内存索引段变化，新快照沿用当前快照的索引段代号
+    private void publish(boolean realtimeOnly) {
+        List<IndexSegment> list = new ArrayList<>();
+        for (SegmentInfo segment : manifest.getSegments()) {
+            IndexReader reader = readers.get(segment.getName());
+            if (reader != null) {
+                list.add(reader);
+            }
+        }
+        for (MemorySegment segment : flushing) {
+            list.add(segment.reader());
+        }
+        publishedRealtime = realtime != null ? realtime.reader() : null;
+        if (publishedRealtime != null) {
+            list.add(publishedRealtime);
+        }
+        snapshot = new IndexSnapshot(list, realtimeOnly ? snapshot : null);
+    }
+
+    /**
+     * 发布内存索引段的新视图，超过大小上限时先写入磁盘
+     */
+    private void refreshRealtime() throws IOException {
+        if (realtime.ramBytesUsed() >= indexProperties.getRealtimeFlushSize()) {
+            flushRealtime();
+            return;
+        }
+        synchronized (commitLock) {
+            if (realtime.reader() != publishedRealtime) {
+                publish(true);
+            }
+        }
+    }
+
+    // 冻结当前内存索引段并换上新的，然后把所有冻结的内存索引段写成磁盘索引段，写完之前冻结的索引段仍然可以检索
+    private void flushRealtime() throws IOException {
+        if (!indexing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<MemorySegment> frozen;
+            synchronized (commitLock) {
+                MemorySegment full = realtime;
+                realtime = new MemorySegment(analyzer);
+                full.freeze();
+                flushing.add(full);
+                frozen = new ArrayList<>(flushing);
+            }
+            for (MemorySegment segment : frozen) {
+                flushRealtime(segment);
+            }
+        } finally {
+            indexing.set(false);
+        }
+        mergeExecutor.execute(this::mergeSegments);
+    }
+
+    private void flushRealtime(MemorySegment segment) throws IOException {
+        String name;
+        synchronized (commitLock) {
+            name = manifest.nextSegmentName();
+        }
+        Path target = directory.resolve(name);
+        long start = System.currentTimeMillis();
+        int docCount;
+        try {
+            docCount = segment.flush(target);
+        } catch (IOException | RuntimeException e) {
+            deleteDirectory(target);
+            throw e;
+        }
+
+        IndexReader reader = docCount > 0 ? IndexReader.open(target) : null;
+        synchronized (commitLock) {
+            IndexManifest next = manifest.copy();
+            long[] docIds = realtimeDocs;
+            if (reader != null) {
+                next.getSegments().add(new SegmentInfo(name, docCount, reader.sizeInBytes()));
+                readers.put(name, reader);
+                long[] added = new long[docCount];
+                for (int ord = 0; ord < docCount; ord++) {
+                    added[ord] = reader.docId(ord);
+                }
+                docIds = union(realtimeDocs, added);
+                setRealtimeDocs(next, docIds);
+            }
+            flushing.remove(segment);
+            commit(next);
+            realtimeDocs = docIds;
+        }
+        if (reader == null) {
+            deleteDirectory(target);
+        }
+        log.info("内存索引段写入磁盘: {}, 文档数={}, 耗时 {} ms", name, docCount, System.currentTimeMillis() - start);
+    }
+
+    // 写入新的 docId 文件并记到清单中，旧文件在提交后删除，调用方持有 commitLock
+    private void setRealtimeDocs(IndexManifest next, long[] docIds) throws IOException {
+        if (docIds.length == 0) {
+            next.setRealtimeDocs(null);
+            return;
+        }
+        String name = next.nextRealtimeDocsName();
+        IndexManifest.writeDocIds(directory, name, docIds);
+        next.setRealtimeDocs(name);
+    }
+
+    // 已写入磁盘索引段的文档从内存索引段中删除，调用方持有 commitLock
+    private void deleteRealtime(ImmutableLongArray docIds) {
+        List<MemorySegment> segments = new ArrayList<>(flushing);
+        if (realtime != null) {
+            segments.add(realtime);
+        }
+        for (MemorySegment segment : segments) {
+            if (segment.docCount() == 0) {
+                continue;
+            }
+            for (int i = 0; i < docIds.length(); i++) {
+                segment.delete(docIds.get(i));
+            }
+        }
+    }
+
+    private static long[] union(long[] sorted, long[] added) {
+        long[] result = Arrays.copyOf(sorted, sorted.length + added.length);
+        System.arraycopy(added, 0, result, sorted.length, added.length);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static long[] subtract(long[] sorted, long[] removed) {
+        if (removed.length == 0) {
+            return sorted;
+        }
+        Arrays.sort(removed);
+        return Arrays.stream(sorted).filter(docId -> Arrays.binarySearch(removed, docId) < 0).toArray();
+    }
+
+    // 删除清单中没有的索引段目录和临时文件
+    private void deleteUnreferenced() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Set<String> live = new HashSet<>();
+        manifest.getSegments().forEach(segment -> live.add(segment.getName()));
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                if (Files.isDirectory(path) && !live.contains(fileName)) {
+                    log.info("清理无效的索引目录: {}", path);
+                    deleteDirectory(path);
+                } else if (fileName.endsWith(".ids") && !fileName.equals(manifest.getRealtimeDocs())) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private void addDocument(IndexBuilder builder, long docId, byte[] content, int offset, int length)
+            throws IOException {
+        Document document;
+        try {
+            // 编码由Jsoup按BOM和meta标签识别
+            document = Jsoup.parse(new ByteArrayInputStream(content, offset, length), null, "");
+        } catch (IOException | RuntimeException e) {
+            log.debug("解析文档失败，跳过: docId={}, {}", docId, e.getMessage());
+            return;
+        }
+        String body = document.body() != null ? document.body().text() : document.text();
+        builder.addDocument(docId, document.title(), body);
+    }
+
+    private static void deleteDirectory(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,19 +1,36 @@
 package cn.kong.engine.service;
 
 import cn.kong.engine.common.Constants;
+import cn.kong.engine.config.CrawlerConfig;
 import cn.kong.engine.model.DocInfo;
+import cn.kong.engine.model.DocInfoFilter;
 import cn.kong.engine.utils.SqlGenerator;
 import com.google.common.collect.Iterables;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+
 import java.io.File;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Slf4j
 @Service
@@ -23,23 +40,33 @@ public class SQLiteService implements AutoCloseable {
     private static final String DB_URL = "jdbc:sqlite:" + Constants.OUT_DIC + File.separator + DB_NAME;
 
     // Prepared SQL statements
-    private static final String INSERT_SQL;
     private static final String CREATE_TABLE_SQL;
     private static final String SELECT_BY_ID_SQL = "SELECT * FROM doc_info WHERE id = ?";
-    private static final String SELECT_ALL_SQL = "SELECT * FROM doc_info ORDER BY id";
-    private static final String SELECT_PAGE_SQL = "SELECT * FROM doc_info ORDER BY id LIMIT ? OFFSET ?";
+    private static final String SELECT_BY_FINGERPRINT_SQL = "SELECT * FROM doc_info WHERE url_fp = ? ORDER BY id LIMIT 1";
+    private static final String SELECT_BY_IDS_SQL = "SELECT * FROM doc_info WHERE id IN (%s)";
+    private static final int MAX_IN_PARAMS = 500;   // 单条IN查询的最大参数个数
+    private static final String SELECT_AFTER_SQL = "SELECT * FROM doc_info WHERE id > ?%s ORDER BY id LIMIT ?";
+    private static final String SELECT_PAGE_START_SQL = "SELECT id FROM doc_info ORDER BY id LIMIT 1 OFFSET ?";
+    private static final String SELECT_SIMHASH_SQL =
+            "SELECT id, simhash FROM doc_info WHERE id > ? AND simhash IS NOT NULL AND duplicate_of IS NULL"
+                    + " AND stored = 1 ORDER BY id LIMIT ?";
+    public static final int DEFAULT_SCAN_SIZE = 1000;  // 遍历时每页的行数
+    private static final int SIMHASH_SCAN_SIZE = 10000;  // 只读两列，每页可以更大
     private static final String COUNT_SQL = "SELECT COUNT(*) FROM doc_info";
-    private static final String DELETE_SQL = "DELETE FROM doc_info WHERE id = ?";
+    private static final String MAX_ID_SQL = "SELECT MAX(id) FROM doc_info";
 
     // Connection pool
     private static final ThreadLocal<Connection> connectionThreadLocal = new ThreadLocal<>();
     private static final HikariDataSource dataSource;
+    private static final HikariDataSource readOnlyDataSource;  // 遍历专用的只读连接池
 
     static {
         // Initialize SQL
-        INSERT_SQL = SqlGenerator.generateInsertSql(DocInfo.class);
         CREATE_TABLE_SQL = SqlGenerator.generateCreateTable(DocInfo.class);
 
+        // 输出目录不存在时 SQLite 无法创建数据库文件
+        new File(Constants.OUT_DIC).mkdirs();
+
         // Configure connection pool
         HikariConfig config = new HikariConfig();
         config.setJdbcUrl(DB_URL);
@@ -63,192 +90,166 @@ public class SQLiteService implements AutoCloseable {
 
         dataSource = new HikariDataSource(config);
         initializeDatabase();
+
+        // 只读连接按页执行短查询，每页一个读事务，长时间遍历不会一直占住WAL快照、阻塞检查点
+        HikariConfig readOnlyConfig = new HikariConfig();
+        readOnlyConfig.setJdbcUrl(DB_URL);
+        readOnlyConfig.setPoolName("SQLite-ReadOnlyPool");
+        readOnlyConfig.setMaximumPoolSize(2);
+        readOnlyConfig.setMinimumIdle(0);
+        readOnlyConfig.setConnectionTimeout(3000);
+        readOnlyConfig.setIdleTimeout(60000);
+        readOnlyConfig.setMaxLifetime(180000);
+        readOnlyConfig.setReadOnly(true);
+        readOnlyConfig.addDataSourceProperty("open_mode", "1");    // SQLITE_OPEN_READONLY，只读标志只能在打开时指定
+        readOnlyConfig.addDataSourceProperty("busy_timeout", 5000);
+        readOnlyDataSource = new HikariDataSource(readOnlyConfig);
         log.info("SQLite database initialized successfully");
     }
 
+    // 插入、更新、删除的写入线程，所有变更经由唯一的连接写入，不与查询线程争用连接
+    private final DocInfoWriter writer;
+
+    @Autowired
+    public SQLiteService(CrawlerConfig.DocInfoProperties properties) {
+        this.writer = new DocInfoWriter("doc-info-writer", dataSource::getConnection,
+                properties.getQueueCapacity(), properties.getMaxBatch());
+        this.writer.start();
+    }
+
     // ================ Initialization Methods ================
     private static void initializeDatabase() {
         executeUpdate(CREATE_TABLE_SQL);
-        executeUpdate("CREATE INDEX IF NOT EXISTS idx_doc_info_url ON doc_info(url)");
+        // 旧库补充新增的列，已有记录的值为空
+        addColumnIfMissing("doc_info", "url_fp", "INTEGER");
+        addColumnIfMissing("doc_info", "simhash", "INTEGER");
+        addColumnIfMissing("doc_info", "duplicate_of", "INTEGER");
+        // URL去重和按URL查找docId由 UrlIdMap 负责，不再维护url索引，按8字节的指纹查找
+        executeUpdate("DROP INDEX IF EXISTS idx_doc_info_url");
+        executeUpdate("CREATE INDEX IF NOT EXISTS idx_doc_info_url_fp ON doc_info(url_fp)");
         executeUpdate("CREATE INDEX IF NOT EXISTS idx_doc_info_status ON doc_info(status_code)");
         executeUpdate("CREATE INDEX IF NOT EXISTS idx_doc_info_domain ON doc_info(domain)");
     }
 
+    private static void addColumnIfMissing(String table, String column, String type) {
+        if (!columnExists(table, column)) {
+            executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+        }
+    }
+
+    private static boolean columnExists(String table, String column) {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Failed to read columns of table: {}", table, e);
+        }
+        return false;
+    }
+
     // ================ CRUD Operations ================
 
     /**
-     * 插入单条文档信息
+     * 插入单条文档信息，等待写入线程写入数据库后返回，返回后即可查询到
      *
      * @param doc 文档信息
-     * @return 是否插入成功
+     * @return 是否写入成功
      */
     public boolean insert(DocInfo doc) {
-        try (Connection conn = getOrCreateConnection();
-             PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
-            setStmt(stmt, doc);
-            int affectedRows = stmt.executeUpdate();
-            conn.commit();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            log.error("Insert failed for document ID: {}", doc.getId(), e);
-            return false;
+        return DocInfoWriter.await(insertAsync(doc));
+    }
+
+    /**
+     * 异步插入单条文档信息，写入队列满时阻塞；返回前不保证可以查询到，需要时先调用 flush
+     *
+     * @param doc 文档信息
+     * @return 写入结果，写入成功时为true，写入失败或写入线程已关闭时为false
+     */
+    public CompletableFuture<Boolean> insertAsync(DocInfo doc) {
+        if (doc == null || doc.getId() == null) {
+            return CompletableFuture.completedFuture(false);
         }
+        return writer.insert(doc);
     }
 
     /**
-     * 批量插入文档信息
+     * 批量插入文档信息，全部提交后等待写入完成，多条记录在同一批事务中写入
      *
      * @param docs 文档信息列表
-     * @return 成功插入的记录数
+     * @return 写入成功的记录数
      */
     public int insertBatch(List<DocInfo> docs) {
         if (Iterables.isEmpty(docs)) return 0;
 
-        final int batchSize = 500;
-        int totalInserted = 0;
-        Connection conn = null;
-
-        try {
-            conn = getOrCreateConnection(); // 从ThreadLocal获取或新建连接
-            try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
-                int currentBatchSize = 0;
-
-                for (DocInfo doc : docs) {
-                    setStmt(stmt, doc);
-                    stmt.addBatch();
-                    currentBatchSize++;
-
-                    // 每batchSize条记录执行一次批处理
-                    if (currentBatchSize % batchSize == 0) {
-                        totalInserted += executeBatch(stmt);
-                        stmt.clearBatch();
-                    }
-                }
-
-                // 处理剩余记录
-                if (currentBatchSize % batchSize != 0) {
-                    totalInserted += executeBatch(stmt);
-                }
-                synchronized (this) { // 确保提交原子性
-                    conn.commit();
-                }
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(docs.size());
+        for (DocInfo doc : docs) {
+            futures.add(insertAsync(doc));
+        }
+        int written = 0;
+        for (CompletableFuture<Boolean> future : futures) {
+            if (DocInfoWriter.await(future)) {
+                written++;
             }
-            return totalInserted;
-        } catch (SQLException e) {
-            rollbackQuietly(conn);
-            log.error("Batch insert failed, inserted {} records", totalInserted, e);
-            return totalInserted;
-        } finally {
-            closeConnection(conn); // 不关闭连接，归还ThreadLocal
         }
+        return written;
     }
 
     /**
-     * 更新文档信息
+     * 更新文档信息的非空字段，等待写入数据库后返回
      *
      * @param doc 文档信息
-     * @return 是否更新成功
+     * @return 是否写入成功
      */
     public boolean update(DocInfo doc) {
-        if (doc == null || doc.getId() == null) {
-            return false;
-        }
-
-        // Dynamically generate update SQL based on non-null fields
-        StringBuilder sqlBuilder = new StringBuilder("UPDATE doc_info SET ");
-        List<Object> params = new ArrayList<>();
-        List<String> setClauses = new ArrayList<>();
-
-        if (doc.getUrl() != null) {
-            setClauses.add("url = ?");
-            params.add(doc.getUrl());
-        }
-        if (doc.getTitle() != null) {
-            setClauses.add("title = ?");
-            params.add(doc.getTitle());
-        }
-        if (doc.getDomain() != null) {
-            setClauses.add("domain = ?");
-            params.add(doc.getDomain());
-        }
-        if (doc.getStatusCode() != null) {
-            setClauses.add("status_code = ?");
-            params.add(doc.getStatusCode());
-        }
-        if (doc.isStored()) {
-            setClauses.add("stored = ?");
-            params.add(1);
-        }
-        if (doc.getContentType() != null) {
-            setClauses.add("content_type = ?");
-            params.add(doc.getContentType());
-        }
-        if (doc.getContentLength() != null) {
-            setClauses.add("content_length = ?");
-            params.add(doc.getContentLength());
-        }
-        if (doc.getCreateTime() != null) {
-            setClauses.add("create_time = ?");
-            params.add(Timestamp.valueOf(doc.getCreateTime()));
-        }
-        if (doc.getUpdateTime() != null) {
-            setClauses.add("update_time = ?");
-            params.add(Timestamp.valueOf(doc.getUpdateTime()));
-        }
-
-        if (setClauses.isEmpty()) {
-            return false;
-        }
-
-        sqlBuilder.append(String.join(", ", setClauses));
-        sqlBuilder.append(" WHERE id = ?");
-        params.add(doc.getId());
-
-        try (Connection conn = getOrCreateConnection();
-             PreparedStatement stmt = conn.prepareStatement(sqlBuilder.toString())) {
-
-            for (int i = 0; i < params.size(); i++) {
-                Object param = params.get(i);
-                if (param instanceof String) {
-                    stmt.setString(i + 1, (String) param);
-                } else if (param instanceof Integer) {
-                    stmt.setInt(i + 1, (Integer) param);
-                } else if (param instanceof Long) {
-                    stmt.setLong(i + 1, (Long) param);
-                } else if (param instanceof Timestamp) {
-                    stmt.setTimestamp(i + 1, (Timestamp) param);
-                } else if (param == null) {
-                    stmt.setNull(i + 1, Types.NULL);
-                }
-            }
+        return DocInfoWriter.await(updateAsync(doc));
+    }
 
-            int affectedRows = stmt.executeUpdate();
-            conn.commit();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            log.error("Update failed for document ID: {}", doc.getId(), e);
-            return false;
+    /**
+     * 异步更新文档信息的非空字段，同一文档未写入的多次变更合并为一次；返回前不保证可以查询到
+     *
+     * @param doc 文档信息
+     * @return 写入结果
+     */
+    public CompletableFuture<Boolean> updateAsync(DocInfo doc) {
+        if (doc == null || doc.getId() == null) {
+            return CompletableFuture.completedFuture(false);
         }
+        return writer.update(doc);
     }
 
     /**
-     * 根据ID删除文档信息
+     * 根据ID删除文档信息，等待写入数据库后返回
      *
      * @param id 文档ID
-     * @return 是否删除成功
+     * @return 是否写入成功
      */
     public boolean deleteById(Long id) {
-        try (Connection conn = getOrCreateConnection();  // 使用ThreadLocal连接
-             PreparedStatement stmt = conn.prepareStatement(DELETE_SQL)) {
+        return DocInfoWriter.await(deleteByIdAsync(id));
+    }
 
-            stmt.setLong(1, id);
-            int affectedRows = stmt.executeUpdate();
-            conn.commit();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            log.error("Delete failed for ID: {}", id, e);
-            return false;
+    /**
+     * 异步删除文档信息，返回前不保证已从查询结果中消失
+     *
+     * @param id 文档ID
+     * @return 写入结果
+     */
+    public CompletableFuture<Boolean> deleteByIdAsync(Long id) {
+        if (id == null) {
+            return CompletableFuture.completedFuture(false);
         }
+        return writer.delete(id);
+    }
+
+    /**
+     * 等待之前异步提交的插入、更新、删除全部写入数据库
+     */
+    public void flush() {
+        writer.flush();
     }
 
     // ================ Query Operations ================
@@ -276,53 +277,216 @@ public class SQLiteService implements AutoCloseable {
     }
 
     /**
-     * 查询所有文档信息
+     * 根据规范化URL的指纹查询文档信息
      *
-     * @return 文档信息列表
+     * @param fingerprint URL指纹
+     * @return 可选的文档信息，同一指纹有多条记录时返回docId最小的一条
      */
-    public List<DocInfo> selectAll() {
-        List<DocInfo> result = new ArrayList<>();
+    public Optional<DocInfo> selectByFingerprint(long fingerprint) {
         try (Connection conn = getOrCreateConnection();  // 使用ThreadLocal连接
-             PreparedStatement stmt = conn.prepareStatement(SELECT_ALL_SQL);
-             ResultSet rs = stmt.executeQuery()) {
+             PreparedStatement stmt = conn.prepareStatement(SELECT_BY_FINGERPRINT_SQL)) {
 
-            while (rs.next()) {
-                result.add(mapToDocInfo(rs));
+            stmt.setLong(1, fingerprint);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapToDocInfo(rs));
+                }
             }
         } catch (SQLException e) {
-            log.error("Failed to select all documents", e);
+            log.error("Query failed for fingerprint: {}", fingerprint, e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 根据ID批量查询文档信息
+     *
+     * @param ids 文档ID
+     * @return ID到文档信息的映射，不存在的ID不包含在结果中
+     */
+    public Map<Long, DocInfo> selectByIds(Collection<Long> ids) {
+        Map<Long, DocInfo> result = new HashMap<>(ids.size() * 2);
+        for (List<Long> chunk : Iterables.partition(ids, MAX_IN_PARAMS)) {
+            String sql = String.format(SELECT_BY_IDS_SQL, String.join(",", Collections.nCopies(chunk.size(), "?")));
+            try (Connection conn = getOrCreateConnection();  // 使用ThreadLocal连接
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setLong(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        DocInfo doc = mapToDocInfo(rs);
+                        result.put(doc.getId(), doc);
+                    }
+                }
+            } catch (SQLException e) {
+                log.error("Query failed for {} IDs", chunk.size(), e);
+            }
         }
         return result;
     }
 
     /**
-     * 分页查询文档信息
+     * 查询所有文档信息，按页读取，结果全部放在内存中，大表请使用 {@link #scan} 或 {@link #stream}
+     *
+     * @return 文档信息列表
+     */
+    public List<DocInfo> selectAll() {
+        List<DocInfo> result = new ArrayList<>();
+        scan(DocInfoFilter.all(), DEFAULT_SCAN_SIZE, result::add);
+        return result;
+    }
+
+    /**
+     * 分页查询文档信息，先在主键上定位页首的docId，再按docId向后读取一页，不解码被跳过的行
+     * 顺序翻页请使用 {@link #selectAfter}，不需要定位页首
      *
      * @param page 页码，从1开始
      * @param size 每页大小
      * @return 文档信息列表
      */
     public List<DocInfo> selectByPage(int page, int size) {
-        List<DocInfo> result = new ArrayList<>();
-        try (Connection conn = getOrCreateConnection();  // 使用ThreadLocal连接
-             PreparedStatement stmt = conn.prepareStatement(SELECT_PAGE_SQL)) {
+        long startId;
+        // 先归还连接再读取这一页，只读连接池很小，不同时占用两个连接
+        try (Connection conn = readOnlyDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SELECT_PAGE_START_SQL)) {
+
+            stmt.setLong(1, (long) (Math.max(1, page) - 1) * size);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return new ArrayList<>();
+                }
+                startId = rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to select page " + page + " with size " + size, e);
+        }
+        return selectAfter(startId - 1, DocInfoFilter.all(), size);
+    }
 
-            stmt.setInt(1, size);
-            stmt.setInt(2, (page - 1) * size);
+    /**
+     * 按docId向后读取一页，WHERE id > ? ORDER BY id LIMIT ?，在主键上定位，翻页开销与页码无关
+     *
+     * @param afterId 上一页最后一条记录的docId，从头读取时传0
+     * @param filter  过滤条件
+     * @param size    每页大小
+     * @return 文档信息列表，少于 size 条时已读到末尾
+     * @throws IllegalStateException 查询失败，不返回不完整的一页，避免遍历方误以为已读到末尾
+     */
+    public List<DocInfo> selectAfter(long afterId, DocInfoFilter filter, int size) {
+        List<DocInfo> result = new ArrayList<>(Math.min(size, DEFAULT_SCAN_SIZE));
+        List<Object> params = new ArrayList<>();
+        params.add(afterId);
+        String sql = String.format(SELECT_AFTER_SQL, whereClause(filter, params));
+        params.add(size);
+        try (Connection conn = readOnlyDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
 
+            stmt.setFetchSize(size);
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     result.add(mapToDocInfo(rs));
                 }
             }
         } catch (SQLException e) {
-            log.error("Failed to select page {} with size {}", page, size, e);
+            throw new IllegalStateException("Failed to select after id " + afterId + " with size " + size, e);
         }
         return result;
     }
 
     /**
-     * 统计文档总数
+     * 按docId顺序遍历满足条件的文档信息，每次只读取一页，内存占用与表大小无关
+     *
+     * @param filter   过滤条件
+     * @param size     每页大小
+     * @param consumer 每条记录回调一次
+     * @throws IllegalStateException 查询失败，已回调的记录不会撤销
+     */
+    public void scan(DocInfoFilter filter, int size, Consumer<DocInfo> consumer) {
+        long afterId = 0;
+        while (true) {
+            List<DocInfo> page = selectAfter(afterId, filter, size);
+            page.forEach(consumer);
+            if (page.size() < size) {
+                return;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    /**
+     * 按docId顺序遍历满足条件的文档信息，流被消费时才按页读取
+     *
+     * @param filter 过滤条件
+     * @param size   每页大小
+     * @return 文档信息流，读取下一页失败时抛出 IllegalStateException
+     */
+    public Stream<DocInfo> stream(DocInfoFilter filter, int size) {
+        Iterator<DocInfo> iterator = new Iterator<>() {
+            private Iterator<DocInfo> page = Collections.emptyIterator();
+            private long afterId = 0;
+            private boolean last = false;
+
+            @Override
+            public boolean hasNext() {
+                if (!page.hasNext() && !last) {
+                    List<DocInfo> next = selectAfter(afterId, filter, size);
+                    last = next.size() < size;
+                    if (!next.isEmpty()) {
+                        afterId = next.get(next.size() - 1).getId();
+                    }
+                    page = next.iterator();
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public DocInfo next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT), false);
+    }
+
+    /**
+     * 遍历所有已存储文档的SimHash，近似重复和内容写入失败的文档不包含在内，用于启动时重建近邻索引
+     *
+     * @param consumer 回调，参数为 (SimHash, docId)
+     */
+    public void forEachSimHash(SimHashConsumer consumer) {
+        try (Connection conn = readOnlyDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SELECT_SIMHASH_SQL)) {
+
+            stmt.setFetchSize(SIMHASH_SCAN_SIZE);
+            long afterId = 0;
+            int rows;
+            do {
+                rows = 0;
+                stmt.setLong(1, afterId);
+                stmt.setInt(2, SIMHASH_SCAN_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        afterId = rs.getLong(1);
+                        consumer.accept(rs.getLong(2), afterId);
+                        rows++;
+                    }
+                }
+            } while (rows == SIMHASH_SCAN_SIZE);
+        } catch (SQLException e) {
+            log.error("Failed to select simhashes", e);
+        }
+    }
+
+    /**
+     * 统计文档总数，只包含已抓取的页面，发现后还没有抓取的URL不在表中
      *
      * @return 文档总数
      */
@@ -340,8 +504,53 @@ public class SQLiteService implements AutoCloseable {
         return 0L;
     }
 
+    /**
+     * 已记录的最大docId，先等待写入队列中的记录提交，没有记录时返回0
+     */
+    public long maxId() {
+        flush();
+        try (Connection conn = getOrCreateConnection();
+             PreparedStatement stmt = conn.prepareStatement(MAX_ID_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+
+            if (rs.next()) {
+                return rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            log.error("Failed to query max id", e);
+        }
+        return 0L;
+    }
+
     // ================ Helper Methods ================
 
+    // 过滤条件对应的 AND 子句，参数按顺序加入 params
+    private static String whereClause(DocInfoFilter filter, List<Object> params) {
+        if (filter == null) {
+            return "";
+        }
+        StringBuilder where = new StringBuilder();
+        if (filter.getStored() != null) {
+            where.append(" AND stored = ?");
+            params.add(filter.getStored() ? 1 : 0);
+        }
+        if (filter.getStatusCode() != null) {
+            where.append(" AND status_code = ?");
+            params.add(filter.getStatusCode());
+        }
+        if (filter.getDomain() != null) {
+            where.append(" AND domain = ?");
+            params.add(filter.getDomain());
+        }
+        if (filter.getDuplicate() != null) {
+            where.append(filter.getDuplicate() ? " AND duplicate_of IS NOT NULL" : " AND duplicate_of IS NULL");
+        }
+        if (filter.getHasSimhash() != null) {
+            where.append(filter.getHasSimhash() ? " AND simhash IS NOT NULL" : " AND simhash IS NULL");
+        }
+        return where.toString();
+    }
+
     /**
      * 执行SQL更新语句
      *
@@ -357,24 +566,6 @@ public class SQLiteService implements AutoCloseable {
         }
     }
 
-    /**
-     * 执行批处理操作，返回成功地记录数
-     *
-     * @param stmt PreparedStatement对象
-     * @return 成功地记录数
-     * @throws SQLException 如果执行批处理失败
-     */
-    private int executeBatch(PreparedStatement stmt) throws SQLException {
-        int[] results = stmt.executeBatch();
-        int successCount = 0;
-        for (int result : results) {
-            if (result >= 0 || result == Statement.SUCCESS_NO_INFO) {
-                successCount++;
-            }
-        }
-        return successCount;
-    }
-
     /**
      * 设置PreparedStatement参数
      *
@@ -382,18 +573,22 @@ public class SQLiteService implements AutoCloseable {
      * @param doc  DocInfo对象
      * @throws SQLException 如果设置参数失败
      */
-    private void setStmt(PreparedStatement stmt, DocInfo doc) throws SQLException {
+    static void setStmt(PreparedStatement stmt, DocInfo doc) throws SQLException {
         stmt.setLong(1, doc.getId());
         stmt.setString(2, doc.getUrl());
-        stmt.setString(3, doc.getTitle());
-        stmt.setString(4, doc.getDomain());
-        stmt.setInt(5, doc.getStatusCode());
-        stmt.setInt(6, doc.isStored() ? 1 : 0);
-        stmt.setString(7, doc.getContentType());
-        stmt.setInt(8, doc.getContentLength());
-        stmt.setTimestamp(9, Timestamp.valueOf(doc.getCreateTime()));
-        stmt.setTimestamp(10, doc.getUpdateTime() != null ?
+        stmt.setObject(3, doc.getUrlFp(), Types.BIGINT);
+        stmt.setString(4, doc.getTitle());
+        stmt.setString(5, doc.getDomain());
+        stmt.setObject(6, doc.getStatusCode(), Types.INTEGER);
+        stmt.setInt(7, doc.isStored() ? 1 : 0);
+        stmt.setString(8, doc.getContentType());
+        stmt.setObject(9, doc.getContentLength(), Types.INTEGER);
+        stmt.setTimestamp(10, doc.getCreateTime() != null ?
+                Timestamp.valueOf(doc.getCreateTime()) : null);
+        stmt.setTimestamp(11, doc.getUpdateTime() != null ?
                 Timestamp.valueOf(doc.getUpdateTime()) : null);
+        stmt.setObject(12, doc.getSimhash(), Types.BIGINT);
+        stmt.setObject(13, doc.getDuplicateOf(), Types.BIGINT);
     }
 
     /**
@@ -407,6 +602,8 @@ public class SQLiteService implements AutoCloseable {
         try {
             doc.setId(rs.getLong("id"));
             doc.setUrl(rs.getString("url"));
+            long urlFp = rs.getLong("url_fp");
+            doc.setUrlFp(rs.wasNull() ? null : urlFp);
             doc.setTitle(rs.getString("title"));
             doc.setDomain(rs.getString("domain"));
             doc.setStatusCode(rs.getInt("status_code"));
@@ -423,18 +620,34 @@ public class SQLiteService implements AutoCloseable {
             if (updateTime != null) {
                 doc.setUpdateTime(updateTime.toLocalDateTime());
             }
+
+            long simhash = rs.getLong("simhash");
+            doc.setSimhash(rs.wasNull() ? null : simhash);
+            long duplicateOf = rs.getLong("duplicate_of");
+            doc.setDuplicateOf(rs.wasNull() ? null : duplicateOf);
         } catch (SQLException e) {
             log.error("Data mapping failed", e);
         }
         return doc;
     }
 
+    /**
+     * SimHash 回调，避免装箱
+     */
+    @FunctionalInterface
+    public interface SimHashConsumer {
+        void accept(long simhash, long docId);
+    }
+
     // ================ Resource Management ================
 
     /**
      * 关闭数据库连接池
      */
     public static void shutdown() {
+        if (readOnlyDataSource != null && !readOnlyDataSource.isClosed()) {
+            readOnlyDataSource.close();
+        }
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
             log.info("Database connection pool closed");
@@ -458,49 +671,21 @@ public class SQLiteService implements AutoCloseable {
     }
 
     /**
-     * 关闭连接，但不实际关闭数据库连接
-     * 仅重置连接状态，供ThreadLocal使用
-     *
-     * @param conn 数据库连接
-     */
-    private void closeConnection(Connection conn) {
-        // 仅重置状态，不实际关闭连接
-        if (conn != null) {
-            try {
-                conn.setAutoCommit(true); // 重置为自动提交
-            } catch (SQLException e) {
-                log.error("Reset auto-commit failed", e);
-            }
-        }
-    }
-
-    /**
-     * 安静地回滚连接，避免抛出异常
-     *
-     * @param conn 数据库连接
-     */
-    private void rollbackQuietly(Connection conn) {
-        if (conn != null) {
-            try {
-                conn.rollback();
-            } catch (SQLException ex) {
-                log.error("Rollback failed", ex);
-            }
-        }
-    }
-
-    /**
-     * 关闭ThreadLocal中的连接
+     * 等待写入线程写完队列中的变更，再关闭ThreadLocal中的连接
      * 在应用程序结束时调用，确保所有资源被正确释放
      */
     @Override
+    @PreDestroy
     public void close() {
+        writer.close();
         // 清理ThreadLocal中的连接
         Connection conn = connectionThreadLocal.get();
         if (conn != null) {
             try {
-                if (!conn.getAutoCommit()) conn.commit();
-                conn.close();
+                if (!conn.isClosed()) {
+                    if (!conn.getAutoCommit()) conn.commit();
+                    conn.close();
+                }
             } catch (SQLException e) {
                 log.error("Close connection failed", e);
             }
@@ -0,0 +1,259 @@
+package cn.kong.engine.service;
+
+import cn.kong.engine.analysis.Analyzer;
+import cn.kong.engine.config.SearchConfig;
+import cn.kong.engine.index.IndexSegment;
+import cn.kong.engine.index.IndexSnapshot;
+import cn.kong.engine.model.DocInfo;
+import cn.kong.engine.model.SearchResult;
+import cn.kong.engine.search.Bm25;
+import cn.kong.engine.search.CacheStats;
+import cn.kong.engine.search.MaxScoreSearcher;
+import cn.kong.engine.search.ParsedQuery;
+import cn.kong.engine.search.PhraseSearcher;
+import cn.kong.engine.search.QueryParser;
+import cn.kong.engine.search.SearchHit;
+import cn.kong.engine.search.SnippetGenerator;
+import cn.kong.engine.search.TopKCollector;
+import cn.kong.engine.search.WTinyLfuCache;
+import cn.kong.engine.search.WeightedTerm;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author gzkon
+ * @description: 检索服务，查询串按建索引时的分词器切词，按 BM25 取得分最高的前 k 篇文档
+ * 普通查询走 MaxScore 剪枝，带短语或 NEAR/n 的查询走位置检索，只有后者才读取位置
+ * 每条结果带有从索引段保存的正文纯文本生成的高亮摘要，摘要生成受单次检索的时间上限约束
+ * 分页结果连同 doc_info 中的url、标题和摘要一起缓存，缓存键为快照的索引段代号加解析后的查询和页码，
+ * 磁盘索引段变化后旧代号的结果不再命中，由缓存按容量自然淘汰；近实时刷新只改变快照代号，不改变键，
+ * 缓存结果在 realtime-staleness 内继续使用，超过后重新检索并覆盖同一个键，不会每秒产生一批新键占用容量；
+ * 摘要因超时不完整的结果页不缓存
+ * @date 2026/10/18 20:00
+ */
+@Slf4j
+@Service
+public class SearchService {
+
+    private final IndexService indexService;
+
+    private final SQLiteService sqliteService;
+
+    private final QueryParser parser;
+
+    private final SearchConfig.QueryProperties queryProperties;
+
+    private final Bm25 bm25;
+
+    private final MaxScoreSearcher searcher;
+
+    private final PhraseSearcher phraseSearcher;
+
+    private final SnippetGenerator snippets;
+
+    private final long snippetTimeBudget;   // 纳秒
+
+    private final WTinyLfuCache<String, CachedPage> cache;
+
+    private final long realtimeStaleness;   // 纳秒
+
+    @Autowired
+    public SearchService(IndexService indexService, SQLiteService sqliteService, Analyzer analyzer,
+                         SearchConfig.QueryProperties queryProperties, SearchConfig.CacheProperties cacheProperties,
+                         SearchConfig.SnippetProperties snippetProperties) {
+        this.indexService = indexService;
+        this.sqliteService = sqliteService;
+        this.parser = new QueryParser(analyzer);
+        this.queryProperties = queryProperties;
+        this.bm25 = new Bm25(queryProperties.getK1(), queryProperties.getB());
+        this.searcher = new MaxScoreSearcher(bm25);
+        this.phraseSearcher = new PhraseSearcher(bm25);
+        this.cache = cacheProperties.isEnabled() ? new WTinyLfuCache<>(cacheProperties.getMaximumSize()) : null;
+        this.realtimeStaleness = TimeUnit.MILLISECONDS.toNanos(cacheProperties.getRealtimeStaleness());
+        this.snippets = snippetProperties.isEnabled() ? new SnippetGenerator(snippetProperties.getFragmentSize()) : null;
+        this.snippetTimeBudget = TimeUnit.MILLISECONDS.toNanos(snippetProperties.getTimeBudget());
+    }
+
+    /**
+     * 分页检索
+     *
+     * @param query 查询串
+     * @param page  页码，从1开始
+     * @param size  每页大小
+     */
+    public SearchResult search(String query, int page, int size) {
+        long start = System.currentTimeMillis();
+        page = Math.max(1, page);
+        size = Math.max(1, Math.min(size, queryProperties.getMaxResults()));
+
+        SearchResult result = new SearchResult();
+        result.setQuery(query);
+        result.setPage(page);
+        result.setSize(size);
+
+        ParsedQuery parsed = parser.parse(query);
+        IndexSnapshot snapshot = indexService.getSnapshot();
+        CachedPage cached = null;
+        String key = null;
+        if (cache != null && !parsed.isEmpty()) {
+            // 结果按取得的快照计算，键中的索引段代号与结果一致，快照中途变化也不会缓存过期结果
+            key = snapshot.segmentGeneration() + "|" + parsed.key() + "|" + page + "|" + size;
+            cached = cache.get(key);
+            if (cached != null && cached.generation != snapshot.generation()
+                    && System.nanoTime() - cached.createdAt > realtimeStaleness) {
+                cached = null;  // 近实时结果已超过允许的滞后时间
+            }
+        }
+
+        if (cached == null) {
+            cached = searchPage(snapshot, parsed, page, size);
+            if (key != null && cached.complete) {
+                cache.put(key, cached);
+            }
+        } else {
+            result.setCached(true);
+        }
+        result.setItems(cached.items);
+        result.setHasMore(cached.hasMore);
+        result.setTook(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * 检索得分最高的前 k 篇文档，索引尚未建立时返回空列表
+     */
+    public List<SearchHit> search(String query, int k) {
+        IndexSnapshot snapshot = indexService.getSnapshot();
+        ParsedQuery parsed = parser.parse(query);
+        return topK(snapshot, parsed, weigh(snapshot, parsed), k);
+    }
+
+    /**
+     * 结果缓存统计，未启用缓存时返回null
+     */
+    public CacheStats cacheStats() {
+        return cache == null ? null : cache.stats();
+    }
+
+    private CachedPage searchPage(IndexSnapshot snapshot, ParsedQuery query, int page, int size) {
+        int offset = (page - 1) * size;
+        if (offset >= queryProperties.getMaxResults()) {
+            return new CachedPage(snapshot, Collections.emptyList(), false);
+        }
+        // 多取一条判断是否还有下一页
+        List<WeightedTerm> weighted = weigh(snapshot, query);
+        List<SearchHit> hits = topK(snapshot, query, weighted, offset + size + 1);
+        boolean hasMore = hits.size() > offset + size && offset + size < queryProperties.getMaxResults();
+        if (hits.size() <= offset) {
+            return new CachedPage(snapshot, Collections.emptyList(), false);
+        }
+        hits = hits.subList(offset, Math.min(hits.size(), offset + size));
+
+        List<Long> ids = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            ids.add(hit.getDocId());
+        }
+        Map<Long, DocInfo> docs = sqliteService.selectByIds(ids);
+        List<SearchResult.Item> items = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            SearchResult.Item item = new SearchResult.Item();
+            item.setId(hit.getDocId());
+            item.setScore(hit.getScore());
+            DocInfo doc = docs.get(hit.getDocId());
+            if (doc != null) {
+                item.setUrl(doc.getUrl());
+                item.setTitle(doc.getTitle());
+            }
+            items.add(item);
+        }
+        boolean complete = snippets == null || highlight(snapshot, items, weighted);
+        return new CachedPage(snapshot, Collections.unmodifiableList(items), hasMore, complete);
+    }
+
+    /**
+     * 按顺序为结果生成摘要，超过时间上限后其余结果不带摘要
+     *
+     * @return 是否所有结果都已生成摘要
+     */
+    private boolean highlight(IndexSnapshot snapshot, List<SearchResult.Item> items, List<WeightedTerm> weighted) {
+        long deadline = System.nanoTime() + snippetTimeBudget;
+        for (SearchResult.Item item : items) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            try {
+                String text = snapshot.storedText(item.getId());
+                if (text != null) {
+                    item.setSnippet(snippets.snippet(text, weighted));
+                }
+            } catch (IOException e) {
+                log.warn("读取正文纯文本失败: docId={}", item.getId(), e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 各索引段使用全局的文档数、平均长度和文档频率打分，共用一个结果收集器
+    private List<SearchHit> topK(IndexSnapshot snapshot, ParsedQuery query, List<WeightedTerm> weighted, int k) {
+        if (weighted.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int limit = Math.min(Math.max(1, k), queryProperties.getMaxResults() + 1);
+        TopKCollector collector = new TopKCollector(limit);
+        for (IndexSegment segment : snapshot.segments()) {
+            if (query.clauses().isEmpty()) {
+                searcher.search(segment, weighted, snapshot.avgLength(), collector);
+            } else {
+                phraseSearcher.search(segment, query, weighted, snapshot.avgLength(), collector);
+            }
+        }
+        return collector.results();
+    }
+
+    // 按全局统计计算查询词权重，相同的词合并，出现次数计入权重；必须出现的词不存在时返回空列表
+    private List<WeightedTerm> weigh(IndexSnapshot snapshot, ParsedQuery query) {
+        if (snapshot.docCount() == 0 || query.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<WeightedTerm> weighted = new ArrayList<>(query.terms().size());
+        for (Map.Entry<String, Integer> entry : query.terms().entrySet()) {
+            long docFreq = snapshot.docFreq(entry.getKey());
+            if (docFreq > 0) {
+                float idf = bm25.idf(docFreq, snapshot.docCount());
+                weighted.add(new WeightedTerm(entry.getKey(), idf * entry.getValue()));
+            } else if (query.requiredTerms().contains(entry.getKey())) {
+                return Collections.emptyList();
+            }
+        }
+        return weighted;
+    }
+
+    private static class CachedPage {
+        private final long generation;      // 计算结果时的快照代号
+        private final long createdAt;       // System.nanoTime()
+        private final List<SearchResult.Item> items;
+        private final boolean hasMore;
+        private final boolean complete;     // 摘要是否完整，不完整时不缓存
+
+        CachedPage(IndexSnapshot snapshot, List<SearchResult.Item> items, boolean hasMore) {
+            this(snapshot, items, hasMore, true);
+        }
+
+        CachedPage(IndexSnapshot snapshot, List<SearchResult.Item> items, boolean hasMore, boolean complete) {
+            this.generation = snapshot.generation();
+            this.createdAt = System.nanoTime();
+            this.items = items;
+            this.hasMore = hasMore;
+            this.complete = complete;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package cn.kong.engine.store;
+
+import cn.kong.engine.common.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author gzkon
+ * @description: 原始文档存储，读取输出目录下所有 doc_raw 段文件，按docId随机读取文档内容
+ * 已关闭的段文件只打开一次；仍在写入的段文件在文件变大后重新打开，沿用已恢复的索引，只扫描新写入的数据块
+ * 读取器带引用计数，重新打开时旧读取器等正在进行的读取结束后才关闭
+ * @date 2026/10/18 15:10
+ */
+@Slf4j
+@Service
+public class DocStore {
+
+    private static final long REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);   // 两次扫描目录的最小间隔
+
+    private final Path directory;
+
+    private final Map<Path, Handle> readers = new ConcurrentHashMap<>();
+
+    private volatile long lastRefresh = 0;
+
+    public DocStore() {
+        this(Paths.get(Constants.OUT_DIC));
+    }
+
+    public DocStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 按docId读取文档内容，返回只读缓冲区，不存在时返回null
+     */
+    public ByteBuffer read(long docId) throws IOException {
+        Handle handle = acquire(docId);
+        if (handle == null) {
+            return null;
+        }
+        try {
+            return handle.reader.read(docId);
+        } finally {
+            handle.release();
+        }
+    }
+
+    /**
+     * 把文档内容写到目标通道
+     *
+     * @return 写出的字节数，文档不存在时返回-1
+     */
+    public long transferTo(long docId, WritableByteChannel target) throws IOException {
+        Handle handle = acquire(docId);
+        if (handle == null) {
+            return -1;
+        }
+        try {
+            return handle.reader.transferTo(docId, target);
+        } finally {
+            handle.release();
+        }
+    }
+
+    public boolean contains(long docId) {
+        Handle handle = acquire(docId);
+        if (handle == null) {
+            return false;
+        }
+        handle.release();
+        return true;
+    }
+
+    /**
+     * 当前所有段文件的读取器，返回前已增加引用，调用方用完后必须 close 释放，
+     * 期间读取器被 refresh 替换或文件被删除也不会关闭
+     */
+    public Segments segments() {
+        refresh(true);
+        List<Handle> handles = new ArrayList<>(readers.size());
+        for (Handle handle : readers.values()) {
+            if (handle.retain()) {
+                handles.add(handle);
+            }
+        }
+        return new Segments(handles);
+    }
+
+    /**
+     * 所有段文件中最大的docId，没有文档时返回0
+     */
+    public long maxDocId() {
+        long max = 0;
+        try (Segments segments = segments()) {
+            for (SegmentReader segment : segments.readers()) {
+                long[] docIds = segment.docIds();
+                if (docIds.length > 0) {
+                    max = Math.max(max, docIds[docIds.length - 1]);
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 重新扫描输出目录，打开新增的段文件
+     *
+     * @param force 为false时受最小扫描间隔限制
+     */
+    public synchronized void refresh(boolean force) {
+        long now = System.nanoTime();
+        if (!force && lastRefresh != 0 && now - lastRefresh < REFRESH_INTERVAL_NANOS) {
+            return;
+        }
+        lastRefresh = now;
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + Constants.FILE_SUFFIX)) {
+            for (Path path : stream) {
+                Handle current = readers.get(path);
+                if (current != null && (current.reader.isSealed() || current.reader.getFileSize() == Files.size(path))) {
+                    continue;
+                }
+                openSegment(path, current);
+            }
+        } catch (IOException e) {
+            log.error("扫描段文件失败: {}", directory, e);
+        }
+        readers.entrySet().removeIf(entry -> {
+            if (Files.exists(entry.getKey())) {
+                return false;
+            }
+            entry.getValue().release();
+            return true;
+        });
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        for (Handle handle : readers.values()) {
+            handle.release();
+        }
+        readers.clear();
+    }
+
+    /**
+     * 找到包含该文档的读取器并增加引用，调用方用完后必须 release
+     */
+    private Handle acquire(long docId) {
+        Handle handle = find(docId);
+        if (handle == null) {
+            // 可能是新写入的文档，重新扫描目录后再找一次；受最小扫描间隔限制，
+            // 仍在写入的文件只扫描新增的数据块
+            refresh(false);
+            handle = find(docId);
+        }
+        return handle;
+    }
+
+    private Handle find(long docId) {
+        // 找到后读取器可能刚被替换，引用失败时重新查找
+        for (int attempt = 0; attempt < 3; attempt++) {
+            boolean retired = false;
+            for (Handle handle : readers.values()) {
+                if (!handle.reader.contains(docId)) {
+                    continue;
+                }
+                if (handle.retain()) {
+                    return handle;
+                }
+                retired = true;
+            }
+            if (!retired) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private void openSegment(Path path, Handle previous) {
+        try {
+            SegmentReader reader = previous != null ? SegmentReader.reopen(previous.reader) : SegmentReader.open(path);
+            Handle handle = new Handle(reader);
+            readers.put(path, handle);
+            if (previous != null) {
+                // 去掉 DocStore 自身持有的引用，正在读取的线程结束后才真正关闭
+                previous.release();
+            }
+        } catch (IOException e) {
+            log.debug("跳过无法读取的文件: {} ({})", path, e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(SegmentReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            log.warn("关闭段文件失败: {}", reader.getPath(), e);
+        }
+    }
+
+    /**
+     * segments 返回的一组读取器，关闭时释放引用
+     */
+    public static class Segments implements AutoCloseable {
+        private final List<Handle> handles;
+        private final List<SegmentReader> readers;
+
+        private Segments(List<Handle> handles) {
+            this.handles = handles;
+            this.readers = new ArrayList<>(handles.size());
+            for (Handle handle : handles) {
+                readers.add(handle.reader);
+            }
+        }
+
+        public List<SegmentReader> readers() {
+            return Collections.unmodifiableList(readers);
+        }
+
+        @Override
+        public void close() {
+            handles.forEach(Handle::release);
+            handles.clear();
+        }
+    }
+
+    /**
+     * 读取器和引用计数，DocStore 持有一个引用，每次读取期间再持有一个
+     */
+    private static class Handle {
+        private final SegmentReader reader;
+        private final AtomicInteger refs = new AtomicInteger(1);
+
+        private Handle(SegmentReader reader) {
+            this.reader = reader;
+        }
+
+        private boolean retain() {
+            while (true) {
+                int current = refs.get();
+                if (current <= 0) {
+                    return false;
+                }
+                if (refs.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release() {
+            if (refs.decrementAndGet() == 0) {
+                closeQuietly(reader);
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package cn.kong.engine.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * @author gzkon
+ * @description: 段文件写入线程
+ * 抓取线程只把记录放入有界队列，由唯一的写入线程批量取出写入段文件，
+ * 按字节数和时间间隔刷新到操作系统或强制落盘，文件切换也只在写入线程中进行
+ * 每条记录返回一个 Future，记录所在的数据块刷新到文件之后才执行回调并完成，写入或刷新失败时异常完成；
+ * 队列取空时立即刷新，等待中的提交方一起完成（组提交），持续有记录时按 flush-bytes 和 flush-interval 刷新；
+ * 刷新只保证进入操作系统缓存，force-interval 大于0时按间隔强制落盘，关闭文件时一定落盘
+ * 提交和关闭由读写锁互斥，关闭之后提交的记录直接拒绝，不会留在队列中丢失
+ * @date 2026/10/18 16:10
+ */
+@Slf4j
+public class DocWriter implements Closeable {
+
+    private static final int MAX_BATCH = 256;   // 单次从队列取出的最大记录数
+
+    private final Supplier<SegmentWriter> segmentFactory;   // 打开新的段文件
+
+    private final long maxFileSize;
+
+    private final long flushBytes;
+
+    private final long flushIntervalNanos;
+
+    private final long forceIntervalNanos;
+
+    private final long offerTimeoutNanos;
+
+    private final BlockingQueue<Record> queue;
+
+    private final Thread thread;
+
+    private final AtomicLong written = new AtomicLong(0);
+
+    private final AtomicLong failed = new AtomicLong(0);
+
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();   // 提交持有读锁，关闭持有写锁
+
+    private volatile boolean running = true;
+
+    private SegmentWriter segment;
+
+    private final List<Record> unflushed = new ArrayList<>();    // 已追加到当前段文件、还没有刷新的记录
+
+    private long unflushedBytes = 0;
+
+    private long lastFlush = System.nanoTime();
+
+    private long lastForce = System.nanoTime();
+
+    /**
+     * @param name           写入线程名称
+     * @param segmentFactory 打开新的段文件，只在写入线程中调用
+     * @param maxFileSize    单个段文件的最大大小
+     * @param queueCapacity  队列容量，队列满时写入方阻塞
+     * @param flushBytes     累计写入多少字节后刷新
+     * @param flushInterval  最长多久刷新一次，毫秒
+     * @param forceInterval  最长多久强制落盘一次，毫秒，0表示只在关闭时落盘
+     * @param offerTimeout   队列满时最长等待多久，毫秒，超时后拒绝提交
+     */
+    public DocWriter(String name, Supplier<SegmentWriter> segmentFactory, long maxFileSize,
+                     int queueCapacity, long flushBytes, long flushInterval, long forceInterval, long offerTimeout) {
+        this.segmentFactory = segmentFactory;
+        this.maxFileSize = maxFileSize;
+        this.flushBytes = flushBytes;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushInterval));
+        this.forceIntervalNanos = TimeUnit.MILLISECONDS.toNanos(forceInterval);
+        this.offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, offerTimeout));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.thread = new Thread(this::loop, name);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * 提交一条记录，队列满时最多等待 offerTimeout
+     *
+     * @return 记录刷新到段文件后完成，写入失败时异常完成
+     * @throws IOException 写入线程已关闭、等待超时或被中断，记录没有提交
+     */
+    public CompletableFuture<Void> append(long docId, byte[] content) throws IOException {
+        return append(docId, content, null);
+    }
+
+    /**
+     * 提交一条记录，刷新到段文件后在写入线程中先执行 onWritten 再完成 Future
+     * onWritten 在当前段文件封存之前执行，段文件封存后看到的记录一定已经执行过回调
+     */
+    public CompletableFuture<Void> append(long docId, byte[] content, Runnable onWritten) throws IOException {
+        Record record = new Record(docId, content, onWritten);
+        stateLock.readLock().lock();
+        try {
+            if (!running || !thread.isAlive()) {
+                throw new IOException("Doc writer already closed: " + thread.getName());
+            }
+            if (!queue.offer(record, offerTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new IOException("Doc writer queue full for " + TimeUnit.NANOSECONDS.toMillis(offerTimeoutNanos)
+                        + " ms: " + thread.getName());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for doc writer", e);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        return record.future;
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * 停止接收新记录，等待队列中的记录全部写完后关闭当前段文件
+     */
+    @Override
+    public void close() {
+        stateLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("等待写入线程结束时被中断: {}", thread.getName());
+        }
+    }
+
+    private void loop() {
+        List<Record> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                Record first = queue.poll(waitNanos(), TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    for (Record record : batch) {
+                        write(record);
+                    }
+                    batch.clear();
+                }
+                // 队列已取空时不再等待更多记录，立即刷新，让等待中的提交方尽快完成
+                maybeFlush(queue.isEmpty() && !unflushed.isEmpty());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        closeSegment();
+        // 被中断退出时队列中可能还有记录，通知提交方写入失败
+        Record record;
+        while ((record = queue.poll()) != null) {
+            record.future.completeExceptionally(new IOException("Doc writer stopped: " + thread.getName()));
+        }
+    }
+
+    private void write(Record record) {
+        try {
+            if (segment == null
+                    || (segment.getRecordCount() > 0 && segment.size() + record.content.length > maxFileSize)) {
+                closeSegment();
+                segment = segmentFactory.get();
+            }
+            segment.append(record.docId, record.content);
+            unflushedBytes += record.content.length;
+            unflushed.add(record);
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            log.error("文档写入失败: docId={}, {}", record.docId, e.getMessage());
+            record.future.completeExceptionally(e);
+        }
+    }
+
+    private void maybeFlush(boolean idle) {
+        if (segment == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        try {
+            if (unflushedBytes > 0
+                    && (idle || unflushedBytes >= flushBytes || now - lastFlush >= flushIntervalNanos)) {
+                if (forceIntervalNanos > 0 && now - lastForce >= forceIntervalNanos) {
+                    segment.sync();
+                    lastForce = now;
+                } else {
+                    segment.flush();
+                }
+                unflushedBytes = 0;
+                lastFlush = now;
+                completeUnflushed(null);
+            }
+        } catch (IOException e) {
+            log.error("段文件刷新失败: {}", segment.getPath(), e);
+            completeUnflushed(e);
+        }
+    }
+
+    // 刷新成功时执行回调并完成，失败时记录可能没有完整写入文件，异常完成
+    private void completeUnflushed(Exception error) {
+        for (Record record : unflushed) {
+            if (error != null) {
+                failed.incrementAndGet();
+                record.future.completeExceptionally(error);
+                continue;
+            }
+            written.incrementAndGet();
+            if (record.onWritten != null) {
+                try {
+                    record.onWritten.run();
+                } catch (RuntimeException e) {
+                    log.error("文档写入回调失败: docId={}", record.docId, e);
+                }
+            }
+            record.future.complete(null);
+        }
+        unflushed.clear();
+    }
+
+    // 距离下次按时间刷新还需要等待多久
+    private long waitNanos() {
+        if (unflushedBytes == 0) {
+            return flushIntervalNanos;
+        }
+        return Math.max(0, flushIntervalNanos - (System.nanoTime() - lastFlush));
+    }
+
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            // 先刷新并完成回调再封存，封存后的文件中的记录一定已经执行过回调
+            segment.flush();
+            completeUnflushed(null);
+            segment.close();    // 写入文档索引和文件尾
+        } catch (IOException e) {
+            log.error("关闭段文件失败：{}", segment.getPath(), e);
+            completeUnflushed(e);
+        }
+        segment = null;
+        unflushedBytes = 0;
+    }
+
+    private static class Record {
+        private final long docId;
+        private final byte[] content;
+        private final Runnable onWritten;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Record(long docId, byte[] content, Runnable onWritten) {
+            this.docId = docId;
+            this.content = content;
+            this.onWritten = onWritten;
+        }
+    }
+}
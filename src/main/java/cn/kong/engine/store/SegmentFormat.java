@@ -0,0 +1,58 @@
+package cn.kong.engine.store;
+
+/**
+ * @author gzkon
+ * @description: doc_raw 段文件格式
+ * <pre>
+ * 文件头   : MAGIC(4) VERSION(1)
+ * 数据块   : CODEC(1) RAW_LENGTH(4) STORED_LENGTH(4) DATA(STORED_LENGTH)
+ *            DATA解压后为若干条记录：DOC_ID(varlong) LENGTH(varint) CRC32C(4) CONTENT(LENGTH)
+ * 索引区   : 按DOC_ID升序的定长条目：DOC_ID(8) BLOCK_OFFSET(8) RECORD_OFFSET(4)
+ * 文件尾   : INDEX_OFFSET(8) RECORD_COUNT(4) FOOTER_MAGIC(4)
+ * </pre>
+ * 数据块自带长度，没有文件尾的文件（进程异常退出）仍然可以按块顺序扫描恢复
+ * @date 2026/10/18 13:20
+ */
+public final class SegmentFormat {
+
+    public static final int MAGIC = 0x4D534547;         // "MSEG"
+    public static final int FOOTER_MAGIC = 0x4D534546;  // "MSEF"
+    public static final byte VERSION = 1;
+
+    public static final int HEADER_SIZE = 5;
+    public static final int BLOCK_HEADER_SIZE = 9;
+    public static final int INDEX_ENTRY_SIZE = 20;
+    public static final int TRAILER_SIZE = 16;
+
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;    // 数据块解压后的目标大小
+
+    private SegmentFormat() {
+    }
+
+    /**
+     * 数据块压缩方式
+     */
+    public enum Compression {
+        NONE((byte) 0),
+        DEFLATE((byte) 1);
+
+        private final byte code;
+
+        Compression(byte code) {
+            this.code = code;
+        }
+
+        public byte getCode() {
+            return code;
+        }
+
+        public static Compression of(byte code) {
+            for (Compression compression : values()) {
+                if (compression.code == code) {
+                    return compression;
+                }
+            }
+            throw new IllegalStateException("Unknown block codec: " + code);
+        }
+    }
+}
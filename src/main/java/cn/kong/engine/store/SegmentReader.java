@@ -0,0 +1,477 @@
+package cn.kong.engine.store;
+
+import cn.kong.engine.utils.VarIntUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * @author gzkon
+ * @description: doc_raw 段文件读取器，文件通过 FileChannel.map 映射到内存，
+ * 按文件尾的文档索引直接在映射区上二分查找定位记录，未压缩的数据块可以不经过堆内存直接读取；
+ * 文件没有正常关闭时按块顺序扫描重建索引，仍在写入的文件重新打开时只扫描上次之后新写入的数据块
+ * @date 2026/10/18 14:05
+ */
+@Slf4j
+public class SegmentReader implements Closeable {
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    private final long fileSize;
+
+    private final MappedByteBuffer mapped;
+
+    private long dataEnd;   // 数据块区域的结束位置
+
+    private boolean sealed; // 是否有完整的文件尾
+
+    // 有文件尾时直接使用映射区中的索引
+    private ByteBuffer index;
+    private int count;
+
+    // 扫描恢复时在堆上重建的索引
+    private long[] docIds;
+    private long[] blockOffsets;
+    private int[] recordOffsets;
+
+    private SegmentReader(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        if (fileSize > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Segment file larger than 2GB is not supported: " + path);
+        }
+        this.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+    }
+
+    public static SegmentReader open(Path path) throws IOException {
+        SegmentReader reader = new SegmentReader(path);
+        try {
+            reader.checkHeader();
+            if (!reader.loadIndex()) {
+                log.info("段文件没有完整的索引，按数据块扫描恢复: {}", path);
+                reader.recoverIndex(new IndexCollector(), SegmentFormat.HEADER_SIZE);
+            }
+            return reader;
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 重新打开变大的段文件，文件已正常关闭时使用文件尾的索引；
+     * 仍在写入时沿用上次扫描恢复的索引，只解压上次结束位置之后的数据块
+     */
+    public static SegmentReader reopen(SegmentReader previous) throws IOException {
+        if (previous.sealed) {
+            return open(previous.path);
+        }
+        SegmentReader reader = new SegmentReader(previous.path);
+        try {
+            reader.checkHeader();
+            if (!reader.loadIndex()) {
+                if (reader.fileSize < previous.dataEnd) {
+                    // 文件被截断或重写，从头扫描
+                    reader.recoverIndex(new IndexCollector(), SegmentFormat.HEADER_SIZE);
+                } else {
+                    reader.recoverIndex(new IndexCollector(previous), previous.dataEnd);
+                }
+            }
+            return reader;
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 按docId读取记录内容，返回只读缓冲区，不存在时返回null
+     * 未压缩数据块中的记录直接返回映射区切片，不复制到堆内存
+     */
+    public ByteBuffer read(long docId) throws IOException {
+        int i = find(docId);
+        if (i < 0) {
+            return null;
+        }
+        long blockOffset = blockOffset(i);
+        ByteBuffer block = block(blockOffset);
+        block.position(recordOffset(i));
+        return readRecord(block, docId);
+    }
+
+    /**
+     * 按docId读取记录内容到字节数组，不存在时返回null
+     */
+    public byte[] get(long docId) throws IOException {
+        ByteBuffer content = read(docId);
+        if (content == null) {
+            return null;
+        }
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 把记录内容写到目标通道，未压缩的记录通过 FileChannel.transferTo 直接从文件传输
+     *
+     * @return 写出的字节数，记录不存在时返回-1
+     */
+    public long transferTo(long docId, WritableByteChannel target) throws IOException {
+        int i = find(docId);
+        if (i < 0) {
+            return -1;
+        }
+        long blockOffset = blockOffset(i);
+        ByteBuffer block = block(blockOffset);
+        block.position(recordOffset(i));
+        ByteBuffer content = readRecord(block, docId);
+        long length = content.remaining();
+
+        if (codecAt(blockOffset) == SegmentFormat.Compression.NONE) {
+            long position = blockOffset + SegmentFormat.BLOCK_HEADER_SIZE + content.position();
+            long transferred = 0;
+            while (transferred < length) {
+                transferred += channel.transferTo(position + transferred, length - transferred, target);
+            }
+        } else {
+            while (content.hasRemaining()) {
+                target.write(content);
+            }
+        }
+        return length;
+    }
+
+    public boolean contains(long docId) {
+        return find(docId) >= 0;
+    }
+
+    /**
+     * 按写入顺序遍历所有记录，校验失败的记录会被跳过
+     */
+    public void forEach(RecordVisitor visitor) throws IOException {
+        long position = SegmentFormat.HEADER_SIZE;
+        while (position < dataEnd) {
+            visitBlock(block(position), visitor);
+            position += SegmentFormat.BLOCK_HEADER_SIZE + storedLengthAt(position);
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 段内所有docId，升序
+     */
+    public long[] docIds() {
+        if (docIds != null) {
+            return docIds.clone();
+        }
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = docIdAt(i);
+        }
+        return ids;
+    }
+
+    /**
+     * 是否有完整的文件尾，没有文件尾的段可能仍在写入
+     */
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void checkHeader() throws IOException {
+        if (fileSize < SegmentFormat.HEADER_SIZE || mapped.getInt(0) != SegmentFormat.MAGIC) {
+            throw new IOException("Not a segment file: " + path);
+        }
+        byte version = mapped.get(4);
+        if (version != SegmentFormat.VERSION) {
+            throw new IOException("Unsupported segment version " + version + ": " + path);
+        }
+    }
+
+    private boolean loadIndex() {
+        if (fileSize < SegmentFormat.HEADER_SIZE + SegmentFormat.TRAILER_SIZE) {
+            return false;
+        }
+        int trailer = (int) (fileSize - SegmentFormat.TRAILER_SIZE);
+        long indexOffset = mapped.getLong(trailer);
+        int recordCount = mapped.getInt(trailer + 8);
+        if (mapped.getInt(trailer + 12) != SegmentFormat.FOOTER_MAGIC
+                || indexOffset + (long) recordCount * SegmentFormat.INDEX_ENTRY_SIZE + SegmentFormat.TRAILER_SIZE != fileSize) {
+            return false;
+        }
+        index = slice(indexOffset, recordCount * SegmentFormat.INDEX_ENTRY_SIZE);
+        count = recordCount;
+        dataEnd = indexOffset;
+        sealed = true;
+        return true;
+    }
+
+    // 从 position 开始扫描数据块，collector 中已有之前扫描到的记录
+    private void recoverIndex(IndexCollector collector, long position) {
+        while (position + SegmentFormat.BLOCK_HEADER_SIZE <= fileSize) {
+            int storedLength = storedLengthAt(position);
+            if (storedLength < 0 || position + SegmentFormat.BLOCK_HEADER_SIZE + storedLength > fileSize) {
+                break;  // 最后一个数据块没有写完整
+            }
+            try {
+                collector.blockOffset = position;
+                visitBlock(block(position), collector);
+            } catch (IOException | RuntimeException e) {
+                log.warn("数据块损坏，停止恢复: {} offset={}", path, position);
+                break;
+            }
+            position += SegmentFormat.BLOCK_HEADER_SIZE + storedLength;
+        }
+        dataEnd = position;
+        collector.sort();
+        docIds = collector.docIds;
+        blockOffsets = collector.blockOffsets;
+        recordOffsets = collector.recordOffsets;
+        count = collector.count;
+        sealed = false;
+    }
+
+    private int find(long docId) {
+        if (docIds != null) {
+            return Arrays.binarySearch(docIds, 0, count, docId);
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = docIdAt(mid);
+            if (midId < docId) {
+                low = mid + 1;
+            } else if (midId > docId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private long docIdAt(int i) {
+        return docIds != null ? docIds[i] : index.getLong(i * SegmentFormat.INDEX_ENTRY_SIZE);
+    }
+
+    private long blockOffset(int i) {
+        return blockOffsets != null ? blockOffsets[i] : index.getLong(i * SegmentFormat.INDEX_ENTRY_SIZE + 8);
+    }
+
+    private int recordOffset(int i) {
+        return recordOffsets != null ? recordOffsets[i] : index.getInt(i * SegmentFormat.INDEX_ENTRY_SIZE + 16);
+    }
+
+    private SegmentFormat.Compression codecAt(long blockOffset) {
+        return SegmentFormat.Compression.of(mapped.get((int) blockOffset));
+    }
+
+    private int storedLengthAt(long blockOffset) {
+        return mapped.getInt((int) blockOffset + 5);
+    }
+
+    /**
+     * 数据块解压后的内容，未压缩时直接返回映射区切片
+     */
+    private ByteBuffer block(long blockOffset) throws IOException {
+        SegmentFormat.Compression codec = codecAt(blockOffset);
+        int rawLength = mapped.getInt((int) blockOffset + 1);
+        int storedLength = storedLengthAt(blockOffset);
+        ByteBuffer stored = slice(blockOffset + SegmentFormat.BLOCK_HEADER_SIZE, storedLength);
+        if (codec == SegmentFormat.Compression.NONE) {
+            return stored;
+        }
+        return ByteBuffer.wrap(inflate(stored, rawLength));
+    }
+
+    private void visitBlock(ByteBuffer block, RecordVisitor visitor) {
+        // 遍历回调需要字节数组，映射区的数据块在这里复制一次
+        byte[] bytes;
+        int base;
+        if (block.hasArray()) {
+            bytes = block.array();
+            base = block.arrayOffset();
+        } else {
+            bytes = new byte[block.remaining()];
+            block.duplicate().get(bytes);
+            base = 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, base, block.remaining());
+        CRC32C crc = new CRC32C();
+        while (buffer.hasRemaining()) {
+            int recordOffset = buffer.position() - base;
+            long docId = VarIntUtils.readVarLong(buffer);
+            int length = VarIntUtils.readVarInt(buffer);
+            int checksum = buffer.getInt();
+            int contentOffset = buffer.position();
+            buffer.position(contentOffset + length);
+
+            crc.reset();
+            crc.update(bytes, contentOffset, length);
+            if ((int) crc.getValue() != checksum) {
+                log.warn("记录校验失败，跳过: {} docId={}", path, docId);
+                continue;
+            }
+            if (visitor instanceof IndexCollector) {
+                ((IndexCollector) visitor).recordOffset = recordOffset;
+            }
+            visitor.visit(docId, bytes, contentOffset, length);
+        }
+    }
+
+    private ByteBuffer readRecord(ByteBuffer block, long expectedDocId) throws IOException {
+        long docId = VarIntUtils.readVarLong(block);
+        int length = VarIntUtils.readVarInt(block);
+        int checksum = block.getInt();
+        if (docId != expectedDocId) {
+            throw new IOException("Segment index mismatch, expected doc " + expectedDocId + " but found " + docId);
+        }
+        ByteBuffer content = block.slice();
+        content.limit(length);
+        CRC32C crc = new CRC32C();
+        crc.update(content.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Checksum mismatch for doc " + docId + " in " + path);
+        }
+        // 保留记录内容在数据块中的位置，供transferTo计算文件偏移
+        ByteBuffer result = block.duplicate();
+        result.limit(block.position() + length);
+        return result.asReadOnlyBuffer();
+    }
+
+    private ByteBuffer slice(long position, int length) {
+        ByteBuffer buffer = mapped.duplicate();
+        buffer.position((int) position);
+        buffer.limit((int) position + length);
+        return buffer.slice();
+    }
+
+    private static byte[] inflate(ByteBuffer stored, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            byte[] raw = new byte[rawLength];
+            int size = 0;
+            while (size < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, size, rawLength - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                size += n;
+            }
+            if (size != rawLength) {
+                throw new IOException("Corrupted block, inflated " + size + " of " + rawLength + " bytes");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 记录遍历回调，content 为数据块共享数组，只在回调期间有效
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(long docId, byte[] content, int offset, int length);
+    }
+
+    // 扫描恢复时收集索引
+    private static class IndexCollector implements RecordVisitor {
+        private long[] docIds;
+        private long[] blockOffsets;
+        private int[] recordOffsets;
+        private int count;
+        private int sorted;     // 前 sorted 条沿用上次恢复的索引，已按 docId 排好序
+        private long blockOffset;
+        private int recordOffset;
+
+        private IndexCollector() {
+            docIds = new long[1024];
+            blockOffsets = new long[1024];
+            recordOffsets = new int[1024];
+        }
+
+        // 接着上次恢复的索引继续收集，数据块偏移不变，可以直接沿用
+        private IndexCollector(SegmentReader previous) {
+            count = previous.count;
+            sorted = count;
+            int capacity = Math.max(1024, count * 2);
+            docIds = Arrays.copyOf(previous.docIds, capacity);
+            blockOffsets = Arrays.copyOf(previous.blockOffsets, capacity);
+            recordOffsets = Arrays.copyOf(previous.recordOffsets, capacity);
+        }
+
+        @Override
+        public void visit(long docId, byte[] content, int offset, int length) {
+            if (count == docIds.length) {
+                docIds = Arrays.copyOf(docIds, count * 2);
+                blockOffsets = Arrays.copyOf(blockOffsets, count * 2);
+                recordOffsets = Arrays.copyOf(recordOffsets, count * 2);
+            }
+            docIds[count] = docId;
+            blockOffsets[count] = blockOffset;
+            recordOffsets[count] = recordOffset;
+            count++;
+        }
+
+        // 只排序新收集的记录，再与已排好序的部分归并
+        private void sort() {
+            Integer[] order = new Integer[count - sorted];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = sorted + i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(docIds[a], docIds[b]));
+            long[] sortedIds = new long[count];
+            long[] sortedBlocks = new long[count];
+            int[] sortedRecords = new int[count];
+            int prefix = 0;
+            int tail = 0;
+            for (int i = 0; i < count; i++) {
+                int from = tail == order.length || (prefix < sorted && docIds[prefix] <= docIds[order[tail]])
+                        ? prefix++ : order[tail++];
+                sortedIds[i] = docIds[from];
+                sortedBlocks[i] = blockOffsets[from];
+                sortedRecords[i] = recordOffsets[from];
+            }
+            docIds = sortedIds;
+            blockOffsets = sortedBlocks;
+            recordOffsets = sortedRecords;
+        }
+    }
+}
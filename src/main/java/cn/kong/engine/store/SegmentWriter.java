@@ -0,0 +1,248 @@
+package cn.kong.engine.store;
+
+import cn.kong.engine.utils.VarIntUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+
+/**
+ * @author gzkon
+ * @description: doc_raw 段文件写入器，记录先写入内存中的数据块，数据块写满后压缩落盘，关闭时写入文档索引和文件尾
+ * 非线程安全，由调用方保证串行写入
+ * @date 2026/10/18 13:35
+ */
+public class SegmentWriter implements Closeable {
+
+    private final Path path;
+
+    private final FileOutputStream fileOut;
+
+    private final DataOutputStream out;
+
+    private final SegmentFormat.Compression compression;
+
+    private final int blockSize;
+
+    private final BlockBuffer block = new BlockBuffer();
+
+    private final Deflater deflater;
+
+    private final CRC32C crc = new CRC32C();
+
+    private final byte[] varIntBuffer = new byte[10];
+
+    private byte[] compressBuffer = new byte[0];
+
+    private long position = 0;  // 已写入文件的字节数
+
+    // 文档索引：docId -> 数据块偏移 + 块内偏移
+    private long[] docIds = new long[1024];
+    private long[] blockOffsets = new long[1024];
+    private int[] recordOffsets = new int[1024];
+    private int count = 0;
+    private int pendingFrom = 0;    // 当前数据块中第一条记录的索引下标
+
+    private boolean closed = false;
+
+    public SegmentWriter(Path path, SegmentFormat.Compression compression, int blockSize) throws IOException {
+        Files.createDirectories(path.getParent());
+        this.path = path;
+        this.compression = compression;
+        this.blockSize = blockSize > 0 ? blockSize : SegmentFormat.DEFAULT_BLOCK_SIZE;
+        this.deflater = compression == SegmentFormat.Compression.DEFLATE ? new Deflater() : null;
+        this.fileOut = new FileOutputStream(path.toFile(), false);
+        this.out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+
+        out.writeInt(SegmentFormat.MAGIC);
+        out.writeByte(SegmentFormat.VERSION);
+        position = SegmentFormat.HEADER_SIZE;
+    }
+
+    /**
+     * 追加一条记录
+     */
+    public void append(long docId, byte[] content, int offset, int length) throws IOException {
+        ensureOpen();
+        ensureIndexCapacity();
+        docIds[count] = docId;
+        recordOffsets[count] = block.size();
+        count++;
+
+        crc.reset();
+        crc.update(content, offset, length);
+
+        int pos = VarIntUtils.writeVarLong(varIntBuffer, 0, docId);
+        block.write(varIntBuffer, 0, pos);
+        pos = VarIntUtils.writeVarLong(varIntBuffer, 0, length);
+        block.write(varIntBuffer, 0, pos);
+        int checksum = (int) crc.getValue();
+        block.write(checksum >>> 24);
+        block.write(checksum >>> 16);
+        block.write(checksum >>> 8);
+        block.write(checksum);
+        block.write(content, offset, length);
+
+        if (block.size() >= blockSize) {
+            flushBlock();
+        }
+    }
+
+    public void append(long docId, byte[] content) throws IOException {
+        append(docId, content, 0, content.length);
+    }
+
+    /**
+     * 把未写满的数据块也写入文件并刷新到操作系统
+     */
+    public void flush() throws IOException {
+        ensureOpen();
+        flushBlock();
+        out.flush();
+    }
+
+    /**
+     * 刷新并强制落盘
+     */
+    public void sync() throws IOException {
+        flush();
+        fileOut.getChannel().force(false);
+    }
+
+    /**
+     * 当前文件大小，包含尚未压缩的数据块，用于判断是否需要切换文件
+     */
+    public long size() {
+        return position + block.size();
+    }
+
+    public int getRecordCount() {
+        return count;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flushBlock();
+            writeIndex();
+            out.flush();
+            fileOut.getChannel().force(false);
+        } finally {
+            closed = true;
+            out.close();
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        int rawLength = block.size();
+        if (rawLength == 0) {
+            return;
+        }
+        byte[] data = block.array();
+        int storedLength = rawLength;
+        SegmentFormat.Compression codec = SegmentFormat.Compression.NONE;
+
+        if (compression == SegmentFormat.Compression.DEFLATE) {
+            int compressed = deflate(data, rawLength);
+            // 压缩无收益的数据块直接按原样存储
+            if (compressed < rawLength) {
+                data = compressBuffer;
+                storedLength = compressed;
+                codec = SegmentFormat.Compression.DEFLATE;
+            }
+        }
+
+        out.writeByte(codec.getCode());
+        out.writeInt(rawLength);
+        out.writeInt(storedLength);
+        out.write(data, 0, storedLength);
+
+        for (int i = pendingFrom; i < count; i++) {
+            blockOffsets[i] = position;
+        }
+        pendingFrom = count;
+        position += SegmentFormat.BLOCK_HEADER_SIZE + storedLength;
+        block.reset();
+    }
+
+    private int deflate(byte[] raw, int length) {
+        if (compressBuffer.length < length) {
+            compressBuffer = new byte[length];
+        }
+        deflater.reset();
+        deflater.setInput(raw, 0, length);
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == compressBuffer.length) {
+                // 输出已不小于原始长度，放弃压缩
+                return length;
+            }
+            size += deflater.deflate(compressBuffer, size, compressBuffer.length - size);
+        }
+        return size;
+    }
+
+    private void writeIndex() throws IOException {
+        long indexOffset = position;
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> docIds[i]));
+        for (Integer i : order) {
+            out.writeLong(docIds[i]);
+            out.writeLong(blockOffsets[i]);
+            out.writeInt(recordOffsets[i]);
+        }
+        out.writeLong(indexOffset);
+        out.writeInt(count);
+        out.writeInt(SegmentFormat.FOOTER_MAGIC);
+        position += (long) count * SegmentFormat.INDEX_ENTRY_SIZE + SegmentFormat.TRAILER_SIZE;
+    }
+
+    private void ensureIndexCapacity() {
+        if (count == docIds.length) {
+            int newLength = docIds.length * 2;
+            docIds = Arrays.copyOf(docIds, newLength);
+            blockOffsets = Arrays.copyOf(blockOffsets, newLength);
+            recordOffsets = Arrays.copyOf(recordOffsets, newLength);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Segment writer already closed: " + path);
+        }
+    }
+
+    // 暴露内部数组，避免压缩前再复制一次数据块
+    private static class BlockBuffer extends ByteArrayOutputStream {
+        BlockBuffer() {
+            super(SegmentFormat.DEFAULT_BLOCK_SIZE + 1024);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package cn.kong.engine.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * @author gzkon
+ * @description: SimHash 近邻索引，查找汉明距离不超过 maxDistance 的已收录文档
+ * 64位按位切成 maxDistance + 1 块，距离不超过 maxDistance 的两个哈希至少有一块完全相同；
+ * 每块一张表，相当于把该块置换到最高位后按前缀分桶，查找时只比较各表中同一桶内的候选，
+ * maxDistance = 3 时为4张表、每块16位，候选数约为 4 * N / 65536
+ * 桶内按 (SimHash, docId) 连续存放在 long 数组中；查找持有读锁，收录持有写锁
+ * 文档写入成功后才收录，索引中的文档一定可以作为 duplicate_of 的目标；
+ * 同时抓到的两个相近页面可能都没有查到对方而都被收录，只是多存储一份
+ * @date 2026/10/18 18:20
+ */
+public class SimHashIndex {
+
+    public static final long NOT_FOUND = -1;
+
+    private final int maxDistance;
+
+    private final int[] shifts;
+
+    private final long[] masks;
+
+    private final List<Map<Long, Bucket>> tables;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long size;
+
+    /**
+     * @param maxDistance 视为近似重复的最大汉明距离，0到7，每块至少8位
+     */
+    public SimHashIndex(int maxDistance) {
+        if (maxDistance < 0 || maxDistance > 7) {
+            throw new IllegalArgumentException("maxDistance must be between 0 and 7: " + maxDistance);
+        }
+        this.maxDistance = maxDistance;
+        int blocks = maxDistance + 1;
+        this.shifts = new int[blocks];
+        this.masks = new long[blocks];
+        this.tables = new ArrayList<>(blocks);
+        int start = 0;
+        for (int i = 0; i < blocks; i++) {
+            // 64位尽量均分，前面的块多分一位
+            int bits = 64 / blocks + (i < 64 % blocks ? 1 : 0);
+            shifts[i] = start;
+            masks[i] = bits == 64 ? -1L : (1L << bits) - 1;
+            tables.add(new HashMap<>());
+            start += bits;
+        }
+    }
+
+    /**
+     * 查找近似重复的文档
+     *
+     * @return 距离最近的已收录文档的docId，没有时返回 NOT_FOUND
+     */
+    public long find(long simhash) {
+        lock.readLock().lock();
+        try {
+            return nearest(simhash);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 收录文档，文档内容写入成功后调用，启动时从数据库加载也使用
+     */
+    public void add(long simhash, long docId) {
+        lock.writeLock().lock();
+        try {
+            insert(simhash, docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int tableCount() {
+        return tables.size();
+    }
+
+    private long nearest(long simhash) {
+        long best = NOT_FOUND;
+        int bestDistance = maxDistance + 1;
+        for (int i = 0; i < tables.size(); i++) {
+            Bucket bucket = tables.get(i).get((simhash >>> shifts[i]) & masks[i]);
+            if (bucket == null) {
+                continue;
+            }
+            long[] data = bucket.data;
+            for (int j = 0; j < bucket.length; j += 2) {
+                int distance = Long.bitCount(data[j] ^ simhash);
+                if (distance < bestDistance || (distance == bestDistance && data[j + 1] < best)) {
+                    best = data[j + 1];
+                    bestDistance = distance;
+                }
+            }
+            if (bestDistance == 0) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    private void insert(long simhash, long docId) {
+        for (int i = 0; i < tables.size(); i++) {
+            tables.get(i).computeIfAbsent((simhash >>> shifts[i]) & masks[i], key -> new Bucket()).add(simhash, docId);
+        }
+        size++;
+    }
+
+    private static class Bucket {
+        private long[] data = new long[4];
+        private int length;
+
+        private void add(long simhash, long docId) {
+            if (length + 2 > data.length) {
+                long[] grown = new long[data.length * 2];
+                System.arraycopy(data, 0, grown, 0, length);
+                data = grown;
+            }
+            data[length++] = simhash;
+            data[length++] = docId;
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package cn.kong.engine.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/**
+ * @author gzkon
+ * @description: URL指纹 -> docId 的堆外哈希表，开放寻址、线性探测，数据在内存映射文件中，重启后直接加载
+ * <pre>
+ * 文件头 : MAGIC(4) VERSION(1) CLEAN(1) 保留(2) CAPACITY(8) SIZE(8) MAX_DOC_ID(8) 补齐到 HEADER_SIZE
+ * 槽位   : KEY(8) VALUE(8)，KEY 为0表示空槽，VALUE 为0表示键已占用、docId 还未写入，
+ *          VALUE 最高位为1表示页面已抓取，为0表示只是被发现、分配了docId
+ * </pre>
+ * 发现链接时插入占住docId，抓取完成后标记为已抓取；种子只跳过已抓取的URL，
+ * 之前发现但从未抓取的URL作为种子时沿用原来的docId重新抓取
+ * 插入时先 CAS 占住键再写入 docId，查找与插入只持有读锁，可以并发执行；装载率超过 MAX_LOAD 时持有写锁扩容到新文件后原子替换；
+ * 按 1GB 分块映射，槽位数不受单个映射区 2GB 的限制；槽位按本机字节序存放
+ * 文件头中的元素个数和最大 docId 只在 flush 和关闭时写入，没有正常关闭的文件在加载时扫描重新统计
+ * @date 2026/10/18 16:10
+ */
+@Slf4j
+public class UrlIdMap implements Closeable {
+
+    public static final long NOT_FOUND = -1;
+
+    private static final int MAGIC = 0x4D55524C;    // "MURL"
+    private static final byte VERSION = 2;          // 1: 没有已抓取标记，升级时所有元素视为已抓取
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 16;
+    private static final int CHUNK_SHIFT = 26;      // 每块 64M 个槽位，1GB
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+    private static final double MAX_LOAD = 0.7;
+    private static final long FETCHED = Long.MIN_VALUE;   // VALUE 的最高位
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Path path;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final AtomicLong size = new AtomicLong();
+
+    private final AtomicLong maxDocId = new AtomicLong();
+
+    // 以下字段只在写锁内修改，capacity 和 threshold 在读锁外也会读取
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] chunks;
+    private volatile long capacity;
+    private volatile long threshold;
+    private boolean closed = false;
+
+    /**
+     * 打开或创建哈希表文件
+     *
+     * @param path            文件路径
+     * @param initialCapacity 新建文件时的槽位数，向上取2的幂
+     */
+    public UrlIdMap(Path path, long initialCapacity) throws IOException {
+        this.path = path;
+        Files.createDirectories(path.getParent());
+        Files.deleteIfExists(tempPath());
+        if (!Files.isRegularFile(path) || Files.size(path) < HEADER_SIZE) {
+            create(path, capacityFor(initialCapacity), 0, 0);
+        }
+        open(true);
+    }
+
+    /**
+     * 查找指纹对应的docId，不存在时返回 NOT_FOUND
+     *
+     * @param fingerprint 由 UrlCanonicalizer.fingerprint 计算，不为0
+     */
+    public long get(long fingerprint) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            long slot = find(fingerprint);
+            return slot < 0 ? NOT_FOUND : awaitValue(slot) & ~FETCHED;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 指纹对应的页面是否已抓取
+     */
+    public boolean isFetched(long fingerprint) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            long slot = find(fingerprint);
+            return slot >= 0 && (awaitValue(slot) & FETCHED) != 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 标记指纹对应的页面已抓取，指纹不存在时不做任何事
+     *
+     * @return 是否由本次调用标记
+     */
+    public boolean markFetched(long fingerprint) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            long slot = find(fingerprint);
+            if (slot < 0) {
+                return false;
+            }
+            awaitValue(slot);
+            long previous = (long) LONGS.getAndBitwiseOr(chunks[chunk(slot)], offset(slot) + 8, FETCHED);
+            return (previous & FETCHED) == 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 指纹不存在时插入，docId 只在确实插入时才向 ids 申请，并发插入同一指纹时只有一个线程成功
+     *
+     * @return 新分配的docId，指纹已存在时返回 NOT_FOUND
+     * @throws MapFullException 扩容失败后槽位被占满
+     */
+    public long addIfAbsent(long fingerprint, LongSupplier ids) {
+        return add(fingerprint, ids, false);
+    }
+
+    /**
+     * 种子使用：指纹不存在时插入，已存在但还未抓取时返回原来的docId，已抓取时返回 NOT_FOUND
+     *
+     * @throws MapFullException 扩容失败后槽位被占满
+     */
+    public long addIfNotFetched(long fingerprint, LongSupplier ids) {
+        return add(fingerprint, ids, true);
+    }
+
+    private long add(long fingerprint, LongSupplier ids, boolean reuseUnfetched) {
+        long docId;
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            long mask = capacity - 1;
+            long slot = fingerprint & mask;
+            long probes = 0;
+            while (true) {
+                long key = key(slot);
+                if (key == 0) {
+                    if (casKey(slot, fingerprint)) {
+                        docId = ids.getAsLong();
+                        setValue(slot, docId);
+                        break;
+                    }
+                    continue;   // 被其他线程抢先，重新读取这个槽位
+                }
+                if (key == fingerprint) {
+                    long value = awaitValue(slot);
+                    return reuseUnfetched && (value & FETCHED) == 0 ? value : NOT_FOUND;
+                }
+                if (++probes >= capacity) {
+                    // 扩容失败后槽位被占满
+                    throw new MapFullException("Url map full: " + path + ", capacity=" + capacity);
+                }
+                slot = (slot + 1) & mask;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        maxDocId.accumulateAndGet(docId, Math::max);
+        if (size.incrementAndGet() > threshold) {
+            grow();
+        }
+        return docId;
+    }
+
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * 已分配的最大docId，新任务的docId从这里继续，避免与之前抓取的文档重复
+     */
+    public long maxDocId() {
+        return maxDocId.get();
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * 写入元素个数和最大docId，并把映射区刷到磁盘，只持有读锁，不阻塞插入
+     */
+    public void flush() {
+        lock.readLock().lock();
+        try {
+            if (!closed) {
+                writeStats(false);
+                force();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            writeStats(true);
+            force();
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 装载率超过上限时容量翻倍，失败时抛出异常，之后的插入会再次尝试
+    private void grow() {
+        lock.writeLock().lock();
+        try {
+            if (closed || size.get() <= threshold) {
+                return;
+            }
+            rehash(capacity * 2);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow url map: " + path, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 把所有元素写入新文件后替换旧文件，调用方持有写锁或在构造期间调用
+    private void rehash(long newCapacity) throws IOException {
+        long start = System.currentTimeMillis();
+        Path temp = tempPath();
+        create(temp, newCapacity, size.get(), maxDocId.get());
+        try (FileChannel target = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer[] newChunks = map(target, newCapacity);
+            long mask = newCapacity - 1;
+            for (long i = 0; i < capacity; i++) {
+                long key = key(i);
+                long value = key == 0 ? 0 : value(i);
+                if (value == 0) {
+                    continue;   // 空槽，或者异常退出时没有写完的插入
+                }
+                long slot = key & mask;
+                while ((long) LONGS.get(newChunks[chunk(slot)], offset(slot)) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                LONGS.set(newChunks[chunk(slot)], offset(slot), key);
+                LONGS.set(newChunks[chunk(slot)], offset(slot) + 8, value);
+            }
+            for (MappedByteBuffer chunk : newChunks) {
+                chunk.force();
+            }
+        }
+        channel.close();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long oldCapacity = capacity;
+        open(false);
+        log.info("URL哈希表扩容: {} -> {} 槽位, 元素数={}, 耗时 {} ms",
+                oldCapacity, newCapacity, size.get(), System.currentTimeMillis() - start);
+    }
+
+    // loadStats 为false时保留内存中的统计，扩容期间读锁外的计数可能还没写入文件头
+    private void open(boolean loadStats) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        byte version = header.get(4);
+        if (header.getInt(0) != MAGIC || version < 1 || version > VERSION) {
+            channel.close();
+            throw new IOException("Invalid url map file: " + path);
+        }
+        boolean clean = header.get(5) == 1;
+        capacity = header.getLong(8);
+        threshold = (long) (capacity * MAX_LOAD);
+        chunks = map(channel, capacity);
+        if (version == 1) {
+            upgrade();
+        }
+        if (loadStats && clean) {
+            size.set(header.getLong(16));
+            maxDocId.set(header.getLong(24));
+        } else if (loadStats && recount()) {
+            log.warn("URL哈希表有未完成的插入，重建: {}", path);
+            rehash(capacity);
+            return;
+        }
+        // 打开期间标记为未正常关闭
+        header.put(5, (byte) 0);
+        header.force();
+    }
+
+    // 旧版本没有区分发现和抓取，保持原来的语义，已有元素全部视为已抓取
+    private void upgrade() {
+        for (long i = 0; i < capacity; i++) {
+            if (key(i) != 0 && value(i) != 0) {
+                setValue(i, value(i) | FETCHED);
+            }
+        }
+        force();
+        header.put(4, VERSION);
+        log.info("URL哈希表升级到版本 {}: {}", VERSION, path);
+    }
+
+    // 扫描统计元素个数和最大docId，返回是否有未写完docId的槽位
+    private boolean recount() {
+        long count = 0;
+        long max = 0;
+        boolean pending = false;
+        for (long i = 0; i < capacity; i++) {
+            if (key(i) != 0) {
+                long value = value(i);
+                if (value == 0) {
+                    pending = true;
+                } else {
+                    count++;
+                    max = Math.max(max, value & ~FETCHED);
+                }
+            }
+        }
+        size.set(count);
+        maxDocId.set(max);
+        log.info("URL哈希表没有正常关闭，重新统计: {}, 元素数={}", path, count);
+        return pending;
+    }
+
+    private void writeStats(boolean clean) {
+        header.putLong(16, size.get());
+        header.putLong(24, maxDocId.get());
+        header.put(5, (byte) (clean ? 1 : 0));
+    }
+
+    private void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+        header.force();
+    }
+
+    private static void create(Path file, long capacity, long size, long maxDocId) throws IOException {
+        try (FileChannel target = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer head = target.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            head.putInt(0, MAGIC);
+            head.put(4, VERSION);
+            head.put(5, (byte) 1);
+            head.putLong(8, capacity);
+            head.putLong(16, size);
+            head.putLong(24, maxDocId);
+            head.force();
+            // 文件扩展到完整大小，新增部分为0即空槽
+            target.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, capacity * SLOT_SIZE);
+        }
+    }
+
+    private static MappedByteBuffer[] map(FileChannel target, long capacity) throws IOException {
+        int count = (int) ((capacity + CHUNK_MASK) >>> CHUNK_SHIFT);
+        MappedByteBuffer[] result = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long slots = Math.min(capacity - ((long) i << CHUNK_SHIFT), 1L << CHUNK_SHIFT);
+            result[i] = target.map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_SIZE + ((long) i << CHUNK_SHIFT) * SLOT_SIZE, slots * SLOT_SIZE);
+        }
+        return result;
+    }
+
+    private static long capacityFor(long expected) {
+        long capacity = 1024;
+        while (capacity < expected) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private long key(long slot) {
+        return (long) LONGS.getAcquire(chunks[chunk(slot)], offset(slot));
+    }
+
+    private long value(long slot) {
+        return (long) LONGS.getAcquire(chunks[chunk(slot)], offset(slot) + 8);
+    }
+
+    private boolean casKey(long slot, long fingerprint) {
+        return LONGS.compareAndSet(chunks[chunk(slot)], offset(slot), 0L, fingerprint);
+    }
+
+    private void setValue(long slot, long docId) {
+        LONGS.setRelease(chunks[chunk(slot)], offset(slot) + 8, docId);
+    }
+
+    // 指纹所在的槽位，不存在时返回-1
+    private long find(long fingerprint) {
+        long mask = capacity - 1;
+        long slot = fingerprint & mask;
+        for (long probes = 0; probes < capacity; probes++) {
+            long key = key(slot);
+            if (key == 0) {
+                return -1;
+            }
+            if (key == fingerprint) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // 键已被其他线程占住、docId 还没写入时等待
+    private long awaitValue(long slot) {
+        long value;
+        while ((value = value(slot)) == 0) {
+            Thread.onSpinWait();
+        }
+        return value;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Url map already closed: " + path);
+        }
+    }
+
+    private Path tempPath() {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    private static int chunk(long slot) {
+        return (int) (slot >>> CHUNK_SHIFT);
+    }
+
+    private static int offset(long slot) {
+        return (int) ((slot & CHUNK_MASK) * SLOT_SIZE);
+    }
+
+    /**
+     * 映射表已满，之后发现的URL都无法分配docId，调用方应停止任务
+     */
+    public static class MapFullException extends IllegalStateException {
+        public MapFullException(String message) {
+            super(message);
+        }
+    }
+}
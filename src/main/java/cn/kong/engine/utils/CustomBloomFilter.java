@@ -1,36 +1,167 @@
 package cn.kong.engine.utils;
 
-import java.util.BitSet;
+import com.google.common.hash.Hashing;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
- * @description: 定制布隆过滤器
+ * @description: 定制布隆过滤器，线程安全，不加锁
+ * 位数组放在 AtomicLongArray 中，置位时只对没有置位的字用 CAS 写入，已置位时只读不写；
+ * 哈希使用 murmur3_128 的两个64位结果做双重哈希 h1 + i * h2 得到各个位置
+ * putIfAbsent 只要置位了任意一位就返回true，同一个URL被多个线程同时插入时极少数情况下可能都返回true，
+ * 结果只会多抓一次，不会漏抓
  * @author: kong
  * @date: 2025-06-06 16:07
  */
 public class CustomBloomFilter {
 
-    private static final int SIZE = 100_000_000;    // 表示位图 BitSet 的大小，即最多可以映射 1 亿个 bit
-    private static final BitSet bitSet = new BitSet(SIZE); // 大概12MB
-    private static final int[] seeds = {5, 7, 11, 13, 31, 37, 61}; // 哈希种子
-
-    public static boolean isDuplicate(String url) {
-        boolean exists = true;
-        for (int seed : seeds) {
-            int hash = hash(url, seed);
-            if (!bitSet.get(hash)) {
-                exists = false;
-                System.out.println("布隆url:" + url);
-                bitSet.set(hash);
+    private static final int MAGIC = 0x4D42464C;    // "MBFL"
+
+    private final AtomicLongArray words;
+
+    private final long bitSize;
+
+    private final int numHashes;
+
+    /**
+     * @param expectedInsertions 预计插入的元素个数
+     * @param fpp                期望的误判率
+     */
+    public CustomBloomFilter(long expectedInsertions, double fpp) {
+        long expected = Math.max(1, expectedInsertions);
+        double p = Math.min(Math.max(fpp, Double.MIN_VALUE), 0.5);
+        long bits = (long) (-expected * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6));
+        this.words = new AtomicLongArray(words);
+        this.bitSize = (long) words << 6;
+        this.numHashes = Math.max(1, (int) Math.round((double) bitSize / expected * Math.log(2)));
+    }
+
+    private CustomBloomFilter(AtomicLongArray words, int numHashes) {
+        this.words = words;
+        this.bitSize = (long) words.length() << 6;
+        this.numHashes = numHashes;
+    }
+
+    /**
+     * 不存在时加入
+     *
+     * @return 是否是新元素，有任意一位原来没有置位即为新元素
+     */
+    public boolean putIfAbsent(CharSequence value) {
+        long[] hash = hash(value);
+        return putIfAbsent(hash[0], hash[1]);
+    }
+
+    public boolean mightContain(CharSequence value) {
+        long[] hash = hash(value);
+        return mightContain(hash[0], hash[1]);
+    }
+
+    /**
+     * 按64位指纹插入，指纹本身已是均匀的哈希值，第二个哈希值由它再混合一次得到
+     */
+    public boolean putIfAbsent(long fingerprint) {
+        return putIfAbsent(fingerprint, mix(fingerprint));
+    }
+
+    public boolean mightContain(long fingerprint) {
+        return mightContain(fingerprint, mix(fingerprint));
+    }
+
+    // 按已计算的哈希值插入，多个过滤器检查同一个值时只计算一次哈希
+    boolean putIfAbsent(long h1, long h2) {
+        long combined = h1;
+        boolean changed = false;
+        for (int i = 0; i < numHashes; i++) {
+            long index = (combined & Long.MAX_VALUE) % bitSize;
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long old = words.get(word);
+            while ((old & mask) == 0) {
+                if (words.compareAndSet(word, old, old | mask)) {
+                    changed = true;
+                    break;
+                }
+                old = words.get(word);
             }
+            combined += h2;
         }
-        return exists;
+        return changed;
     }
 
-    private static int hash(String str, int seed) {
-        int result = 0;
-        for (char c : str.toCharArray()) {
-            result = seed * result + c;
+    boolean mightContain(long h1, long h2) {
+        long combined = h1;
+        for (int i = 0; i < numHashes; i++) {
+            long index = (combined & Long.MAX_VALUE) % bitSize;
+            if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+            combined += h2;
         }
-        return (SIZE - 1) & result;
+        return true;
+    }
+
+    public long bitSize() {
+        return bitSize;
+    }
+
+    public int numHashes() {
+        return numHashes;
+    }
+
+    /**
+     * 写出位数组，可以和插入并发执行，位只会从0变为1，写出开始前已插入的元素都包含在结果中
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(numHashes);
+        data.writeInt(words.length());
+        for (int i = 0; i < words.length(); i++) {
+            data.writeLong(words.get(i));
+        }
+        data.flush();
+    }
+
+    public static CustomBloomFilter readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Invalid bloom filter data");
+        }
+        int numHashes = data.readInt();
+        int length = data.readInt();
+        if (numHashes <= 0 || length <= 0) {
+            throw new IOException("Invalid bloom filter data: numHashes=" + numHashes + ", words=" + length);
+        }
+        AtomicLongArray words = new AtomicLongArray(length);
+        for (int i = 0; i < length; i++) {
+            words.set(i, data.readLong());
+        }
+        return new CustomBloomFilter(words, numHashes);
+    }
+
+    // murmur3 的 fmix64
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    static long[] hash(CharSequence value) {
+        byte[] bytes = Hashing.murmur3_128().hashString(value, StandardCharsets.UTF_8).asBytes();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        return new long[]{buffer.getLong(0), buffer.getLong(8)};
     }
 }
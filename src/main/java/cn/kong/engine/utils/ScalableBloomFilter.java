@@ -0,0 +1,177 @@
+package cn.kong.engine.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @description: 可扩展布隆过滤器，线程安全
+ * 元素为规范化URL的64位指纹，由若干个 CustomBloomFilter 分片组成，只向最新的分片插入，最新分片插满预计容量后追加一个容量翻倍的新分片；
+ * 第 i 个分片的误判率为 fpp * (1 - r) * r^i，r = 0.5，所有分片合计的误判率不超过 fpp；
+ * 初始容量按任务的抓取数量估计，小任务只占很少的内存，数量超出预计时自动扩展
+ * @author: kong
+ * @date: 2026-10-18 17:20
+ */
+public class ScalableBloomFilter {
+
+    private static final int MAGIC = 0x4D534232;    // "MSB2"，元素改为URL指纹后的格式
+    private static final int GROWTH = 2;            // 新分片的容量是上一个分片的倍数
+    private static final double TIGHTENING = 0.5;   // 新分片的误判率是上一个分片的比例
+    private static final long MIN_CAPACITY = 1024;
+
+    private volatile Slice[] slices;
+
+    /**
+     * @param initialCapacity 第一个分片的预计元素个数
+     * @param fpp             合计的误判率
+     */
+    public ScalableBloomFilter(long initialCapacity, double fpp) {
+        long capacity = Math.max(MIN_CAPACITY, initialCapacity);
+        double p = Math.min(Math.max(fpp, Double.MIN_VALUE), 0.5) * (1 - TIGHTENING);
+        this.slices = new Slice[]{new Slice(new CustomBloomFilter(capacity, p), capacity, p, 0)};
+    }
+
+    private ScalableBloomFilter(Slice[] slices) {
+        this.slices = slices;
+    }
+
+    /**
+     * 规范化URL的64位指纹不存在时加入最新的分片
+     *
+     * @return 是否是新元素
+     */
+    public boolean putIfAbsent(long fingerprint) {
+        long h2 = CustomBloomFilter.mix(fingerprint);
+        Slice[] current = slices;
+        for (int i = 0; i < current.length - 1; i++) {
+            if (current[i].filter.mightContain(fingerprint, h2)) {
+                return false;
+            }
+        }
+        Slice last = current[current.length - 1];
+        if (!last.filter.putIfAbsent(fingerprint, h2)) {
+            return false;
+        }
+        // 插入期间其他线程追加了分片时，同一元素可能已经插入新的分片，在新增的分片上再检查并插入一次
+        Slice[] latest;
+        while ((latest = slices) != current) {
+            for (int i = current.length; i < latest.length - 1; i++) {
+                if (latest[i].filter.mightContain(fingerprint, h2)) {
+                    return false;
+                }
+            }
+            current = latest;
+            last = current[current.length - 1];
+            if (!last.filter.putIfAbsent(fingerprint, h2)) {
+                return false;
+            }
+        }
+        if (last.count.incrementAndGet() >= last.capacity) {
+            grow(current);
+        }
+        return true;
+    }
+
+    public boolean mightContain(long fingerprint) {
+        long h2 = CustomBloomFilter.mix(fingerprint);
+        for (Slice slice : slices) {
+            if (slice.filter.mightContain(fingerprint, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 已插入的元素个数，不含误判为已存在而没有插入的元素
+     */
+    public long size() {
+        long size = 0;
+        for (Slice slice : slices) {
+            size += slice.count.get();
+        }
+        return size;
+    }
+
+    /**
+     * 所有分片位数组的总位数
+     */
+    public long bitSize() {
+        long bits = 0;
+        for (Slice slice : slices) {
+            bits += slice.filter.bitSize();
+        }
+        return bits;
+    }
+
+    public int sliceCount() {
+        return slices.length;
+    }
+
+    /**
+     * 写出所有分片，可以和插入并发执行，写出开始前已插入的元素都包含在结果中
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        Slice[] current = slices;
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(current.length);
+        for (Slice slice : current) {
+            data.writeLong(slice.capacity);
+            data.writeDouble(slice.fpp);
+            data.writeLong(slice.count.get());
+            slice.filter.writeTo(data);
+        }
+        data.flush();
+    }
+
+    public static ScalableBloomFilter readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Invalid scalable bloom filter data");
+        }
+        int count = data.readInt();
+        if (count <= 0) {
+            throw new IOException("Invalid scalable bloom filter data: slices=" + count);
+        }
+        Slice[] slices = new Slice[count];
+        for (int i = 0; i < count; i++) {
+            long capacity = data.readLong();
+            double fpp = data.readDouble();
+            long size = data.readLong();
+            slices[i] = new Slice(CustomBloomFilter.readFrom(data), capacity, fpp, size);
+        }
+        return new ScalableBloomFilter(slices);
+    }
+
+    // 最新分片已满时追加新分片，多个线程同时发现已满时只追加一次
+    private synchronized void grow(Slice[] current) {
+        if (slices != current) {
+            return;
+        }
+        Slice last = current[current.length - 1];
+        long capacity = last.capacity * GROWTH;
+        double fpp = last.fpp * TIGHTENING;
+        Slice[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = new Slice(new CustomBloomFilter(capacity, fpp), capacity, fpp, 0);
+        slices = grown;
+    }
+
+    private static class Slice {
+        private final CustomBloomFilter filter;
+        private final long capacity;
+        private final double fpp;
+        private final AtomicLong count;
+
+        private Slice(CustomBloomFilter filter, long capacity, double fpp, long count) {
+            this.filter = filter;
+            this.capacity = capacity;
+            this.fpp = fpp;
+            this.count = new AtomicLong(count);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package cn.kong.engine.utils;
+
+import cn.kong.engine.analysis.Analyzer;
+
+/**
+ * @description: 文本的64位 SimHash
+ * 正文经分词器切词后，连续 shingleSize 个词组成一个片段，每个片段哈希为64位、权重为1，
+ * 各位按片段哈希的该位加减权重，累计为正的位置1；内容相近的页面 SimHash 的汉明距离很小
+ * 词元直接在分词器的缓冲区上哈希，不创建字符串
+ * @author: kong
+ * @date: 2026-10-18 18:10
+ */
+public class SimHash {
+
+    private static final long PRIME = 0x9E3779B97F4A7C15L;
+
+    private SimHash() {
+    }
+
+    /**
+     * 计算文本的 SimHash
+     *
+     * @param text        页面正文
+     * @param analyzer    分词器，与建索引使用同一个
+     * @param shingleSize 每个片段的词数
+     * @param minShingles 片段数少于该值时不计算，内容太少的页面 SimHash 不可靠
+     * @return 计算结果，片段数不足时 valid 为false
+     */
+    public static Result compute(CharSequence text, Analyzer analyzer, int shingleSize, int minShingles) {
+        int size = Math.max(1, shingleSize);
+        long[] window = new long[size];
+        int[] counts = new int[64];
+        int[] tokens = {0};
+        analyzer.analyze(text, (buffer, offset, length, position) -> {
+            window[tokens[0] % size] = hashToken(buffer, offset, length);
+            tokens[0]++;
+            if (tokens[0] < size) {
+                return;
+            }
+            // 按词序组合窗口中的词哈希，同样的词不同顺序得到不同的片段
+            long shingle = 0;
+            for (int i = tokens[0] - size; i < tokens[0]; i++) {
+                shingle = shingle * PRIME + window[i % size];
+            }
+            shingle = CustomBloomFilter.mix(shingle);
+            for (int bit = 0; bit < 64; bit++) {
+                counts[bit] += ((shingle >>> bit) & 1) != 0 ? 1 : -1;
+            }
+        });
+        int shingles = Math.max(0, tokens[0] - size + 1);
+        long hash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (counts[bit] > 0) {
+                hash |= 1L << bit;
+            }
+        }
+        return new Result(hash, shingles, shingles >= minShingles && shingles > 0);
+    }
+
+    /**
+     * 两个 SimHash 的汉明距离
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    // FNV-1a 后再混合一次
+    private static long hashToken(char[] buffer, int offset, int length) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            h ^= buffer[i];
+            h *= 0x100000001b3L;
+        }
+        return CustomBloomFilter.mix(h);
+    }
+
+    public static class Result {
+        private final long hash;
+        private final int shingles;
+        private final boolean valid;
+
+        private Result(long hash, int shingles, boolean valid) {
+            this.hash = hash;
+            this.shingles = shingles;
+            this.valid = valid;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        public int getShingles() {
+            return shingles;
+        }
+
+        public boolean isValid() {
+            return valid;
+        }
+    }
+}
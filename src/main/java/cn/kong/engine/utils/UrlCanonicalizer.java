@@ -0,0 +1,105 @@
+package cn.kong.engine.utils;
+
+import com.google.common.hash.Hashing;
+import okhttp3.HttpUrl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * @description: URL规范化与指纹
+ * 规范化：只接受 http/https，协议和主机转小写，去掉默认端口和片段，路径中的 . 和 .. 展开，
+ * 去掉跟踪参数后查询参数按名称、值排序，编码统一为 OkHttp 的规范形式
+ * 指纹：规范化URL的 murmur3_128 低64位，计算时忽略非根路径末尾的 /，/x 和 /x/ 视为同一页面；
+ * 抓取和解析相对链接仍使用规范化URL本身，保留末尾的 /
+ * 线程安全
+ * @author: kong
+ * @date: 2026-10-18 17:50
+ */
+public class UrlCanonicalizer {
+
+    private static final Comparator<String[]> PARAMETER_ORDER = Comparator
+            .comparing((String[] parameter) -> parameter[0])
+            .thenComparing(parameter -> parameter[1], Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final Set<String> trackingParams = new TreeSet<>();
+
+    private final List<String> trackingPrefixes = new ArrayList<>();
+
+    /**
+     * @param trackingParams   需要去掉的查询参数名，不区分大小写
+     * @param trackingPrefixes 需要去掉的查询参数名前缀，不区分大小写
+     */
+    public UrlCanonicalizer(Collection<String> trackingParams, Collection<String> trackingPrefixes) {
+        for (String name : trackingParams) {
+            this.trackingParams.add(name.toLowerCase(Locale.ROOT));
+        }
+        for (String prefix : trackingPrefixes) {
+            this.trackingPrefixes.add(prefix.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * 规范化URL，不是合法的 http/https 地址时返回null
+     */
+    public String canonicalize(String url) {
+        if (url == null || url.isEmpty()) {
+            return null;
+        }
+        HttpUrl parsed = HttpUrl.parse(url.trim());
+        if (parsed == null) {
+            return null;
+        }
+        HttpUrl.Builder builder = parsed.newBuilder().fragment(null);
+        if (parsed.querySize() > 0) {
+            List<String[]> parameters = new ArrayList<>(parsed.querySize());
+            for (int i = 0; i < parsed.querySize(); i++) {
+                String name = parsed.queryParameterName(i);
+                if (!name.isEmpty() && !isTracking(name)) {
+                    parameters.add(new String[]{name, parsed.queryParameterValue(i)});
+                }
+            }
+            parameters.sort(PARAMETER_ORDER);
+            builder.query(null);
+            for (String[] parameter : parameters) {
+                builder.addQueryParameter(parameter[0], parameter[1]);
+            }
+        }
+        return builder.build().toString();
+    }
+
+    /**
+     * 规范化URL的64位指纹，0保留为空值
+     */
+    public static long fingerprint(String canonicalUrl) {
+        String key = canonicalUrl;
+        int end = key.indexOf('?');
+        end = end < 0 ? key.length() : end;
+        int scheme = key.indexOf("://");
+        int root = scheme < 0 ? -1 : key.indexOf('/', scheme + 3);
+        if (root >= 0 && end - 1 > root && key.charAt(end - 1) == '/') {
+            key = key.substring(0, end - 1) + key.substring(end);
+        }
+        long fingerprint = Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8).asLong();
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    private boolean isTracking(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (trackingParams.contains(lower)) {
+            return true;
+        }
+        for (String prefix : trackingPrefixes) {
+            if (lower.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,195 @@
+package cn.kong.engine.content;
+
+import cn.kong.engine.common.Constants;
+import cn.kong.engine.config.CrawlerConfig;
+import cn.kong.engine.model.CrawlerTask;
+import cn.kong.engine.store.SegmentFormat;
+import cn.kong.engine.store.SegmentReader;
+import cn.kong.engine.store.SegmentWriter;
+import cn.kong.engine.utils.ScalableBloomFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author gzkon
+ * @description: 段文件条带：按docId取模或按host分配条带，各条带独立切换文件，文件编号接着已有文件并跳过被其他任务占用的编号
+ * 段文件写在 user.dir/out 下，测试时工作目录为 target，每个用例使用自己的文件名前缀并在结束后删除
+ * @date 2026/10/18 23:10
+ */
+class CrawlerContentTest {
+
+    private final Path directory = Paths.get(Constants.OUT_DIC);
+
+    private String prefix;
+
+    private CrawlerContent content;
+
+    @BeforeEach
+    void prefix() {
+        prefix = "test_stripe_" + System.nanoTime() + "_";
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        if (content != null) {
+            content.closeCurrentWriter();
+        }
+        for (Path file : files()) {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void docIdStripesFollowModulo() {
+        content = start(4, CrawlerConfig.StripeBy.DOC_ID, 1024 * 1024);
+        int[] counts = new int[4];
+        for (long docId = 1; docId <= 4000; docId++) {
+            int stripe = content.stripeOf(docId, "https://example.com/" + docId);
+            assertEquals(docId % 4, stripe);
+            counts[stripe]++;
+        }
+        for (int count : counts) {
+            assertEquals(1000, count);
+        }
+    }
+
+    @Test
+    void hostStripesKeepHostTogether() {
+        content = start(4, CrawlerConfig.StripeBy.HOST, 1024 * 1024);
+        Set<Integer> used = new HashSet<>();
+        for (int site = 0; site < 40; site++) {
+            String host = "https://site" + site + ".example.com/";
+            int stripe = content.stripeOf(1, host);
+            // 同一host的页面不管docId和路径都写入同一条带
+            for (long docId = 2; docId <= 20; docId++) {
+                assertEquals(stripe, content.stripeOf(docId, host + "page/" + docId + "?q=" + docId));
+            }
+            used.add(stripe);
+        }
+        assertEquals(4, used.size());
+        // 无法解析host的URL固定分到同一条带
+        assertEquals(content.stripeOf(1, null), content.stripeOf(2, "not a url"));
+
+        CrawlerContent single = start(1, CrawlerConfig.StripeBy.HOST, 1024 * 1024);
+        try {
+            assertEquals(0, single.stripeOf(7, "https://site1.example.com/"));
+        } finally {
+            single.closeCurrentWriter();
+        }
+    }
+
+    @Test
+    void openNewFileSkipsClaimedIndexes() throws IOException {
+        Files.createDirectories(directory);
+        Files.createFile(directory.resolve(prefix + "0_0.bin"));
+        Files.createFile(directory.resolve(prefix + "0_3.bin"));
+        content = start(2, CrawlerConfig.StripeBy.DOC_ID, 1024 * 1024);
+        // 启动后其他任务占用了下一个编号
+        Files.createFile(directory.resolve(prefix + "0_4.bin"));
+
+        List<String> opened = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            SegmentWriter writer = content.openNewFile(0);
+            opened.add(writer.getPath().getFileName().toString());
+            writer.close();
+        }
+        SegmentWriter other = content.openNewFile(1);
+        opened.add(other.getPath().getFileName().toString());
+        other.close();
+
+        assertEquals(List.of(prefix + "0_5.bin", prefix + "0_6.bin", prefix + "1_0.bin"), opened);
+        // 之前的文件没有被覆盖
+        assertEquals(0, Files.size(directory.resolve(prefix + "0_3.bin")));
+        assertEquals(0, Files.size(directory.resolve(prefix + "0_4.bin")));
+    }
+
+    @Test
+    void stripesRotateFilesIndependently() throws Exception {
+        content = start(2, CrawlerConfig.StripeBy.DOC_ID, 8 * 1024);
+        Map<Long, byte[]> records = new HashMap<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (long docId = 1; docId <= 60; docId++) {
+            byte[] body = ("<html>doc-" + docId + " " + "x".repeat(1000)).getBytes(StandardCharsets.UTF_8);
+            records.put(docId, body);
+            futures.add(content.appendRecord(docId, "https://example.com/" + docId, body, null));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        content.closeCurrentWriter();
+
+        Map<Integer, List<Long>> indexes = new HashMap<>();
+        Map<Long, byte[]> read = new HashMap<>();
+        for (Path file : files()) {
+            String[] parts = file.getFileName().toString().substring(prefix.length()).replace(".bin", "").split("_");
+            int stripe = Integer.parseInt(parts[0]);
+            indexes.computeIfAbsent(stripe, s -> new ArrayList<>()).add(Long.parseLong(parts[1]));
+            try (SegmentReader reader = SegmentReader.open(file)) {
+                assertTrue(reader.isSealed());
+                assertTrue(reader.getFileSize() <= 8 * 1024 + 2048);
+                for (long docId : reader.docIds()) {
+                    assertEquals(stripe, docId % 2);
+                    read.put(docId, reader.get(docId));
+                }
+            }
+        }
+        // 每个条带写满后切换到下一个编号，两个条带的编号各自从0开始连续增长
+        for (int stripe = 0; stripe < 2; stripe++) {
+            List<Long> stripeIndexes = indexes.get(stripe);
+            Collections.sort(stripeIndexes);
+            assertTrue(stripeIndexes.size() > 1);
+            for (int i = 0; i < stripeIndexes.size(); i++) {
+                assertEquals(i, stripeIndexes.get(i));
+            }
+        }
+        assertEquals(records.keySet(), read.keySet());
+        records.forEach((docId, body) -> assertArrayEquals(body, read.get(docId)));
+    }
+
+    private CrawlerContent start(int stripes, CrawlerConfig.StripeBy stripeBy, long maxFileSize) {
+        CrawlerTask task = new CrawlerTask();
+        task.setTaskId(prefix + stripes);
+        task.setLinks(List.of("https://example.com/"));
+        task.setFilePrefix(prefix);
+        task.setMaxFileSize(maxFileSize);
+        CrawlerConfig.StoreProperties properties = new CrawlerConfig.StoreProperties();
+        properties.setStripes(stripes);
+        properties.setStripeBy(stripeBy);
+        properties.setCompression(SegmentFormat.Compression.NONE);
+        properties.setBlockSize(1024);
+        CrawlerContent started = new CrawlerContent();
+        started.init(task, properties, null, new ScalableBloomFilter(1024, 0.01), new AtomicLong());
+        return started;
+    }
+
+    private List<Path> files() throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*")) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+}
@@ -0,0 +1,217 @@
+package cn.kong.engine.index;
+
+import cn.kong.engine.analysis.StandardAnalyzer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author gzkon
+ * @description: 磁盘索引段的分块倒排表：写入后读回、跳表的块边界和得分上界、advance 跳块、位置按需加载
+ * @date 2026/10/18 20:50
+ */
+class BlockPostingsTest {
+
+    private static final int DOCS = 1000;
+
+    @TempDir
+    Path dir;
+
+    private Path segment;
+
+    @BeforeEach
+    void build() throws IOException {
+        segment = dir.resolve("seg_0");
+        try (IndexBuilder builder = new IndexBuilder(segment, new StandardAnalyzer(), 1024 * 1024)) {
+            for (int i = 0; i < DOCS; i++) {
+                builder.addDocument(docId(i), title(i), body(i));
+            }
+            builder.finish();
+        }
+    }
+
+    @Test
+    void postingsRoundTrip() throws IOException {
+        try (IndexReader reader = IndexReader.open(segment)) {
+            assertEquals(DOCS, reader.docCount());
+            for (int i = 0; i < DOCS; i++) {
+                assertEquals(docId(i), reader.docId(i));
+                assertEquals(expectedLength(i), reader.docLength(i));
+            }
+
+            PostingsIterator alpha = reader.postings("alpha");
+            assertEquals(DOCS, alpha.cost());
+            for (int i = 0; i < DOCS; i++) {
+                assertEquals(i, alpha.nextDoc());
+                assertEquals(alphaFreq(i) + (i % 7 == 0 ? IndexFormat.TITLE_WEIGHT : 0), alpha.freq());
+            }
+            assertEquals(PostingsIterator.NO_MORE_DOCS, alpha.nextDoc());
+
+            PostingsIterator gamma = reader.postings("gamma");
+            assertEquals(4, gamma.cost());
+            for (int ord = 0; ord < DOCS; ord += 250) {
+                assertEquals(ord, gamma.nextDoc());
+            }
+            assertEquals(PostingsIterator.NO_MORE_DOCS, gamma.nextDoc());
+
+            assertNull(reader.postings("missing"));
+            assertEquals(0, reader.docFreq("missing"));
+        }
+    }
+
+    @Test
+    void skipDataDescribesBlocks() throws IOException {
+        try (IndexReader reader = IndexReader.open(segment)) {
+            PostingsIterator alpha = reader.postings("alpha");
+            int blocks = (DOCS + IndexFormat.POSTINGS_BLOCK_SIZE - 1) / IndexFormat.POSTINGS_BLOCK_SIZE;
+            assertEquals(blocks, alpha.blockCount());
+            assertEquals(-1, alpha.block());
+            for (int b = 0; b < blocks; b++) {
+                int first = b * IndexFormat.POSTINGS_BLOCK_SIZE;
+                int last = Math.min(DOCS, first + IndexFormat.POSTINGS_BLOCK_SIZE) - 1;
+                int maxTf = 0;
+                int minLength = Integer.MAX_VALUE;
+                for (int i = first; i <= last; i++) {
+                    maxTf = Math.max(maxTf, alphaFreq(i) + (i % 7 == 0 ? IndexFormat.TITLE_WEIGHT : 0));
+                    minLength = Math.min(minLength, expectedLength(i));
+                }
+                assertEquals(last, alpha.blockLastDoc(b));
+                assertEquals(maxTf, alpha.blockMaxTf(b));
+                assertEquals(minLength, alpha.blockMinLength(b));
+            }
+        }
+    }
+
+    @Test
+    void advanceMatchesLinearScan() throws IOException {
+        Random random = new Random(7);
+        try (IndexReader reader = IndexReader.open(segment)) {
+            for (int round = 0; round < 50; round++) {
+                PostingsIterator beta = reader.postings("beta");
+                int target = -1;
+                while (true) {
+                    target += 1 + random.nextInt(300);
+                    int expected = target >= DOCS ? PostingsIterator.NO_MORE_DOCS : (target + 2) / 3 * 3;
+                    if (expected >= DOCS) {
+                        expected = PostingsIterator.NO_MORE_DOCS;
+                    }
+                    int doc = beta.advance(target);
+                    assertEquals(expected, doc);
+                    if (doc == PostingsIterator.NO_MORE_DOCS) {
+                        break;
+                    }
+                    // beta 每三篇出现一次，第 doc / 3 个倒排项所在的块
+                    assertEquals(doc / 3 / IndexFormat.POSTINGS_BLOCK_SIZE, blockOf(beta, doc));
+                    assertEquals(1, beta.freq());
+                    target = doc;
+                }
+            }
+        }
+    }
+
+    @Test
+    void positionsAreLoadedOnDemand() throws IOException {
+        TermInfo info;
+        try (IndexReader reader = IndexReader.open(segment)) {
+            info = reader.termInfo("alpha");
+            assertNotNull(info);
+
+            PostingsIterator alpha = reader.postings(info);
+            for (int ord = 3; ord < DOCS; ord += 97) {
+                assertEquals(ord, alpha.advance(ord));
+                int[] expected = alphaPositions(ord);
+                int[] actual = new int[alpha.positionCount()];
+                for (int i = 0; i < actual.length; i++) {
+                    actual[i] = alpha.position(i);
+                }
+                assertArrayEquals(expected, actual);
+            }
+        }
+
+        // 位置文件换成空缓冲区，只遍历文档和词频时不会访问它
+        ByteBuffer postings = ByteBuffer.wrap(Files.readAllBytes(segment.resolve(IndexFormat.POSTINGS_FILE)));
+        PostingsIterator docsOnly = new BlockPostingsIterator(postings, ByteBuffer.allocate(0), info);
+        int count = 0;
+        while (docsOnly.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+            docsOnly.freq();
+            count++;
+        }
+        assertEquals(DOCS, count);
+        docsOnly = new BlockPostingsIterator(postings, ByteBuffer.allocate(0), info);
+        assertEquals(DOCS - 1, docsOnly.advance(DOCS - 1));
+    }
+
+    private static int blockOf(PostingsIterator iterator, int doc) {
+        assertEquals(doc, iterator.doc());
+        return iterator.block();
+    }
+
+    private static long docId(int i) {
+        return 10_000L + i * 3L;
+    }
+
+    private static String title(int i) {
+        return i % 7 == 0 ? "alpha title" : "";
+    }
+
+    private static int alphaFreq(int i) {
+        return i % 5 + 1;
+    }
+
+    // 正文：filler 词、若干个 alpha，每三篇有 beta，每250篇有 gamma
+    private static String body(int i) {
+        return String.join(" ", bodyWords(i));
+    }
+
+    private static List<String> bodyWords(int i) {
+        List<String> words = new ArrayList<>();
+        words.add("doc" + i);
+        for (int k = 0; k < alphaFreq(i); k++) {
+            words.add("alpha");
+            words.add("w" + k);
+        }
+        if (i % 3 == 0) {
+            words.add("beta");
+        }
+        if (i % 250 == 0) {
+            words.add("gamma");
+        }
+        return words;
+    }
+
+    private static int titleTokens(int i) {
+        return i % 7 == 0 ? 2 : 0;
+    }
+
+    private static int expectedLength(int i) {
+        return titleTokens(i) * IndexFormat.TITLE_WEIGHT + bodyWords(i).size();
+    }
+
+    private static int[] alphaPositions(int i) {
+        List<Integer> positions = new ArrayList<>();
+        if (i % 7 == 0) {
+            positions.add(0);
+        }
+        int base = titleTokens(i) + IndexFormat.POSITION_GAP;
+        List<String> words = bodyWords(i);
+        for (int p = 0; p < words.size(); p++) {
+            if (words.get(p).equals("alpha")) {
+                positions.add(base + p);
+            }
+        }
+        return positions.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
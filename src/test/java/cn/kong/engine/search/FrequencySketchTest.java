@@ -0,0 +1,59 @@
+package cn.kong.engine.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author gzkon
+ * @description: count-min sketch：不会低估、计数上限为15、达到采样周期后减半
+ * @date 2026/10/18 21:10
+ */
+class FrequencySketchTest {
+
+    @Test
+    void countsUpToFifteen() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        assertEquals(0, sketch.frequency("absent"));
+        for (int i = 1; i <= 20; i++) {
+            sketch.increment("hot");
+            assertEquals(Math.min(i, 15), sketch.frequency("hot"));
+        }
+    }
+
+    @Test
+    void neverUnderestimates() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        long error = 0;
+        for (int key = 0; key < 500; key++) {
+            for (int n = 0; n < key % 15; n++) {
+                sketch.increment(key);
+            }
+        }
+        for (int key = 0; key < 500; key++) {
+            int frequency = sketch.frequency(key);
+            assertTrue(frequency >= key % 15, "key " + key);
+            error += frequency - key % 15;
+        }
+        // 容量远大于键数时冲突很少
+        assertTrue(error < 100, "total overestimate " + error);
+    }
+
+    @Test
+    void resetHalvesCounters() {
+        int maximumSize = 64;
+        FrequencySketch sketch = new FrequencySketch(maximumSize);
+        for (int i = 0; i < 15; i++) {
+            sketch.increment("hot");
+        }
+        assertEquals(15, sketch.frequency("hot"));
+        // 采样周期为 10 * maximumSize 次有效记录，其他键的记录触发一次减半
+        int sampleSize = 10 * maximumSize;
+        for (int key = 0; key < sampleSize - 15; key++) {
+            sketch.increment(key);
+        }
+        int frequency = sketch.frequency("hot");
+        assertTrue(frequency >= 7 && frequency <= 8, "frequency after reset " + frequency);
+    }
+}
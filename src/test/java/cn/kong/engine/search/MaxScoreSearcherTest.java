@@ -0,0 +1,183 @@
+package cn.kong.engine.search;
+
+import cn.kong.engine.analysis.StandardAnalyzer;
+import cn.kong.engine.index.IndexBuilder;
+import cn.kong.engine.index.IndexReader;
+import cn.kong.engine.index.PostingsIterator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author gzkon
+ * @description: MaxScore 剪枝检索与逐篇完整打分的 BM25 结果一致，跨多个索引段共用收集器
+ * @date 2026/10/18 21:00
+ */
+class MaxScoreSearcherTest {
+
+    private static final int VOCABULARY = 300;
+
+    private static final float EPSILON = 1e-4f;
+
+    @TempDir
+    Path dir;
+
+    private final Bm25 bm25 = new Bm25(1.2f, 0.75f);
+
+    private final List<IndexReader> segments = new ArrayList<>();
+
+    private long docCount;
+
+    private float avgLength;
+
+    @BeforeEach
+    void build() throws IOException {
+        Random random = new Random(2026);
+        long totalLength = 0;
+        long docId = 1;
+        for (int s = 0; s < 2; s++) {
+            Path path = dir.resolve("seg_" + s);
+            try (IndexBuilder builder = new IndexBuilder(path, new StandardAnalyzer(), 1024 * 1024)) {
+                for (int i = 0; i < 3000; i++) {
+                    builder.addDocument(docId++, random.nextInt(10) == 0 ? word(random) : null, text(random));
+                }
+                builder.finish();
+            }
+            IndexReader reader = IndexReader.open(path);
+            segments.add(reader);
+            docCount += reader.docCount();
+            totalLength += reader.totalLength();
+        }
+        avgLength = (float) totalLength / docCount;
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        for (IndexReader reader : segments) {
+            reader.close();
+        }
+    }
+
+    @Test
+    void sameTopKAsExhaustiveScoring() {
+        Random random = new Random(7);
+        MaxScoreSearcher searcher = new MaxScoreSearcher(bm25);
+        long pruned = 0;
+        for (int q = 0; q < 200; q++) {
+            List<WeightedTerm> terms = query(random);
+            int k = new int[]{1, 10, 50}[q % 3];
+
+            TopKCollector collector = new TopKCollector(k);
+            for (IndexReader segment : segments) {
+                searcher.search(segment, terms, avgLength, collector);
+            }
+            List<SearchHit> actual = collector.results();
+            List<SearchHit> expected = exhaustive(terms, k);
+
+            assertEquals(expected.size(), actual.size(), "query " + q);
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), EPSILON, "query " + q + " rank " + i);
+            }
+            // 得分明显高于第 k 名的文档必须一致，与第 k 名几乎相同的文档允许因累加顺序不同而取舍不同
+            float kth = expected.get(expected.size() - 1).getScore();
+            assertEquals(docIdsAbove(expected, kth + EPSILON), docIdsAbove(actual, kth + EPSILON), "query " + q);
+            pruned += matchCount(terms) - collector.getCollected();
+        }
+        // 确认剪枝确实发生，而不是退化为完整打分
+        assertTrue(pruned > 0);
+    }
+
+    // 每个词的倒排表完整遍历，逐篇累加得分后排序
+    private List<SearchHit> exhaustive(List<WeightedTerm> terms, int k) {
+        List<SearchHit> hits = new ArrayList<>();
+        for (IndexReader segment : segments) {
+            Map<Integer, Float> scores = new HashMap<>();
+            for (WeightedTerm term : terms) {
+                PostingsIterator postings = segment.postings(term.getTerm());
+                if (postings == null) {
+                    continue;
+                }
+                for (int doc = postings.nextDoc(); doc != PostingsIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                    float score = bm25.score(term.getWeight(), postings.freq(), segment.docLength(doc), avgLength);
+                    scores.merge(doc, score, Float::sum);
+                }
+            }
+            scores.forEach((doc, score) -> hits.add(new SearchHit(segment.docId(doc), score)));
+        }
+        hits.sort(Comparator.comparing(SearchHit::getScore).reversed().thenComparingLong(SearchHit::getDocId));
+        return hits.subList(0, Math.min(k, hits.size()));
+    }
+
+    private long matchCount(List<WeightedTerm> terms) {
+        long count = 0;
+        for (IndexReader segment : segments) {
+            Set<Integer> docs = new LinkedHashSet<>();
+            for (WeightedTerm term : terms) {
+                PostingsIterator postings = segment.postings(term.getTerm());
+                while (postings != null && postings.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                    docs.add(postings.doc());
+                }
+            }
+            count += docs.size();
+        }
+        return count;
+    }
+
+    private static Set<Long> docIdsAbove(List<SearchHit> hits, float score) {
+        Set<Long> docIds = new LinkedHashSet<>();
+        for (SearchHit hit : hits) {
+            if (hit.getScore() > score) {
+                docIds.add(hit.getDocId());
+            }
+        }
+        return docIds;
+    }
+
+    // 1到5个查询词，常见词和罕见词混合
+    private List<WeightedTerm> query(Random random) {
+        Set<String> words = new LinkedHashSet<>();
+        int size = 1 + random.nextInt(5);
+        while (words.size() < size) {
+            words.add(random.nextBoolean() ? word(random) : "w" + random.nextInt(VOCABULARY));
+        }
+        List<WeightedTerm> terms = new ArrayList<>();
+        for (String word : words) {
+            long docFreq = 0;
+            for (IndexReader segment : segments) {
+                docFreq += segment.docFreq(word);
+            }
+            terms.add(new WeightedTerm(word, bm25.idf(docFreq, docCount)));
+        }
+        return terms;
+    }
+
+    private static String text(Random random) {
+        StringBuilder text = new StringBuilder();
+        int length = 5 + random.nextInt(120);
+        for (int i = 0; i < length; i++) {
+            text.append(word(random)).append(' ');
+        }
+        return text.toString();
+    }
+
+    // 近似 Zipf 分布：编号越小的词出现越频繁
+    private static String word(Random random) {
+        double u = random.nextDouble();
+        return "w" + (int) (Math.pow(VOCABULARY + 1, u) - 1);
+    }
+}
@@ -0,0 +1,120 @@
+package cn.kong.engine.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author gzkon
+ * @description: W-TinyLFU 缓存：容量限制、按访问频率准入、一次性访问不挤出热点、命中统计
+ * @date 2026/10/18 21:15
+ */
+class WTinyLfuCacheTest {
+
+    @Test
+    void sizeNeverExceedsMaximum() {
+        WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<>(50);
+        for (int key = 0; key < 1000; key++) {
+            if (cache.get(key % 70) == null) {
+                cache.put(key % 70, "v" + key);
+            }
+            assertTrue(cache.size() <= 50);
+        }
+        CacheStats stats = cache.stats();
+        assertEquals(50, stats.getSize());
+        assertEquals(50, stats.getMaximumSize());
+    }
+
+    @Test
+    void frequentCandidateIsAdmitted() {
+        WTinyLfuCache<String, String> cache = new WTinyLfuCache<>(100);
+        for (int i = 0; i < 100; i++) {
+            cache.put("cold-" + i, "v");
+        }
+        // 候选者被多次查询过，频率高于主区的淘汰对象
+        for (int i = 0; i < 5; i++) {
+            cache.get("popular");
+        }
+        cache.put("popular", "v");
+        cache.put("filler", "v");     // 挤出窗口，与淘汰对象比较
+        assertNotNull(cache.get("popular"));
+        assertTrue(cache.stats().getEvictions() > 0);
+    }
+
+    @Test
+    void coldCandidateIsRejected() {
+        WTinyLfuCache<String, String> cache = new WTinyLfuCache<>(100);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 100; i++) {
+                if (cache.get("hot-" + i) == null) {
+                    cache.put("hot-" + i, "v");
+                }
+            }
+        }
+        cache.put("once-1", "v");
+        long rejections = cache.stats().getRejections();
+        // once-1 被挤出窗口，从未被查询过，频率不高于主区的淘汰对象
+        cache.put("once-2", "v");
+        assertEquals(rejections + 1, cache.stats().getRejections());
+        assertNull(cache.get("once-1"));
+    }
+
+    @Test
+    void scanDoesNotFlushHotEntries() {
+        WTinyLfuCache<String, String> cache = new WTinyLfuCache<>(100);
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < 50; i++) {
+                if (cache.get("hot-" + i) == null) {
+                    cache.put("hot-" + i, "v");
+                }
+            }
+        }
+        // 大量只访问一次的查询，纯LRU会把热点全部挤出
+        for (int i = 0; i < 5000; i++) {
+            if (cache.get("scan-" + i) == null) {
+                cache.put("scan-" + i, "v");
+            }
+        }
+        int survived = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get("hot-" + i) != null) {
+                survived++;
+            }
+        }
+        assertTrue(survived >= 45, "hot entries survived: " + survived);
+    }
+
+    @Test
+    void statsCountRequests() {
+        WTinyLfuCache<String, String> cache = new WTinyLfuCache<>(10);
+        assertEquals(0, cache.stats().getHitRate());
+        cache.get("a");
+        cache.put("a", "1");
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+        cache.put("a", "2");
+        assertEquals("2", cache.get("a"));
+
+        CacheStats stats = cache.stats();
+        assertEquals(3, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(0.6, stats.getHitRate(), 1e-9);
+        assertEquals(1, stats.getSize());
+
+        int puts = 1;
+        for (int i = 0; i < 40; i++) {
+            cache.put("k" + i, "v");
+            puts++;
+        }
+        stats = cache.stats();
+        assertEquals(puts - stats.getSize(), stats.getEvictions() + stats.getRejections());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a"));
+    }
+}
@@ -0,0 +1,236 @@
+package cn.kong.engine.service;
+
+import cn.kong.engine.model.DocInfo;
+import cn.kong.engine.utils.SqlGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author gzkon
+ * @description: doc_info 写入线程：同一docId的变更合并、flush 等待之前的变更、出错的行单独丢弃、批次异常后继续写入、关闭后拒绝提交
+ * @date 2026/10/18 22:00
+ */
+class DocInfoWriterTest {
+
+    @TempDir
+    Path dir;
+
+    private String url;
+
+    private DocInfoWriter writer;
+
+    @BeforeEach
+    void createTable() throws SQLException {
+        url = "jdbc:sqlite:" + dir.resolve("doc_info.db");
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(SqlGenerator.generateCreateTable(DocInfo.class));
+        }
+    }
+
+    @AfterEach
+    void close() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    @Test
+    void mutationsOfOneDocAreCoalesced() throws Exception {
+        CountDownLatch connecting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        writer = start(() -> {
+            connecting.countDown();
+            await(release);
+            return DriverManager.getConnection(url);
+        });
+        // 第一条变更单独成批，写入线程阻塞在打开连接时，之后的变更都进入下一批
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        futures.add(writer.insert(doc(100, "first")));
+        assertTrue(connecting.await(5, TimeUnit.SECONDS));
+
+        futures.add(writer.insert(doc(1, "old title")));
+        futures.add(writer.update(patch(1, "new title")));
+        DocInfo stored = new DocInfo();
+        stored.setId(1L);
+        stored.setStored(true);
+        futures.add(writer.update(stored));
+        futures.add(writer.insert(doc(2, "deleted")));
+        futures.add(writer.delete(2));
+        futures.add(writer.update(patch(3, "missing row")));
+        futures.add(writer.insert(doc(4, "first insert")));
+        futures.add(writer.delete(4));
+        futures.add(writer.insert(doc(4, "second insert")));
+        release.countDown();
+        writer.flush();
+
+        for (CompletableFuture<Boolean> future : futures) {
+            assertTrue(future.getNow(false));
+        }
+        // 10 个变更合并为 docId 100、1、2、3、4 各一次写入
+        assertEquals(5, writer.getWritten());
+        assertEquals(0, writer.getFailed());
+        assertEquals("new title", title(1));
+        assertTrue(isStored(1));
+        assertNull(title(2));
+        assertNull(title(3));
+        assertEquals("second insert", title(4));
+    }
+
+    @Test
+    void flushWaitsForEarlierMutations() throws Exception {
+        writer = start(() -> DriverManager.getConnection(url));
+        for (long id = 1; id <= 2000; id++) {
+            writer.insert(doc(id, "title-" + id));
+        }
+        writer.flush();
+        assertEquals(2000, count());
+        assertEquals(0, writer.pending());
+
+        for (long id = 1; id <= 2000; id += 2) {
+            writer.delete(id);
+        }
+        writer.update(patch(2, "updated"));
+        writer.flush();
+        assertEquals(1000, count());
+        assertEquals("updated", title(2));
+    }
+
+    @Test
+    void failedRowIsDroppedAlone() throws Exception {
+        CountDownLatch connecting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        writer = start(() -> {
+            connecting.countDown();
+            await(release);
+            return DriverManager.getConnection(url);
+        });
+        writer.insert(doc(5, "existing"));
+        assertTrue(connecting.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> before = writer.insert(doc(6, "before"));
+        CompletableFuture<Boolean> duplicate = writer.insert(doc(5, "duplicate"));
+        CompletableFuture<Boolean> after = writer.insert(doc(7, "after"));
+        release.countDown();
+
+        // 主键冲突使整个事务失败，回滚后逐条重试，只有冲突的一行失败
+        assertTrue(before.get(5, TimeUnit.SECONDS));
+        assertFalse(duplicate.get(5, TimeUnit.SECONDS));
+        assertTrue(after.get(5, TimeUnit.SECONDS));
+        assertEquals(1, writer.getFailed());
+        assertEquals("existing", title(5));
+        assertEquals(3, count());
+    }
+
+    @Test
+    void writerSurvivesFailedBatch() throws Exception {
+        AtomicBoolean thrown = new AtomicBoolean();
+        writer = start(() -> {
+            if (thrown.compareAndSet(false, true)) {
+                throw new Error("broken connection factory");
+            }
+            return DriverManager.getConnection(url);
+        });
+        CompletableFuture<Boolean> lost = writer.insert(doc(1, "lost"));
+        assertFalse(lost.get(5, TimeUnit.SECONDS));
+        assertEquals(1, writer.getFailed());
+
+        // 写入线程仍在运行，之后的变更和 flush 都正常完成
+        assertTrue(writer.insert(doc(2, "written")).get(5, TimeUnit.SECONDS));
+        writer.flush();
+        assertEquals("written", title(2));
+        assertEquals(1, count());
+    }
+
+    @Test
+    void closeDrainsQueueAndRejectsLateMutations() throws Exception {
+        writer = start(() -> DriverManager.getConnection(url));
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (long id = 1; id <= 500; id++) {
+            futures.add(writer.insert(doc(id, "title-" + id)));
+        }
+        writer.close();
+
+        for (CompletableFuture<Boolean> future : futures) {
+            assertTrue(future.getNow(false));
+        }
+        assertEquals(500, count());
+        CompletableFuture<Boolean> late = writer.insert(doc(501, "late"));
+        assertTrue(late.isDone());
+        assertFalse(late.get());
+        writer.flush();     // 已关闭时直接返回
+    }
+
+    private static DocInfoWriter start(DocInfoWriter.ConnectionFactory factory) {
+        DocInfoWriter writer = new DocInfoWriter("test-doc-info-writer", factory, 10_000, 1000);
+        writer.start();
+        return writer;
+    }
+
+    private static DocInfo doc(long id, String title) {
+        DocInfo doc = new DocInfo();
+        doc.setId(id);
+        doc.setUrl("https://example.com/" + id);
+        doc.setUrlFp(id * 31);
+        doc.setTitle(title);
+        doc.setStatusCode(200);
+        doc.setCreateTime(LocalDateTime.now());
+        return doc;
+    }
+
+    private static DocInfo patch(long id, String title) {
+        DocInfo doc = new DocInfo();
+        doc.setId(id);
+        doc.setTitle(title);
+        return doc;
+    }
+
+    private String title(long id) throws SQLException {
+        return queryOne("SELECT title FROM doc_info WHERE id = " + id);
+    }
+
+    private boolean isStored(long id) throws SQLException {
+        return "1".equals(queryOne("SELECT stored FROM doc_info WHERE id = " + id));
+    }
+
+    private long count() throws SQLException {
+        return Long.parseLong(queryOne("SELECT COUNT(*) FROM doc_info"));
+    }
+
+    private String queryOne(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
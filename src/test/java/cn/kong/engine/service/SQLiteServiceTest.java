@@ -0,0 +1,179 @@
+package cn.kong.engine.service;
+
+import cn.kong.engine.config.CrawlerConfig;
+import cn.kong.engine.model.DocInfo;
+import cn.kong.engine.model.DocInfoFilter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author gzkon
+ * @description: doc_info 的按键翻页：selectAfter 逐页读取不重不漏、过滤条件、scan/stream 遍历、selectByPage 定位页首，
+ * 遍历在只读连接池上按页读取，不占住连接
+ * 数据库是 user.dir/out 下的 doc_info.db，测试时工作目录为 target，每个用例开始前清空
+ * @date 2026/10/18 22:20
+ */
+class SQLiteServiceTest {
+
+    private static final int DOCS = 2500;
+
+    private static SQLiteService service;
+
+    private final List<DocInfo> docs = new ArrayList<>();
+
+    @BeforeAll
+    static void open() {
+        service = new SQLiteService(new CrawlerConfig.DocInfoProperties());
+    }
+
+    @AfterAll
+    static void flush() {
+        // 不调用 close，它会关闭整个进程共用的静态连接池
+        service.flush();
+    }
+
+    @BeforeEach
+    void fill() {
+        service.scan(DocInfoFilter.all(), SQLiteService.DEFAULT_SCAN_SIZE, doc -> service.deleteByIdAsync(doc.getId()));
+        service.flush();
+        assertEquals(0, service.count());
+
+        // docId 不连续，插入顺序也与 docId 顺序不同
+        for (int i = 0; i < DOCS; i++) {
+            long id = (i * 7919L) % 100_003 + 1;
+            DocInfo doc = new DocInfo();
+            doc.setId(id);
+            doc.setUrl("https://site" + (i % 3) + ".example.com/" + id);
+            doc.setUrlFp(id * 31);
+            doc.setTitle("title-" + id);
+            doc.setDomain("site" + (i % 3) + ".example.com");
+            doc.setStatusCode(i % 10 == 0 ? 404 : 200);
+            doc.setStored(i % 10 != 0 && i % 4 != 0);
+            doc.setSimhash(i % 5 == 0 ? null : id * 1_000_003);
+            doc.setDuplicateOf(i % 50 == 7 ? 1L : null);
+            doc.setCreateTime(LocalDateTime.now());
+            docs.add(doc);
+        }
+        assertEquals(DOCS, service.insertBatch(docs));
+        docs.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+    }
+
+    @Test
+    void selectAfterPagesThroughEveryRowOnce() {
+        List<Long> visited = new ArrayList<>();
+        long afterId = 0;
+        int pages = 0;
+        while (true) {
+            List<DocInfo> page = service.selectAfter(afterId, DocInfoFilter.all(), 100);
+            page.forEach(doc -> visited.add(doc.getId()));
+            pages++;
+            if (page.size() < 100) {
+                break;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+        assertEquals(ids(doc -> true), visited);
+        assertEquals(DOCS / 100 + 1, pages);     // 最后一页为空时才知道已读到末尾
+        assertTrue(service.selectAfter(docs.get(DOCS - 1).getId(), DocInfoFilter.all(), 100).isEmpty());
+    }
+
+    @Test
+    void filtersMatchInsertedRows() {
+        DocInfoFilter stored = new DocInfoFilter();
+        stored.setStored(true);
+        assertEquals(ids(DocInfo::isStored), scan(stored, 64));
+
+        DocInfoFilter notFound = new DocInfoFilter();
+        notFound.setStatusCode(404);
+        notFound.setStored(false);
+        assertEquals(ids(doc -> doc.getStatusCode() == 404 && !doc.isStored()), scan(notFound, 64));
+
+        DocInfoFilter site = new DocInfoFilter();
+        site.setDomain("site1.example.com");
+        site.setDuplicate(false);
+        site.setHasSimhash(true);
+        assertEquals(ids(doc -> doc.getDomain().equals("site1.example.com") && doc.getDuplicateOf() == null
+                && doc.getSimhash() != null), scan(site, 64));
+
+        DocInfoFilter duplicate = new DocInfoFilter();
+        duplicate.setDuplicate(true);
+        List<Long> expected = ids(doc -> doc.getDuplicateOf() != null);
+        assertEquals(expected, scan(duplicate, 7));
+        assertTrue(expected.size() > 7);
+    }
+
+    @Test
+    void streamReadsPagesLazily() {
+        DocInfoFilter stored = new DocInfoFilter();
+        stored.setStored(true);
+        try (Stream<DocInfo> stream = service.stream(stored, 50)) {
+            assertEquals(ids(DocInfo::isStored), stream.map(DocInfo::getId).collect(Collectors.toList()));
+        }
+        try (Stream<DocInfo> stream = service.stream(DocInfoFilter.all(), 50)) {
+            assertEquals(ids(doc -> true).subList(0, 120), stream.limit(120).map(DocInfo::getId)
+                    .collect(Collectors.toList()));
+        }
+        assertEquals(DOCS, service.selectAll().size());
+    }
+
+    @Test
+    void selectByPageStartsAtOffset() {
+        List<Long> all = ids(doc -> true);
+        for (int page : new int[]{1, 2, 13, 25}) {
+            List<Long> expected = all.subList((page - 1) * 100, page * 100);
+            assertEquals(expected, service.selectByPage(page, 100).stream().map(DocInfo::getId)
+                    .collect(Collectors.toList()));
+        }
+        assertTrue(service.selectByPage(26, 100).isEmpty());
+    }
+
+    @Test
+    void partiallyReadStreamsDoNotHoldConnections() {
+        // 只读连接池只有两个连接，每页是一次短查询，同时打开更多未读完的流也不会等待连接
+        List<Iterator<DocInfo>> cursors = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Iterator<DocInfo> cursor = service.stream(DocInfoFilter.all(), 10).iterator();
+            assertEquals(docs.get(0).getId(), cursor.next().getId());
+            cursors.add(cursor);
+        }
+        // 遍历期间写入照常进行，写入后的页能读到新记录
+        DocInfo late = new DocInfo();
+        late.setId(docs.get(DOCS - 1).getId() + 1);
+        late.setUrl("https://late.example.com/");
+        assertTrue(service.insert(late));
+
+        for (Iterator<DocInfo> cursor : cursors) {
+            long last = 0;
+            int count = 1;
+            while (cursor.hasNext()) {
+                last = cursor.next().getId();
+                count++;
+            }
+            assertEquals(late.getId(), last);
+            assertEquals(DOCS + 1, count);
+        }
+    }
+
+    private List<Long> ids(Predicate<DocInfo> predicate) {
+        return docs.stream().filter(predicate).map(DocInfo::getId).collect(Collectors.toList());
+    }
+
+    private static List<Long> scan(DocInfoFilter filter, int size) {
+        List<Long> ids = new ArrayList<>();
+        service.scan(filter, size, doc -> ids.add(doc.getId()));
+        return ids;
+    }
+}
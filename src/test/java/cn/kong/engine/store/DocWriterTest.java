@@ -0,0 +1,307 @@
+package cn.kong.engine.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author gzkon
+ * @description: 段文件写入线程：多线程提交后批量写入、多个条带并行、刷新到文件后才完成、按时间刷新和落盘、关闭时写完队列中的记录
+ * @date 2026/10/18 20:30
+ */
+class DocWriterTest {
+
+    private static final long SECOND = 1000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void concurrentAppendsAcrossStripes() throws Exception {
+        int stripes = 3;
+        int threads = 6;
+        int perThread = 500;
+        List<DocWriter> writers = new ArrayList<>();
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            writers.add(start(new DocWriter("test-writer-" + stripe, factory(stripe, new AtomicInteger()),
+                    8 * 1024, 128, 1024 * 1024, SECOND, 0, SECOND)));
+        }
+
+        Map<Long, byte[]> records = new ConcurrentHashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<List<CompletableFuture<Void>>>> submitted = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            submitted.add(pool.submit(() -> {
+                List<CompletableFuture<Void>> futures = new ArrayList<>();
+                for (int i = 0; i < perThread; i++) {
+                    long docId = (long) thread * perThread + i + 1;
+                    byte[] content = content(docId);
+                    records.put(docId, content);
+                    futures.add(writers.get((int) (docId % stripes)).append(docId, content));
+                }
+                return futures;
+            }));
+        }
+        for (Future<List<CompletableFuture<Void>>> future : submitted) {
+            CompletableFuture.allOf(future.get().toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        writers.forEach(DocWriter::close);
+
+        long written = writers.stream().mapToLong(DocWriter::getWritten).sum();
+        assertEquals(threads * perThread, written);
+        assertEquals(0, writers.stream().mapToLong(DocWriter::getFailed).sum());
+
+        // 每个条带超过最大大小后切换文件，所有文件都已封存且记录完整
+        Map<Long, byte[]> read = new HashMap<>();
+        List<Path> files = segmentFiles();
+        assertTrue(files.size() > stripes);
+        for (Path file : files) {
+            int stripe = Integer.parseInt(file.getFileName().toString().split("_")[2]);
+            try (SegmentReader reader = SegmentReader.open(file)) {
+                assertTrue(reader.isSealed());
+                for (long docId : reader.docIds()) {
+                    assertEquals(stripe, docId % stripes);
+                    read.put(docId, reader.get(docId));
+                }
+            }
+        }
+        assertEquals(records.keySet(), read.keySet());
+        records.forEach((docId, content) -> assertArrayEquals(content, read.get(docId)));
+    }
+
+    @Test
+    void flushAndForceFollowIntervals() throws Exception {
+        AtomicInteger flushes = new AtomicInteger();
+        AtomicInteger syncs = new AtomicInteger();
+        DocWriter writer = start(new DocWriter("test-writer-interval", () -> counting(0, flushes, syncs),
+                1024 * 1024, 16, Long.MAX_VALUE, 20, 50, SECOND));
+        try {
+            writer.append(1, content(1)).get(5, TimeUnit.SECONDS);
+            // 字节数远未达到阈值，队列取空后立即刷新，完成时记录已经对读取方可见
+            assertTrue(flushes.get() + syncs.get() > 0);
+            try (SegmentReader reader = SegmentReader.open(segmentFiles().get(0))) {
+                assertArrayEquals(content(1), reader.get(1));
+            }
+            for (long docId = 2; docId <= 10 && syncs.get() == 0; docId++) {
+                writer.append(docId, content(docId)).get(5, TimeUnit.SECONDS);
+                Thread.sleep(30);
+            }
+            assertTrue(syncs.get() > 0);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    void recordCompletesOnlyAfterFlush() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DocWriter writer = start(new DocWriter("test-writer-commit", () -> {
+            try {
+                return new SegmentWriter(dir.resolve("doc_raw_0_0.bin"), SegmentFormat.Compression.NONE, 4096) {
+                    @Override
+                    public void flush() throws IOException {
+                        flushing.countDown();
+                        await(release);
+                        super.flush();
+                    }
+                };
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, 1024 * 1024, 16, Long.MAX_VALUE, SECOND, 0, SECOND));
+        try {
+            AtomicBoolean called = new AtomicBoolean();
+            CompletableFuture<Void> future = writer.append(1, content(1), () -> called.set(true));
+            // 记录已追加到内存中的数据块，刷新完成前不执行回调也不完成
+            assertTrue(flushing.await(5, TimeUnit.SECONDS));
+            assertFalse(future.isDone());
+            assertFalse(called.get());
+            release.countDown();
+            future.get(5, TimeUnit.SECONDS);
+            assertTrue(called.get());
+            try (SegmentReader reader = SegmentReader.open(segmentFiles().get(0))) {
+                assertArrayEquals(content(1), reader.get(1));
+            }
+        } finally {
+            release.countDown();
+            writer.close();
+        }
+    }
+
+    @Test
+    void closeDrainsQueueAndRejectsLateRecords() throws Exception {
+        CountDownLatch opened = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DocWriter writer = start(new DocWriter("test-writer-close", () -> {
+            opened.countDown();
+            await(release);
+            return open(0, 0);
+        }, 1024 * 1024, 1000, 1024 * 1024, SECOND, 0, SECOND));
+
+        List<String> callbacks = new ArrayList<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (long docId = 1; docId <= 200; docId++) {
+            long id = docId;
+            futures.add(writer.append(docId, content(docId), () -> callbacks.add("written-" + id)));
+        }
+        assertTrue(opened.await(5, TimeUnit.SECONDS));
+        Thread closer = new Thread(writer::close);
+        closer.start();
+        // close 已经停止接收、正在等待写入线程，写入线程还没有写完
+        waitUntil(() -> closer.getState() == Thread.State.WAITING);
+        assertThrows(IOException.class, () -> writer.append(999, content(999)));
+        release.countDown();
+        closer.join(TimeUnit.SECONDS.toMillis(10));
+
+        for (CompletableFuture<Void> future : futures) {
+            assertTrue(future.isDone() && !future.isCompletedExceptionally());
+        }
+        assertEquals(200, callbacks.size());
+        assertEquals("written-1", callbacks.get(0));
+        try (SegmentReader reader = SegmentReader.open(segmentFiles().get(0))) {
+            assertTrue(reader.isSealed());
+            assertEquals(200, reader.size());
+        }
+    }
+
+    @Test
+    void fullQueueTimesOut() throws Exception {
+        CountDownLatch opened = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DocWriter writer = start(new DocWriter("test-writer-full", () -> {
+            opened.countDown();
+            await(release);
+            return open(0, 0);
+        }, 1024 * 1024, 1, 1024 * 1024, SECOND, 0, 50));
+        try {
+            CompletableFuture<Void> first = writer.append(1, content(1));
+            assertTrue(opened.await(5, TimeUnit.SECONDS));     // 写入线程取出后阻塞在打开文件
+            CompletableFuture<Void> second = writer.append(2, content(2));
+            IOException e = assertThrows(IOException.class, () -> writer.append(3, content(3)));
+            assertTrue(e.getMessage().contains("queue full"));
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            writer.close();
+        }
+    }
+
+    @Test
+    void failedWriteCompletesExceptionally() throws Exception {
+        DocWriter writer = start(new DocWriter("test-writer-fail", () -> {
+            throw new UncheckedIOException(new IOException("disk full"));
+        }, 1024 * 1024, 16, 1024 * 1024, SECOND, 0, SECOND));
+        AtomicBoolean called = new AtomicBoolean();
+        CompletableFuture<Void> future = writer.append(1, content(1), () -> called.set(true));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause().getMessage().contains("disk full"));
+        writer.close();
+        assertEquals(1, writer.getFailed());
+        assertFalse(called.get());
+    }
+
+    private static DocWriter start(DocWriter writer) {
+        writer.start();
+        return writer;
+    }
+
+    private Supplier<SegmentWriter> factory(int stripe, AtomicInteger index) {
+        return () -> open(stripe, index.getAndIncrement());
+    }
+
+    private SegmentWriter open(int stripe, int index) {
+        try {
+            return new SegmentWriter(dir.resolve("doc_raw_" + stripe + "_" + index + ".bin"),
+                    SegmentFormat.Compression.DEFLATE, 4096);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private SegmentWriter counting(int stripe, AtomicInteger flushes, AtomicInteger syncs) {
+        try {
+            return new SegmentWriter(dir.resolve("doc_raw_" + stripe + "_0.bin"), SegmentFormat.Compression.NONE, 4096) {
+                @Override
+                public void flush() throws IOException {
+                    flushes.incrementAndGet();
+                    super.flush();
+                }
+
+                @Override
+                public void sync() throws IOException {
+                    syncs.incrementAndGet();
+                    super.sync();
+                }
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static byte[] content(long docId) {
+        StringBuilder text = new StringBuilder("<html>doc-").append(docId);
+        for (int i = 0; i < docId % 97; i++) {
+            text.append(" word").append(i);
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(Condition condition) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.get()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+
+    private interface Condition {
+        boolean get() throws Exception;
+    }
+}
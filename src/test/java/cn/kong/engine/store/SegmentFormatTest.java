@@ -0,0 +1,237 @@
+package cn.kong.engine.store;
+
+import cn.kong.engine.utils.VarIntUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author gzkon
+ * @description: doc_raw 段文件格式：变长整数、两种压缩方式的读写往返、CRC32C 校验和没有文件尾时的恢复，
+ * 仍在写入的文件重新打开时只扫描新增的数据块
+ * @date 2026/10/18 20:10
+ */
+class SegmentFormatTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void varIntRoundTrip() throws IOException {
+        long[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, 1L << 35, Long.MAX_VALUE, -1};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int expectedSize = 0;
+        for (long value : values) {
+            VarIntUtils.writeVarLong(out, value);
+            expectedSize += VarIntUtils.varLongSize(value);
+        }
+        byte[] bytes = out.toByteArray();
+        assertEquals(expectedSize, bytes.length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+        for (long value : values) {
+            assertEquals(value, VarIntUtils.readVarLong(buffer));
+            assertEquals(value, VarIntUtils.readVarLong(in));
+        }
+        assertFalse(buffer.hasRemaining());
+
+        byte[] array = new byte[10];
+        int end = VarIntUtils.writeVarLong(array, 0, 300);
+        assertEquals(VarIntUtils.varLongSize(300), end);
+        assertEquals(300, VarIntUtils.readVarInt(ByteBuffer.wrap(array, 0, end)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(SegmentFormat.Compression.class)
+    void roundTripAcrossBlocks(SegmentFormat.Compression compression) throws IOException {
+        Path path = dir.resolve("doc_raw_0_0.bin");
+        Map<Long, byte[]> records = writeRecords(path, compression, 300, true);
+
+        try (SegmentReader reader = SegmentReader.open(path)) {
+            assertTrue(reader.isSealed());
+            assertEquals(records.size(), reader.size());
+            for (Map.Entry<Long, byte[]> record : records.entrySet()) {
+                assertTrue(reader.contains(record.getKey()));
+                assertArrayEquals(record.getValue(), reader.get(record.getKey()));
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                long length = reader.transferTo(record.getKey(), Channels.newChannel(out));
+                assertEquals(record.getValue().length, length);
+                assertArrayEquals(record.getValue(), out.toByteArray());
+            }
+            assertNull(reader.get(-5));
+            assertEquals(-1, reader.transferTo(-5, Channels.newChannel(new ByteArrayOutputStream())));
+
+            Map<Long, byte[]> visited = new HashMap<>();
+            reader.forEach((docId, content, offset, length) ->
+                    visited.put(docId, Arrays.copyOfRange(content, offset, offset + length)));
+            assertEquals(records.keySet(), visited.keySet());
+            records.forEach((docId, content) -> assertArrayEquals(content, visited.get(docId)));
+
+            long[] ids = reader.docIds();
+            for (int i = 1; i < ids.length; i++) {
+                assertTrue(ids[i - 1] < ids[i]);
+            }
+        }
+    }
+
+    @Test
+    void corruptRecordIsDetected() throws IOException {
+        Path path = dir.resolve("doc_raw_0_1.bin");
+        Map<Long, byte[]> records = writeRecords(path, SegmentFormat.Compression.NONE, 50, true);
+        long victim = records.keySet().iterator().next();
+        corruptLastByteOf(path, records.get(victim));
+
+        try (SegmentReader reader = SegmentReader.open(path)) {
+            IOException e = assertThrows(IOException.class, () -> reader.get(victim));
+            assertTrue(e.getMessage().contains("Checksum"));
+
+            List<Long> visited = new ArrayList<>();
+            reader.forEach((docId, content, offset, length) -> visited.add(docId));
+            assertEquals(records.size() - 1, visited.size());
+            assertFalse(visited.contains(victim));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(SegmentFormat.Compression.class)
+    void unsealedSegmentIsRecovered(SegmentFormat.Compression compression) throws IOException {
+        Path path = dir.resolve("doc_raw_0_2.bin");
+        Map<Long, byte[]> records = writeRecords(path, compression, 120, false);
+
+        try (SegmentReader reader = SegmentReader.open(path)) {
+            assertFalse(reader.isSealed());
+            assertEquals(records.size(), reader.size());
+            records.forEach((docId, content) -> {
+                try {
+                    assertArrayEquals(content, reader.get(docId));
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            });
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(SegmentFormat.Compression.class)
+    void growingSegmentIsReopenedIncrementally(SegmentFormat.Compression compression) throws IOException {
+        Path path = dir.resolve("doc_raw_0_4.bin");
+        Map<Long, byte[]> records = new HashMap<>();
+        SegmentWriter writer = new SegmentWriter(path, compression, 4096);
+        // 第二批的 docId 与第一批交错，重新打开时需要和沿用的索引归并
+        for (long docId = 2; docId <= 200; docId += 2) {
+            append(writer, records, docId);
+        }
+        writer.flush();
+        SegmentReader first = SegmentReader.open(path);
+        assertFalse(first.isSealed());
+        for (long docId = 1; docId <= 199; docId += 2) {
+            append(writer, records, docId);
+        }
+        writer.flush();
+
+        try (SegmentReader reopened = SegmentReader.reopen(first);
+             SegmentReader full = SegmentReader.open(path)) {
+            first.close();
+            assertFalse(reopened.isSealed());
+            assertEquals(records.size(), reopened.size());
+            assertArrayEquals(full.docIds(), reopened.docIds());
+            for (Map.Entry<Long, byte[]> record : records.entrySet()) {
+                assertArrayEquals(record.getValue(), reopened.get(record.getKey()));
+            }
+
+            // 正常关闭后改用文件尾的索引
+            writer.close();
+            try (SegmentReader sealed = SegmentReader.reopen(reopened)) {
+                assertTrue(sealed.isSealed());
+                assertArrayEquals(full.docIds(), sealed.docIds());
+            }
+        }
+    }
+
+    @Test
+    void truncatedBlockIsDropped() throws IOException {
+        Path path = dir.resolve("doc_raw_0_3.bin");
+        writeRecords(path, SegmentFormat.Compression.DEFLATE, 120, false);
+        long size = Files.size(path);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(size - 10);   // 最后一个数据块没有写完整
+        }
+        try (SegmentReader reader = SegmentReader.open(path)) {
+            assertFalse(reader.isSealed());
+            assertTrue(reader.size() > 0 && reader.size() < 120);
+            for (long docId : reader.docIds()) {
+                assertTrue(reader.get(docId).length > 0);
+            }
+        }
+    }
+
+    // 写入 count 条随机内容的记录，docId 乱序，seal 为false时只刷新不写文件尾
+    private static Map<Long, byte[]> writeRecords(Path path, SegmentFormat.Compression compression,
+                                                  int count, boolean seal) throws IOException {
+        Random random = new Random(42);
+        Map<Long, byte[]> records = new HashMap<>();
+        SegmentWriter writer = new SegmentWriter(path, compression, 4096);
+        for (int i = 0; i < count; i++) {
+            long docId = (i * 7919L) % 100_003 + 1;
+            StringBuilder text = new StringBuilder("<html>doc-" + docId + "-");
+            int words = 1 + random.nextInt(400);
+            for (int w = 0; w < words; w++) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+            byte[] content = text.toString().getBytes(StandardCharsets.UTF_8);
+            writer.append(docId, content);
+            records.put(docId, content);
+        }
+        if (seal) {
+            writer.close();
+        } else {
+            writer.flush();
+        }
+        return records;
+    }
+
+    private static void append(SegmentWriter writer, Map<Long, byte[]> records, long docId) throws IOException {
+        byte[] content = ("<html>doc-" + docId + "-" + "x".repeat((int) (docId * 37 % 500))).getBytes(StandardCharsets.UTF_8);
+        writer.append(docId, content);
+        records.put(docId, content);
+    }
+
+    // 在未压缩的段文件中找到记录内容，改掉最后一个字节
+    private static void corruptLastByteOf(Path path, byte[] content) throws IOException {
+        byte[] file = Files.readAllBytes(path);
+        for (int i = 0; i + content.length <= file.length; i++) {
+            if (Arrays.equals(file, i, i + content.length, content, 0, content.length)) {
+                file[i + content.length - 1] ^= 0x5A;
+                Files.write(path, file);
+                return;
+            }
+        }
+        throw new AssertionError("record not found in segment file");
+    }
+}
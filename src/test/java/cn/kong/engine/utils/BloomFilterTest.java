@@ -0,0 +1,219 @@
+package cn.kong.engine.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author gzkon
+ * @description: 布隆过滤器：没有漏判，插满预计容量后实测误判率不超过配置值，可扩展过滤器扩展分片后合计误判率仍在配置值以内，
+ * 多线程插入同一元素时扩展分片也只计为一次新元素
+ * @date 2026/10/18 21:40
+ */
+class BloomFilterTest {
+
+    private static final double FPP = 0.01;
+
+    private static final int PROBES = 200_000;
+
+    // 单个过滤器插满预计容量时理论误判率就是 FPP，20万次抽样的标准差约为 FPP 的 2%，留出 20% 的抽样误差
+    private static final double SAMPLING_MARGIN = 1.2;
+
+    @Test
+    void customFilterStaysWithinFpp() {
+        int expected = 50_000;
+        CustomBloomFilter filter = new CustomBloomFilter(expected, FPP);
+        Random random = new Random(1);
+        long[] inserted = new long[expected];
+        for (int i = 0; i < expected; i++) {
+            inserted[i] = random.nextLong();
+            filter.putIfAbsent(inserted[i]);
+        }
+        for (long fingerprint : inserted) {
+            assertTrue(filter.mightContain(fingerprint));
+            assertFalse(filter.putIfAbsent(fingerprint));
+        }
+
+        // 另一个种子生成的指纹与插入的指纹重合的概率可以忽略，命中的都是误判
+        double rate = falsePositiveRate(new Random(2), filter::mightContain);
+        assertTrue(rate <= FPP * SAMPLING_MARGIN, "false positive rate " + rate);
+        assertTrue(rate > 0, "filter is oversized: " + filter.bitSize() + " bits");
+    }
+
+    @Test
+    void stringValuesStayWithinFpp() {
+        CustomBloomFilter filter = new CustomBloomFilter(10_000, FPP);
+        int added = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.putIfAbsent("https://example.com/page/" + i)) {
+                added++;
+            }
+        }
+        assertTrue(added >= 10_000 * (1 - FPP), "added " + added);
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("https://example.com/page/" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < PROBES; i++) {
+            if (filter.mightContain("https://example.org/other/" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue((double) falsePositives / PROBES <= FPP * SAMPLING_MARGIN, "false positives " + falsePositives);
+    }
+
+    @Test
+    void scalableFilterGrowsAndStaysWithinFpp() {
+        int initialCapacity = 2048;
+        int count = 100_000;
+        ScalableBloomFilter filter = new ScalableBloomFilter(initialCapacity, FPP);
+        long initialBits = filter.bitSize();
+        Random random = new Random(3);
+        long[] inserted = new long[count];
+        int added = 0;
+        for (int i = 0; i < count; i++) {
+            inserted[i] = random.nextLong();
+            if (filter.putIfAbsent(inserted[i])) {
+                added++;
+            }
+        }
+        // 超出初始容量后按倍数追加分片：2048 * (1 + 2 + 4 + ... ) 覆盖 100000 需要 6 个分片
+        assertEquals(6, filter.sliceCount());
+        assertEquals(added, filter.size());
+        assertTrue(added >= count * (1 - FPP), "added " + added);
+        assertTrue(filter.bitSize() > initialBits * 32);
+        for (long fingerprint : inserted) {
+            assertTrue(filter.mightContain(fingerprint));
+        }
+
+        // 各分片误判率为 FPP/2、FPP/4 ...，最新分片没有插满，合计低于 FPP，同样留出抽样误差
+        double rate = falsePositiveRate(new Random(4), filter::mightContain);
+        assertTrue(rate <= FPP * SAMPLING_MARGIN, "false positive rate " + rate);
+    }
+
+    @Test
+    void sharedFilterAcrossThreads() throws Exception {
+        int threads = 4;
+        int perThread = 20_000;
+        ScalableBloomFilter filter = new ScalableBloomFilter(1024, FPP);
+        AtomicLong added = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = 100 + t;
+            futures.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                long[] fingerprints = new long[perThread];
+                for (int i = 0; i < perThread; i++) {
+                    fingerprints[i] = random.nextLong();
+                    if (filter.putIfAbsent(fingerprints[i])) {
+                        added.incrementAndGet();
+                    }
+                }
+                return fingerprints;
+            }));
+        }
+        List<long[]> inserted = new ArrayList<>();
+        for (Future<long[]> future : futures) {
+            inserted.add(future.get());
+        }
+        pool.shutdown();
+
+        for (long[] fingerprints : inserted) {
+            for (long fingerprint : fingerprints) {
+                assertTrue(filter.mightContain(fingerprint));
+            }
+        }
+        assertEquals(added.get(), filter.size());
+        double rate = falsePositiveRate(new Random(5), filter::mightContain);
+        assertTrue(rate <= FPP * SAMPLING_MARGIN, "false positive rate " + rate);
+    }
+
+    @Test
+    void concurrentDuplicatesAreNewOnlyOnce() throws Exception {
+        int threads = 4;
+        int count = 20_000;
+        ScalableBloomFilter filter = new ScalableBloomFilter(1024, FPP);
+        AtomicLong added = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            // 所有线程插入同一组指纹，分片在插入过程中多次扩展，每个指纹最多只有一个线程认为是新元素
+            futures.add(pool.submit(() -> {
+                Random random = new Random(7);
+                for (int i = 0; i < count; i++) {
+                    if (filter.putIfAbsent(random.nextLong())) {
+                        added.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        assertTrue(filter.sliceCount() > 1);
+        assertTrue(added.get() <= count, "added " + added.get());
+        assertTrue(added.get() >= count * (1 - FPP), "added " + added.get());
+        assertEquals(added.get(), filter.size());
+    }
+
+    @Test
+    void roundTripKeepsContentsAndGrowth() throws IOException {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1024, FPP);
+        Random random = new Random(6);
+        long[] inserted = new long[5000];
+        for (int i = 0; i < inserted.length; i++) {
+            inserted[i] = random.nextLong();
+            filter.putIfAbsent(inserted[i]);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filter.writeTo(out);
+        ScalableBloomFilter restored = ScalableBloomFilter.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(filter.sliceCount(), restored.sliceCount());
+        assertEquals(filter.size(), restored.size());
+        assertEquals(filter.bitSize(), restored.bitSize());
+        for (long fingerprint : inserted) {
+            assertTrue(restored.mightContain(fingerprint));
+        }
+        // 恢复后继续插入，最新分片的计数接着原来的值，插满后照常扩展
+        for (int i = 0; i < 10_000; i++) {
+            restored.putIfAbsent(random.nextLong());
+        }
+        assertTrue(restored.sliceCount() > filter.sliceCount());
+
+        byte[] corrupt = out.toByteArray();
+        corrupt[0] ^= 1;
+        assertThrows(IOException.class, () -> ScalableBloomFilter.readFrom(new ByteArrayInputStream(corrupt)));
+    }
+
+    private static double falsePositiveRate(Random random, Probe filter) {
+        int falsePositives = 0;
+        for (int i = 0; i < PROBES; i++) {
+            if (filter.mightContain(random.nextLong())) {
+                falsePositives++;
+            }
+        }
+        return (double) falsePositives / PROBES;
+    }
+
+    private interface Probe {
+        boolean mightContain(long fingerprint);
+    }
+}
@@ -0,0 +1,114 @@
+package cn.kong.engine.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author gzkon
+ * @description: URL规范化：大小写、默认端口、片段、路径中的 . 和 ..、查询参数排序、跟踪参数，以及指纹对末尾 / 的处理
+ * @date 2026/10/18 21:50
+ */
+class UrlCanonicalizerTest {
+
+    // 与 application.yml 中的默认配置一致
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer(
+            Arrays.asList("gclid", "fbclid", "msclkid", "yclid", "spm", "_ga", "mc_cid", "mc_eid"),
+            Collections.singletonList("utm_"));
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource(delimiter = '|', value = {
+            // 协议和主机转小写，路径保持原样
+            "HTTP://Example.COM/Path        | http://example.com/Path",
+            "https://WWW.Example.com        | https://www.example.com/",
+            // 默认端口去掉，非默认端口保留
+            "http://example.com:80/a        | http://example.com/a",
+            "https://example.com:443/a      | https://example.com/a",
+            "http://example.com:8080/a      | http://example.com:8080/a",
+            "https://example.com:80/a       | https://example.com:80/a",
+            // 片段去掉
+            "http://example.com/a#section   | http://example.com/a",
+            "http://example.com/a?x=1#top   | http://example.com/a?x=1",
+            // 路径中的 . 和 .. 展开
+            "http://example.com/a/./b/../c  | http://example.com/a/c",
+            "http://example.com/../a        | http://example.com/a",
+            // 查询参数按名称、值排序，同名参数保留
+            "http://example.com/?b=2&a=1    | http://example.com/?a=1&b=2",
+            "http://example.com/?a=2&a=1    | http://example.com/?a=1&a=2",
+            "http://example.com/?b&a=1      | http://example.com/?a=1&b",
+            // 跟踪参数按名称和前缀去掉，不区分大小写，全部去掉后不留 ?
+            "http://example.com/?utm_source=x&id=3        | http://example.com/?id=3",
+            "http://example.com/?UTM_Medium=x&GCLID=y     | http://example.com/",
+            "http://example.com/?spm=a.b&fbclid=z&page=2  | http://example.com/?page=2",
+            "http://example.com/?utmost=1                 | http://example.com/?utmost=1",
+            // 空参数名去掉，编码统一
+            "http://example.com/?=1&a=1     | http://example.com/?a=1",
+            "http://example.com/a b?q=x y   | http://example.com/a%20b?q=x%20y",
+            "http://example.com/中文?q=搜索  | http://example.com/%E4%B8%AD%E6%96%87?q=%E6%90%9C%E7%B4%A2",
+            // 首尾空白去掉
+            "'  http://example.com/a  '     | http://example.com/a",
+    })
+    void canonicalize(String url, String expected) {
+        assertEquals(expected, canonicalizer.canonicalize(url));
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {"ftp://example.com/a", "mailto:someone@example.com", "javascript:void(0)",
+            "/relative/path", "http://", "not a url"})
+    void rejectsNonHttpUrls(String url) {
+        assertNull(canonicalizer.canonicalize(url));
+    }
+
+    @Test
+    void canonicalizationIsIdempotent() {
+        String[] urls = {"HTTP://Example.com:80/a/../b/?utm_source=x&z=1&a=2#frag",
+                "https://example.com/%7Euser/?q=x y", "http://example.com"};
+        for (String url : urls) {
+            String canonical = canonicalizer.canonicalize(url);
+            assertEquals(canonical, canonicalizer.canonicalize(canonical));
+        }
+    }
+
+    @ParameterizedTest(name = "{0} = {1}")
+    @CsvSource(delimiter = '|', value = {
+            "http://example.com/a           | http://example.com/a/",
+            "http://example.com/a?x=1       | http://example.com/a/?x=1",
+            "http://example.com/a/b         | http://example.com/a/b/",
+    })
+    void fingerprintIgnoresTrailingSlash(String url, String other) {
+        assertEquals(fingerprint(url), fingerprint(other));
+    }
+
+    @ParameterizedTest(name = "{0} != {1}")
+    @CsvSource(delimiter = '|', value = {
+            "http://example.com/            | http://example.com/a",
+            "http://example.com/a           | https://example.com/a",
+            "http://example.com/a           | http://example.com/A",
+            "http://example.com/a?x=1       | http://example.com/a?x=2",
+            "http://example.com/a/?x=1      | http://example.com/a?x=1/",
+    })
+    void fingerprintDistinguishesPages(String url, String other) {
+        assertNotEquals(fingerprint(url), fingerprint(other));
+    }
+
+    @Test
+    void equivalentUrlsShareFingerprint() {
+        long expected = fingerprint("http://example.com/list?a=1&page=2");
+        assertEquals(expected, fingerprint("HTTP://EXAMPLE.com:80/list/?page=2&a=1&utm_campaign=spring#top"));
+        assertEquals(expected, fingerprint("http://example.com/x/../list?gclid=abc&a=1&page=2"));
+    }
+
+    private long fingerprint(String url) {
+        return UrlCanonicalizer.fingerprint(canonicalizer.canonicalize(url));
+    }
+}